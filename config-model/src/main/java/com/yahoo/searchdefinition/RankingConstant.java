@@ -78,6 +78,10 @@ public class RankingConstant {
             throw new IllegalArgumentException("Ranking constants must have a file or uri.");
         if (tensorType == null)
             throw new IllegalArgumentException("Ranking constant '" + name + "' must have a type.");
+        if (tensorType.valueType().isQuantized())
+            throw new IllegalArgumentException("Ranking constant '" + name + "' has cell type '" +
+                                               tensorType.valueType().id() + "', but content nodes only support " +
+                                               "cell types 'double' and 'float'.");
     }
 
     public String toString() {
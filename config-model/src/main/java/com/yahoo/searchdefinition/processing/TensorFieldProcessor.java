@@ -27,6 +27,7 @@ public class TensorFieldProcessor extends Processor {
         for (var field : search.allConcreteFields()) {
             if ( field.getDataType() instanceof TensorDataType ) {
                 if (validate) {
+                    validateCellTypeForTensorField(field);
                     validateIndexingScripsForTensorField(field);
                     validateAttributeSettingForTensorField(field);
                 }
@@ -40,6 +41,14 @@ public class TensorFieldProcessor extends Processor {
         }
     }
 
+    private void validateCellTypeForTensorField(SDField field) {
+        var valueType = ((TensorDataType)field.getDataType()).getTensorType().valueType();
+        if (valueType.isQuantized()) {
+            fail(search, field, "A tensor field cannot have cell type '" + valueType.id() + "'. " +
+                    "Currently, content nodes only support cell types 'double' and 'float'.");
+        }
+    }
+
     private void validateIndexingScripsForTensorField(SDField field) {
         if (field.doesIndexing() && !isTensorTypeThatSupportsHnswIndex(field)) {
             fail(search, field, "A tensor of type '" + tensorTypeToString(field) + "' does not support having an 'index'. " +
@@ -146,6 +146,15 @@ public class VespaMetricSet {
         metrics.add(new Metric("httpapi_succeeded.rate"));
         metrics.add(new Metric("httpapi_failed.rate"));
         metrics.add(new Metric("httpapi_parse_error.rate"));
+        metrics.add(new Metric("httpapi_read_time.max"));
+        metrics.add(new Metric("httpapi_read_time.sum"));
+        metrics.add(new Metric("httpapi_read_time.count"));
+        metrics.add(new Metric("httpapi_parse_time.max"));
+        metrics.add(new Metric("httpapi_parse_time.sum"));
+        metrics.add(new Metric("httpapi_parse_time.count"));
+        metrics.add(new Metric("httpapi_send_time.max"));
+        metrics.add(new Metric("httpapi_send_time.sum"));
+        metrics.add(new Metric("httpapi_send_time.count"));
 
         metrics.add(new Metric("mem.heap.total.average"));
         metrics.add(new Metric("mem.heap.free.average"));
@@ -265,6 +274,9 @@ public class VespaMetricSet {
         metrics.add(new Metric("documents_total.count"));
         metrics.add(new Metric("dispatch_internal.rate"));
         metrics.add(new Metric("dispatch_fdispatch.rate"));
+        metrics.add(new Metric("dispatch_result_cache_hits.rate"));
+        metrics.add(new Metric("dispatch_result_cache_misses.rate"));
+        metrics.add(new Metric("dispatch_result_cache_evictions.rate"));
 
         metrics.add(new Metric("totalhits_per_query.max"));
         metrics.add(new Metric("totalhits_per_query.sum"));
@@ -25,7 +25,9 @@ public class ContainerDocumentApi {
 
     private void setupHandlers(ContainerCluster cluster) {
         cluster.addComponent(newVespaClientHandler("com.yahoo.document.restapi.resource.RestApi", "document/v1/*"));
-        cluster.addComponent(newVespaClientHandler("com.yahoo.vespa.http.server.FeedHandler", ContainerCluster.RESERVED_URI_PREFIX + "/feedapi"));
+        String feedHandler = options.asyncFeed ? "com.yahoo.vespa.http.server.AsyncFeedHandler"
+                                               : "com.yahoo.vespa.http.server.FeedHandler";
+        cluster.addComponent(newVespaClientHandler(feedHandler, ContainerCluster.RESERVED_URI_PREFIX + "/feedapi"));
     }
 
     private Handler<AbstractConfigProducer<?>> newVespaClientHandler(String componentId, String bindingSuffix) {
@@ -42,9 +44,16 @@ public class ContainerDocumentApi {
     public static final class Options {
         private final Collection<String> bindings;
 
+        /** Whether feed requests are handled by AsyncFeedHandler, which does not use a thread per feed stream */
+        private final boolean asyncFeed;
 
         public Options(Collection<String> bindings) {
+            this(bindings, false);
+        }
+
+        public Options(Collection<String> bindings, boolean asyncFeed) {
             this.bindings = Collections.unmodifiableCollection(bindings);
+            this.asyncFeed = asyncFeed;
         }
     }
 
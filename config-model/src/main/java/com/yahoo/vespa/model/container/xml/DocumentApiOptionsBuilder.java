@@ -21,7 +21,14 @@ public class DocumentApiOptionsBuilder {
     private static final String[] DEFAULT_BINDINGS = {"http://*/"};
 
     public static ContainerDocumentApi.Options build(Element spec) {
-        return new ContainerDocumentApi.Options(getBindings(spec));
+        return new ContainerDocumentApi.Options(getBindings(spec), getAsyncFeed(spec));
+    }
+
+    private static boolean getAsyncFeed(Element spec) {
+        Element asyncFeed = XML.getChild(spec, "asyncfeed");
+        if (asyncFeed == null) return false;
+        String value = XML.getValue(asyncFeed).trim();
+        return value.equals("true") || value.equals("1"); // xsd:boolean
     }
 
     private static List<String> getBindings(Element spec) {
@@ -320,6 +320,9 @@ public class IndexedSearchCluster extends SearchCluster
                 case ROUNDROBIN:
                     builder.distributionPolicy(DistributionPolicy.ROUNDROBIN);
                     break;
+                case BEST_OF_RANDOM_2:
+                    builder.distributionPolicy(DistributionPolicy.BEST_OF_RANDOM_2);
+                    break;
             }
         }
         if (tuning.dispatch.getMaxHitsPerPartition() != null)
@@ -87,6 +87,23 @@ public class RankingConstantTest {
         ));
     }
 
+    @Test
+    public void tensor_constant_cannot_have_quantized_cell_type() throws Exception {
+        RankProfileRegistry rankProfileRegistry = new RankProfileRegistry();
+        SearchBuilder searchBuilder = new SearchBuilder(rankProfileRegistry);
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Ranking constant 'foo' has cell type 'int8', but content nodes only support cell types 'double' and 'float'.");
+        searchBuilder.importString(joinLines(
+                "search test {",
+                "  document test { }",
+                "  constant foo {",
+                "    type: tensor<int8>(x[2])",
+                "    file: bar.baz",
+                "  }",
+                "}"
+        ));
+    }
+
     @Test
     public void constant_file_does_not_need_path_or_ending() throws Exception {
         RankProfileRegistry rankProfileRegistry = new RankProfileRegistry();
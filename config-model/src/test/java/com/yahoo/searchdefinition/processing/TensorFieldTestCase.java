@@ -30,6 +30,21 @@ public class TensorFieldTestCase {
         }
     }
 
+    @Test
+    public void requireThatTensorFieldCannotHaveQuantizedCellType() throws ParseException {
+        for (String cellType : new String[] { "bfloat16", "int8" }) {
+            try {
+                createFromString(getSd("field f1 type tensor<" + cellType + ">(x[4]) { indexing: attribute }"));
+                fail("Expected exception");
+            }
+            catch (IllegalArgumentException e) {
+                assertEquals("For search 'test', field 'f1': A tensor field cannot have cell type '" + cellType + "'. " +
+                             "Currently, content nodes only support cell types 'double' and 'float'.",
+                             e.getMessage());
+            }
+        }
+    }
+
     @Test
     public void requireThatTensorFieldCannotBeIndexField() throws ParseException {
         try {
@@ -79,5 +79,34 @@ public class ContainerDocumentApiBuilderTest extends ContainerModelBuilderTestBa
         assertThat(handlerMap.get("com.yahoo.vespa.http.server.FeedHandler").getServerBindings().contains("http://*/" + ContainerCluster.RESERVED_URI_PREFIX + "/feedapi"), is(true));
         assertThat(handlerMap.get("com.yahoo.vespa.http.server.FeedHandler").getServerBindings().contains("http://*/" + ContainerCluster.RESERVED_URI_PREFIX + "/feedapi/"), is(true));
         assertThat(handlerMap.get("com.yahoo.vespa.http.server.FeedHandler").getServerBindings().size(), equalTo(2));
+        assertThat(handlerMap.get("com.yahoo.vespa.http.server.AsyncFeedHandler"), nullValue());
+    }
+
+    @Test
+    public void requireThatAsyncFeedHandlerReplacesFeedHandlerWhenConfigured() {
+        assertAsyncFeedHandlerReplacesFeedHandler("true");
+    }
+
+    @Test
+    public void requireThatAsyncFeedAcceptsAllTrueBooleanValues() {
+        assertAsyncFeedHandlerReplacesFeedHandler("1");
+    }
+
+    private void assertAsyncFeedHandlerReplacesFeedHandler(String asyncFeed) {
+        Element elem = DomBuilderTest.parse(
+                "<container id='cluster1' version='1.0'>",
+                "  <document-api>",
+                "    <asyncfeed>" + asyncFeed + "</asyncfeed>",
+                "  </document-api>",
+                nodesXml,
+                "</container>");
+        createModel(root, elem);
+
+        Map<String, Handler<?>> handlerMap = getHandlers("cluster1");
+        assertThat(handlerMap.get("com.yahoo.vespa.http.server.FeedHandler"), nullValue());
+        Handler<?> asyncFeedHandler = handlerMap.get("com.yahoo.vespa.http.server.AsyncFeedHandler");
+        assertThat(asyncFeedHandler, not(nullValue()));
+        assertThat(asyncFeedHandler.getServerBindings().contains("http://*/" + ContainerCluster.RESERVED_URI_PREFIX + "/feedapi"), is(true));
+        assertThat(asyncFeedHandler.getServerBindings().contains("http://*/" + ContainerCluster.RESERVED_URI_PREFIX + "/feedapi/"), is(true));
     }
 }
@@ -92,7 +92,8 @@ public final class SessionCache extends AbstractComponent {
             documentTypeManager.configure(documentManagerConfigId);
         }
         LoadTypeSet loadTypeSet = new LoadTypeSet(loadTypeConfigId);
-        DocumentProtocol protocol = new DocumentProtocol(documentTypeManager, identity, loadTypeSet);
+        DocumentProtocol protocol = new DocumentProtocol(documentTypeManager, identity, loadTypeSet)
+                .setLazyFieldDeserialization(mbusConfig.lazyFieldDeserialization());
         messageBus = createSharedMessageBus(mbusConfig, slobrokConfigId, identity, protocol);
         // TODO: stop doing subscriptions to config when that is to be solved in slobrok as well
         configAgent = new ConfigAgent(messagebusConfigId, messageBus.messageBus());
@@ -134,6 +135,8 @@ public final class SessionCache extends AbstractComponent {
 
         String msgLimit =
                 (containerMbusConfig.maxpendingcount() == 0) ? "unlimited" : "" + containerMbusConfig.maxpendingcount();
+        if (containerMbusConfig.lazyFieldDeserialization())
+            log.log(LogLevel.CONFIG, "Deserializing document fields when they are accessed.");
         log.log(LogLevel.CONFIG, ("Starting message bus with max " + msgLimit + " pending messages and max " +
                 (((double) (maxPendingSize / 1024L)) / 1024.0d) + " pending megabytes."));
     }
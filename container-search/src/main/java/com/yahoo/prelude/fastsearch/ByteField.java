@@ -33,4 +33,9 @@ public class ByteField extends DocsumField {
         return convert((byte)value.asLong(EMPTY_VALUE));
     }
 
+    @Override
+    public boolean isEmpty(Inspector value) {
+        return (byte)value.asLong(EMPTY_VALUE) == EMPTY_VALUE;
+    }
+
 }
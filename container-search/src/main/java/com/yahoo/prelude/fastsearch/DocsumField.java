@@ -86,6 +86,12 @@ public abstract class DocsumField {
      */
     public abstract Object convert(Inspector value);
 
+    /**
+     * Returns whether the given value is the value used to represent that there is no value for this field.
+     * Such values are converted to {@link com.yahoo.search.result.NanNumber#NaN} by convert.
+     */
+    public boolean isEmpty(Inspector value) { return false; }
+
     /** Returns whether this is the string field type. */
     boolean isString() { return false; }
 
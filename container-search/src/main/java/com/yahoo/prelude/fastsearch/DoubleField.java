@@ -28,4 +28,9 @@ public class DoubleField extends DocsumField {
         return convert(value.asDouble(EMPTY_VALUE));
     }
 
+    @Override
+    public boolean isEmpty(Inspector value) {
+        return Double.isNaN(value.asDouble(EMPTY_VALUE));
+    }
+
 }
@@ -266,6 +266,17 @@ public class FastHit extends Hit {
             summaryData.forEachFieldAsRaw(consumer);
     }
 
+    /**
+     * Receive a callback on the given consumer for each field in this hit, where the values of summary fields
+     * which are not strings are passed as the data they are contained in rather than converted to objects.
+     * This allows the values to be rendered without creating intermediate objects.
+     */
+    public void forEachFieldAsData(FieldDataConsumer consumer) {
+        super.forEachField(consumer);
+        for (SummaryData summaryData : summaries)
+            summaryData.forEachFieldAsData(consumer);
+    }
+
     @Override
     public Map<String, Object> fields() {
         Map<String, Object> fields = new HashMap<>();
@@ -523,6 +534,20 @@ public class FastHit extends Hit {
 
     }
 
+    /** A consumer of the fields of a hit which receives the values of summary fields as data where possible */
+    public interface FieldDataConsumer extends RawUtf8Consumer {
+
+        /**
+         * Called for summary fields which are not strings instead of accept(String, Object).
+         *
+         * @param fieldName the name of the field
+         * @param fieldType the type of the field, which can convert the value to the object it represents
+         * @param value the data of the field
+         */
+        void accept(String fieldName, DocsumField fieldType, Inspector value);
+
+    }
+
     /** Summary data (values of a number of fields) received for this hit */
     private static class SummaryData {
 
@@ -572,6 +597,22 @@ public class FastHit extends Hit {
             });
         }
 
+        void forEachFieldAsData(FieldDataConsumer consumer) {
+            data.traverse((ObjectTraverser)(name, value) -> {
+                if (!shadowed(name) && !removed(name)) {
+                    DocsumField fieldType = type.getField(name);
+                    if (fieldType != null) {
+                        if (fieldType.isString()) {
+                            byte[] utf8Value = value.asUtf8();
+                            consumer.accept(name, utf8Value, 0, utf8Value.length);
+                        } else {
+                            consumer.accept(name, fieldType, value);
+                        }
+                    }
+                }
+            });
+        }
+
         Iterator<Map.Entry<String, Object>> fieldIterator() {
             return new SummaryDataFieldIterator(this, type, data.fields().iterator());
         }
@@ -30,4 +30,9 @@ public class Float16Field extends DocsumField {
         return convert((float)value.asDouble(EMPTY_VALUE));
     }
 
+    @Override
+    public boolean isEmpty(Inspector value) {
+        return Float.isNaN((float)value.asDouble(EMPTY_VALUE));
+    }
+
 }
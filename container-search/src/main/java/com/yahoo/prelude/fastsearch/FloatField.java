@@ -32,4 +32,9 @@ public class FloatField extends DocsumField {
         return convert((float)value.asDouble(EMPTY_VALUE));
     }
 
+    @Override
+    public boolean isEmpty(Inspector value) {
+        return Float.isNaN((float)value.asDouble(EMPTY_VALUE));
+    }
+
 }
@@ -38,4 +38,9 @@ public class Int64Field extends DocsumField {
         return convert(value.asLong(EMPTY_VALUE));
     }
 
+    @Override
+    public boolean isEmpty(Inspector value) {
+        return value.asLong(EMPTY_VALUE) == EMPTY_VALUE;
+    }
+
 }
@@ -37,4 +37,9 @@ public class IntegerField extends DocsumField {
         return convert((int)value.asLong(EMPTY_VALUE));
     }
 
+    @Override
+    public boolean isEmpty(Inspector value) {
+        return (int)value.asLong(EMPTY_VALUE) == EMPTY_VALUE;
+    }
+
 }
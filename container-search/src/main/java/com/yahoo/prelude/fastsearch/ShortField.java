@@ -32,4 +32,9 @@ public class ShortField extends DocsumField {
         return convert((short)value.asLong(EMPTY_VALUE));
     }
 
+    @Override
+    public boolean isEmpty(Inspector value) {
+        return (short)value.asLong(EMPTY_VALUE) == EMPTY_VALUE;
+    }
+
 }
@@ -0,0 +1,44 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.searchchain.Execution;
+
+import java.util.Optional;
+
+/**
+ * A search invoker which produces a result found in the {@link ResultCache} without contacting any content nodes.
+ */
+class CachedResultInvoker extends SearchInvoker {
+
+    private final InvokerResult result;
+
+    /** Whether to reset the offset of the query, as done when the cached result was produced */
+    private final boolean resetOffset;
+
+    private Query query;
+
+    CachedResultInvoker(InvokerResult result, boolean resetOffset) {
+        super(Optional.empty());
+        this.result = result;
+        this.resetOffset = resetOffset;
+    }
+
+    @Override
+    protected void sendSearchRequest(Query query) {
+        this.query = query;
+    }
+
+    @Override
+    protected InvokerResult getSearchResult(Execution execution) {
+        if (resetOffset)
+            query.setOffset(0);  // The cached hits were merged and trimmed to the requested window
+        return result;
+    }
+
+    @Override
+    protected void release() {
+        // nothing to release
+    }
+
+}
@@ -0,0 +1,44 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.searchchain.Execution;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * A search invoker which delegates to another invoker and stores the result in a {@link ResultCache}.
+ */
+class CachingSearchInvoker extends SearchInvoker {
+
+    private final SearchInvoker delegate;
+    private final ResultCache cache;
+    private final ResultCache.Key key;
+
+    CachingSearchInvoker(SearchInvoker delegate, ResultCache cache, ResultCache.Key key) {
+        super(Optional.empty());
+        this.delegate = delegate;
+        this.cache = cache;
+        this.key = key;
+    }
+
+    @Override
+    protected void sendSearchRequest(Query query) throws IOException {
+        delegate.sendSearchRequest(query);
+    }
+
+    @Override
+    protected InvokerResult getSearchResult(Execution execution) throws IOException {
+        InvokerResult result = delegate.getSearchResult(execution);
+        delegate.setFinalStatus(result.getResult().hits().getError() == null);
+        cache.put(key, result);
+        return result;
+    }
+
+    @Override
+    protected void release() {
+        delegate.close();
+    }
+
+}
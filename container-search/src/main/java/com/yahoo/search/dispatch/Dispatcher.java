@@ -27,9 +27,12 @@ import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.OptionalInt;
 import java.util.Set;
 
@@ -50,14 +53,21 @@ public class Dispatcher extends AbstractComponent {
     public static final String DISPATCH = "dispatch";
     private static final String INTERNAL = "internal";
     private static final String PROTOBUF = "protobuf";
+    private static final String RESULT_CACHE = "resultCache";
 
     private static final String INTERNAL_METRIC = "dispatch_internal";
+    private static final String NODE_PENDING_QUERIES_METRIC = "dispatch_node_pending_queries";
+    private static final String NODE_SEARCH_TIME_MEDIAN_METRIC = "dispatch_node_search_time_median";
+    private static final String NODE_SEARCH_TIME_P99_METRIC = "dispatch_node_search_time_p99";
 
     private static final int MAX_GROUP_SELECTION_ATTEMPTS = 3;
 
     /** If enabled, search queries will use protobuf rpc */
     public static final CompoundName dispatchProtobuf = CompoundName.fromComponents(DISPATCH, PROTOBUF);
 
+    /** Unless turned off, queries will be looked up in the result cache when it is configured */
+    public static final CompoundName dispatchResultCache = CompoundName.fromComponents(DISPATCH, RESULT_CACHE);
+
     /** A model of the search cluster this dispatches to */
     private final SearchCluster searchCluster;
     private final ClusterMonitor clusterMonitor;
@@ -66,10 +76,14 @@ public class Dispatcher extends AbstractComponent {
 
     private final InvokerFactory invokerFactory;
 
+    private final Optional<ResultCache> resultCache;
+
     private final Metric metric;
     private final Metric.Context metricContext;
+    private final Map<Integer, Metric.Context> nodeMetricContexts;
 
     private final int maxHitsPerNode;
+    private final double hedgingPercentile;
 
     private static final QueryProfileType argumentType;
 
@@ -79,6 +93,7 @@ public class Dispatcher extends AbstractComponent {
         argumentType.setBuiltin(true);
         argumentType.addField(new FieldDescription(INTERNAL, FieldType.booleanType));
         argumentType.addField(new FieldDescription(PROTOBUF, FieldType.booleanType));
+        argumentType.addField(new FieldDescription(RESULT_CACHE, FieldType.booleanType));
         argumentType.freeze();
     }
 
@@ -98,7 +113,7 @@ public class Dispatcher extends AbstractComponent {
     }
 
     private Dispatcher(RpcResourcePool resourcePool, SearchCluster searchCluster, DispatchConfig dispatchConfig, Metric metric) {
-        this(new ClusterMonitor<>(searchCluster, true), searchCluster, dispatchConfig, new RpcInvokerFactory(resourcePool, searchCluster), metric);
+        this(new ClusterMonitor<>(searchCluster, true), searchCluster, dispatchConfig, new RpcInvokerFactory(resourcePool, searchCluster, dispatchConfig, metric), metric);
     }
 
     /* Protected for simple mocking in tests. Beware that searchCluster is shutdown on in deconstruct() */
@@ -112,12 +127,18 @@ public class Dispatcher extends AbstractComponent {
 
         this.searchCluster = searchCluster;
         this.clusterMonitor = clusterMonitor;
-        this.loadBalancer = new LoadBalancer(searchCluster,
-                                  dispatchConfig.distributionPolicy() == DispatchConfig.DistributionPolicy.ROUNDROBIN);
+        this.loadBalancer = new LoadBalancer(searchCluster, dispatchConfig.distributionPolicy());
         this.invokerFactory = invokerFactory;
         this.metric = metric;
         this.metricContext = metric.createContext(null);
         this.maxHitsPerNode = dispatchConfig.maxHitsPerNode();
+        this.hedgingPercentile = dispatchConfig.hedgingPercentile();
+        this.resultCache = dispatchConfig.resultCacheMaxEntries() > 0
+                ? Optional.of(new ResultCache(dispatchConfig.resultCacheMaxEntries(), dispatchConfig.resultCacheTtl(),
+                                              searchCluster::generation, metric))
+                : Optional.empty();
+        this.nodeMetricContexts = createNodeMetricContexts(searchCluster, metric);
+        searchCluster.addPingIterationListener(this::reportNodeMetrics);
         searchCluster.addMonitoring(clusterMonitor);
         Thread warmup = new Thread(new Runnable() {
             @Override
@@ -151,6 +172,27 @@ public class Dispatcher extends AbstractComponent {
         return new Compressor().warmup(seconds);
     }
 
+    private static Map<Integer, Metric.Context> createNodeMetricContexts(SearchCluster searchCluster, Metric metric) {
+        Map<Integer, Metric.Context> contexts = new HashMap<>();
+        for (Group group : searchCluster.orderedGroups()) {
+            for (Node node : group.nodes())
+                contexts.put(node.key(), metric.createContext(Map.of("distributionKey", node.key(), "groupId", group.id())));
+        }
+        return contexts;
+    }
+
+    /** Reports the load balancing scoreboard of each node */
+    private void reportNodeMetrics() {
+        for (Group group : searchCluster.orderedGroups()) {
+            for (Node node : group.nodes()) {
+                Metric.Context context = nodeMetricContexts.get(node.key());
+                metric.set(NODE_PENDING_QUERIES_METRIC, node.pendingQueries(), context);
+                node.searchTimes().percentile(50).ifPresent(time -> metric.set(NODE_SEARCH_TIME_MEDIAN_METRIC, time, context));
+                node.searchTimes().percentile(99).ifPresent(time -> metric.set(NODE_SEARCH_TIME_P99_METRIC, time, context));
+            }
+        }
+    }
+
     /** Returns the search cluster this dispatches to */
     public SearchCluster searchCluster() {
         return searchCluster;
@@ -168,7 +210,15 @@ public class Dispatcher extends AbstractComponent {
     }
 
     public SearchInvoker getSearchInvoker(Query query, VespaBackEndSearcher searcher) {
+        Optional<ResultCache.Key> cacheKey = resultCacheKey(query);
+        if (cacheKey.isPresent()) {
+            Optional<SearchInvoker> cached = resultCache.get().invokerOf(cacheKey.get(), query);
+            if (cached.isPresent()) return cached.get();
+        }
+
         SearchInvoker invoker = getSearchPathInvoker(query, searcher).orElseGet(() -> getInternalInvoker(query, searcher));
+        if (cacheKey.isPresent())
+            invoker = new CachingSearchInvoker(invoker, resultCache.get(), cacheKey.get());
 
         if (query.properties().getBoolean(com.yahoo.search.query.Model.ESTIMATE)) {
             query.setHits(0);
@@ -178,6 +228,14 @@ public class Dispatcher extends AbstractComponent {
         return invoker;
     }
 
+    /** Returns the key to use for this query in the result cache, or empty if the result cache should not be used */
+    private Optional<ResultCache.Key> resultCacheKey(Query query) {
+        if (resultCache.isEmpty()) return Optional.empty();
+        if ( ! query.properties().getBoolean(dispatchResultCache, true)) return Optional.empty();
+        if ( ! ResultCache.isCacheable(query)) return Optional.empty();
+        return Optional.of(ResultCache.keyOf(query));
+    }
+
     /** Builds an invoker based on searchpath */
     private Optional<SearchInvoker> getSearchPathInvoker(Query query, VespaBackEndSearcher searcher) {
         String searchPath = query.getModel().getSearchPath();
@@ -227,7 +285,8 @@ public class Dispatcher extends AbstractComponent {
                                                                                  OptionalInt.of(group.id()),
                                                                                  group.nodes(),
                                                                                  acceptIncompleteCoverage,
-                                                                                 maxHitsPerNode);
+                                                                                 maxHitsPerNode,
+                                                                                 createHedge(searcher, query, group));
             if (invoker.isPresent()) {
                 query.trace(false, 2, "Dispatching to group ", group.id());
                 query.getModel().setSearchPath("/" + group.id());
@@ -244,4 +303,29 @@ public class Dispatcher extends AbstractComponent {
         throw new IllegalStateException("No suitable groups to dispatch query. Rejected: " + rejected);
     }
 
+    /** Returns a hedge which sends the query to another group if the given group is slow, or null if it should not be hedged */
+    private Hedge createHedge(VespaBackEndSearcher searcher, Query query, Group group) {
+        if (hedgingPercentile <= 0 || searchCluster.orderedGroups().size() < 2) return null;
+
+        OptionalDouble delay = loadBalancer.searchTimePercentile(group, hedgingPercentile);
+        if (delay.isEmpty()) return null;
+        return new Hedge((long) delay.getAsDouble(), () -> createHedgeTarget(searcher, query, group), metric, metricContext);
+    }
+
+    private Optional<Hedge.Target> createHedgeTarget(VespaBackEndSearcher searcher, Query query, Group primary) {
+        Optional<Group> groupInCluster = loadBalancer.takeGroup(Set.of(primary.id()));
+        if (groupInCluster.isEmpty()) return Optional.empty();
+
+        Group group = groupInCluster.get();
+        Optional<List<SearchInvoker>> invokers = group.hasSufficientCoverage()
+                ? invokerFactory.createNodeSearchInvokers(searcher, query, group.nodes(), maxHitsPerNode)
+                : Optional.empty();
+        if (invokers.isEmpty()) {
+            loadBalancer.releaseGroup(group, false, 0);
+            return Optional.empty();
+        }
+        return Optional.of(new Hedge.Target(group.id(), invokers.get(),
+                                            (won, time) -> loadBalancer.releaseGroup(group, won, time)));
+    }
+
 }
@@ -0,0 +1,90 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.jdisc.Metric;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A hedged request: If the nodes an {@link InterleavedSearchInvoker} has sent a query to have not all
+ * answered within a delay, the query is also sent to all the nodes of another group, and the result of
+ * the group which answers completely first is used.
+ *
+ * Hedging is done per group rather than per node, as the nodes of different groups do not hold the same
+ * subsets of the corpus.
+ */
+public class Hedge {
+
+    private static final String ISSUED_METRIC = "dispatch_hedges_issued";
+    private static final String WON_METRIC = "dispatch_hedges_won";
+
+    private final long delayMillis;
+    private final Supplier<Optional<Target>> targetFactory;
+    private final Metric metric;
+    private final Metric.Context metricContext;
+
+    /**
+     * Creates a hedge
+     *
+     * @param delayMillis the time to wait for all nodes to answer before sending the hedged request
+     * @param targetFactory creates the target of the hedged request when needed, or returns empty if none is available
+     * @param metric the metric receiver to report hedges issued and won to
+     * @param metricContext the context to report metrics in
+     */
+    public Hedge(long delayMillis, Supplier<Optional<Target>> targetFactory, Metric metric, Metric.Context metricContext) {
+        this.delayMillis = delayMillis;
+        this.targetFactory = targetFactory;
+        this.metric = metric;
+        this.metricContext = metricContext;
+    }
+
+    /** Returns the time to wait for all nodes to answer before sending the hedged request */
+    public long delayMillis() { return delayMillis; }
+
+    /** Creates the target of the hedged request, and reports it as issued if one is available */
+    Optional<Target> issue() {
+        Optional<Target> target = targetFactory.get();
+        if (target.isPresent())
+            metric.add(ISSUED_METRIC, 1, metricContext);
+        return target;
+    }
+
+    void won() {
+        metric.add(WON_METRIC, 1, metricContext);
+    }
+
+    /** The invokers of a hedged request, and the action to perform when it is done */
+    public static class Target {
+
+        private final int groupId;
+        private final List<SearchInvoker> invokers;
+        private final BiConsumer<Boolean, Long> release;
+
+        /**
+         * Creates a hedge target
+         *
+         * @param groupId the id of the group the invokers send to
+         * @param invokers the invokers of all the nodes of the group
+         * @param release called exactly once when the hedged request is done, with whether it was used
+         *                and the time it took in milliseconds
+         */
+        public Target(int groupId, List<SearchInvoker> invokers, BiConsumer<Boolean, Long> release) {
+            this.groupId = groupId;
+            this.invokers = List.copyOf(invokers);
+            this.release = release;
+        }
+
+        public int groupId() { return groupId; }
+
+        public List<SearchInvoker> invokers() { return invokers; }
+
+        void release(boolean won, long timeMillis) {
+            release.accept(won, timeMillis);
+        }
+
+    }
+
+}
@@ -31,7 +31,7 @@ import static com.yahoo.container.handler.Coverage.DEGRADED_BY_TIMEOUT;
 /**
  * InterleavedSearchInvoker uses multiple {@link SearchInvoker} objects to interface with content
  * nodes in parallel. Operationally it first sends requests to all contained invokers and then
- * collects the results. The user of this class is responsible for merging the results if needed.
+ * collects the results, merging the hits of each result into the best offset+hits hits as it arrives.
  *
  * @author ollivir
  */
@@ -42,7 +42,8 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private final Set<SearchInvoker> invokers;
     private final SearchCluster searchCluster;
     private final LinkedBlockingQueue<SearchInvoker> availableForProcessing;
-    private final Set<Integer> alreadyFailedNodes;
+    private Set<Integer> alreadyFailedNodes;
+    private final Hedge hedge;
     private Query query;
 
     private boolean adaptiveTimeoutCalculated = false;
@@ -59,13 +60,31 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private boolean timedOut = false;
     private boolean degradedByMatchPhase = false;
 
+    private long hedgeTime = 0;
+    private boolean hedgeIssued = false;
+    private boolean hedgeWon = false;
+    private Hedge.Target hedgeTarget = null;
+    private final Set<SearchInvoker> hedgeInvokers = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<InvokerResult> hedgeResults = new ArrayList<>();
+
     public InterleavedSearchInvoker(Collection<SearchInvoker> invokers, SearchCluster searchCluster, Set<Integer> alreadyFailedNodes) {
+        this(invokers, searchCluster, alreadyFailedNodes, null);
+    }
+
+    /**
+     * Creates an invoker which may hedge the request
+     *
+     * @param hedge the hedge to issue if the invokers do not all answer in time, or null to not hedge
+     */
+    public InterleavedSearchInvoker(Collection<SearchInvoker> invokers, SearchCluster searchCluster, Set<Integer> alreadyFailedNodes,
+                                    Hedge hedge) {
         super(Optional.empty());
         this.invokers = Collections.newSetFromMap(new IdentityHashMap<>());
         this.invokers.addAll(invokers);
         this.searchCluster = searchCluster;
         this.availableForProcessing = newQueue();
         this.alreadyFailedNodes = alreadyFailedNodes;
+        this.hedge = hedge;
     }
 
     /**
@@ -76,8 +95,16 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     @Override
     protected void sendSearchRequest(Query query) throws IOException {
         this.query = query;
-        invokers.forEach(invoker -> invoker.setMonitor(this));
         deadline = currentTime() + query.getTimeLeft();
+        if (hedge != null)
+            hedgeTime = currentTime() + hedge.delayMillis();
+
+        sendTo(invokers);
+        askedNodes += invokers.size();
+    }
+
+    private void sendTo(Collection<SearchInvoker> invokers) throws IOException {
+        invokers.forEach(invoker -> invoker.setMonitor(this));
 
         int originalHits = query.getHits();
         int originalOffset = query.getOffset();
@@ -86,7 +113,6 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
 
         for (SearchInvoker invoker : invokers) {
             invoker.sendSearchRequest(query);
-            askedNodes++;
         }
 
         query.setHits(originalHits);
@@ -96,16 +122,24 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     @Override
     protected InvokerResult getSearchResult(Execution execution) throws IOException {
         InvokerResult result = new InvokerResult(query, query.getHits());
-        List<LeanHit> merged = Collections.emptyList();
+        TopHits merged = new TopHits(query.getOffset() + query.getHits());
         long nextTimeout = query.getTimeLeft();
         try {
             while (!invokers.isEmpty() && nextTimeout >= 0) {
-                SearchInvoker invoker = availableForProcessing.poll(nextTimeout, TimeUnit.MILLISECONDS);
+                SearchInvoker invoker = nextAvailable(nextTimeout);
                 if (invoker == null) {
                     log.fine(() -> "Search timed out with " + askedNodes + " requests made, " + answeredNodes + " responses received");
                     break;
+                } else if (hedgeInvokers.remove(invoker)) {
+                    hedgeResults.add(invoker.getSearchResult(execution));
+                    invoker.release();
+                    if (hedgeInvokers.isEmpty()) { // The hedged request completed first: Use its results instead
+                        result = new InvokerResult(query, query.getHits());
+                        merged = useHedgeResults(result.getResult());
+                        break;
+                    }
                 } else {
-                    merged = mergeResult(result.getResult(), invoker.getSearchResult(execution), merged);
+                    mergeResult(result.getResult(), invoker.getSearchResult(execution), merged);
                     ejectInvoker(invoker);
                 }
                 nextTimeout = nextTimeout();
@@ -113,17 +147,80 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         } catch (InterruptedException e) {
             throw new RuntimeException("Interrupted while waiting for search results", e);
         }
+        releaseHedge();
 
         insertNetworkErrors(result.getResult());
         result.getResult().setCoverage(createCoverage());
-        int needed = query.getOffset() + query.getHits();
-        for (int index = query.getOffset(); (index < merged.size()) && (index < needed); index++) {
-            result.getLeanHits().add(merged.get(index));
+        List<LeanHit> hits = merged.asList();
+        for (int index = query.getOffset(); index < hits.size(); index++) {
+            result.getLeanHits().add(hits.get(index));
         }
         query.setOffset(0);  // Now we are all trimmed down
         return result;
     }
 
+    /** Returns the next invoker which has a response available, issuing the hedged request if it is due while waiting */
+    private SearchInvoker nextAvailable(long timeout) throws InterruptedException, IOException {
+        if (hedge != null && ! hedgeIssued) {
+            long untilHedge = Math.max(hedgeTime - currentTime(), 0);
+            if (untilHedge < timeout) {
+                SearchInvoker invoker = availableForProcessing.poll(untilHedge, TimeUnit.MILLISECONDS);
+                if (invoker != null) return invoker;
+                issueHedge();
+                timeout -= untilHedge;
+            }
+        }
+        return availableForProcessing.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    private void issueHedge() throws IOException {
+        hedgeIssued = true;
+        Optional<Hedge.Target> target = hedge.issue();
+        if (target.isEmpty()) return;
+
+        hedgeTarget = target.get();
+        hedgeTime = currentTime();
+        hedgeInvokers.addAll(hedgeTarget.invokers());
+        query.trace(false, 2, "Hedging the request to group ", hedgeTarget.groupId(), " after ", hedge.delayMillis(), " ms");
+        sendTo(hedgeInvokers);
+    }
+
+    /** Replaces the state collected from the original invokers by the results of the hedged request */
+    private TopHits useHedgeResults(Result result) {
+        hedgeWon = true;
+        hedge.won();
+        invokers.forEach(SearchInvoker::close);
+        invokers.clear();
+        alreadyFailedNodes = null;
+
+        adaptiveTimeoutCalculated = false;
+        answeredDocs = 0;
+        answeredActiveDocs = 0;
+        answeredSoonActiveDocs = 0;
+        askedNodes = hedgeResults.size();
+        answeredNodes = 0;
+        answeredNodesParticipated = 0;
+        timedOut = false;
+        degradedByMatchPhase = false;
+
+        TopHits merged = new TopHits(query.getOffset() + query.getHits());
+        for (InvokerResult hedgeResult : hedgeResults)
+            mergeResult(result, hedgeResult, merged);
+        hedgeResults.clear();
+        return merged;
+    }
+
+    /** Releases the hedged request, if any. This must be done exactly once when it is no longer needed. */
+    private void releaseHedge() {
+        if (hedgeTarget == null) return;
+
+        hedgeInvokers.forEach(SearchInvoker::close);
+        hedgeInvokers.clear();
+        hedgeResults.clear();
+        hedgeTarget.release(hedgeWon, currentTime() - hedgeTime);
+        hedgeTarget = null;
+    }
+
     private void insertNetworkErrors(Result result) {
         // Network errors will be reported as errors only when all nodes fail, otherwise they are just traced
         boolean asErrors = answeredNodes == 0;
@@ -190,7 +287,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         return nextAdaptive;
     }
 
-    private List<LeanHit> mergeResult(Result result, InvokerResult partialResult, List<LeanHit> current) {
+    private void mergeResult(Result result, InvokerResult partialResult, TopHits merged) {
         collectCoverage(partialResult.getResult().getCoverage(true));
 
         result.mergeWith(partialResult.getResult());
@@ -200,42 +297,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
                 result.hits().add(hit);
             }
         }
-        if (current.isEmpty() ) {
-            return partialResult.getLeanHits();
-        }
-        List<LeanHit> partial = partialResult.getLeanHits();
-        if (partial.isEmpty()) {
-            return current;
-        }
-
-        int needed = query.getOffset() + query.getHits();
-        List<LeanHit> merged = new ArrayList<>(needed);
-        int indexCurrent = 0;
-        int indexPartial = 0;
-        while (indexCurrent < current.size() && indexPartial < partial.size() && merged.size() < needed) {
-            LeanHit incommingHit = partial.get(indexPartial);
-            LeanHit currentHit = current.get(indexCurrent);
-
-            int cmpRes = currentHit.compareTo(incommingHit);
-            if (cmpRes < 0) {
-                merged.add(currentHit);
-                indexCurrent++;
-            } else if (cmpRes > 0) {
-                merged.add(incommingHit);
-                indexPartial++;
-            } else { // Duplicates
-                merged.add(currentHit);
-                indexCurrent++;
-                indexPartial++;
-            }
-        }
-        while ((indexCurrent < current.size()) && (merged.size() < needed)) {
-            merged.add(current.get(indexCurrent++));
-        }
-        while ((indexPartial < partial.size()) && (merged.size() < needed)) {
-            merged.add(partial.get(indexPartial++));
-        }
-        return merged;
+        merged.add(partialResult.getLeanHits());
     }
 
     private void collectCoverage(Coverage source) {
@@ -298,6 +360,16 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
             invokers.forEach(SearchInvoker::close);
             invokers.clear();
         }
+        releaseHedge();
+    }
+
+    /**
+     * When the hedged request was used, the original group did not answer in time, so the time spent waiting for it
+     * is recorded as a search time of that group, as a lower bound of how slow it was, instead of being dropped
+     */
+    @Override
+    protected void setFinalStatus(boolean success) {
+        super.setFinalStatus(success || hedgeWon);
     }
 
     @Override
@@ -52,6 +52,22 @@ public abstract class InvokerFactory {
                                                        List<Node> nodes,
                                                        boolean acceptIncompleteCoverage,
                                                        int maxHits) {
+        return createSearchInvoker(searcher, query, groupId, nodes, acceptIncompleteCoverage, maxHits, null);
+    }
+
+    /**
+     * Create a {@link SearchInvoker} for a list of content nodes, which may hedge the request to another group.
+     *
+     * @param hedge the hedged request to issue if the nodes do not answer in time, or null to not hedge
+     * @see #createSearchInvoker(VespaBackEndSearcher, Query, OptionalInt, List, boolean, int)
+     */
+    public Optional<SearchInvoker> createSearchInvoker(VespaBackEndSearcher searcher,
+                                                       Query query,
+                                                       OptionalInt groupId,
+                                                       List<Node> nodes,
+                                                       boolean acceptIncompleteCoverage,
+                                                       int maxHits,
+                                                       Hedge hedge) {
         List<SearchInvoker> invokers = new ArrayList<>(nodes.size());
         Set<Integer> failed = null;
         for (Node node : nodes) {
@@ -87,11 +103,34 @@ public abstract class InvokerFactory {
             }
         }
 
-        if (invokers.size() == 1 && failed == null) {
+        if (invokers.size() == 1 && failed == null && hedge == null) {
             return Optional.of(invokers.get(0));
         } else {
-            return Optional.of(new InterleavedSearchInvoker(invokers, searchCluster, failed));
+            return Optional.of(new InterleavedSearchInvoker(invokers, searchCluster, failed, hedge));
+        }
+    }
+
+    /**
+     * Creates an invoker for each of the given content nodes.
+     *
+     * @return the invokers, or empty if any of the nodes are not known to be working or no invoker could be created for it
+     */
+    public Optional<List<SearchInvoker>> createNodeSearchInvokers(VespaBackEndSearcher searcher,
+                                                                  Query query,
+                                                                  List<Node> nodes,
+                                                                  int maxHits) {
+        List<SearchInvoker> invokers = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            Optional<SearchInvoker> invoker = node.isWorking() == Boolean.TRUE
+                    ? createNodeSearchInvoker(searcher, query, maxHits, node)
+                    : Optional.empty();
+            if (invoker.isEmpty()) {
+                invokers.forEach(SearchInvoker::close);
+                return Optional.empty();
+            }
+            invokers.add(invoker.get());
         }
+        return Optional.of(invokers);
     }
 
     protected static SearchInvoker createCoverageErrorInvoker(List<Node> nodes, Set<Integer> failed) {
@@ -21,8 +21,11 @@ public class InvokerResult {
         this.leanHits = Collections.emptyList();
     }
     public InvokerResult(Query query, int expectedHits) {
-        result = new Result(query);
-        leanHits = new ArrayList<>(expectedHits);
+        this(query, new ArrayList<>(expectedHits));
+    }
+    public InvokerResult(Query query, List<LeanHit> leanHits) {
+        this.result = new Result(query);
+        this.leanHits = leanHits;
     }
 
     public Result getResult() {
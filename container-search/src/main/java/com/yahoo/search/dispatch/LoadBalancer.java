@@ -2,11 +2,15 @@
 package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.searchcluster.Group;
+import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Random;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -26,17 +30,25 @@ public class LoadBalancer {
     private static final long MIN_LATENCY_DECAY_RATE = 42;
     private static final double INITIAL_QUERY_TIME = 0.001;
     private static final double MIN_QUERY_TIME = 0.001;
+    private static final int RECENT_SEARCH_TIMES = 128;
+    private static final int MIN_RECENT_SEARCH_TIMES = 32;
 
     private final List<GroupStatus> scoreboard;
     private final GroupScheduler scheduler;
 
     public LoadBalancer(SearchCluster searchCluster, boolean roundRobin) {
+        this(searchCluster, roundRobin ? DispatchConfig.DistributionPolicy.ROUNDROBIN : DispatchConfig.DistributionPolicy.ADAPTIVE);
+    }
+
+    public LoadBalancer(SearchCluster searchCluster, DispatchConfig.DistributionPolicy policy) {
         this.scoreboard = new ArrayList<>(searchCluster.groups().size());
         for (Group group : searchCluster.orderedGroups()) {
             scoreboard.add(new GroupStatus(group));
         }
-        if (roundRobin || scoreboard.size() == 1) {
+        if (policy == DispatchConfig.DistributionPolicy.ROUNDROBIN || scoreboard.size() == 1) {
             this.scheduler = new RoundRobinScheduler(scoreboard);
+        } else if (policy == DispatchConfig.DistributionPolicy.BEST_OF_RANDOM_2) {
+            this.scheduler = new BestOfRandom2Scheduler(new Random(), scoreboard);
         } else {
             this.scheduler = new AdaptiveScheduler(new Random(), scoreboard);
         }
@@ -83,11 +95,32 @@ public class LoadBalancer {
         }
     }
 
+    /**
+     * Returns the given percentile of the recent search times of a group in milliseconds.
+     *
+     * @param group the group to return the search time percentile of
+     * @param percentile the percentile to return, in the range [0, 100]
+     * @return the search time percentile, or empty if the group has completed too few queries to tell
+     */
+    public OptionalDouble searchTimePercentile(Group group, double percentile) {
+        synchronized (this) {
+            for (GroupStatus sched : scoreboard) {
+                if (sched.group.id() == group.id()) {
+                    OptionalDouble searchTime = sched.searchTimePercentile(percentile);
+                    return searchTime.isPresent() ? OptionalDouble.of(searchTime.getAsDouble() * 1000.0) : searchTime;
+                }
+            }
+            return OptionalDouble.empty();
+        }
+    }
+
     static class GroupStatus {
         private final Group group;
         private int allocations = 0;
         private long queries = 0;
         private double averageSearchTime = INITIAL_QUERY_TIME;
+        private final double[] recentSearchTimes = new double[RECENT_SEARCH_TIMES];
+        private long recentSearchTimeCount = 0;
 
         GroupStatus(Group group) {
             this.group = group;
@@ -107,6 +140,7 @@ public class LoadBalancer {
                 searchTime = Math.max(searchTime, MIN_QUERY_TIME);
                 double decayRate = Math.min(queries + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
                 averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
+                recentSearchTimes[(int) (recentSearchTimeCount++ % RECENT_SEARCH_TIMES)] = searchTime;
                 queries++;
             }
         }
@@ -115,6 +149,17 @@ public class LoadBalancer {
             return averageSearchTime;
         }
 
+        /** Returns the given percentile of the recent search times in seconds, or empty if there are too few */
+        OptionalDouble searchTimePercentile(double percentile) {
+            int count = (int) Math.min(recentSearchTimeCount, RECENT_SEARCH_TIMES);
+            if (count < MIN_RECENT_SEARCH_TIMES) return OptionalDouble.empty();
+
+            double[] sorted = Arrays.copyOf(recentSearchTimes, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return OptionalDouble.of(sorted[Math.max(0, Math.min(index, count - 1))]);
+        }
+
         double averageSearchTimeInverse() {
             return 1.0 / averageSearchTime;
         }
@@ -251,4 +296,66 @@ public class LoadBalancer {
             return selectGroup(needle, false, rejectedGroups);
         }
     }
+
+    /**
+     * Picks two random groups and selects the one with the best score, where the score of a group is
+     * the worst score of its nodes, and the score of a node is its recent search time weighted by the
+     * number of queries it currently has pending. This routes around groups containing a single slow
+     * or overloaded node, which is not visible in the average search time of the group.
+     */
+    static class BestOfRandom2Scheduler implements GroupScheduler {
+
+        /** The search time percentile of the nodes used for scoring */
+        private static final double SEARCH_TIME_PERCENTILE = 90.0;
+
+        private final Random random;
+        private final List<GroupStatus> scoreboard;
+
+        public BestOfRandom2Scheduler(Random random, List<GroupStatus> scoreboard) {
+            this.random = random;
+            this.scoreboard = scoreboard;
+        }
+
+        @Override
+        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+            List<GroupStatus> candidates = candidates(true, rejectedGroups);
+            if (candidates.isEmpty()) // fallback - any coverage better than none
+                candidates = candidates(false, rejectedGroups);
+            if (candidates.isEmpty()) return Optional.empty();
+            if (candidates.size() == 1) return Optional.of(candidates.get(0));
+
+            int first = random.nextInt(candidates.size());
+            int second = random.nextInt(candidates.size() - 1);
+            if (second >= first)
+                second++;
+            GroupStatus firstCandidate = candidates.get(first);
+            GroupStatus secondCandidate = candidates.get(second);
+            return Optional.of(score(secondCandidate) < score(firstCandidate) ? secondCandidate : firstCandidate);
+        }
+
+        private List<GroupStatus> candidates(boolean requireCoverage, Set<Integer> rejected) {
+            List<GroupStatus> candidates = new ArrayList<>(scoreboard.size());
+            for (GroupStatus gs : scoreboard) {
+                if (rejected == null || !rejected.contains(gs.group.id())) {
+                    if (!requireCoverage || gs.group.hasSufficientCoverage()) {
+                        candidates.add(gs);
+                    }
+                }
+            }
+            return candidates;
+        }
+
+        /** Returns the score of a group, where lower is better */
+        static double score(GroupStatus gs) {
+            double score = 0;
+            for (Node node : gs.group.nodes()) {
+                if (node.isWorking() == Boolean.FALSE) continue;
+                double searchTime = node.searchTimes().percentile(SEARCH_TIME_PERCENTILE).orElse(gs.averageSearchTime() * 1000.0);
+                score = Math.max(score, searchTime * (1 + node.pendingQueries()));
+            }
+            return score;
+        }
+
+    }
+
 }
@@ -0,0 +1,202 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.rpc.ProtobufSerialization;
+import com.yahoo.search.result.Coverage;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * A size bounded cache of merged first phase results, keyed on the serialized search request.
+ * Entries are invalidated when they become older than the time to live, or when the generation
+ * of the content they were produced from changes.
+ *
+ * This class is multithread safe.
+ */
+public class ResultCache {
+
+    private static final String HITS_METRIC = "dispatch_result_cache_hits";
+    private static final String MISSES_METRIC = "dispatch_result_cache_misses";
+    private static final String EVICTIONS_METRIC = "dispatch_result_cache_evictions";
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LongSupplier generation;
+    private final Clock clock;
+    private final Metric metric;
+    private final Metric.Context metricContext;
+    private final Map<Key, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ResultCache(int maxEntries, double ttlSeconds, LongSupplier generation, Metric metric) {
+        this(maxEntries, ttlSeconds, generation, Clock.systemUTC(), metric);
+    }
+
+    ResultCache(int maxEntries, double ttlSeconds, LongSupplier generation, Clock clock, Metric metric) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = (long) (ttlSeconds * 1000);
+        this.generation = generation;
+        this.clock = clock;
+        this.metric = metric;
+        this.metricContext = metric.createContext(null);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= ResultCache.this.maxEntries) return false;
+                evictions++;
+                ResultCache.this.metric.add(EVICTIONS_METRIC, 1, metricContext);
+                return true;
+            }
+        };
+    }
+
+    /** Returns whether the result of this query may be looked up in and stored to this cache */
+    public static boolean isCacheable(Query query) {
+        if (query.getTraceLevel() > 0 || query.getExplainLevel() > 0) return false;
+        if (query.getModel().getSearchPath() != null) return false;
+        if (query.properties().getBoolean(com.yahoo.search.query.Model.ESTIMATE)) return false;
+        if (query.getRanking().getQueryCache()) return false;
+        return query.getSelect().getGrouping().isEmpty();
+    }
+
+    /** Returns the cache key of the given query */
+    public static Key keyOf(Query query) {
+        return new Key(ProtobufSerialization.serializeSearchRequestForCaching(query));
+    }
+
+    /** Returns a copy of the cached result for this key, or empty if it is not present or no longer valid */
+    public Optional<InvokerResult> get(Key key, Query query) {
+        return lookup(key).map(entry -> entry.toInvokerResult(query));
+    }
+
+    /** Returns an invoker producing a copy of the cached result for this key, or empty if it is not present or no longer valid */
+    Optional<SearchInvoker> invokerOf(Key key, Query query) {
+        return lookup(key).map(entry -> new CachedResultInvoker(entry.toInvokerResult(query), entry.resetsOffset));
+    }
+
+    private Optional<Entry> lookup(Key key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && ! isValid(entry)) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null)
+                misses++;
+            else
+                hits++;
+        }
+        metric.add(entry == null ? MISSES_METRIC : HITS_METRIC, 1, metricContext);
+        return Optional.ofNullable(entry);
+    }
+
+    /** Stores the given result if it is complete, meaning it has full coverage, no errors and no auxiliary hits */
+    public void put(Key key, InvokerResult invokerResult) {
+        Result result = invokerResult.getResult();
+        Coverage coverage = result.getCoverage(false);
+        if (coverage == null || coverage.isDegraded() || ! coverage.getFull()) return;
+        if (result.hits().getError() != null || result.hits().size() > 0) return;
+
+        Entry entry = new Entry(List.copyOf(invokerResult.getLeanHits()), result.getTotalHitCount(), coverage,
+                                result.getQuery().getOffset() == 0, generation.getAsLong(), clock.millis());
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+
+    private boolean isValid(Entry entry) {
+        return entry.generation == generation.getAsLong() && clock.millis() - entry.createdAt < ttlMillis;
+    }
+
+    public synchronized int size() { return entries.size(); }
+
+    public synchronized long hits() { return hits; }
+
+    public synchronized long misses() { return misses; }
+
+    public synchronized long evictions() { return evictions; }
+
+    /** The key of a cached result: The serialized search request */
+    public static final class Key {
+
+        private final byte[] request;
+        private final int hashCode;
+
+        Key(byte[] request) {
+            this.request = request;
+            this.hashCode = Arrays.hashCode(request);
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hashCode == other.hashCode && Arrays.equals(request, other.request);
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final List<LeanHit> leanHits;
+        private final long totalHitCount;
+        private final long docs;
+        private final long active;
+        private final long soonActive;
+        private final int nodes;
+        private final int nodesTried;
+
+        /**
+         * Whether producing the result reset the offset of the query, as is done when hits from several nodes
+         * are merged and trimmed to the requested window
+         */
+        private final boolean resetsOffset;
+
+        private final long generation;
+        private final long createdAt;
+
+        Entry(List<LeanHit> leanHits, long totalHitCount, Coverage coverage, boolean resetsOffset,
+              long generation, long createdAt) {
+            this.leanHits = leanHits;
+            this.totalHitCount = totalHitCount;
+            this.docs = coverage.getDocs();
+            this.active = coverage.getActive();
+            this.soonActive = coverage.getSoonActive();
+            this.nodes = coverage.getNodes();
+            this.nodesTried = coverage.getNodesTried();
+            this.resetsOffset = resetsOffset;
+            this.generation = generation;
+            this.createdAt = createdAt;
+        }
+
+        InvokerResult toInvokerResult(Query query) {
+            InvokerResult result = new InvokerResult(query, leanHits.size());
+            result.getResult().setTotalHitCount(totalHitCount);
+            Coverage coverage = new Coverage(docs, active, nodes, 1);
+            coverage.setNodesTried(nodesTried);
+            coverage.setSoonActive(soonActive);
+            result.getResult().setCoverage(coverage);
+            result.getLeanHits().addAll(leanHits);
+            return result;
+        }
+
+    }
+
+}
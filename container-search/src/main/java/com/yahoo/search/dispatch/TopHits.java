@@ -0,0 +1,46 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The best hits of a set of partial results, merged in as each partial result arrives.
+ * At most the given number of hits is kept, in the order given by {@link LeanHit#compareTo},
+ * which orders by the sort data of the hits if present and by relevance otherwise.
+ * Hits which are equal by that order (the same document with the same rank) are only kept once.
+ *
+ * This is not multithread safe.
+ */
+class TopHits {
+
+    private final int maxHits;
+    private final TreeSet<LeanHit> hits = new TreeSet<>();
+
+    TopHits(int maxHits) {
+        this.maxHits = maxHits;
+    }
+
+    /** Merges the given hits into this. The hits must be in sorted order, best first. */
+    void add(List<LeanHit> sortedHits) {
+        if (maxHits <= 0) return;
+        for (LeanHit hit : sortedHits) {
+            if (hits.size() < maxHits) {
+                hits.add(hit);
+            } else {
+                if (hit.compareTo(hits.last()) >= 0) return; // neither this nor any of the remaining hits are better
+                if (hits.add(hit))
+                    hits.pollLast();
+            }
+        }
+    }
+
+    /** Returns the hits of this in sorted order, best first */
+    List<LeanHit> asList() {
+        return new ArrayList<>(hits);
+    }
+
+    int size() { return hits.size(); }
+
+}
@@ -0,0 +1,187 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import com.yahoo.jdisc.Metric;
+import com.yahoo.search.Query;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+import com.yahoo.slime.SlimeUtils;
+import com.yahoo.slime.Type;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * A memory bounded cache of document summaries, keyed on document type, summary class and global id.
+ * Summaries are stored in serialized form, and the least recently used ones are evicted when the total size
+ * of the summaries exceeds the maximum.
+ *
+ * The search reply protocol does not carry the generation of each document, so entries are instead
+ * invalidated when they become older than the time to live, or when the generation of the content
+ * cluster they were produced from changes.
+ *
+ * This class is multithread safe.
+ */
+class DocsumCache {
+
+    private static final String HITS_METRIC = "dispatch_docsum_cache_hits";
+    private static final String MISSES_METRIC = "dispatch_docsum_cache_misses";
+    private static final String EVICTIONS_METRIC = "dispatch_docsum_cache_evictions";
+    private static final String SIZE_METRIC = "dispatch_docsum_cache_bytes";
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final LongSupplier generation;
+    private final Clock clock;
+    private final Metric metric;
+    private final Metric.Context metricContext;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    DocsumCache(long maxBytes, double ttlSeconds, LongSupplier generation, Metric metric) {
+        this(maxBytes, ttlSeconds, generation, Clock.systemUTC(), metric);
+    }
+
+    DocsumCache(long maxBytes, double ttlSeconds, LongSupplier generation, Clock clock, Metric metric) {
+        this.maxBytes = maxBytes;
+        this.ttlMillis = (long) (ttlSeconds * 1000);
+        this.generation = generation;
+        this.clock = clock;
+        this.metric = metric;
+        this.metricContext = metric.createContext(null);
+    }
+
+    /**
+     * Returns whether the summaries of this query may be looked up in and stored to this cache:
+     * They must not depend on the query, and must not come from a session cached on the nodes.
+     */
+    static boolean isCacheable(Query query, boolean summaryNeedsQuery) {
+        if (summaryNeedsQuery) return false;
+        if (query.getRanking().getQueryCache()) return false;
+        if (query.getRanking().getLocation() != null) return false;
+        return ! query.getRanking().getListFeatures();
+    }
+
+    /** Returns the cached summary of the given document, or empty if it is not present or no longer valid */
+    Optional<Inspector> get(String documentType, String summaryClass, byte[] globalId) {
+        Key key = new Key(documentType, summaryClass, globalId);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && ! isValid(entry)) {
+                remove(key);
+                entry = null;
+            }
+            if (entry == null)
+                misses++;
+            else
+                hits++;
+        }
+        metric.add(entry == null ? MISSES_METRIC : HITS_METRIC, 1, metricContext);
+        return entry == null ? Optional.empty() : Optional.of(BinaryFormat.decode(entry.summary).get());
+    }
+
+    /** Stores a copy of the given summary of a document */
+    void put(String documentType, String summaryClass, byte[] globalId, Inspector summary) {
+        if (summary.type() != Type.OBJECT) return;
+
+        Slime copy = new Slime();
+        SlimeUtils.copyObject(summary, copy.setObject());
+        Entry entry = new Entry(BinaryFormat.encode(copy), generation.getAsLong(), clock.millis());
+        Key key = new Key(documentType, summaryClass, globalId);
+        long evicted = 0;
+        synchronized (this) {
+            remove(key);
+            entries.put(key, entry);
+            bytes += entry.size() + key.size();
+            for (var i = entries.entrySet().iterator(); bytes > maxBytes && i.hasNext(); evicted++) {
+                var eldest = i.next();
+                bytes -= eldest.getValue().size() + eldest.getKey().size();
+                i.remove();
+            }
+            evictions += evicted;
+        }
+        if (evicted > 0)
+            metric.add(EVICTIONS_METRIC, evicted, metricContext);
+        metric.set(SIZE_METRIC, bytes(), metricContext);
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null)
+            bytes -= removed.size() + key.size();
+    }
+
+    private boolean isValid(Entry entry) {
+        return entry.generation == generation.getAsLong() && clock.millis() - entry.createdAt < ttlMillis;
+    }
+
+    synchronized int size() { return entries.size(); }
+
+    synchronized long bytes() { return bytes; }
+
+    synchronized long hits() { return hits; }
+
+    synchronized long misses() { return misses; }
+
+    synchronized long evictions() { return evictions; }
+
+    private static final class Key {
+
+        private final String documentType;
+        private final String summaryClass;
+        private final byte[] globalId;
+        private final int hashCode;
+
+        Key(String documentType, String summaryClass, byte[] globalId) {
+            this.documentType = documentType;
+            this.summaryClass = summaryClass;
+            this.globalId = globalId;
+            this.hashCode = 31 * Objects.hash(documentType, summaryClass) + Arrays.hashCode(globalId);
+        }
+
+        /** Returns the approximate number of bytes used by this */
+        long size() { return 64 + globalId.length; }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key) o;
+            return Arrays.equals(globalId, other.globalId)
+                   && Objects.equals(summaryClass, other.summaryClass)
+                   && Objects.equals(documentType, other.documentType);
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final byte[] summary;
+        private final long generation;
+        private final long createdAt;
+
+        Entry(byte[] summary, long generation, long createdAt) {
+            this.summary = summary;
+            this.generation = generation;
+            this.createdAt = createdAt;
+        }
+
+        /** Returns the approximate number of bytes used by this */
+        long size() { return 48 + summary.length; }
+
+    }
+
+}
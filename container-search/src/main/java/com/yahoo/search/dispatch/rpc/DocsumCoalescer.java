@@ -0,0 +1,238 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
+import com.google.protobuf.ByteString;
+import com.yahoo.compress.Compressor;
+import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the docsum requests of concurrent queries to the same node into a single request, when the requests
+ * differ only by the documents requested. Requests are collected for a short window of time after the first one
+ * arrives, or until the maximum number of hits is reached, and are then sent as one request. The docsums of
+ * the reply are handed back to each request in the order they were requested.
+ *
+ * This is multithread safe.
+ */
+class DocsumCoalescer {
+
+    /** The number of requests coalesced into each request sent */
+    private static final String BATCH_SIZE_METRIC = "dispatch_docsum_batch_size";
+
+    /** The number of hits in each request sent */
+    private static final String BATCH_HITS_METRIC = "dispatch_docsum_batch_hits";
+
+    /** The time in milliseconds each request waits for the batch it belongs to to be sent */
+    private static final String BATCH_WAIT_TIME_METRIC = "dispatch_docsum_batch_wait_time";
+
+    private static final String RPC_METHOD = "vespa.searchprotocol.getDocsums";
+
+    private final RpcResourcePool resourcePool;
+    private final long windowMillis;
+    private final int maxHits;
+    private final Metric metric;
+    private final Metric.Context metricContext;
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(ThreadFactoryFactory.getDaemonThreadFactory("docsum-coalescer"));
+
+    private final Map<Key, Batch> openBatches = new HashMap<>();
+
+    /**
+     * Creates a docsum coalescer
+     *
+     * @param resourcePool the pool of connections to send requests through
+     * @param windowSeconds the time to wait for more requests after the first request of a batch arrives
+     * @param maxHits the number of hits which causes a batch to be sent without waiting for the window to pass
+     * @param metric the metric receiver to report batch sizes and wait times to
+     */
+    DocsumCoalescer(RpcResourcePool resourcePool, double windowSeconds, int maxHits, Metric metric) {
+        this.resourcePool = resourcePool;
+        this.windowMillis = Math.max(1, (long) (windowSeconds * 1000));
+        this.maxHits = maxHits;
+        this.metric = metric;
+        this.metricContext = metric.createContext(null);
+    }
+
+    /**
+     * Returns whether the docsum request of this query may be coalesced with others: It must not need the query
+     * nor a session on the node, and there must be ample time left to wait for the window to pass.
+     */
+    boolean accepts(Query query, boolean summaryNeedsQuery) {
+        if (summaryNeedsQuery) return false;
+        if (query.getRanking().getQueryCache()) return false;
+        return query.getTimeLeft() > 2 * windowMillis;
+    }
+
+    /**
+     * Requests docsums for the given hits from a node, coalesced with other requests made to the same node
+     * within the window.
+     *
+     * @param nodeId the node to request docsums from
+     * @param builder the docsum request, without global ids. This is not modified by this call, such that it
+     *                may be used for requests to several nodes.
+     * @param hits the hits to request docsums for
+     * @param query the query requesting the docsums
+     * @param receiver the receiver of the docsums of the given hits
+     */
+    void request(int nodeId, SearchProtocol.DocsumRequest.Builder builder, List<FastHit> hits, Query query, Receiver receiver) {
+        long now = System.currentTimeMillis();
+        long deadline = now + builder.getTimeout();
+        SearchProtocol.DocsumRequest.Builder request = builder.clone().clearGlobalIds().clearTimeout();
+        Key key = new Key(nodeId, request.build().toByteArray());
+
+        Batch full = null;
+        synchronized (this) {
+            Batch batch = openBatches.get(key);
+            if (batch == null) {
+                batch = new Batch(nodeId, request, query);
+                openBatches.put(key, batch);
+                Batch scheduled = batch;
+                batch.timeout = timer.schedule(() -> sendIfOpen(key, scheduled), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.add(hits, deadline, now, receiver);
+            if (batch.hitCount >= maxHits) {
+                openBatches.remove(key);
+                batch.timeout.cancel(false);
+                full = batch;
+            }
+        }
+        if (full != null)
+            send(full);
+    }
+
+    private void sendIfOpen(Key key, Batch batch) {
+        synchronized (this) {
+            if ( ! openBatches.remove(key, batch)) return; // already sent
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        long now = System.currentTimeMillis();
+        for (Request request : batch.requests)
+            metric.set(BATCH_WAIT_TIME_METRIC, now - request.arrivedAt, metricContext);
+        metric.set(BATCH_SIZE_METRIC, batch.requests.size(), metricContext);
+        metric.set(BATCH_HITS_METRIC, batch.hitCount, metricContext);
+
+        Client.NodeConnection node = resourcePool.getConnection(batch.nodeId);
+        if (node == null) {
+            batch.receive(Client.ResponseOrError.fromError("Could not fill hits from unknown node " + batch.nodeId));
+            return;
+        }
+
+        batch.builder.setTimeout((int) Math.max(0, batch.deadline - now));
+        for (Request request : batch.requests) {
+            for (FastHit hit : request.hits)
+                batch.builder.addGlobalIds(ByteString.copyFrom(hit.getRawGlobalId()));
+        }
+        byte[] payload = batch.builder.build().toByteArray();
+        double timeoutSeconds = ((double) (batch.deadline - now) - 3.0) / 1000.0;
+        Compressor.Compression compressionResult = resourcePool.compress(batch.query, payload);
+        node.request(RPC_METHOD, compressionResult.type(), payload.length, compressionResult.data(),
+                     response -> batch.receive(Docsums.from(response, resourcePool.compressor())),
+                     timeoutSeconds);
+    }
+
+    /** Stops sending batches. Requests which are not yet sent will time out. */
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /** Receives the docsums, or the error, of the hits of a single request */
+    interface Receiver {
+
+        void receive(Client.ResponseOrError<Docsums> response, List<FastHit> hits);
+
+    }
+
+    /** The node and the content of a docsum request apart from the documents requested */
+    private static final class Key {
+
+        private final int nodeId;
+        private final byte[] request;
+        private final int hashCode;
+
+        Key(int nodeId, byte[] request) {
+            this.nodeId = nodeId;
+            this.request = request;
+            this.hashCode = 31 * nodeId + Arrays.hashCode(request);
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key) o;
+            return nodeId == other.nodeId && Arrays.equals(request, other.request);
+        }
+
+    }
+
+    private static class Request {
+
+        private final List<FastHit> hits;
+        private final long arrivedAt;
+        private final Receiver receiver;
+
+        Request(List<FastHit> hits, long arrivedAt, Receiver receiver) {
+            this.hits = hits;
+            this.arrivedAt = arrivedAt;
+            this.receiver = receiver;
+        }
+
+    }
+
+    private static class Batch {
+
+        private final int nodeId;
+        private final SearchProtocol.DocsumRequest.Builder builder;
+        private final Query query;
+        private final List<Request> requests = new ArrayList<>();
+        private int hitCount = 0;
+        private long deadline = 0;
+        private ScheduledFuture<?> timeout;
+
+        Batch(int nodeId, SearchProtocol.DocsumRequest.Builder builder, Query query) {
+            this.nodeId = nodeId;
+            this.builder = builder;
+            this.query = query;
+        }
+
+        void add(List<FastHit> hits, long deadline, long now, Receiver receiver) {
+            requests.add(new Request(hits, now, receiver));
+            hitCount += hits.size();
+            this.deadline = Math.max(this.deadline, deadline);
+        }
+
+        /** Hands the docsums of the reply to each request, in the order the hits were added */
+        void receive(Client.ResponseOrError<Docsums> response) {
+            int offset = 0;
+            for (Request request : requests) {
+                if (response.error().isPresent())
+                    request.receiver.receive(response, request.hits);
+                else
+                    request.receiver.receive(Client.ResponseOrError.fromResponse(response.response().get().from(offset)),
+                                             request.hits);
+                offset += request.hits.size();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,72 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.search.dispatch.rpc.Client.ProtobufResponse;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Inspector;
+
+/**
+ * The summaries in a docsum reply, or the part of a coalesced docsum reply which belongs to a single request.
+ * The reply is decompressed and decoded when it is first accessed, and only once if it is shared by multiple requests.
+ *
+ * This is multithread safe.
+ */
+class Docsums {
+
+    private final Reply reply;
+    private final int offset;
+
+    private Docsums(Reply reply, int offset) {
+        this.reply = reply;
+        this.offset = offset;
+    }
+
+    /** Returns the docsums of the given response, or the error if it is an error */
+    static Client.ResponseOrError<Docsums> from(Client.ResponseOrError<ProtobufResponse> response, Compressor compressor) {
+        if (response.error().isPresent())
+            return Client.ResponseOrError.fromError(response.error().get());
+        return Client.ResponseOrError.fromResponse(new Docsums(new Reply(response.response().get(), compressor), 0));
+    }
+
+    /** Returns the docsums of this starting at the given index */
+    Docsums from(int index) {
+        return new Docsums(reply, offset + index);
+    }
+
+    /** Returns the decoded root of the reply */
+    Inspector root() throws InvalidProtocolBufferException {
+        return reply.root();
+    }
+
+    /** Returns the index in the docsums array of the reply of the first docsum of this */
+    int offset() { return offset; }
+
+    private static class Reply {
+
+        private ProtobufResponse response;
+        private final Compressor compressor;
+        private Inspector root = null;
+
+        Reply(ProtobufResponse response, Compressor compressor) {
+            this.response = response;
+            this.compressor = compressor;
+        }
+
+        synchronized Inspector root() throws InvalidProtocolBufferException {
+            if (root == null) {
+                CompressionType compression = CompressionType.valueOf(response.compression());
+                byte[] payload = compressor.decompress(response.compressedPayload(), compression, response.uncompressedSize());
+                var protobuf = SearchProtocol.DocsumReply.parseFrom(payload);
+                root = BinaryFormat.decode(protobuf.getSlimeSummaries().toByteArray()).get();
+                response = null;
+            }
+            return root;
+        }
+
+    }
+
+}
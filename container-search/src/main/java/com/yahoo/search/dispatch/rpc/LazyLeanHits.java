@@ -0,0 +1,91 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import com.yahoo.search.dispatch.LeanHit;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * A list of the hits of a search reply, backed by primitive arrays which refer to the global ids
+ * and sort data in the serialized reply. A {@link LeanHit} is only created when a hit is accessed,
+ * such that the hits which do not make it through merging with other partial results are never
+ * materialized.
+ *
+ * This is not multithread safe.
+ */
+class LazyLeanHits extends AbstractList<LeanHit> {
+
+    private final byte[] payload;
+    private final int partId;
+    private final int distributionKey;
+
+    private int size = 0;
+    private int[] gidOffsets;
+    private int[] gidLengths;
+    private int[] sortDataOffsets;
+    private int[] sortDataLengths;
+    private double[] relevances;
+    private LeanHit[] materialized;
+
+    LazyLeanHits(byte[] payload, int partId, int distributionKey, int expectedHits) {
+        this.payload = payload;
+        this.partId = partId;
+        this.distributionKey = distributionKey;
+        int capacity = Math.max(expectedHits, 1);
+        gidOffsets = new int[capacity];
+        gidLengths = new int[capacity];
+        sortDataOffsets = new int[capacity];
+        sortDataLengths = new int[capacity];
+        relevances = new double[capacity];
+        materialized = new LeanHit[capacity];
+    }
+
+    /** Adds a hit given by the positions of its global id and sort data (of length 0 if none) in the payload */
+    void add(int gidOffset, int gidLength, double relevance, int sortDataOffset, int sortDataLength) {
+        if (size == gidOffsets.length)
+            grow();
+        gidOffsets[size] = gidOffset;
+        gidLengths[size] = gidLength;
+        relevances[size] = relevance;
+        sortDataOffsets[size] = sortDataOffset;
+        sortDataLengths[size] = sortDataLength;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = gidOffsets.length * 2;
+        gidOffsets = Arrays.copyOf(gidOffsets, capacity);
+        gidLengths = Arrays.copyOf(gidLengths, capacity);
+        sortDataOffsets = Arrays.copyOf(sortDataOffsets, capacity);
+        sortDataLengths = Arrays.copyOf(sortDataLengths, capacity);
+        relevances = Arrays.copyOf(relevances, capacity);
+        materialized = Arrays.copyOf(materialized, capacity);
+    }
+
+    @Override
+    public LeanHit get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        LeanHit hit = materialized[index];
+        if (hit == null) {
+            byte[] gid = Arrays.copyOfRange(payload, gidOffsets[index], gidOffsets[index] + gidLengths[index]);
+            hit = (sortDataLengths[index] == 0)
+                    ? new LeanHit(gid, partId, distributionKey, relevances[index])
+                    : new LeanHit(gid, partId, distributionKey,
+                                  Arrays.copyOfRange(payload, sortDataOffsets[index], sortDataOffsets[index] + sortDataLengths[index]));
+            materialized[index] = hit;
+        }
+        return hit;
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public void clear() {
+        Arrays.fill(materialized, 0, size, null);
+        size = 0;
+    }
+
+}
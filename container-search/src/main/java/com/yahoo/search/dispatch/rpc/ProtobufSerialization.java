@@ -5,7 +5,8 @@ import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
 import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol.StringProperty;
 import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol.TensorProperty;
 import com.google.protobuf.ByteString;
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
 import com.yahoo.data.access.simple.Value;
 import com.yahoo.data.access.slime.SlimeAdapter;
 import com.yahoo.fs4.GetDocSumsPacket;
@@ -29,6 +30,7 @@ import com.yahoo.searchlib.aggregation.Grouping;
 import com.yahoo.slime.BinaryFormat;
 import com.yahoo.vespa.objects.BufferSerializer;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -42,6 +44,14 @@ public class ProtobufSerialization {
         return convertFromQuery(query, hits, serverId).toByteArray();
     }
 
+    /**
+     * Returns the serialized search request of this query with the fields which differ between otherwise
+     * identical requests (timeout and session key) left out, suitable as a key for caching results.
+     */
+    public static byte[] serializeSearchRequestForCaching(Query query) {
+        return convertFromQuery(query, query.getHits(), null).toBuilder().clearTimeout().build().toByteArray();
+    }
+
     private static SearchProtocol.SearchRequest convertFromQuery(Query query, int hits, String serverId) {
         var builder = SearchProtocol.SearchRequest.newBuilder().setHits(hits).setOffset(query.getOffset())
                 .setTimeout((int) query.getTimeLeft());
@@ -52,7 +62,7 @@ public class ProtobufSerialization {
         }
         builder.setQueryTreeBlob(serializeQueryTree(query.getModel().getQueryTree()));
 
-        if (query.getGroupingSessionCache() || query.getRanking().getQueryCache()) {
+        if (serverId != null && (query.getGroupingSessionCache() || query.getRanking().getQueryCache())) {
             // TODO verify that the session key is included whenever rank properties would have been
             builder.setSessionKey(query.getSessionId(serverId).toString());
         }
@@ -183,22 +193,81 @@ public class ProtobufSerialization {
     }
 
     static InvokerResult deserializeToSearchResult(byte[] payload, Query query, VespaBackEndSearcher searcher, int partId, int distKey)
-            throws InvalidProtocolBufferException {
-        var protobuf = SearchProtocol.SearchReply.parseFrom(payload);
-        return convertToResult(query, protobuf, searcher.getDocumentDatabase(query), partId, distKey);
+            throws IOException {
+        return convertToResult(query, payload, searcher.getDocumentDatabase(query), partId, distKey);
     }
 
-    static InvokerResult convertToResult(Query query, SearchProtocol.SearchReply protobuf,
-                                                 DocumentDatabase documentDatabase, int partId, int distKey)
+    /**
+     * Converts a serialized search reply to a result without materializing the protobuf message.
+     * The hits refer to the global ids and sort data in the payload, and are only turned into
+     * {@link LeanHit} instances when they are accessed.
+     */
+    static InvokerResult convertToResult(Query query, byte[] payload,
+                                         DocumentDatabase documentDatabase, int partId, int distKey) throws IOException
     {
-        InvokerResult result = new InvokerResult(query, protobuf.getHitsCount());
+        LazyLeanHits hits = new LazyLeanHits(payload, partId, distKey, query.getHits() + query.getOffset());
+        InvokerResult result = new InvokerResult(query, hits);
+
+        long coverageDocs = 0, activeDocs = 0, soonActiveDocs = 0;
+        boolean degradedByMatchPhase = false, degradedBySoftTimeout = false;
+        ByteString groupingBlob = ByteString.EMPTY;
+        ByteString slimeTrace = ByteString.EMPTY;
+
+        CodedInputStream input = CodedInputStream.newInstance(payload);
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case SearchProtocol.SearchReply.TOTAL_HIT_COUNT_FIELD_NUMBER:
+                    result.getResult().setTotalHitCount(input.readInt64()); break;
+                case SearchProtocol.SearchReply.COVERAGE_DOCS_FIELD_NUMBER: coverageDocs = input.readInt64(); break;
+                case SearchProtocol.SearchReply.ACTIVE_DOCS_FIELD_NUMBER: activeDocs = input.readInt64(); break;
+                case SearchProtocol.SearchReply.SOON_ACTIVE_DOCS_FIELD_NUMBER: soonActiveDocs = input.readInt64(); break;
+                case SearchProtocol.SearchReply.DEGRADED_BY_MATCH_PHASE_FIELD_NUMBER: degradedByMatchPhase = input.readBool(); break;
+                case SearchProtocol.SearchReply.DEGRADED_BY_SOFT_TIMEOUT_FIELD_NUMBER: degradedBySoftTimeout = input.readBool(); break;
+                case SearchProtocol.SearchReply.HITS_FIELD_NUMBER: readHit(input, hits); break;
+                case SearchProtocol.SearchReply.GROUPING_BLOB_FIELD_NUMBER: groupingBlob = input.readBytes(); break;
+                case SearchProtocol.SearchReply.SLIME_TRACE_FIELD_NUMBER: slimeTrace = input.readBytes(); break;
+                default: input.skipField(tag);
+            }
+        }
+
+        result.getResult().setCoverage(convertToCoverage(coverageDocs, activeDocs, soonActiveDocs,
+                                                         degradedByMatchPhase, degradedBySoftTimeout));
+        addGroupingHit(result.getResult(), groupingBlob, query, documentDatabase);
+        addSlimeTrace(query, slimeTrace);
+        return result;
+    }
 
-        result.getResult().setTotalHitCount(protobuf.getTotalHitCount());
-        result.getResult().setCoverage(convertToCoverage(protobuf));
+    /** Reads a length delimited Hit message, recording the positions of its byte fields in the input */
+    private static void readHit(CodedInputStream input, LazyLeanHits hits) throws IOException {
+        int limit = input.pushLimit(input.readRawVarint32());
+        int gidOffset = 0, gidLength = 0, sortDataOffset = 0, sortDataLength = 0;
+        double relevance = 0.0;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case SearchProtocol.Hit.GLOBAL_ID_FIELD_NUMBER:
+                    gidLength = input.readRawVarint32();
+                    gidOffset = input.getTotalBytesRead();
+                    input.skipRawBytes(gidLength);
+                    break;
+                case SearchProtocol.Hit.RELEVANCE_FIELD_NUMBER:
+                    relevance = input.readDouble();
+                    break;
+                case SearchProtocol.Hit.SORT_DATA_FIELD_NUMBER:
+                    sortDataLength = input.readRawVarint32();
+                    sortDataOffset = input.getTotalBytesRead();
+                    input.skipRawBytes(sortDataLength);
+                    break;
+                default: input.skipField(tag);
+            }
+        }
+        input.popLimit(limit);
+        hits.add(gidOffset, gidLength, relevance, sortDataOffset, sortDataLength);
+    }
 
-        var haveGrouping = protobuf.getGroupingBlob() != null && !protobuf.getGroupingBlob().isEmpty();
+    private static void addGroupingHit(Result result, ByteString groupingBlob, Query query, DocumentDatabase documentDatabase) {
+        var haveGrouping = groupingBlob != null && !groupingBlob.isEmpty();
         if (haveGrouping) {
-            BufferSerializer buf = new BufferSerializer(new GrowableByteBuffer(protobuf.getGroupingBlob().asReadOnlyByteBuffer()));
+            BufferSerializer buf = new BufferSerializer(new GrowableByteBuffer(groupingBlob.asReadOnlyByteBuffer()));
             int cnt = buf.getInt(null);
             ArrayList<Grouping> list = new ArrayList<>(cnt);
             for (int i = 0; i < cnt; i++) {
@@ -208,33 +277,27 @@ public class ProtobufSerialization {
             }
             GroupingListHit hit = new GroupingListHit(list, documentDatabase.getDocsumDefinitionSet());
             hit.setQuery(query);
-            result.getResult().hits().add(hit);
-        }
-
-        for (var replyHit : protobuf.getHitsList()) {
-            LeanHit hit = (replyHit.getSortData().isEmpty())
-                    ? new LeanHit(replyHit.getGlobalId().toByteArray(), partId, distKey, replyHit.getRelevance())
-                    : new LeanHit(replyHit.getGlobalId().toByteArray(), partId, distKey, replyHit.getSortData().toByteArray());
-            result.getLeanHits().add(hit);
+            result.hits().add(hit);
         }
+    }
 
-        var slimeTrace = protobuf.getSlimeTrace();
+    private static void addSlimeTrace(Query query, ByteString slimeTrace) {
         if (slimeTrace != null && !slimeTrace.isEmpty()) {
             var traces = new Value.ArrayValue();
             traces.add(new SlimeAdapter(BinaryFormat.decode(slimeTrace.toByteArray()).get()));
             query.trace(traces, query.getTraceLevel());
         }
-        return result;
     }
 
-    private static Coverage convertToCoverage(SearchProtocol.SearchReply protobuf) {
-        var coverage = new Coverage(protobuf.getCoverageDocs(), protobuf.getActiveDocs(), 1);
-        coverage.setNodesTried(1).setSoonActive(protobuf.getSoonActiveDocs());
+    private static Coverage convertToCoverage(long coverageDocs, long activeDocs, long soonActiveDocs,
+                                              boolean degradedByMatchPhase, boolean degradedBySoftTimeout) {
+        var coverage = new Coverage(coverageDocs, activeDocs, 1);
+        coverage.setNodesTried(1).setSoonActive(soonActiveDocs);
 
         int degradedReason = 0;
-        if (protobuf.getDegradedByMatchPhase())
+        if (degradedByMatchPhase)
             degradedReason |= Coverage.DEGRADED_BY_MATCH_PHASE;
-        if (protobuf.getDegradedBySoftTimeout())
+        if (degradedBySoftTimeout)
             degradedReason |= Coverage.DEGRADED_BY_TIMEOUT;
         coverage.setDegradedReason(degradedReason);
 
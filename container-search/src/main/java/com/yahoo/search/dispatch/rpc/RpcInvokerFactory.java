@@ -1,6 +1,7 @@
 // Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch.rpc;
 
+import com.yahoo.jdisc.Metric;
 import com.yahoo.prelude.fastsearch.DocumentDatabase;
 import com.yahoo.prelude.fastsearch.VespaBackEndSearcher;
 import com.yahoo.processing.request.CompoundName;
@@ -12,6 +13,7 @@ import com.yahoo.search.dispatch.InvokerFactory;
 import com.yahoo.search.dispatch.SearchInvoker;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.Optional;
 
@@ -24,10 +26,27 @@ public class RpcInvokerFactory extends InvokerFactory {
     private final static CompoundName dispatchSummaries = new CompoundName("dispatch.summaries");
 
     private final RpcResourcePool rpcResourcePool;
+    private final Optional<DocsumCoalescer> docsumCoalescer;
+    private final Optional<DocsumCache> docsumCache;
 
     public RpcInvokerFactory(RpcResourcePool rpcResourcePool, SearchCluster searchCluster) {
         super(searchCluster);
         this.rpcResourcePool = rpcResourcePool;
+        this.docsumCoalescer = Optional.empty();
+        this.docsumCache = Optional.empty();
+    }
+
+    public RpcInvokerFactory(RpcResourcePool rpcResourcePool, SearchCluster searchCluster, DispatchConfig dispatchConfig, Metric metric) {
+        super(searchCluster);
+        this.rpcResourcePool = rpcResourcePool;
+        this.docsumCoalescer = dispatchConfig.docsumCoalescingWindow() > 0
+                ? Optional.of(new DocsumCoalescer(rpcResourcePool, dispatchConfig.docsumCoalescingWindow(),
+                                                  dispatchConfig.docsumCoalescingMaxHits(), metric))
+                : Optional.empty();
+        this.docsumCache = dispatchConfig.docsumCacheMaxBytes() > 0
+                ? Optional.of(new DocsumCache(dispatchConfig.docsumCacheMaxBytes(), dispatchConfig.docsumCacheTtl(),
+                                              searchCluster::generation, metric))
+                : Optional.empty();
     }
 
     @Override
@@ -48,7 +67,13 @@ public class RpcInvokerFactory extends InvokerFactory {
 
         return  ((useDispatchDotSummaries || !useProtoBuf) && ! summaryNeedsQuery)
                 ? new RpcFillInvoker(rpcResourcePool, searcher.getDocumentDatabase(query))
-                : new RpcProtobufFillInvoker(rpcResourcePool, searcher.getDocumentDatabase(query), searcher.getServerId(), summaryNeedsQuery);
+                : new RpcProtobufFillInvoker(rpcResourcePool, searcher.getDocumentDatabase(query), searcher.getServerId(), summaryNeedsQuery,
+                                             docsumCoalescer, docsumCache);
+    }
+
+    @Override
+    public void release() {
+        docsumCoalescer.ifPresent(DocsumCoalescer::shutdown);
     }
 
     // for testing
@@ -1,11 +1,9 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch.rpc;
 
-import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.yahoo.collections.ListMap;
 import com.yahoo.collections.Pair;
-import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
 import com.yahoo.container.protect.Error;
 import com.yahoo.data.access.Inspector;
@@ -16,15 +14,14 @@ import com.yahoo.prelude.fastsearch.TimeoutException;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.FillInvoker;
-import com.yahoo.search.dispatch.rpc.Client.ProtobufResponse;
 import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.search.result.Hit;
 import com.yahoo.slime.ArrayTraverser;
-import com.yahoo.slime.BinaryFormat;
 
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -46,8 +43,13 @@ public class RpcProtobufFillInvoker extends FillInvoker {
     private final RpcResourcePool resourcePool;
     private final boolean summaryNeedsQuery;
     private final String serverId;
+    private final Optional<DocsumCoalescer> coalescer;
+    private final Optional<DocsumCache> docsumCache;
 
-    private BlockingQueue<Pair<Client.ResponseOrError<ProtobufResponse>, List<FastHit>>> responses;
+    private BlockingQueue<Pair<Client.ResponseOrError<Docsums>, List<FastHit>>> responses;
+
+    /** Whether summaries of this fill are looked up in and stored to the docsum cache */
+    private boolean useDocsumCache = false;
 
     /** Whether we have already logged/notified about an error - to avoid spamming */
     private boolean hasReportedError = false;
@@ -56,15 +58,23 @@ public class RpcProtobufFillInvoker extends FillInvoker {
     private int outstandingResponses;
 
     RpcProtobufFillInvoker(RpcResourcePool resourcePool, DocumentDatabase documentDb, String serverId, boolean summaryNeedsQuery) {
+        this(resourcePool, documentDb, serverId, summaryNeedsQuery, Optional.empty(), Optional.empty());
+    }
+
+    RpcProtobufFillInvoker(RpcResourcePool resourcePool, DocumentDatabase documentDb, String serverId, boolean summaryNeedsQuery,
+                           Optional<DocsumCoalescer> coalescer, Optional<DocsumCache> docsumCache) {
         this.documentDb = documentDb;
         this.resourcePool = resourcePool;
         this.serverId = serverId;
         this.summaryNeedsQuery = summaryNeedsQuery;
+        this.coalescer = coalescer;
+        this.docsumCache = docsumCache;
     }
 
     @Override
     protected void sendFillRequest(Result result, String summaryClass) {
-        ListMap<Integer, FastHit> hitsByNode = hitsByNode(result);
+        useDocsumCache = docsumCache.isPresent() && DocsumCache.isCacheable(result.getQuery(), summaryNeedsQuery);
+        ListMap<Integer, FastHit> hitsByNode = hitsByNode(result, summaryClass);
 
         result.getQuery().trace(false, 5, "Sending ", hitsByNode.size(), " summary fetch requests with jrt/protobuf");
 
@@ -72,6 +82,11 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         responses = new LinkedBlockingQueue<>(outstandingResponses);
 
         var builder = ProtobufSerialization.createDocsumRequestBuilder(result.getQuery(), serverId, summaryClass, summaryNeedsQuery);
+        if (coalescer.isPresent() && coalescer.get().accepts(result.getQuery(), summaryNeedsQuery)) {
+            for (Map.Entry<Integer, List<FastHit>> nodeHits : hitsByNode.entrySet())
+                coalescer.get().request(nodeHits.getKey(), builder, nodeHits.getValue(), result.getQuery(), this::receive);
+            return;
+        }
         for (Map.Entry<Integer, List<FastHit>> nodeHits : hitsByNode.entrySet()) {
             var payload = ProtobufSerialization.serializeDocsumRequest(builder, nodeHits.getValue());
             sendDocsumsRequest(nodeHits.getKey(), nodeHits.getValue(), payload, result);
@@ -95,24 +110,44 @@ public class RpcProtobufFillInvoker extends FillInvoker {
     }
 
     /** Called by a thread belonging to the client when a valid response becomes available */
-    public void receive(Client.ResponseOrError<ProtobufResponse> response, List<FastHit> hitsContext) {
+    public void receive(Client.ResponseOrError<Docsums> response, List<FastHit> hitsContext) {
         responses.add(new Pair<>(response, hitsContext));
     }
 
-    /** Return a map of hits by their search node (partition) id */
-    private static ListMap<Integer, FastHit> hitsByNode(Result result) {
+    /** Return a map of hits by their search node (partition) id, omitting those filled from the docsum cache */
+    private ListMap<Integer, FastHit> hitsByNode(Result result, String summaryClass) {
         ListMap<Integer, FastHit> hitsByNode = new ListMap<>();
+        int cachedHits = 0;
         for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext();) {
             Hit h = i.next();
             if (!(h instanceof FastHit))
                 continue;
             FastHit hit = (FastHit) h;
 
+            if (useDocsumCache && fillFromCache(hit, summaryClass)) {
+                cachedHits++;
+                continue;
+            }
             hitsByNode.put(hit.getDistributionKey(), hit);
         }
+        if (cachedHits > 0)
+            result.getQuery().trace(false, 5, "Filled ", cachedHits, " hits from the docsum cache");
         return hitsByNode;
     }
 
+    private boolean fillFromCache(FastHit hit, String summaryClass) {
+        var summary = docsumCache.get().get(documentDb.getName(), summaryClass, hit.getRawGlobalId());
+        if (summary.isEmpty()) return false;
+        fill(hit, summaryClass, new SlimeAdapter(summary.get()));
+        return true;
+    }
+
+    private void fill(FastHit hit, String summaryClass, Inspector summary) {
+        hit.setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
+        hit.addSummary(documentDb.getDocsumDefinitionSet().getDocsum(summaryClass), summary);
+        hit.setFilled(summaryClass);
+    }
+
     /** Send a docsums request to a node. Responses will be added to the given receiver. */
     private void sendDocsumsRequest(int nodeId, List<FastHit> hits, byte[] payload, Result result) {
         Client.NodeConnection node = resourcePool.getConnection(nodeId);
@@ -127,8 +162,8 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         Query query = result.getQuery();
         double timeoutSeconds = ((double) query.getTimeLeft() - 3.0) / 1000.0;
         Compressor.Compression compressionResult = resourcePool.compress(query, payload);
-        node.request(RPC_METHOD, compressionResult.type(), payload.length, compressionResult.data(), roe -> receive(roe, hits),
-                timeoutSeconds);
+        node.request(RPC_METHOD, compressionResult.type(), payload.length, compressionResult.data(),
+                roe -> receive(Docsums.from(roe, resourcePool.compressor()), hits), timeoutSeconds);
     }
 
     private void processResponses(Result result, String summaryClass) throws TimeoutException {
@@ -157,7 +192,7 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         }
     }
 
-    private int processResponse(Result result, Client.ResponseOrError<ProtobufResponse> responseOrError, List<FastHit> hitsContext,
+    private int processResponse(Result result, Client.ResponseOrError<Docsums> responseOrError, List<FastHit> hitsContext,
             String summaryClass) {
         if (responseOrError.error().isPresent()) {
             if (hasReportedError) {
@@ -168,11 +203,7 @@ public class RpcProtobufFillInvoker extends FillInvoker {
             log.log(Level.WARNING, "Error fetching summary data: " + error);
             hasReportedError = true;
         } else {
-            Client.ProtobufResponse response = responseOrError.response().get();
-            CompressionType compression = CompressionType.valueOf(response.compression());
-            byte[] responseBytes = resourcePool.compressor().decompress(response.compressedPayload(), compression,
-                    response.uncompressedSize());
-            return fill(result, hitsContext, summaryClass, responseBytes);
+            return fill(result, hitsContext, summaryClass, responseOrError.response().get());
         }
         return 0;
     }
@@ -184,27 +215,28 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         });
     }
 
-    private int fill(Result result, List<FastHit> hits, String summaryClass, byte[] payload) {
+    private int fill(Result result, List<FastHit> hits, String summaryClass, Docsums docsums) {
         try {
-            var protobuf = SearchProtocol.DocsumReply.parseFrom(payload);
-            var root = BinaryFormat.decode(protobuf.getSlimeSummaries().toByteArray()).get();
+            var root = docsums.root();
             var errors = root.field("errors");
             boolean hasErrors = errors.valid() && (errors.entries() > 0);
             if (hasErrors) {
                 addErrors(result, errors);
             }
 
-            Inspector summaries = new SlimeAdapter(root.field("docsums"));
+            var slimeSummaries = root.field("docsums");
+            Inspector summaries = new SlimeAdapter(slimeSummaries);
             if (!summaries.valid()) {
                 return 0; // No summaries; Perhaps we requested a non-existing summary class
             }
             int skippedHits = 0;
             for (int i = 0; i < hits.size(); i++) {
-                Inspector summary = summaries.entry(i).field("docsum");
+                Inspector summary = summaries.entry(docsums.offset() + i).field("docsum");
                 if (summary.valid()) {
-                    hits.get(i).setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
-                    hits.get(i).addSummary(documentDb.getDocsumDefinitionSet().getDocsum(summaryClass), summary);
-                    hits.get(i).setFilled(summaryClass);
+                    fill(hits.get(i), summaryClass, summary);
+                    if (useDocsumCache && ! hasErrors)
+                        docsumCache.get().put(documentDb.getName(), summaryClass, hits.get(i).getRawGlobalId(),
+                                              slimeSummaries.entry(docsums.offset() + i).field("docsum"));
                 } else {
                     skippedHits++;
                 }
@@ -17,6 +17,7 @@ import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * {@link SearchInvoker} implementation using RPC
@@ -32,8 +33,10 @@ public class RpcSearchInvoker extends SearchInvoker implements Client.ResponseRe
     private final RpcResourcePool resourcePool;
     private final BlockingQueue<Client.ResponseOrError<ProtobufResponse>> responses;
     private final int maxHits;
+    private final AtomicBoolean pending = new AtomicBoolean(false);
 
     private Query query;
+    private long sentAt;
 
     RpcSearchInvoker(VespaBackEndSearcher searcher, Node node, RpcResourcePool resourcePool, int maxHits) {
         super(Optional.of(node));
@@ -59,6 +62,9 @@ public class RpcSearchInvoker extends SearchInvoker implements Client.ResponseRe
         var payload = ProtobufSerialization.serializeSearchRequest(query, Math.min(query.getHits(), maxHits), searcher.getServerId());
         double timeoutSeconds = ((double) query.getTimeLeft() - 3.0) / 1000.0;
         Compressor.Compression compressionResult = resourcePool.compress(query, payload);
+        sentAt = System.currentTimeMillis();
+        pending.set(true);
+        node.querySent();
         nodeConnection.request(RPC_METHOD, compressionResult.type(), payload.length, compressionResult.data(), this, timeoutSeconds);
     }
 
@@ -94,10 +100,17 @@ public class RpcSearchInvoker extends SearchInvoker implements Client.ResponseRe
 
     @Override
     protected void release() {
-        // nothing to release
+        if (pending.compareAndSet(true, false)) // no response in time: Count the time spent as search time
+            node.queryCompleted(System.currentTimeMillis() - sentAt);
     }
 
     public void receive(Client.ResponseOrError<ProtobufResponse> response) {
+        if (pending.compareAndSet(true, false)) {
+            if (response.error().isPresent())
+                node.queryFailed();
+            else
+                node.queryCompleted(System.currentTimeMillis() - sentAt);
+        }
         responses.add(response);
         responseAvailable();
     }
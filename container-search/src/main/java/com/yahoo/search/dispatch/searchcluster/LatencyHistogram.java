@@ -0,0 +1,70 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.searchcluster;
+
+import java.util.OptionalDouble;
+
+/**
+ * A histogram of recent latencies in milliseconds, using exponentially growing buckets with four buckets
+ * per doubling of the latency. All counts are halved at regular intervals such that the histogram
+ * reflects the recent latencies. This class is multithread safe.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+    private static final int BUCKETS_PER_DOUBLING = 4;
+    private static final int DECAY_INTERVAL = 1024;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total = 0;
+    private long sinceDecay = 0;
+
+    /** Adds a latency in milliseconds to this */
+    public synchronized void add(long latencyMillis) {
+        counts[bucketOf(latencyMillis)]++;
+        total++;
+        if (++sinceDecay >= DECAY_INTERVAL)
+            decay();
+    }
+
+    /**
+     * Returns the given percentile of the latencies in this, as the upper bound of the bucket it falls into.
+     *
+     * @param percentile the percentile to return, in the range [0, 100]
+     * @return the percentile in milliseconds, or empty if this is empty
+     */
+    public synchronized OptionalDouble percentile(double percentile) {
+        if (total == 0) return OptionalDouble.empty();
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long accumulated = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            accumulated += counts[i];
+            if (accumulated >= target)
+                return OptionalDouble.of(upperBoundOf(i));
+        }
+        return OptionalDouble.of(upperBoundOf(BUCKETS - 1));
+    }
+
+    /** Returns the number of latencies currently counted in this, where older latencies count less */
+    public synchronized long count() { return total; }
+
+    private void decay() {
+        total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] /= 2;
+            total += counts[i];
+        }
+        sinceDecay = 0;
+    }
+
+    static int bucketOf(long latencyMillis) {
+        if (latencyMillis <= 0) return 0;
+        int bucket = (int) (BUCKETS_PER_DOUBLING * Math.log(latencyMillis + 1) / Math.log(2));
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    static double upperBoundOf(int bucket) {
+        return Math.pow(2, (double) (bucket + 1) / BUCKETS_PER_DOUBLING) - 1;
+    }
+
+}
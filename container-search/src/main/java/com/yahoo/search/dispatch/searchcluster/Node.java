@@ -3,6 +3,7 @@ package com.yahoo.search.dispatch.searchcluster;
 
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -23,6 +24,8 @@ public class Node {
     private final AtomicLong activeDocuments = new AtomicLong(0);
     private final AtomicLong pingSequence = new AtomicLong(0);
     private final AtomicLong lastPong = new AtomicLong(0);
+    private final AtomicInteger pendingQueries = new AtomicInteger(0);
+    private final LatencyHistogram searchTimes = new LatencyHistogram();
 
     public Node(int key, String hostname, int group) {
         this.key = key;
@@ -79,6 +82,28 @@ public class Node {
         return activeDocuments.get();
     }
 
+    /** Called when a query is sent to this node */
+    public void querySent() {
+        pendingQueries.incrementAndGet();
+    }
+
+    /** Called when a query sent to this node is completed or abandoned, after the given time in milliseconds */
+    public void queryCompleted(long searchTimeMs) {
+        pendingQueries.decrementAndGet();
+        searchTimes.add(searchTimeMs);
+    }
+
+    /** Called when a query sent to this node failed, such that its search time is not representative */
+    public void queryFailed() {
+        pendingQueries.decrementAndGet();
+    }
+
+    /** Returns the number of queries sent to this node which are not yet completed */
+    public int pendingQueries() { return pendingQueries.get(); }
+
+    /** Returns the recent search times of this node */
+    public LatencyHistogram searchTimes() { return searchTimes; }
+
     @Override
     public int hashCode() { return Objects.hash(hostname, key, pathIndex, group); }
 
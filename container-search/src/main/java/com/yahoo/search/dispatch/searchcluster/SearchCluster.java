@@ -17,7 +17,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -39,6 +41,9 @@ public class SearchCluster implements NodeManager<Node> {
     private final VipStatus vipStatus;
     private final PingFactory pingFactory;
     private long nextLogTime = 0;
+    private final AtomicLong generation = new AtomicLong(0);
+    private long lastActiveDocuments = 0;
+    private final List<Runnable> pingIterationListeners = new CopyOnWriteArrayList<>();
 
     /**
      * A search node on this local machine having the entire corpus, which we therefore
@@ -97,6 +102,11 @@ public class SearchCluster implements NodeManager<Node> {
         }
     }
 
+    /** Adds a listener which is invoked each time a ping iteration over all nodes is completed */
+    public void addPingIterationListener(Runnable listener) {
+        pingIterationListeners.add(listener);
+    }
+
     private static Optional<Node> findLocalCorpusDispatchTarget(String selfHostname,
                                                                 int searchClusterSize,
                                                                 int containerClusterSize,
@@ -187,7 +197,17 @@ public class SearchCluster implements NodeManager<Node> {
         return localCorpusDispatchTarget;
     }
 
+    /**
+     * Returns a number which changes whenever the content served by this cluster may have changed,
+     * that is, when a node changes working state or the number of active documents changes.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
     private void updateWorkingState(Node node, boolean isWorking) {
+        if ( ! Boolean.valueOf(isWorking).equals(node.isWorking()))
+            generation.incrementAndGet();
         node.setWorking(isWorking);
         updateVipStatusOnNodeChange(node, isWorking);
     }
@@ -329,6 +349,18 @@ public class SearchCluster implements NodeManager<Node> {
         } else {
             pingIterationCompletedMultipleGroups();
         }
+        updateGeneration();
+        pingIterationListeners.forEach(Runnable::run);
+    }
+
+    private synchronized void updateGeneration() {
+        long activeDocuments = 0;
+        for (Group group : orderedGroups)
+            activeDocuments += group.getActiveDocuments();
+        if (activeDocuments != lastActiveDocuments) {
+            lastActiveDocuments = activeDocuments;
+            generation.incrementAndGet();
+        }
     }
 
     private boolean isGroupCoverageSufficient(int workingNodes, int nodesInGroup, long activeDocuments, long averageDocumentsInOtherGroups) {
@@ -11,6 +11,7 @@ import com.yahoo.container.logging.TraceRenderer;
 import com.yahoo.data.JsonProducer;
 import com.yahoo.data.access.Inspectable;
 import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.ObjectTraverser;
 import com.yahoo.data.access.Type;
 import com.yahoo.data.access.simple.JsonRender;
 import com.yahoo.data.access.simple.Value;
@@ -18,7 +19,17 @@ import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.document.datatypes.TensorFieldValue;
 import com.yahoo.document.json.JsonWriter;
-import com.yahoo.lang.MutableBoolean;
+import com.yahoo.prelude.fastsearch.BoolField;
+import com.yahoo.prelude.fastsearch.ByteField;
+import com.yahoo.prelude.fastsearch.DocsumField;
+import com.yahoo.prelude.fastsearch.DoubleField;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.Float16Field;
+import com.yahoo.prelude.fastsearch.FloatField;
+import com.yahoo.prelude.fastsearch.Int64Field;
+import com.yahoo.prelude.fastsearch.IntegerField;
+import com.yahoo.prelude.fastsearch.ShortField;
+import com.yahoo.prelude.fastsearch.StructDataField;
 import com.yahoo.processing.Response;
 import com.yahoo.processing.execution.Execution.Trace;
 import com.yahoo.processing.rendering.AsynchronousSectionedRenderer;
@@ -77,6 +88,7 @@ import java.util.function.LongSupplier;
 public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
 
     private static final CompoundName DEBUG_RENDERING_KEY = new CompoundName("renderer.json.debug");
+    private static final CompoundName STREAM_FIELDS_KEY = new CompoundName("renderer.json.streamFields");
     private static final CompoundName JSON_CALLBACK = new CompoundName("jsoncallback");
 
     // if this must be optimized, simply use com.fasterxml.jackson.core.SerializableString
@@ -124,6 +136,7 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
     private FieldConsumer fieldConsumer;
     private Deque<Integer> renderedChildren;
     private boolean debugRendering;
+    private boolean streamFields;
     private LongSupplier timeSource;
     private OutputStream stream;
 
@@ -156,6 +169,7 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
     public void init() {
         super.init();
         debugRendering = false;
+        streamFields = false;
         setGenerator(null, debugRendering);
         renderedChildren = null;
         timeSource = System::currentTimeMillis;
@@ -166,7 +180,8 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
     public void beginResponse(OutputStream stream) throws IOException {
         beginJsonCallback(stream);
         debugRendering = getDebugRendering(getResult().getQuery());
-        setGenerator(generatorFactory.createGenerator(stream, JsonEncoding.UTF8), debugRendering);
+        streamFields = getStreamFields(getResult().getQuery());
+        setGenerator(createGenerator(stream), debugRendering);
         renderedChildren = new ArrayDeque<>();
         generator.writeStartObject();
         renderTrace(getExecution().trace());
@@ -196,10 +211,19 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
         generator.writeEndObject();
     }
 
+    /** Creates the generator this renders the response with */
+    protected JsonGenerator createGenerator(OutputStream stream) throws IOException {
+        return generatorFactory.createGenerator(stream, JsonEncoding.UTF8);
+    }
+
     private boolean getDebugRendering(Query q) {
         return q != null && q.properties().getBoolean(DEBUG_RENDERING_KEY, false);
     }
 
+    private boolean getStreamFields(Query q) {
+        return q != null && q.properties().getBoolean(STREAM_FIELDS_KEY, false);
+    }
+
     protected void renderTrace(Trace trace) throws IOException {
         if (!trace.traceNode().children().iterator().hasNext()) return;
         if (getResult().getQuery().getTraceLevel() == 0) return;
@@ -356,7 +380,10 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
     }
 
     private void renderStandardFields(Hit hit) {
-        hit.forEachFieldAsRaw(fieldConsumer);
+        if (streamFields && hit instanceof FastHit)
+            ((FastHit) hit).forEachFieldAsData(fieldConsumer);
+        else
+            hit.forEachFieldAsRaw(fieldConsumer);
     }
 
     private void renderSpecialCasesForGrouping(Hit hit) throws IOException {
@@ -490,7 +517,11 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
         }
     }
 
+    /** Returns whether responses rendered by this can be wrapped in a JSONP callback function */
+    protected boolean supportsJsonCallback() { return true; }
+
     private boolean shouldRenderJsonCallback() {
+        if ( ! supportsJsonCallback()) return false;
         String jsonCallback = getJsonCallback();
         return jsonCallback != null && !"".equals(jsonCallback);
     }
@@ -525,16 +556,45 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
      * This instance is reused for all hits of a Result since we are in a single-threaded context
      * and want to limit object creation.
      */
-    public static class FieldConsumer implements Hit.RawUtf8Consumer, TraceRenderer.FieldConsumer {
+    public static class FieldConsumer implements FastHit.FieldDataConsumer, TraceRenderer.FieldConsumer {
+
+        /** Whether each subclass overrides {@link #shouldRender}, computed once per class */
+        private static final ClassValue<Boolean> shouldRenderIsOverridden = new ClassValue<>() {
+            @Override
+            protected Boolean computeValue(Class<?> consumerClass) {
+                return overridesShouldRender(consumerClass);
+            }
+        };
 
         private final JsonGenerator generator;
         private final boolean debugRendering;
+        private final ObjectTraverser dataFieldRenderer = this::renderDataField;
 
-        private MutableBoolean hasFieldsField;
+        /**
+         * Whether field data must be converted to objects before deciding whether to render it,
+         * as this is a subclass which may filter fields on their converted values in {@link #shouldRender}
+         */
+        private final boolean convertsDataBeforeFiltering;
+
+        private boolean hasFieldsField;
 
         public FieldConsumer(JsonGenerator generator, boolean debugRendering) {
             this.generator = generator;
             this.debugRendering = debugRendering;
+            this.convertsDataBeforeFiltering = shouldRenderIsOverridden.get(getClass());
+        }
+
+        private static boolean overridesShouldRender(Class<?> consumerClass) {
+            for (Class<?> c = consumerClass; c != FieldConsumer.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("shouldRender", String.class, Object.class);
+                    return true;
+                }
+                catch (NoSuchMethodException e) {
+                    // check the superclass
+                }
+            }
+            return false;
         }
 
         /**
@@ -542,21 +602,21 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
          * have created the "fields" field of the JSON object
          */
         void startHitFields() {
-            this.hasFieldsField = new MutableBoolean(false);
+            this.hasFieldsField = false;
         }
 
         /** Call before rendering a field to the generator */
         void ensureFieldsField() throws IOException {
-            if (hasFieldsField.get()) return;
+            if (hasFieldsField) return;
             generator.writeObjectFieldStart(FIELDS);
-            hasFieldsField.set(true);
+            hasFieldsField = true;
         }
 
         /** Call after all fields in a hit to close the "fields" field of the JSON object */
         void endHitFields() throws IOException {
-            if ( ! hasFieldsField.get()) return;
+            if ( ! hasFieldsField) return;
             generator.writeEndObject();
-            this.hasFieldsField = null;
+            this.hasFieldsField = false;
         }
 
         @Override
@@ -587,6 +647,32 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
             }
         }
 
+        /**
+         * Renders numbers, booleans and structured data directly from the data of the field,
+         * and converts the value to an object and renders that otherwise.
+         * The data is always converted if {@link #shouldRender} is overridden, such that fields are
+         * filtered on the same values whether or not they are streamed.
+         */
+        @Override
+        public void accept(String name, DocsumField fieldType, Inspector value) {
+            if (convertsDataBeforeFiltering || ! isRenderableAsData(fieldType, value)) {
+                Object convertedValue = fieldType.convert(value);
+                if (convertedValue != null)
+                    accept(name, convertedValue);
+                return;
+            }
+            try {
+                if (shouldRender(name, value)) {
+                    ensureFieldsField();
+                    generator.writeFieldName(name);
+                    renderFieldData(fieldType, value);
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         protected boolean shouldRender(String name, Object value) {
             if (debugRendering) return true;
             if (name.startsWith(VESPA_HIDDEN_FIELD_PREFIX)) return false;
@@ -604,19 +690,114 @@ public class JsonRenderer extends AsynchronousSectionedRenderer<Result> {
             return true;
         }
 
-        private static Inspector wrapAsMap(Inspector data) {
-            if (data.type() != Type.ARRAY) return null;
-            if (data.entryCount() == 0) return null;
+        private static boolean isRenderableAsData(DocsumField fieldType, Inspector value) {
+            if (fieldType.isEmpty(value)) return false; // rendered as NaN
+            if (fieldType instanceof StructDataField)
+                return value.type() == Type.OBJECT || value.type() == Type.ARRAY;
+            return fieldType instanceof IntegerField || fieldType instanceof Int64Field ||
+                   fieldType instanceof ShortField || fieldType instanceof ByteField ||
+                   fieldType instanceof DoubleField || fieldType instanceof FloatField ||
+                   fieldType instanceof Float16Field || fieldType instanceof BoolField;
+        }
+
+        private void renderFieldData(DocsumField fieldType, Inspector value) throws IOException {
+            if (fieldType instanceof IntegerField || fieldType instanceof ShortField || fieldType instanceof ByteField)
+                generator.writeNumber((int)value.asLong());
+            else if (fieldType instanceof Int64Field)
+                generator.writeNumber(value.asLong());
+            else if (fieldType instanceof DoubleField)
+                generator.writeNumber(value.asDouble());
+            else if (fieldType instanceof FloatField || fieldType instanceof Float16Field)
+                generator.writeNumber((float)value.asDouble());
+            else if (fieldType instanceof BoolField)
+                generator.writeBoolean(value.asBool());
+            else if (isMap(value))
+                renderMapData(value);
+            else
+                renderData(value);
+        }
+
+        /** Renders an array of key-value objects as a JSON object, as done by {@link #wrapAsMap} */
+        private void renderMapData(Inspector data) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < data.entryCount(); i++) {
+                Inspector entry = data.entry(i);
+                generator.writeFieldName(entry.field("key").asString());
+                renderData(entry.field("value"));
+            }
+            generator.writeEndObject();
+        }
+
+        /** Renders data as JSON in the same way as {@link JsonRender}, without creating an intermediate string */
+        private void renderData(Inspector data) throws IOException {
+            switch (data.type()) {
+                case EMPTY:
+                    generator.writeNull();
+                    break;
+                case BOOL:
+                    generator.writeBoolean(data.asBool());
+                    break;
+                case LONG:
+                    generator.writeNumber(data.asLong());
+                    break;
+                case DOUBLE:
+                    if (Double.isFinite(data.asDouble()))
+                        generator.writeNumber(data.asDouble());
+                    else
+                        generator.writeNull();
+                    break;
+                case STRING:
+                    byte[] utf8 = data.asUtf8();
+                    generator.writeUTF8String(utf8, 0, utf8.length);
+                    break;
+                case DATA:
+                    JsonRender.StringEncoder encoder = new JsonRender.StringEncoder(new StringBuilder(), true);
+                    encoder.encode(data);
+                    generator.writeRawValue(encoder.target().toString());
+                    break;
+                case ARRAY:
+                    generator.writeStartArray();
+                    for (int i = 0; i < data.entryCount(); i++)
+                        renderData(data.entry(i));
+                    generator.writeEndArray();
+                    break;
+                case OBJECT:
+                    generator.writeStartObject();
+                    data.traverse(dataFieldRenderer);
+                    generator.writeEndObject();
+                    break;
+            }
+        }
+
+        private void renderDataField(String name, Inspector value) {
+            try {
+                generator.writeFieldName(name);
+                renderData(value);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static boolean isMap(Inspector data) {
+            if (data.type() != Type.ARRAY) return false;
+            if (data.entryCount() == 0) return false;
+            for (int i = 0; i < data.entryCount(); i++) {
+                Inspector obj = data.entry(i);
+                if (obj.type() != Type.OBJECT) return false;
+                if (obj.fieldCount() != 2) return false;
+                if (obj.field("key").type() != Type.STRING) return false;
+                if (! obj.field("value").valid()) return false;
+            }
+            return true;
+        }
+
+        static Inspector wrapAsMap(Inspector data) {
+            if ( ! isMap(data)) return null;
             Value.ObjectValue map = new Value.ObjectValue();
             for (int i = 0; i < data.entryCount(); i++) {
                 Inspector obj = data.entry(i);
-                if (obj.type() != Type.OBJECT) return null;
-                if (obj.fieldCount() != 2) return null;
-                Inspector key = obj.field("key");
-                Inspector value = obj.field("value");
-                if (key.type() != Type.STRING) return null;
-                if (! value.valid()) return null;
-                map.put(key.asString(), value);
+                map.put(obj.field("key").asString(), obj.field("value"));
             }
             return map;
         }
@@ -0,0 +1,330 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.yahoo.slime.ArrayInserter;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Injector;
+import com.yahoo.slime.Inserter;
+import com.yahoo.slime.ObjectInserter;
+import com.yahoo.slime.Slime;
+import com.yahoo.slime.SlimeInserter;
+import com.yahoo.slime.SlimeUtils;
+import com.yahoo.slime.Type;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A JSON generator which builds the generated structure as Slime, and writes it in the Slime binary format
+ * to the output stream when closed. Raw JSON text is parsed and inserted as the value it represents,
+ * so it must consist of complete values rather than fragments, and binary values are kept as binary data
+ * rather than being base64 encoded.
+ *
+ * This is not multithread safe.
+ */
+class SlimeGenerator extends GeneratorBase {
+
+    private final OutputStream stream;
+    private final Slime slime = new Slime();
+
+    /** The arrays and objects currently open, innermost first */
+    private final Deque<Cursor> containers = new ArrayDeque<>();
+
+    /** The name of the next value to add to the innermost object */
+    private String fieldName = null;
+
+    SlimeGenerator(OutputStream stream, ObjectCodec codec) {
+        super(JsonGenerator.Feature.collectDefaults(), codec);
+        this.stream = stream;
+    }
+
+    /** Returns the inserter of the next value */
+    private Inserter inserter() throws IOException {
+        Cursor container = containers.peek();
+        if (container == null) return new SlimeInserter(slime);
+        if (container.type() == Type.ARRAY) return new ArrayInserter(container);
+        if (fieldName == null)
+            throw new IOException("Attempted to write a value in an object without a field name");
+        String name = fieldName;
+        fieldName = null;
+        return new ObjectInserter(container, name);
+    }
+
+    @Override
+    public void writeStartArray() throws IOException {
+        containers.push(inserter().insertARRAY());
+    }
+
+    @Override
+    public void writeEndArray() throws IOException {
+        end(Type.ARRAY);
+    }
+
+    @Override
+    public void writeStartObject() throws IOException {
+        containers.push(inserter().insertOBJECT());
+    }
+
+    @Override
+    public void writeEndObject() throws IOException {
+        end(Type.OBJECT);
+    }
+
+    private void end(Type type) throws IOException {
+        if (containers.isEmpty() || containers.peek().type() != type)
+            throw new IOException("Attempted to end " + type + " while not in one");
+        containers.pop();
+    }
+
+    @Override
+    public void writeFieldName(String name) throws IOException {
+        if (containers.isEmpty() || containers.peek().type() != Type.OBJECT)
+            throw new IOException("Attempted to write field name '" + name + "' outside an object");
+        fieldName = name;
+    }
+
+    @Override
+    public void writeString(String text) throws IOException {
+        if (text == null)
+            writeNull();
+        else
+            inserter().insertSTRING(text);
+    }
+
+    @Override
+    public void writeString(char[] text, int offset, int length) throws IOException {
+        writeString(new String(text, offset, length));
+    }
+
+    @Override
+    public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+        writeUTF8String(text, offset, length);
+    }
+
+    @Override
+    public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+        if (offset == 0 && length == text.length)
+            inserter().insertSTRING(text);
+        else
+            inserter().insertSTRING(new String(text, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the given raw text and inserts the value it represents. As no text is generated,
+     * raw text must be a complete JSON value, and cannot be a fragment to combine with other output.
+     */
+    @Override
+    public void writeRaw(String text) throws IOException {
+        writeRawValue(text);
+    }
+
+    @Override
+    public void writeRaw(String text, int offset, int length) throws IOException {
+        writeRawValue(text, offset, length);
+    }
+
+    @Override
+    public void writeRaw(char[] text, int offset, int length) throws IOException {
+        writeRawValue(text, offset, length);
+    }
+
+    @Override
+    public void writeRaw(char c) throws IOException {
+        writeRawValue(String.valueOf(c));
+    }
+
+    /** Parses the given JSON and inserts the value it represents */
+    @Override
+    public void writeRawValue(String json) throws IOException {
+        new Injector().inject(SlimeUtils.jsonToSlime(json).get(), inserter());
+    }
+
+    @Override
+    public void writeRawValue(String json, int offset, int length) throws IOException {
+        writeRawValue(json.substring(offset, offset + length));
+    }
+
+    @Override
+    public void writeRawValue(char[] json, int offset, int length) throws IOException {
+        writeRawValue(new String(json, offset, length));
+    }
+
+    /** Inserts the given data as it is, without encoding it */
+    @Override
+    public void writeBinary(Base64Variant variant, byte[] data, int offset, int length) throws IOException {
+        if (offset == 0 && length == data.length)
+            inserter().insertDATA(data);
+        else
+            inserter().insertDATA(Arrays.copyOfRange(data, offset, offset + length));
+    }
+
+    /** Inserts the given data, keeping binary data such as tensors as it is */
+    void writeData(com.yahoo.data.access.Inspector data) throws IOException {
+        insert(data, inserter());
+    }
+
+    private static void insert(com.yahoo.data.access.Inspector data, Inserter inserter) {
+        switch (data.type()) {
+            case EMPTY: inserter.insertNIX(); break;
+            case BOOL: inserter.insertBOOL(data.asBool()); break;
+            case LONG: inserter.insertLONG(data.asLong()); break;
+            case DOUBLE:
+                if (Double.isFinite(data.asDouble()))
+                    inserter.insertDOUBLE(data.asDouble());
+                else // as rendered in JSON
+                    inserter.insertNIX();
+                break;
+            case STRING: inserter.insertSTRING(data.asUtf8()); break;
+            case DATA: inserter.insertDATA(data.asData()); break;
+            case ARRAY:
+                Cursor array = inserter.insertARRAY();
+                for (int i = 0; i < data.entryCount(); i++)
+                    insert(data.entry(i), new ArrayInserter(array));
+                break;
+            case OBJECT:
+                Cursor object = inserter.insertOBJECT();
+                for (var field : data.fields())
+                    insert(field.getValue(), new ObjectInserter(object, field.getKey()));
+                break;
+        }
+    }
+
+    /** Inserts the given tree by walking it, rather than by serializing it through the generator */
+    @Override
+    public void writeTree(TreeNode tree) throws IOException {
+        if (tree instanceof JsonNode)
+            insert((JsonNode) tree, inserter());
+        else
+            super.writeTree(tree);
+    }
+
+    private void insert(JsonNode node, Inserter inserter) throws IOException {
+        switch (node.getNodeType()) {
+            case MISSING:
+            case NULL: inserter.insertNIX(); break;
+            case BOOLEAN: inserter.insertBOOL(node.booleanValue()); break;
+            case NUMBER:
+                if (node.isIntegralNumber() && node.canConvertToLong())
+                    inserter.insertLONG(node.longValue());
+                else
+                    inserter.insertDOUBLE(node.doubleValue());
+                break;
+            case STRING: inserter.insertSTRING(node.textValue()); break;
+            case BINARY: inserter.insertDATA(node.binaryValue()); break;
+            case POJO: insertPojo(((POJONode) node).getPojo(), inserter); break;
+            case ARRAY:
+                Cursor array = inserter.insertARRAY();
+                for (JsonNode element : node)
+                    insert(element, new ArrayInserter(array));
+                break;
+            case OBJECT:
+                Cursor object = inserter.insertOBJECT();
+                for (Iterator<Map.Entry<String, JsonNode>> i = node.fields(); i.hasNext(); ) {
+                    Map.Entry<String, JsonNode> field = i.next();
+                    insert(field.getValue(), new ObjectInserter(object, field.getKey()));
+                }
+                break;
+        }
+    }
+
+    private void insertPojo(Object pojo, Inserter inserter) throws IOException {
+        if (pojo == null)
+            inserter.insertNIX();
+        else if (pojo instanceof byte[])
+            inserter.insertDATA((byte[]) pojo);
+        else if (getCodec() instanceof ObjectMapper)
+            insert(((ObjectMapper) getCodec()).<JsonNode>valueToTree(pojo), inserter);
+        else
+            inserter.insertSTRING(pojo.toString());
+    }
+
+    @Override
+    public void writeNumber(int value) throws IOException {
+        inserter().insertLONG(value);
+    }
+
+    @Override
+    public void writeNumber(long value) throws IOException {
+        inserter().insertLONG(value);
+    }
+
+    @Override
+    public void writeNumber(BigInteger value) throws IOException {
+        if (value == null)
+            writeNull();
+        else if (value.bitLength() < Long.SIZE)
+            inserter().insertLONG(value.longValue());
+        else
+            inserter().insertDOUBLE(value.doubleValue());
+    }
+
+    @Override
+    public void writeNumber(double value) throws IOException {
+        inserter().insertDOUBLE(value);
+    }
+
+    @Override
+    public void writeNumber(float value) throws IOException {
+        inserter().insertDOUBLE(value);
+    }
+
+    @Override
+    public void writeNumber(BigDecimal value) throws IOException {
+        if (value == null)
+            writeNull();
+        else
+            inserter().insertDOUBLE(value.doubleValue());
+    }
+
+    @Override
+    public void writeNumber(String encodedValue) throws IOException {
+        writeRawValue(encodedValue);
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        inserter().insertBOOL(value);
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        inserter().insertNIX();
+    }
+
+    /** Does nothing, as nothing is written to the stream until this is closed */
+    @Override
+    public void flush() { }
+
+    /** Writes the generated structure to the stream. This does not close the stream. */
+    @Override
+    public void close() throws IOException {
+        if (isClosed()) return;
+        super.close();
+        stream.write(BinaryFormat.encode(slime));
+        stream.flush();
+    }
+
+    @Override
+    protected void _releaseBuffers() { }
+
+    @Override
+    protected void _verifyValueWrite(String typeMsg) { }
+
+}
@@ -0,0 +1,105 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yahoo.data.access.Inspectable;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.document.datatypes.TensorFieldValue;
+import com.yahoo.search.result.FeatureData;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+/**
+ * Renders a search result in the Slime binary format, with the same structure as rendered by the
+ * {@link JsonRenderer}, such that clients can consume results without parsing text.
+ * Tensors and feature data tensors are rendered as data in the format of
+ * {@link com.yahoo.tensor.serialization.TypedBinaryFormat} rather than as JSON, and structured data
+ * is inserted as it is, keeping data values as binary, rather than going through JSON text.
+ */
+public class SlimeRenderer extends JsonRenderer {
+
+    private final ObjectMapper codec = createJsonCodec();
+
+    public SlimeRenderer() {
+        this(null);
+    }
+
+    /**
+     * Creates a slime renderer using a custom executor.
+     * Using a custom executor is useful for tests to avoid creating new threads for each renderer registry.
+     */
+    public SlimeRenderer(Executor executor) {
+        super(executor);
+    }
+
+    @Override
+    protected JsonGenerator createGenerator(OutputStream stream) {
+        return new SlimeGenerator(stream, codec);
+    }
+
+    @Override
+    protected FieldConsumer createFieldConsumer(JsonGenerator generator, boolean debugRendering) {
+        return new BinaryTensorFieldConsumer(generator, debugRendering);
+    }
+
+    @Override
+    protected boolean supportsJsonCallback() { return false; }
+
+    @Override
+    public String getEncoding() { return null; }
+
+    @Override
+    public String getMimeType() {
+        return "application/x-vespa-slime";
+    }
+
+    /** Renders tensors as binary data instead of JSON, and inserts structured data directly rather than as JSON text */
+    private static class BinaryTensorFieldConsumer extends FieldConsumer {
+
+        private final JsonGenerator generator;
+
+        BinaryTensorFieldConsumer(JsonGenerator generator, boolean debugRendering) {
+            super(generator, debugRendering);
+            this.generator = generator;
+        }
+
+        @Override
+        protected void renderFieldContents(Object field) throws IOException {
+            if (field instanceof Inspectable && ! (field instanceof FeatureData) && generator instanceof SlimeGenerator) {
+                Inspector data = ((Inspectable) field).inspect();
+                Inspector asMap = wrapAsMap(data);
+                ((SlimeGenerator) generator).writeData(asMap != null ? asMap : data);
+            }
+            else {
+                super.renderFieldContents(field);
+            }
+        }
+
+        @Override
+        public void accept(Object field) throws IOException {
+            if (field instanceof Tensor)
+                renderTensor(Optional.of((Tensor) field));
+            else if (field instanceof TensorFieldValue)
+                renderTensor(((TensorFieldValue) field).getTensor());
+            else if (field instanceof Inspectable && generator instanceof SlimeGenerator)
+                ((SlimeGenerator) generator).writeData(((Inspectable) field).inspect());
+            else
+                super.accept(field);
+        }
+
+        private void renderTensor(Optional<Tensor> tensor) throws IOException {
+            if (tensor.isPresent())
+                generator.writeBinary(TypedBinaryFormat.encode(tensor.get()));
+            else
+                generator.writeNull();
+        }
+
+    }
+
+}
@@ -38,10 +38,17 @@ public class MinimalQueryInserter extends Searcher {
 
     public static final CompoundName YQL = new CompoundName("yql");
 
+    /** Whether parsed YQL programs are cached, such that queries differing only by literals are parsed once */
+    public static final CompoundName YQL_PROGRAM_CACHE = new CompoundName("yqlProgramCache");
+
     private static final CompoundName MAX_HITS = new CompoundName("maxHits");
     private static final CompoundName MAX_OFFSET = new CompoundName("maxOffset");
     private static Logger log = Logger.getLogger(MinimalQueryInserter.class.getName());
 
+    private static final int programCacheMaxEntries = 1000;
+
+    private final ProgramCache programCache = new ProgramCache(programCacheMaxEntries);
+
     @Inject
     public MinimalQueryInserter(Linguistics linguistics) {
         // Warmup is needed to avoid a large 400ms init cost during first execution of yql code.
@@ -55,7 +62,7 @@ public class MinimalQueryInserter extends Searcher {
     }
     private static boolean warmup(Linguistics linguistics) {
         Query query = new Query("search/?yql=select%20*%20from%20sources%20where%20title%20contains%20'xyz';");
-        Result result = insertQuery(query, new ParserEnvironment().setLinguistics(linguistics));
+        Result result = insertQuery(query, new ParserEnvironment().setLinguistics(linguistics), null);
         if (result != null) {
             log.warning("Warmup code trigger an error. Error = " + result.toString());
             return false;
@@ -67,10 +74,12 @@ public class MinimalQueryInserter extends Searcher {
         return true;
     }
 
-    private static Result insertQuery(Query query, ParserEnvironment env) {
+    private static Result insertQuery(Query query, ParserEnvironment env, ProgramCache programCache) {
         YqlParser parser = (YqlParser) ParserFactory.newInstance(Query.Type.YQL, env);
         parser.setQueryParser(false);
         parser.setUserQuery(query);
+        if (programCache != null && query.properties().getBoolean(YQL_PROGRAM_CACHE, false))
+            parser.setProgramCache(programCache);
         QueryTree newTree;
         try {
             Parsable parsable = Parsable.fromQueryModel(query.getModel()).setQuery(query.properties().getString(YQL));
@@ -120,8 +129,10 @@ public class MinimalQueryInserter extends Searcher {
     public Result search(Query query, Execution execution) {
         if (query.properties().get(YQL) == null) return execution.search(query);
 
-        Result result = insertQuery(query, ParserEnvironment.fromExecutionContext(execution.context()));
+        Result result = insertQuery(query, ParserEnvironment.fromExecutionContext(execution.context()), programCache);
         return (result == null) ? execution.search(query) : result;
     }
 
+    ProgramCache programCache() { return programCache; }
+
 }
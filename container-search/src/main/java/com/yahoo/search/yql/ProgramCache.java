@@ -0,0 +1,260 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cache of parsed YQL programs. Programs which differ only by the values of their literals share an entry:
+ * The entry is found by the tokens of the program with the literals left out, and the cached syntax tree is
+ * returned with the literals of the program parsed bound into it.
+ *
+ * The literals which are not represented by a literal node in the syntax tree, such as the keys of maps and
+ * the values of annotations, are part of the key of the entry, such that programs with different such values
+ * have different entries.
+ *
+ * This class is multithread safe.
+ */
+final class ProgramCache {
+
+    private final int maxEntries;
+
+    /** The indexes of the literals which are bound into the syntax tree, by template */
+    private final Map<String, BitSet> boundLiterals;
+
+    /** The parsed programs, by template and the literals which are not bound */
+    private final Map<String, Program> programs;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    ProgramCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.boundLiterals = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BitSet> eldest) { return size() > maxEntries; }
+        };
+        this.programs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Program> eldest) { return size() > maxEntries; }
+        };
+    }
+
+    /** Returns the syntax tree of the given program, from this cache if possible */
+    OperatorNode<StatementOperator> parse(String programName, String program) throws IOException, RecognitionException {
+        if (maxEntries <= 0) return new ProgramParser().parse(programName, program);
+
+        Template template = Template.of(program);
+        if (template == null) return new ProgramParser().parse(programName, program); // let the parser report the error
+
+        BitSet bound;
+        Program cached = null;
+        synchronized (this) {
+            bound = boundLiterals.get(template.key);
+            if (bound != null)
+                cached = programs.get(template.keyWithLiteralsExcept(bound));
+            if (cached == null)
+                misses++;
+            else
+                hits++;
+        }
+        if (cached != null) {
+            try {
+                return cached.bind(template.literals);
+            }
+            catch (IllegalArgumentException e) {
+                // a literal could not be converted: let the parser report the error
+            }
+        }
+
+        OperatorNode<StatementOperator> ast = new ProgramParser().parse(programName, program);
+        Program parsed = Program.of(ast, template.literals);
+        synchronized (this) {
+            boundLiterals.put(template.key, parsed.bound);
+            programs.put(template.keyWithLiteralsExcept(parsed.bound), parsed);
+        }
+        return ast;
+    }
+
+    synchronized int size() { return programs.size(); }
+
+    synchronized long hits() { return hits; }
+
+    synchronized long misses() { return misses; }
+
+    private static boolean isLiteral(Token token) {
+        switch (token.getType()) {
+            case yqlplusParser.INT:
+            case yqlplusParser.LONG_INT:
+            case yqlplusParser.FLOAT:
+            case yqlplusParser.STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Returns the value of a literal token, as converted by the program parser */
+    private static Object valueOf(Token token) {
+        String text = token.getText();
+        switch (token.getType()) {
+            case yqlplusParser.INT: return Integer.valueOf(text);
+            case yqlplusParser.LONG_INT: return Long.parseLong(text.substring(0, text.length() - 1));
+            case yqlplusParser.FLOAT: return Double.valueOf(text);
+            case yqlplusParser.STRING: return StringUnescaper.unquote(text);
+            default: throw new IllegalArgumentException("Not a literal: " + token);
+        }
+    }
+
+    /** The tokens of a program, with the literals left out of the key */
+    private static class Template {
+
+        private final String key;
+        private final List<Token> literals;
+
+        private Template(String key, List<Token> literals) {
+            this.key = key;
+            this.literals = literals;
+        }
+
+        /** Returns the template of the given program, or null if it cannot be tokenized */
+        static Template of(String program) {
+            try {
+                yqlplusLexer lexer = new yqlplusLexer(new CaseInsensitiveInputStream(program));
+                lexer.removeErrorListeners();
+                lexer.addErrorListener(new BaseErrorListener() {
+                    @Override
+                    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                            int charPositionInLine, String msg, RecognitionException e) {
+                        throw new IllegalArgumentException(msg);
+                    }
+                });
+                StringBuilder key = new StringBuilder();
+                List<Token> literals = new ArrayList<>();
+                for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+                    if (token.getChannel() != Token.DEFAULT_CHANNEL) continue;
+                    key.append(token.getType());
+                    if (isLiteral(token))
+                        literals.add(token);
+                    else
+                        key.append(':').append(token.getText());
+                    key.append(' ');
+                }
+                return new Template(key.toString(), literals);
+            }
+            catch (IOException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        /** Returns the key of this with the literals which are not bound into the syntax tree added */
+        String keyWithLiteralsExcept(BitSet bound) {
+            StringBuilder key = new StringBuilder(this.key);
+            for (int i = 0; i < literals.size(); i++) {
+                if ( ! bound.get(i))
+                    key.append('\n').append(i).append(':').append(literals.get(i).getText().length())
+                       .append(':').append(literals.get(i).getText());
+            }
+            return key.toString();
+        }
+
+    }
+
+    /** A parsed program, and which literal in the template each literal node in it is bound to */
+    private static class Program {
+
+        private final OperatorNode<StatementOperator> ast;
+        private final Map<OperatorNode<?>, Integer> literalIndexes;
+        private final BitSet bound;
+
+        private Program(OperatorNode<StatementOperator> ast, Map<OperatorNode<?>, Integer> literalIndexes, BitSet bound) {
+            this.ast = ast;
+            this.literalIndexes = literalIndexes;
+            this.bound = bound;
+        }
+
+        /** Finds the literal nodes of the given syntax tree by matching their locations to those of the literal tokens */
+        static Program of(OperatorNode<StatementOperator> ast, List<Token> literals) {
+            Map<Long, Integer> indexByPosition = new HashMap<>();
+            for (int i = 0; i < literals.size(); i++)
+                indexByPosition.put(position(literals.get(i).getLine(), literals.get(i).getCharPositionInLine()), i);
+
+            Map<OperatorNode<?>, Integer> literalIndexes = new IdentityHashMap<>();
+            BitSet bound = new BitSet();
+            ast.visit(new OperatorVisitor() {
+                @Override
+                public <T extends Operator> boolean enter(OperatorNode<T> node) {
+                    if (node.getOperator() != ExpressionOperator.LITERAL || node.getLocation() == null) return true;
+                    Integer index = indexByPosition.get(position(node.getLocation().getLineNumber(),
+                                                                 node.getLocation().getCharacterOffset()));
+                    if (index != null) {
+                        literalIndexes.put(node, index);
+                        bound.set(index);
+                    }
+                    return true;
+                }
+
+                @Override
+                public <T extends Operator> void exit(OperatorNode<T> node) { }
+            });
+            return new Program(ast, literalIndexes, bound);
+        }
+
+        private static long position(int line, int offset) {
+            return ((long) line << 32) | offset;
+        }
+
+        /** Returns a copy of the syntax tree of this with the given literals bound into it */
+        @SuppressWarnings("unchecked")
+        OperatorNode<StatementOperator> bind(List<Token> literals) {
+            return (OperatorNode<StatementOperator>) bind(ast, literals);
+        }
+
+        private Object bind(Object value, List<Token> literals) {
+            if (value instanceof OperatorNode)
+                return bind((OperatorNode<?>) value, literals);
+            if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                List<Object> boundList = null;
+                for (int i = 0; i < list.size(); i++) {
+                    Object element = bind(list.get(i), literals);
+                    if (element != list.get(i) && boundList == null)
+                        boundList = new ArrayList<>(list.subList(0, i));
+                    if (boundList != null)
+                        boundList.add(element);
+                }
+                return boundList == null ? list : boundList;
+            }
+            return value;
+        }
+
+        private <T extends Operator> OperatorNode<T> bind(OperatorNode<T> node, List<Token> literals) {
+            Integer literalIndex = literalIndexes.get(node);
+            if (literalIndex != null)
+                return OperatorNode.create(node.getLocation(), node.getAnnotations(), node.getOperator(),
+                                           valueOf(literals.get(literalIndex)));
+
+            Object[] arguments = node.getArguments();
+            boolean changed = false;
+            for (int i = 0; i < arguments.length; i++) {
+                Object argument = bind(arguments[i], literals);
+                changed |= argument != arguments[i];
+                arguments[i] = argument;
+            }
+            return changed ? OperatorNode.create(node.getLocation(), node.getAnnotations(), node.getOperator(), arguments) : node;
+        }
+
+    }
+
+}
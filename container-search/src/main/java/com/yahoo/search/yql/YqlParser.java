@@ -202,6 +202,7 @@ public class YqlParser implements Parser {
     private Set<String> docTypes;
     private Sorting sorting;
     private boolean queryParser = true;
+    private ProgramCache programCache = null;
     private final Deque<OperatorNode<?>> annotationStack = new ArrayDeque<>();
     private final ParserEnvironment environment;
 
@@ -741,7 +742,8 @@ public class YqlParser implements Parser {
     private OperatorNode<?> parseYqlProgram() {
         OperatorNode<?> ast;
         try {
-            ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
+            ast = programCache != null ? programCache.parse("query", currentlyParsing.getQuery())
+                                       : new ProgramParser().parse("query", currentlyParsing.getQuery());
         } catch (Exception e) {
             throw new IllegalArgumentException(e);
         }
@@ -1493,6 +1495,9 @@ public class YqlParser implements Parser {
     @Beta
     public void setUserQuery(Query userQuery) { this.userQuery = userQuery; }
 
+    /** Sets the cache to look up and add parsed programs in, or null (the default) to parse every program */
+    void setProgramCache(ProgramCache programCache) { this.programCache = programCache; }
+
     @Beta
     public Set<String> getYqlSummaryFields() { return yqlSummaryFields; }
 
@@ -125,6 +125,17 @@ public class DispatcherTest {
             }
         }
 
+        @Override
+        public Optional<SearchInvoker> createSearchInvoker(VespaBackEndSearcher searcher,
+                                                           Query query,
+                                                           OptionalInt groupId,
+                                                           List<Node> nodes,
+                                                           boolean acceptIncompleteCoverage,
+                                                           int maxHitsPerNode,
+                                                           Hedge hedge) {
+            return createSearchInvoker(searcher, query, groupId, nodes, acceptIncompleteCoverage, maxHitsPerNode);
+        }
+
         void verifyAllEventsProcessed() {
             assertEquals(events.length, step);
         }
@@ -5,6 +5,7 @@ import com.yahoo.document.GlobalId;
 import com.yahoo.document.idstring.IdString;
 import com.yahoo.prelude.fastsearch.FastHit;
 import com.yahoo.prelude.fastsearch.GroupingListHit;
+import com.yahoo.prelude.fastsearch.test.MockMetric;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
@@ -270,6 +271,18 @@ public class InterleavedSearchInvokerTest {
         assertEquals(3, result.getQuery().getHits());
     }
 
+    @Test
+    public void requireThatMergeOfConcreteHitsRemovesDuplicates() throws IOException {
+        InterleavedSearchInvoker invoker = createInterLeavedTestInvoker(A5, A5);
+        query.setHits(4);
+        Result result = invoker.search(query, null);
+        assertEquals(4, result.hits().size());
+        assertEquals(11.0, result.hits().get(0).getRelevance().getScore(), DELTA);
+        assertEquals(8.5, result.hits().get(1).getRelevance().getScore(), DELTA);
+        assertEquals(7.5, result.hits().get(2).getRelevance().getScore(), DELTA);
+        assertEquals(3.0, result.hits().get(3).getRelevance().getScore(), DELTA);
+    }
+
     private static InterleavedSearchInvoker createInterLeavedTestInvoker(List<Double> a, List<Double> b) {
         SearchCluster cluster = new MockSearchCluster("!", 1, 2);
         List<SearchInvoker> invokers = new ArrayList<>();
@@ -321,12 +334,78 @@ public class InterleavedSearchInvokerTest {
         assertThat(cov.isDegradedByTimeout(), is(true));
     }
 
+    @Test
+    public void requireThatHedgedRequestIsUsedWhenItCompletesFirst() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 2, 2);
+        invokers.add(new MockInvoker(0, createCoverage(50000, 50000, 50000, 1, 1, 0)));
+        invokers.add(new MockInvoker(1, createCoverage(50000, 50000, 50000, 1, 1, 0)));
+        invokers.add(new MockInvoker(2, createCoverage(40000, 40000, 40000, 1, 1, 0)));
+        invokers.add(new MockInvoker(3, createCoverage(60000, 60000, 60000, 1, 1, 0)));
+        List<Boolean> released = new ArrayList<>();
+        Hedge hedge = new Hedge(100,
+                                () -> Optional.of(new Hedge.Target(1, invokers.subList(2, 4), (won, time) -> released.add(won))),
+                                new MockMetric(), null);
+        SearchInvoker invoker = createInterleavedInvoker(cluster, invokers.subList(0, 2), hedge);
+        List<Boolean> originalReleased = new ArrayList<>();
+        invoker.teardown((success, time) -> originalReleased.add(success));
+
+        expectedEvents.add(new Event(100, 50, 0));
+        expectedEvents.add(new Event(50, 50, null));
+        expectedEvents.add(new Event(4900, 10, 2));
+        expectedEvents.add(new Event(null, 10, 3));
+
+        Result result = invoker.search(query, null);
+        invoker.close();
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertEquals(List.of(true), released);
+        assertEquals("The time of the original group is recorded", List.of(true), originalReleased);
+        Coverage cov = result.getCoverage(true);
+        assertThat(cov.getDocs(), is(100000L));
+        assertThat(cov.getNodes(), is(2));
+        assertThat(cov.getNodesTried(), is(2));
+        assertThat(cov.getFull(), is(true));
+        assertThat(cov.isDegradedByTimeout(), is(false));
+    }
+
+    @Test
+    public void requireThatHedgedRequestIsReleasedWhenOriginalRequestCompletesFirst() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 2, 2);
+        invokers.add(new MockInvoker(0, createCoverage(50000, 50000, 50000, 1, 1, 0)));
+        invokers.add(new MockInvoker(1, createCoverage(50000, 50000, 50000, 1, 1, 0)));
+        invokers.add(new MockInvoker(2, createCoverage(40000, 40000, 40000, 1, 1, 0)));
+        invokers.add(new MockInvoker(3, createCoverage(60000, 60000, 60000, 1, 1, 0)));
+        List<Boolean> released = new ArrayList<>();
+        Hedge hedge = new Hedge(100,
+                                () -> Optional.of(new Hedge.Target(1, invokers.subList(2, 4), (won, time) -> released.add(won))),
+                                new MockMetric(), null);
+        SearchInvoker invoker = createInterleavedInvoker(cluster, invokers.subList(0, 2), hedge);
+
+        expectedEvents.add(new Event(100, 50, 0));
+        expectedEvents.add(new Event(50, 50, null));
+        expectedEvents.add(new Event(4900, 10, 2));
+        expectedEvents.add(new Event(null, 10, 1));
+
+        Result result = invoker.search(query, null);
+        invoker.close();
+
+        assertTrue("All test scenario events processed", expectedEvents.isEmpty());
+        assertEquals(List.of(false), released);
+        Coverage cov = result.getCoverage(true);
+        assertThat(cov.getDocs(), is(100000L));
+        assertThat(cov.getNodes(), is(2));
+        assertThat(cov.getNodesTried(), is(2));
+    }
+
     private InterleavedSearchInvoker createInterleavedInvoker(SearchCluster searchCluster, int numInvokers) {
         for (int i = 0; i < numInvokers; i++) {
             invokers.add(new MockInvoker(i));
         }
+        return createInterleavedInvoker(searchCluster, invokers, null);
+    }
 
-        return new InterleavedSearchInvoker(invokers, searchCluster, null) {
+    private InterleavedSearchInvoker createInterleavedInvoker(SearchCluster searchCluster, List<SearchInvoker> invokers, Hedge hedge) {
+        return new InterleavedSearchInvoker(invokers, searchCluster, null, hedge) {
             @Override
             protected long currentTime() {
                 return clock.millis();
@@ -2,6 +2,7 @@
 package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.LoadBalancer.AdaptiveScheduler;
+import com.yahoo.search.dispatch.LoadBalancer.BestOfRandom2Scheduler;
 import com.yahoo.search.dispatch.LoadBalancer.GroupStatus;
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
@@ -14,6 +15,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 
 import static com.yahoo.search.dispatch.MockSearchCluster.createDispatchConfig;
 import static org.hamcrest.Matchers.closeTo;
@@ -186,4 +188,40 @@ public class LoadBalancerTest {
             }
         };
     }
+
+    @Test
+    public void requireThatBestOfRandom2SchedulerAvoidsGroupWithSlowNode() {
+        Node slow = new Node(0, "test-node1", 0);
+        Node fast1 = new Node(1, "test-node2", 0);
+        Node fast2 = new Node(2, "test-node3", 1);
+        Node fast3 = new Node(3, "test-node4", 1);
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        scoreboard.add(new GroupStatus(new Group(0, List.of(slow, fast1))));
+        scoreboard.add(new GroupStatus(new Group(1, List.of(fast2, fast3))));
+        for (int i = 0; i < 100; i++) {
+            for (Node node : List.of(slow, fast1, fast2, fast3)) {
+                node.querySent();
+                node.queryCompleted(node == slow ? 200 : 10);
+            }
+        }
+        BestOfRandom2Scheduler scheduler = new BestOfRandom2Scheduler(new Random(1), scoreboard);
+        for (int i = 0; i < 10; i++)
+            assertThat(scheduler.takeNextGroup(null).get().groupId(), equalTo(1));
+        assertThat(scheduler.takeNextGroup(Set.of(1)).get().groupId(), equalTo(0));
+    }
+
+    @Test
+    public void requireThatBestOfRandom2SchedulerAvoidsGroupWithPendingQueries() {
+        Node busy = new Node(0, "test-node1", 0);
+        Node idle = new Node(1, "test-node2", 1);
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        scoreboard.add(new GroupStatus(new Group(0, List.of(busy))));
+        scoreboard.add(new GroupStatus(new Group(1, List.of(idle))));
+        busy.querySent();
+        busy.querySent();
+        BestOfRandom2Scheduler scheduler = new BestOfRandom2Scheduler(new Random(1), scoreboard);
+        for (int i = 0; i < 10; i++)
+            assertThat(scheduler.takeNextGroup(null).get().groupId(), equalTo(1));
+    }
+
 }
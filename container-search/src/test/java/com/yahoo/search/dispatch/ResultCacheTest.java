@@ -0,0 +1,152 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.prelude.fastsearch.test.MockMetric;
+import com.yahoo.search.Query;
+import com.yahoo.search.grouping.GroupingRequest;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResultCacheTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final AtomicLong generation = new AtomicLong(0);
+
+    @Test
+    public void requireThatEqualQueriesHaveEqualKeys() {
+        assertEquals(ResultCache.keyOf(new Query("?query=foo&timeout=1s")), ResultCache.keyOf(new Query("?query=foo&timeout=2s")));
+        assertNotEquals(ResultCache.keyOf(new Query("?query=foo")), ResultCache.keyOf(new Query("?query=bar")));
+        assertNotEquals(ResultCache.keyOf(new Query("?query=foo&hits=10")), ResultCache.keyOf(new Query("?query=foo&hits=20")));
+        assertNotEquals(ResultCache.keyOf(new Query("?query=foo")), ResultCache.keyOf(new Query("?query=foo&ranking=other")));
+    }
+
+    @Test
+    public void requireThatCachedResultsAreReturned() {
+        ResultCache cache = createCache(10);
+        Query query = new Query("?query=foo");
+        ResultCache.Key key = ResultCache.keyOf(query);
+        assertTrue(cache.get(key, query).isEmpty());
+
+        cache.put(key, createResult(query, 3));
+        Optional<InvokerResult> cached = cache.get(key, new Query("?query=foo"));
+        assertTrue(cached.isPresent());
+        assertEquals(3, cached.get().getLeanHits().size());
+        assertEquals(17, cached.get().getResult().getTotalHitCount());
+        assertEquals(100, cached.get().getResult().getCoverage(false).getActive());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void requireThatEntriesExpire() {
+        ResultCache cache = createCache(10);
+        Query query = new Query("?query=foo");
+        ResultCache.Key key = ResultCache.keyOf(query);
+        cache.put(key, createResult(query, 3));
+        clock.advance(Duration.ofMillis(999));
+        assertTrue(cache.get(key, query).isPresent());
+        clock.advance(Duration.ofMillis(1));
+        assertTrue(cache.get(key, query).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void requireThatEntriesAreInvalidatedByGenerationChange() {
+        ResultCache cache = createCache(10);
+        Query query = new Query("?query=foo");
+        ResultCache.Key key = ResultCache.keyOf(query);
+        cache.put(key, createResult(query, 3));
+        generation.incrementAndGet();
+        assertTrue(cache.get(key, query).isEmpty());
+    }
+
+    @Test
+    public void requireThatLeastRecentlyUsedEntriesAreEvicted() {
+        ResultCache cache = createCache(2);
+        Query foo = new Query("?query=foo");
+        Query bar = new Query("?query=bar");
+        Query baz = new Query("?query=baz");
+        cache.put(ResultCache.keyOf(foo), createResult(foo, 1));
+        cache.put(ResultCache.keyOf(bar), createResult(bar, 1));
+        assertTrue(cache.get(ResultCache.keyOf(foo), foo).isPresent());
+        cache.put(ResultCache.keyOf(baz), createResult(baz, 1));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        assertTrue(cache.get(ResultCache.keyOf(foo), foo).isPresent());
+        assertTrue(cache.get(ResultCache.keyOf(bar), bar).isEmpty());
+    }
+
+    @Test
+    public void requireThatCachedInvokersOnlyResetTheOffsetIfProducingTheResultDid() throws IOException {
+        ResultCache cache = createCache(10);
+        Query merged = new Query("?query=foo&offset=5");
+        ResultCache.Key mergedKey = ResultCache.keyOf(merged);
+        merged.setOffset(0); // as done when merging hits from several nodes
+        cache.put(mergedKey, createResult(merged, 3));
+        Query single = new Query("?query=bar&offset=5");
+        cache.put(ResultCache.keyOf(single), createResult(single, 3));
+
+        Query query = new Query("?query=foo&offset=5");
+        cache.invokerOf(ResultCache.keyOf(query), query).get().search(query, null);
+        assertEquals(0, query.getOffset());
+
+        query = new Query("?query=bar&offset=5");
+        cache.invokerOf(ResultCache.keyOf(query), query).get().search(query, null);
+        assertEquals(5, query.getOffset());
+    }
+
+    @Test
+    public void requireThatIncompleteResultsAreNotCached() {
+        ResultCache cache = createCache(10);
+        Query query = new Query("?query=foo");
+        ResultCache.Key key = ResultCache.keyOf(query);
+
+        InvokerResult degraded = createResult(query, 3);
+        degraded.getResult().setCoverage(new Coverage(50, 100, 1));
+        cache.put(key, degraded);
+        assertEquals(0, cache.size());
+
+        InvokerResult error = createResult(query, 3);
+        error.getResult().hits().addError(ErrorMessage.createTimeout("timeout"));
+        cache.put(key, error);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void requireThatOnlyPlainQueriesAreCacheable() {
+        assertTrue(ResultCache.isCacheable(new Query("?query=foo")));
+        assertFalse(ResultCache.isCacheable(new Query("?query=foo&tracelevel=1")));
+        assertFalse(ResultCache.isCacheable(new Query("?query=foo&model.searchPath=0/0")));
+
+        Query grouping = new Query("?query=foo");
+        GroupingRequest.newInstance(grouping);
+        assertFalse(ResultCache.isCacheable(grouping));
+    }
+
+    private ResultCache createCache(int maxEntries) {
+        return new ResultCache(maxEntries, 1.0, generation::get, clock, new MockMetric());
+    }
+
+    private static InvokerResult createResult(Query query, int hits) {
+        InvokerResult result = new InvokerResult(query, hits);
+        result.getResult().setTotalHitCount(17);
+        result.getResult().setCoverage(new Coverage(100, 100, 1));
+        for (int i = 0; i < hits; i++)
+            result.getLeanHits().add(new LeanHit(new byte[] { 'a', (byte)i }, 0, 1, hits - i));
+        return result;
+    }
+
+}
@@ -0,0 +1,94 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import com.yahoo.prelude.fastsearch.test.MockMetric;
+import com.yahoo.search.Query;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DocsumCacheTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final AtomicLong generation = new AtomicLong(0);
+
+    @Test
+    public void requireThatCachedSummariesAreReturned() {
+        DocsumCache cache = createCache(10000);
+        assertTrue(cache.get("music", "default", gid(1)).isEmpty());
+
+        cache.put("music", "default", gid(1), summary("title", "one"));
+        Optional<Inspector> cached = cache.get("music", "default", gid(1));
+        assertTrue(cached.isPresent());
+        assertEquals("one", cached.get().field("title").asString());
+        assertTrue(cache.get("music", "other", gid(1)).isEmpty());
+        assertTrue(cache.get("books", "default", gid(1)).isEmpty());
+        assertTrue(cache.get("music", "default", gid(2)).isEmpty());
+        assertEquals(1, cache.hits());
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    public void requireThatEntriesAreInvalidatedByTimeAndGeneration() {
+        DocsumCache cache = createCache(10000);
+        cache.put("music", "default", gid(1), summary("title", "one"));
+        clock.advance(Duration.ofMillis(9999));
+        assertTrue(cache.get("music", "default", gid(1)).isPresent());
+        clock.advance(Duration.ofMillis(1));
+        assertTrue(cache.get("music", "default", gid(1)).isEmpty());
+
+        cache.put("music", "default", gid(1), summary("title", "one"));
+        generation.incrementAndGet();
+        assertTrue(cache.get("music", "default", gid(1)).isEmpty());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    public void requireThatLeastRecentlyUsedEntriesAreEvictedWhenFull() {
+        DocsumCache cache = createCache(1000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("music", "default", gid(i), summary("title", "title " + i));
+            cache.get("music", "default", gid(0));
+        }
+        assertTrue(cache.bytes() <= 1000);
+        assertTrue(cache.evictions() > 0);
+        assertTrue(cache.get("music", "default", gid(0)).isPresent());
+        assertTrue(cache.get("music", "default", gid(1)).isEmpty());
+        assertTrue(cache.get("music", "default", gid(99)).isPresent());
+    }
+
+    @Test
+    public void requireThatOnlyQueryIndependentSummariesAreCacheable() {
+        assertTrue(DocsumCache.isCacheable(new Query("?query=foo"), false));
+        assertFalse(DocsumCache.isCacheable(new Query("?query=foo"), true));
+        assertFalse(DocsumCache.isCacheable(new Query("?query=foo&ranking.queryCache=true"), false));
+        assertFalse(DocsumCache.isCacheable(new Query("?query=foo&ranking.listFeatures=true"), false));
+    }
+
+    private DocsumCache createCache(long maxBytes) {
+        return new DocsumCache(maxBytes, 10.0, generation::get, clock, new MockMetric());
+    }
+
+    private static byte[] gid(int i) {
+        return new byte[] { 'g', 'i', 'd', (byte)i };
+    }
+
+    private static Inspector summary(String field, String value) {
+        Slime slime = new Slime();
+        Cursor summary = slime.setObject();
+        summary.setString(field, value);
+        return slime.get();
+    }
+
+}
@@ -0,0 +1,175 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
+import com.yahoo.document.GlobalId;
+import com.yahoo.document.idstring.IdString;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumDefinitionSet;
+import com.yahoo.prelude.fastsearch.DocsumField;
+import com.yahoo.prelude.fastsearch.DocumentDatabase;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.test.MockMetric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Relevance;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DocsumCoalescerTest {
+
+    private final MockNodeConnection connection = new MockNodeConnection();
+    private final MockNodeConnection connection1 = new MockNodeConnection();
+    private final RpcResourcePool resourcePool = new RpcResourcePool(Map.of(0, connection, 1, connection1));
+
+    @Test
+    public void requireThatRequestsAreCoalescedAndRepliesSplit() throws InvalidProtocolBufferException {
+        DocsumCoalescer coalescer = new DocsumCoalescer(resourcePool, 10.0, 4, new MockMetric());
+        Query query = new Query("?query=foo&timeout=30s");
+        List<Docsums> received = new ArrayList<>();
+
+        coalescer.request(0, docsumRequest(query, "summary"), hits(0, 2), query, (response, hits) -> received.add(response.response().get()));
+        assertEquals(0, connection.requests.size());
+        coalescer.request(0, docsumRequest(query, "summary"), hits(2, 2), query, (response, hits) -> received.add(response.response().get()));
+        assertEquals(1, connection.requests.size());
+        assertEquals(4, connection.requests.get(0).getGlobalIdsCount());
+
+        assertEquals(2, received.size());
+        assertEquals(0, received.get(0).offset());
+        assertEquals(2, received.get(1).offset());
+        assertEquals(2, received.get(1).root().field("docsums").entry(received.get(1).offset()).field("docsum").field("index").asLong());
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void requireThatDifferentRequestsAreNotCoalesced() throws InterruptedException {
+        DocsumCoalescer coalescer = new DocsumCoalescer(resourcePool, 0.001, 400, new MockMetric());
+        Query query = new Query("?query=foo&timeout=30s");
+        CountDownLatch received = new CountDownLatch(2);
+
+        coalescer.request(0, docsumRequest(query, "summary1"), hits(0, 1), query, (response, hits) -> received.countDown());
+        coalescer.request(0, docsumRequest(query, "summary2"), hits(1, 1), query, (response, hits) -> received.countDown());
+        assertTrue(received.await(60, TimeUnit.SECONDS));
+        assertEquals(2, connection.requests.size());
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void requireThatFillsFromSeveralNodesAreCoalescedWithTheTimeoutOfTheQuery() {
+        DocsumCoalescer coalescer = new DocsumCoalescer(resourcePool, 0.001, 400, new MockMetric());
+        RpcProtobufFillInvoker invoker = new RpcProtobufFillInvoker(resourcePool, documentDatabase(), "server", false,
+                                                                    Optional.of(coalescer), Optional.empty());
+        Query query = new Query("?query=foo&timeout=30s");
+        Result result = new Result(query);
+        List<FastHit> hits = new ArrayList<>();
+        hits.addAll(hits(0, 2, 0));
+        hits.addAll(hits(2, 3, 1));
+        hits.forEach(hit -> result.hits().add(hit));
+
+        invoker.fill(result, "summary");
+
+        assertNull(result.hits().getError());
+        for (FastHit hit : hits)
+            assertTrue(hit.isFilled("summary"));
+        for (MockNodeConnection node : List.of(connection, connection1)) {
+            assertEquals(1, node.requests.size());
+            assertTrue("Request timeout is the time left of the query: " + node.requests.get(0).getTimeout(),
+                       node.requests.get(0).getTimeout() > 20000);
+            assertTrue("Rpc timeout is the time left of the query: " + node.timeoutSeconds.get(0),
+                       node.timeoutSeconds.get(0) > 20);
+        }
+        assertEquals(2, connection.requests.get(0).getGlobalIdsCount());
+        assertEquals(3, connection1.requests.get(0).getGlobalIdsCount());
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void requireThatQueriesNeedingQueryDataAreNotAccepted() {
+        DocsumCoalescer coalescer = new DocsumCoalescer(resourcePool, 0.001, 400, new MockMetric());
+        assertTrue(coalescer.accepts(new Query("?query=foo&timeout=30s"), false));
+        assertFalse(coalescer.accepts(new Query("?query=foo&timeout=30s"), true));
+        assertFalse(coalescer.accepts(new Query("?query=foo&timeout=30s&ranking.queryCache=true"), false));
+        coalescer.shutdown();
+    }
+
+    private static SearchProtocol.DocsumRequest.Builder docsumRequest(Query query, String summaryClass) {
+        return ProtobufSerialization.createDocsumRequestBuilder(query, "server", summaryClass, false);
+    }
+
+    private static List<FastHit> hits(int first, int count) {
+        return hits(first, count, 0);
+    }
+
+    private static List<FastHit> hits(int first, int count, int nodeId) {
+        List<FastHit> hits = new ArrayList<>();
+        for (int i = first; i < first + count; i++)
+            hits.add(new FastHit(new GlobalId(IdString.createIdString("id:test:test::" + i)).getRawId(), new Relevance(1.0), nodeId, nodeId));
+        return hits;
+    }
+
+    private static DocumentDatabase documentDatabase() {
+        DocsumDefinition summary = new DocsumDefinition("summary", List.of(DocsumField.create("index", "int64")));
+        return new DocumentDatabase("test", new DocsumDefinitionSet(List.of(summary)), Set.of());
+    }
+
+    /** Returns a docsum for each requested document, containing its index in the request */
+    private static class MockNodeConnection implements Client.NodeConnection {
+
+        private final Compressor compressor = new Compressor();
+        private final List<SearchProtocol.DocsumRequest> requests = new ArrayList<>();
+        private final List<Double> timeoutSeconds = new ArrayList<>();
+
+        @Override
+        public void getDocsums(List<FastHit> hits, CompressionType compression, int uncompressedLength, byte[] compressedSlime,
+                               RpcFillInvoker.GetDocsumsResponseReceiver responseReceiver, double timeoutSeconds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized void request(String rpcMethod, CompressionType compression, int uncompressedLength, byte[] compressedPayload,
+                                         Client.ResponseReceiver responseReceiver, double timeoutSeconds) {
+            try {
+                var request = SearchProtocol.DocsumRequest.parseFrom(compressor.decompress(compressedPayload, compression, uncompressedLength));
+                requests.add(request);
+                this.timeoutSeconds.add(timeoutSeconds);
+
+                Slime slime = new Slime();
+                Cursor docsums = slime.setObject().setArray("docsums");
+                for (int i = 0; i < request.getGlobalIdsCount(); i++)
+                    docsums.addObject().setObject("docsum").setLong("index", i);
+                byte[] payload = SearchProtocol.DocsumReply.newBuilder()
+                                                           .setSlimeSummaries(ByteString.copyFrom(BinaryFormat.encode(slime)))
+                                                           .build().toByteArray();
+                responseReceiver.receive(Client.ResponseOrError.fromResponse(
+                        new Client.ProtobufResponse(CompressionType.NONE.getCode(), payload.length, payload)));
+            }
+            catch (InvalidProtocolBufferException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        public void close() { }
+
+    }
+
+}
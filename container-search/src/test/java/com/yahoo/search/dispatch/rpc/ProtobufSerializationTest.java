@@ -17,6 +17,7 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
@@ -59,9 +60,9 @@ public class ProtobufSerializationTest {
         return reply.build();
     }
     @Test
-    public void testSearhReplyDecodingWithRelevance() {
+    public void testSearhReplyDecodingWithRelevance() throws IOException {
         Query q = new Query("search/?query=test");
-        InvokerResult result = ProtobufSerialization.convertToResult(q, createSearchReply(5, false), null, 1, 2);
+        InvokerResult result = ProtobufSerialization.convertToResult(q, createSearchReply(5, false).toByteArray(), null, 1, 2);
         assertEquals(result.getResult().getTotalHitCount(), 7);
         List<LeanHit> hits = result.getLeanHits();
         assertEquals(5, hits.size());
@@ -78,9 +79,9 @@ public class ProtobufSerializationTest {
         }
     }
     @Test
-    public void testSearhReplyDecodingWithSortData() {
+    public void testSearhReplyDecodingWithSortData() throws IOException {
         Query q = new Query("search/?query=test");
-        InvokerResult result = ProtobufSerialization.convertToResult(q, createSearchReply(5, true), null, 1, 2);
+        InvokerResult result = ProtobufSerialization.convertToResult(q, createSearchReply(5, true).toByteArray(), null, 1, 2);
         assertEquals(result.getResult().getTotalHitCount(), 7);
         List<LeanHit> hits = result.getLeanHits();
         assertEquals(5, hits.size());
@@ -97,4 +98,46 @@ public class ProtobufSerializationTest {
             hitNum++;
         }
     }
+
+    @Test
+    public void testSerializedSearchReplyDecodingWithRelevance() throws IOException {
+        assertSameDecoding(createSearchReply(5, false));
+    }
+
+    @Test
+    public void testSerializedSearchReplyDecodingWithSortData() throws IOException {
+        assertSameDecoding(createSearchReply(5, true));
+    }
+
+    @Test
+    public void testSerializedSearchReplyDecodingWithCoverage() throws IOException {
+        SearchProtocol.SearchReply reply = createSearchReply(3, false).toBuilder()
+                .setCoverageDocs(80).setActiveDocs(100).setSoonActiveDocs(110).setDegradedBySoftTimeout(true).build();
+        InvokerResult result = ProtobufSerialization.convertToResult(new Query("search/?query=test"), reply.toByteArray(), null, 1, 2);
+        assertEquals(80, result.getResult().getCoverage(false).getDocs());
+        assertEquals(100, result.getResult().getCoverage(false).getActive());
+        assertEquals(110, result.getResult().getCoverage(false).getSoonActive());
+        assertTrue(result.getResult().getCoverage(false).isDegradedByTimeout());
+        assertFalse(result.getResult().getCoverage(false).isDegradedByMatchPhase());
+        assertEquals(3, result.getLeanHits().size());
+    }
+
+    private void assertSameDecoding(SearchProtocol.SearchReply reply) throws IOException {
+        InvokerResult result = ProtobufSerialization.convertToResult(new Query("search/?query=test"), reply.toByteArray(), null, 1, 2);
+        assertEquals(reply.getTotalHitCount(), result.getResult().getTotalHitCount());
+        assertEquals(reply.getHitsCount(), result.getLeanHits().size());
+        for (int i = 0; i < reply.getHitsCount(); i++) {
+            SearchProtocol.Hit expectedHit = reply.getHits(i);
+            LeanHit hit = result.getLeanHits().get(i);
+            assertArrayEquals(expectedHit.getGlobalId().toByteArray(), hit.getGid());
+            assertEquals(expectedHit.getSortData().isEmpty() ? expectedHit.getRelevance() : 0.0, hit.getRelevance(), DELTA);
+            assertEquals( ! expectedHit.getSortData().isEmpty(), hit.hasSortData());
+            if (hit.hasSortData())
+                assertArrayEquals(expectedHit.getSortData().toByteArray(), hit.getSortData());
+            assertEquals(1, hit.getPartId());
+            assertEquals(2, hit.getDistributionKey());
+            assertTrue(hit == result.getLeanHits().get(i));
+        }
+    }
+
 }
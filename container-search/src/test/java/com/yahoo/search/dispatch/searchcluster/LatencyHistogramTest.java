@@ -0,0 +1,36 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.searchcluster;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void requireThatPercentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertTrue(histogram.percentile(50).isEmpty());
+
+        for (int i = 1; i <= 100; i++)
+            histogram.add(i);
+        assertEquals(100, histogram.count());
+        double median = histogram.percentile(50).getAsDouble();
+        assertTrue(median >= 50 && median <= 50 * 1.2);
+        double p99 = histogram.percentile(99).getAsDouble();
+        assertTrue(p99 >= 99 && p99 <= 99 * 1.2);
+    }
+
+    @Test
+    public void requireThatOldLatenciesDecay() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 1000; i++)
+            histogram.add(10);
+        for (int i = 0; i < 2000; i++)
+            histogram.add(1000);
+        assertTrue(histogram.count() < 3000);
+        assertEquals(1023.0, histogram.percentile(50).getAsDouble(), 0.0);
+    }
+
+}
@@ -0,0 +1,106 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumField;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Compares rendering summary fields converted to objects with streaming them from the summary data,
+ * in time, allocated bytes and rendered bytes per hit.
+ */
+public class JsonRendererMicroBenchmark {
+
+    private static final int hitCount = 400;
+
+    /** Renders in the calling thread, such that the allocations of rendering are measured */
+    private final JsonRenderer prototype = new JsonRenderer(Runnable::run);
+    private final DocsumDefinition docsum = new DocsumDefinition("default",
+                                                                 List.of(DocsumField.create("title", "string"),
+                                                                         DocsumField.create("year", "integer"),
+                                                                         DocsumField.create("popularity", "int64"),
+                                                                         DocsumField.create("score", "double"),
+                                                                         DocsumField.create("weight", "float"),
+                                                                         DocsumField.create("available", "bool"),
+                                                                         DocsumField.create("tags", "jsonstring")));
+
+    public void run() throws Exception {
+        System.out.println("Running ...");
+        Result converted = createResult("");
+        Result streamed = createResult("&renderer.json.streamFields=true");
+        for (int i = 0; i < 1000; i++) {
+            render(converted);
+            render(streamed);
+        }
+        int repetitions = 10 * 1000;
+        measure("converted fields", converted, repetitions);
+        measure("streamed fields", streamed, repetitions);
+    }
+
+    private void measure(String name, Result result, int repetitions) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long renderedBytes = 0;
+        long startAllocated = threads.getThreadAllocatedBytes(threadId);
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < repetitions; i++)
+            renderedBytes += render(result);
+        long totalTime = System.currentTimeMillis() - startTime;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - startAllocated;
+        long hits = (long)repetitions * hitCount;
+        System.out.println(name + ": Time per hit: " + 1000*1000*totalTime/(float)hits + " ns" +
+                           ", allocated bytes per hit: " + allocated / hits +
+                           ", rendered bytes per hit: " + renderedBytes / hits);
+    }
+
+    private int render(Result result) throws Exception {
+        JsonRenderer renderer = (JsonRenderer)prototype.clone();
+        renderer.init();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(256 * hitCount);
+        renderer.render(stream, result, new Execution(Execution.Context.createContextStub()), null).get();
+        return stream.size();
+    }
+
+    private Result createResult(String parameters) {
+        Result result = new Result(new Query("?query=test" + parameters));
+        for (int i = 0; i < hitCount; i++)
+            result.hits().add(createHit(i));
+        result.setTotalHitCount(hitCount);
+        return result;
+    }
+
+    private FastHit createHit(int i) {
+        Slime slime = new Slime();
+        Cursor summary = slime.setObject();
+        summary.setString("title", "The title of document " + i);
+        summary.setLong("year", 1900 + i % 120);
+        summary.setLong("popularity", 1000000000000L + i);
+        summary.setDouble("score", i / 7.0);
+        summary.setDouble("weight", i / 4.0);
+        summary.setBool("available", i % 2 == 0);
+        Cursor tags = summary.setArray("tags");
+        for (int t = 0; t < 5; t++) {
+            Cursor tag = tags.addObject();
+            tag.setString("key", "tag" + t);
+            tag.setLong("value", t * i);
+        }
+        FastHit hit = new FastHit("id:test:test::" + i, 1.0 / (i + 1));
+        hit.addSummary(docsum, new SlimeAdapter(slime.get()));
+        return hit;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new JsonRendererMicroBenchmark().run();
+    }
+
+}
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.rendering;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -22,6 +23,8 @@ import com.yahoo.prelude.Index;
 import com.yahoo.prelude.IndexFacts;
 import com.yahoo.prelude.IndexModel;
 import com.yahoo.prelude.SearchDefinition;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumField;
 import com.yahoo.prelude.fastsearch.FastHit;
 import com.yahoo.prelude.hitfield.JSONString;
 import com.yahoo.prelude.hitfield.RawData;
@@ -73,6 +76,7 @@ import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -1232,6 +1236,113 @@ public class JsonRendererTestCase {
         assertEqualJson(expected, summary);
     }
 
+    @Test
+    public void testStreamedSummaryFields() throws Exception {
+        String expected = "{"
+                + "    \"root\": {"
+                + "        \"children\": ["
+                + "            {"
+                + "                \"fields\": {"
+                + "                    \"title\": \"a title\","
+                + "                    \"count\": 7,"
+                + "                    \"big\": 8589934592,"
+                + "                    \"score\": 0.25,"
+                + "                    \"weight\": 0.5,"
+                + "                    \"flag\": true,"
+                + "                    \"map\": {\"foo\": \"bar\", \"baz\": [1, 2]},"
+                + "                    \"struct\": {\"a\": 1.5, \"b\": \"b value\"}"
+                + "                },"
+                + "                \"id\": \"streamedFields\","
+                + "                \"relevance\": 1.0"
+                + "            }"
+                + "        ],"
+                + "        \"fields\": {"
+                + "            \"totalCount\": 1"
+                + "        },"
+                + "        \"id\": \"toplevel\","
+                + "        \"relevance\": 1.0"
+                + "    }"
+                + "}";
+        Result r = new Result(new Query("/?renderer.json.streamFields=true"));
+        r.hits().add(createHitWithSummaryFields("streamedFields"));
+        r.setTotalHitCount(1L);
+        assertEqualJson(expected, render(r));
+
+        setUp();
+        Result converted = new Result(new Query("/?query=a"));
+        converted.hits().add(createHitWithSummaryFields("streamedFields"));
+        converted.setTotalHitCount(1L);
+        assertEqualJson(expected, render(converted));
+    }
+
+    @Test
+    public void testStreamedSummaryFieldsAreFilteredByOverriddenShouldRender() throws Exception {
+        originalRenderer = new JsonRenderer() {
+            @Override
+            protected FieldConsumer createFieldConsumer(JsonGenerator generator, boolean debugRendering) {
+                return new FieldConsumer(generator, debugRendering) {
+                    @Override
+                    protected boolean shouldRender(String name, Object value) {
+                        return ! (value instanceof Double) && super.shouldRender(name, value);
+                    }
+                };
+            }
+        };
+
+        setUp();
+        Result r = new Result(new Query("/?renderer.json.streamFields=true"));
+        r.hits().add(createHitWithSummaryFields("streamedFields"));
+        r.setTotalHitCount(1L);
+        String streamed = render(r);
+        assertFalse(streamed.contains("score"));
+        assertTrue(streamed.contains("weight"));
+
+        setUp();
+        Result converted = new Result(new Query("/?query=a"));
+        converted.hits().add(createHitWithSummaryFields("streamedFields"));
+        converted.setTotalHitCount(1L);
+        assertEqualJson(render(converted), streamed);
+    }
+
+    private FastHit createHitWithSummaryFields(String id) {
+        List<DocsumField> fields = List.of(DocsumField.create("title", "string"),
+                                           DocsumField.create("count", "integer"),
+                                           DocsumField.create("empty", "integer"),
+                                           DocsumField.create("big", "int64"),
+                                           DocsumField.create("score", "double"),
+                                           DocsumField.create("weight", "float"),
+                                           DocsumField.create("flag", "bool"),
+                                           DocsumField.create("map", "jsonstring"),
+                                           DocsumField.create("struct", "jsonstring"),
+                                           DocsumField.create("$hidden", "integer"));
+        Slime slime = new Slime();
+        Cursor summary = slime.setObject();
+        summary.setString("title", "a title");
+        summary.setLong("count", 7);
+        summary.setLong("empty", Integer.MIN_VALUE);
+        summary.setLong("big", 8589934592L);
+        summary.setDouble("score", 0.25);
+        summary.setDouble("weight", 0.5);
+        summary.setBool("flag", true);
+        Cursor map = summary.setArray("map");
+        Cursor foo = map.addObject();
+        foo.setString("key", "foo");
+        foo.setString("value", "bar");
+        Cursor baz = map.addObject();
+        baz.setString("key", "baz");
+        Cursor bazValue = baz.setArray("value");
+        bazValue.addLong(1);
+        bazValue.addLong(2);
+        Cursor struct = summary.setObject("struct");
+        struct.setDouble("a", 1.5);
+        struct.setString("b", "b value");
+        summary.setLong("$hidden", 3);
+
+        FastHit hit = new FastHit(id, 1.0);
+        hit.addSummary(new DocsumDefinition("default", fields), new SlimeAdapter(slime.get()));
+        return hit;
+    }
+
     @Test
     public void testThatTheJsonValidatorCanCatchErrors() {
         String json = "{"
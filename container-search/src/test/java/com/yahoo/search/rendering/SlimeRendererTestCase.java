@@ -0,0 +1,131 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.rendering;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.yahoo.component.ComponentSpecification;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.document.datatypes.TensorFieldValue;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.FeatureData;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.StructuredData;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+import com.yahoo.slime.SlimeUtils;
+import com.yahoo.slime.Type;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SlimeRendererTestCase {
+
+    @Test
+    public void testStructureIsTheSameAsJson() throws Exception {
+        Result result = new Result(new Query("/?query=a"));
+        Hit hit = new Hit("hit1");
+        hit.setField("string", "a string");
+        hit.setField("long", 7L);
+        hit.setField("double", 0.5);
+        hit.setField("bool", true);
+        hit.setField("structured", createStructuredData());
+        hit.setField("tree", new ObjectMapper().readTree("{\"a\":[1,2.5,\"b\",null,false]}"));
+        result.hits().add(hit);
+        result.setTotalHitCount(1L);
+
+        byte[] json = render(new JsonRenderer(MoreExecutors.directExecutor()), result);
+        Slime slime = BinaryFormat.decode(render(new SlimeRenderer(MoreExecutors.directExecutor()), result));
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(mapper.readTree(json), mapper.readTree(SlimeUtils.toJsonBytes(slime)));
+    }
+
+    @Test
+    public void testTensorsAreRenderedAsBinary() throws Exception {
+        Tensor tensor1 = Tensor.from("{ {x:a}: 2.0}");
+        Tensor tensor2 = Tensor.from("tensor(x[3]):[1.5, 2, 2.5]");
+        Result result = new Result(new Query("/?query=a"));
+        Hit hit = new Hit("hit1");
+        hit.setField("tensor1", new TensorFieldValue(tensor1));
+        hit.setField("tensor2", tensor2);
+        hit.setField("features", createFeatures(tensor2));
+        result.hits().add(hit);
+
+        Slime slime = BinaryFormat.decode(render(new SlimeRenderer(MoreExecutors.directExecutor()), result));
+        Inspector fields = slime.get().field("root").field("children").entry(0).field("fields");
+        assertEquals(tensor1, decode(fields.field("tensor1")));
+        assertEquals(tensor2, decode(fields.field("tensor2")));
+        assertEquals(1.5, fields.field("features").field("scalar").asDouble(), 0);
+        assertEquals(tensor2, decode(fields.field("features").field("tensor")));
+    }
+
+    @Test
+    public void testRawJsonIsInsertedAsValues() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        SlimeGenerator generator = new SlimeGenerator(stream, new ObjectMapper());
+        generator.writeStartObject();
+        generator.writeFieldName("raw");
+        generator.writeRaw("{\"a\":[1,2]}");
+        generator.writeFieldName("rawValue");
+        generator.writeRawValue("\"b\"");
+        generator.writeFieldName("rawChar");
+        generator.writeRaw('3');
+        generator.writeEndObject();
+        generator.close();
+
+        Inspector root = BinaryFormat.decode(stream.toByteArray()).get();
+        assertEquals(2, root.field("raw").field("a").entry(1).asLong());
+        assertEquals("b", root.field("rawValue").asString());
+        assertEquals(3, root.field("rawChar").asLong());
+    }
+
+    @Test
+    public void testSlimeRendererIsRegistered() {
+        RendererRegistry registry = new RendererRegistry(MoreExecutors.directExecutor());
+        assertTrue(registry.getRenderer(ComponentSpecification.fromString("slime")) instanceof SlimeRenderer);
+        registry.deconstruct();
+    }
+
+    private static StructuredData createStructuredData() {
+        Slime slime = new Slime();
+        Cursor map = slime.setArray();
+        Cursor entry = map.addObject();
+        entry.setString("key", "a");
+        entry.setLong("value", 1);
+        entry = map.addObject();
+        entry.setString("key", "b");
+        entry.setArray("value").addDouble(0.5);
+        return new StructuredData(new SlimeAdapter(slime.get()));
+    }
+
+    private static FeatureData createFeatures(Tensor tensor) {
+        Slime slime = new Slime();
+        Cursor features = slime.setObject();
+        features.setDouble("scalar", 1.5);
+        features.setData("tensor", TypedBinaryFormat.encode(tensor));
+        return new FeatureData(new SlimeAdapter(slime.get()));
+    }
+
+    private static Tensor decode(Inspector data) {
+        assertEquals(Type.DATA, data.type());
+        return TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(data.asData()));
+    }
+
+    private static byte[] render(JsonRenderer renderer, Result result) throws Exception {
+        renderer.init();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        assertTrue(renderer.render(stream, result, new Execution(Execution.Context.createContextStub()), null).get());
+        return stream.toByteArray();
+    }
+
+}
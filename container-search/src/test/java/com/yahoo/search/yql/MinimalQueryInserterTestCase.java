@@ -341,6 +341,25 @@ public class MinimalQueryInserterTestCase {
                      query.yqlRepresentation());
     }
 
+    @Test
+    public void requireThatProgramsAreCachedOnlyWhenEnabled() {
+        MinimalQueryInserter inserter = new MinimalQueryInserter();
+        Execution execution = new Execution(new Chain<>(inserter), context);
+
+        Query query = new Query("search/?yql=" + encode("select foo from bar where baz contains 'cox';"));
+        execution.search(query);
+        assertEquals("baz:cox", query.getModel().getQueryTree().toString());
+        assertEquals(0, inserter.programCache().size());
+
+        for (String word : new String[] { "cox", "fox" }) {
+            query = new Query("search/?yqlProgramCache=true&yql=" + encode("select foo from bar where baz contains '" + word + "';"));
+            execution.search(query);
+            assertEquals("baz:" + word, query.getModel().getQueryTree().toString());
+        }
+        assertEquals(1, inserter.programCache().size());
+        assertEquals(1, inserter.programCache().hits());
+    }
+
     @Test
     public void verifyThatWarmupIsSane() {
         assertTrue(MinimalQueryInserter.warmup());
@@ -0,0 +1,42 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+/**
+ * Compares parsing YQL programs which differ only by literals with and without a program cache.
+ */
+public class ProgramCacheMicroBenchmark {
+
+    private static final String program =
+            "select * from sources * where title contains \"%s\" and range(year, %d, 2020) and " +
+            "weightedSet(tags, {\"a\": 1, \"b\": 2}) limit %d;";
+
+    public void run() throws Exception {
+        System.out.println("Running ...");
+        ProgramCache cache = new ProgramCache(1000);
+        ProgramCache noCache = new ProgramCache(0);
+        for (int i = 0; i < 10*1000; i++) {
+            parse(cache, i);
+            parse(noCache, i);
+        }
+        int repetitions = 100 * 1000;
+        System.out.println("Time per parse without cache: " + time(noCache, repetitions) + " ns");
+        System.out.println("Time per parse with cache: " + time(cache, repetitions) + " ns");
+    }
+
+    private float time(ProgramCache cache, int repetitions) throws Exception {
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < repetitions; i++)
+            parse(cache, i);
+        long totalTime = System.currentTimeMillis() - startTime;
+        return 1000*1000*totalTime/(float)repetitions;
+    }
+
+    private void parse(ProgramCache cache, int i) throws Exception {
+        cache.parse("query", String.format(program, "word" + i, 1900 + i % 100, 10 + i % 10));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new ProgramCacheMicroBenchmark().run();
+    }
+
+}
@@ -0,0 +1,84 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ProgramCacheTest {
+
+    @Test
+    public void requireThatProgramsDifferingOnlyByLiteralsShareAnEntry() throws Exception {
+        ProgramCache cache = new ProgramCache(10);
+        assertSameAsParsed(cache, "select * from sources * where title contains \"madonna\" and year > 1990;");
+        assertSameAsParsed(cache, "select * from sources * where title contains \"metallica\" and year > 2001;");
+        assertSameAsParsed(cache, "select * from sources * where title contains 'u2' and year > 1980 limit 7 offset 3;");
+        assertSameAsParsed(cache, "select * from sources * where title contains 'u2' and year > 1980 limit 9 offset 0;");
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void requireThatLiteralsOfAllTypesAreBound() throws Exception {
+        ProgramCache cache = new ProgramCache(10);
+        assertSameAsParsed(cache, "select * from sources * where range(year, 1, 2L) and score > 0.5 and title contains \"a\";");
+        assertSameAsParsed(cache, "select * from sources * where range(year, 3, 4L) and score > 1.5 and title contains \"b\\\"c\";");
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void requireThatLiteralsNotInTheSyntaxTreeArePartOfTheKey() throws Exception {
+        ProgramCache cache = new ProgramCache(10);
+        assertSameAsParsed(cache, "select * from sources * where [{\"ranked\": true}]title contains \"a\";");
+        assertSameAsParsed(cache, "select * from sources * where [{\"ranked\": false}]title contains \"b\";");
+        assertSameAsParsed(cache, "select * from sources * where weightedSet(tags, {\"a\": 1, \"b\": 2});");
+        assertSameAsParsed(cache, "select * from sources * where weightedSet(tags, {\"c\": 1, \"d\": 2});");
+        assertSameAsParsed(cache, "select * from sources * where weightedSet(tags, {\"c\": 3, \"d\": 4});");
+        assertEquals(4, cache.size());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void requireThatInvalidProgramsAreRejectedAsByTheParser() throws Exception {
+        ProgramCache cache = new ProgramCache(10);
+        assertSameAsParsed(cache, "select * from sources * where year > 1990;");
+        assertRejected(cache, "select * from sources * where year > 1990 and;");
+        assertRejected(cache, "select * from sources * where year > 99999999999;");
+    }
+
+    @Test
+    public void requireThatLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+        ProgramCache cache = new ProgramCache(2);
+        assertSameAsParsed(cache, "select * from sources * where a > 1;");
+        assertSameAsParsed(cache, "select * from sources * where b > 1;");
+        assertSameAsParsed(cache, "select * from sources * where c > 1;");
+        assertEquals(2, cache.size());
+        assertSameAsParsed(cache, "select * from sources * where c > 2;");
+        assertSameAsParsed(cache, "select * from sources * where a > 2;");
+        assertEquals(1, cache.hits());
+    }
+
+    private static void assertRejected(ProgramCache cache, String program) {
+        Class<?> expected = null;
+        try {
+            new ProgramParser().parse("query", program);
+        }
+        catch (Exception e) {
+            expected = e.getClass();
+        }
+        try {
+            cache.parse("query", program);
+            fail("Expected exception");
+        }
+        catch (Exception e) {
+            assertEquals(expected, e.getClass());
+        }
+    }
+
+    private static void assertSameAsParsed(ProgramCache cache, String program) throws Exception {
+        assertEquals(new ProgramParser().parse("query", program), cache.parse("query", program));
+    }
+
+}
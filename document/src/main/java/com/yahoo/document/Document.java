@@ -136,9 +136,11 @@ public class Document extends StructuredFieldValue {
     }
 
     public int getSerializedSize() throws SerializationException {
-        DocumentSerializer data = DocumentSerializerFactory.create6(new GrowableByteBuffer(64 * 1024, 2.0f));
-        data.write(this);
-        return data.getBuf().position();
+        // Documents are serialized the same way in the 6.x and head formats
+        return DocumentSerializerFactory.withReusedHead(data -> {
+            data.write(this);
+            return data.getBuf().position();
+        });
     }
 
     /**
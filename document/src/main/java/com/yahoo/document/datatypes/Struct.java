@@ -9,10 +9,12 @@ import com.yahoo.document.PositionDataType;
 import com.yahoo.document.StructDataType;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
+import com.yahoo.document.serialization.SerializedFields;
 import com.yahoo.document.serialization.XmlSerializationHelper;
 import com.yahoo.document.serialization.XmlStream;
 import com.yahoo.vespa.objects.Ids;
 
+import java.nio.ByteBuffer;
 import java.util.AbstractSet;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -27,9 +29,20 @@ import java.util.Set;
 public class Struct extends StructuredFieldValue {
 
     public static final int classId = registerClass(Ids.document + 33, Struct.class);
+    /** The values of the fields of this, where the value is null if it is not yet deserialized from {@link #serialized} */
     private Hashlet<Integer, FieldValue> values = new Hashlet<>();
     private int [] order = null;
 
+    /**
+     * The serialized fields this was read from, or null if it was not read lazily or all its values are deserialized.
+     * Values are deserialized while holding the monitor of this, and this is cleared after the last one is written,
+     * such that a thread which reads null here also sees all the deserialized values.
+     */
+    private volatile SerializedFields serialized = null;
+
+    /** The number of values which are not yet deserialized from {@link #serialized} */
+    private int undeserialized = 0;
+
     private int version;
 
     private int [] getInOrder() {
@@ -47,6 +60,53 @@ public class Struct extends StructuredFieldValue {
         order = null;
     }
 
+    /** Returns the value at the given index, deserializing it first if necessary */
+    private FieldValue valueAt(int index) {
+        if (serialized == null) return values.value(index);
+        return deserializeAt(index);
+    }
+
+    private synchronized FieldValue deserializeAt(int index) {
+        FieldValue value = values.value(index);
+        if (value == null && serialized != null) {
+            value = serialized.deserialize(getDataType().getField(values.key(index)));
+            values.setValue(index, value);
+            deserialized();
+        }
+        return value;
+    }
+
+    /** Sets the value at the given index, which replaces the serialized value if it was not deserialized */
+    private void setValueAt(int index, FieldValue value) {
+        if (serialized == null) {
+            values.setValue(index, value);
+            return;
+        }
+        synchronized (this) {
+            boolean replacesSerialized = values.value(index) == null;
+            values.setValue(index, value);
+            if (replacesSerialized && serialized != null)
+                deserialized();
+        }
+    }
+
+    /** Must be called while holding the monitor of this when a value is no longer read from the serialized fields */
+    private void deserialized() {
+        if (--undeserialized == 0)
+            serialized = null; // All are deserialized, so release the serialized data
+    }
+
+    /** Returns the value of the field with the given id, deserializing it first if necessary, or null if it is not set */
+    private FieldValue value(int id) {
+        int index = values.getIndexOfKey(id);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    private void deserializeAll() {
+        for (int i = 0; i < values.size(); i++)
+            valueAt(i);
+    }
+
     public Struct(DataType type) {
         super((StructDataType) type);
         this.version = Document.SERIALIZED_VERSION;
@@ -89,20 +149,67 @@ public class Struct extends StructuredFieldValue {
     @Override
     public Struct clone() {
         Struct struct = (Struct) super.clone();
-        struct.values = new Hashlet<>();
-        struct.values.reserve(values.size());
-        for (int i = 0; i < values.size(); i++) {
-            struct.values.put(values.key(i), values.value(i).clone());
+        if (serialized == null) {
+            struct.values = cloneValues();
+        }
+        else {
+            synchronized (this) {
+                struct.values = cloneValues();
+                struct.serialized = serialized;
+                struct.undeserialized = undeserialized;
+            }
         }
         return struct;
     }
 
+    private Hashlet<Integer, FieldValue> cloneValues() {
+        Hashlet<Integer, FieldValue> copy = new Hashlet<>();
+        copy.reserve(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            FieldValue value = values.value(i);
+            copy.put(values.key(i), value == null ? null : value.clone());
+        }
+        return copy;
+    }
+
     @Override
     public void clear() {
         values = new Hashlet<>();
+        serialized = null;
+        undeserialized = 0;
         invalidateOrder();
     }
 
+    /**
+     * Clears this and sets the fields of the given serialized fields, whose values are deserialized when they are
+     * accessed. Until then, they are serialized by copying their serialized value.
+     * Deserializing is synchronized, such that this may be read by multiple threads like any other struct.
+     */
+    public void setSerializedFields(SerializedFields fields) {
+        clear();
+        values.reserve(fields.size());
+        for (int i = 0; i < fields.size(); i++)
+            values.put(fields.fieldId(i), null);
+        undeserialized = fields.size();
+        if (undeserialized > 0)
+            serialized = fields;
+    }
+
+    /**
+     * Returns the serialized value of the given field if it is set and not yet deserialized,
+     * such that it can be serialized by copying this, or null otherwise
+     */
+    public ByteBuffer getSerializedFieldValue(Field field) {
+        SerializedFields fields = serialized;
+        if (fields == null) return null;
+        int index = values.getIndexOfKey(field.getId());
+        if (index < 0) return null;
+        synchronized (this) {
+            if (values.value(index) != null) return null;
+        }
+        return fields.get(field);
+    }
+
     @Override
     public Iterator<Map.Entry<Field, FieldValue>> iterator() {
         return new FieldSet().iterator();
@@ -127,7 +234,7 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue getFieldValue(Field field) {
-        return values.get(field.getId());
+        return value(field.getId());
     }
 
 
@@ -169,13 +276,13 @@ public class Struct extends StructuredFieldValue {
             values.put(field.getId(), value);
             invalidateOrder();
         } else {
-            values.setValue(index, value);
+            setValueAt(index, value);
         }
     }
 
     @Override
     public FieldValue removeFieldValue(Field field) {
-        FieldValue found = values.get(field.getId());
+        FieldValue found = value(field.getId());
         if (found != null) {
             Hashlet<Integer, FieldValue> copy = new Hashlet<>();
             copy.reserve(values.size() - 1);
@@ -223,12 +330,15 @@ public class Struct extends StructuredFieldValue {
         if (!super.equals(o)) return false;
 
         Struct struct = (Struct) o;
+        deserializeAll();
+        struct.deserializeAll();
         return values.equals(struct.values);
     }
 
     @Override
     public int hashCode() {
         int result = super.hashCode();
+        deserializeAll();
         result = 31 * result + values.hashCode();
         return result;
     }
@@ -240,7 +350,7 @@ public class Struct extends StructuredFieldValue {
         int [] increasing = getInOrder();
         for (int i = 0; i < increasing.length; i++) {
             int id = increasing[i];
-            retVal.append(getDataType().getField(id)).append("=").append(values.get(id)).append(", ");
+            retVal.append(getDataType().getField(id)).append("=").append(value(id)).append(", ");
         }
         return retVal.toString();
     }
@@ -298,7 +408,7 @@ public class Struct extends StructuredFieldValue {
         }
 
         public FieldValue getValue() {
-            return values.get(id);
+            return value(id);
         }
 
         public FieldValue setValue(FieldValue value) {
@@ -312,8 +422,8 @@ public class Struct extends StructuredFieldValue {
                 values.put(id, value);
                 invalidateOrder();
             } else {
-                retVal = values.value(index);
-                values.setValue(index, value);
+                retVal = valueAt(index);
+                setValueAt(index, value);
             }
 
             return retVal;
@@ -15,6 +15,7 @@ import com.yahoo.document.json.readers.VespaJsonDocumentReader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Optional;
 
 import static com.yahoo.document.json.JsonReader.ReaderState.END_OF_FEED;
@@ -62,20 +63,16 @@ public class JsonReader {
      */
     public DocumentOperation readSingleDocument(DocumentParser.SupportedOperation operationType, String docIdString) {
         DocumentId docId = new DocumentId(docIdString);
+        DocumentParser documentParser = new DocumentParser(parser);
         DocumentParseInfo documentParseInfo;
         try {
-            DocumentParser documentParser = new DocumentParser(parser);
-            documentParseInfo = documentParser.parse(Optional.of(docId)).get();
+            documentParseInfo = documentParser.parseUntilFields(Optional.of(docId)).get();
         } catch (IOException e) {
             state = END_OF_FEED;
             throw new IllegalArgumentException(e);
         }
         documentParseInfo.operationType = operationType;
-        VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
-        DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
-                getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager), documentParseInfo);
-        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.condition));
-        return operation;
+        return createDocumentOperation(documentParser, documentParseInfo);
     }
 
     /** Returns the next document operation, or null if we have reached the end */
@@ -91,26 +88,68 @@ public class JsonReader {
             case READING:
                 break;
         }
+        DocumentParser documentParser = new DocumentParser(parser);
         Optional<DocumentParseInfo> documentParseInfo;
         try {
-            documentParseInfo = parseDocument();
+            documentParseInfo = documentParser.parseUntilFields(Optional.empty());
         } catch (IOException r) {
             // Jackson is not able to recover from structural parse errors
             state = END_OF_FEED;
             throw new IllegalArgumentException(r);
+        } catch (UncheckedIOException r) {
+            state = END_OF_FEED;
+            throw new IllegalArgumentException(r.getCause());
         }
         if ( ! documentParseInfo.isPresent()) {
             state = END_OF_FEED;
             return null;
         }
+        return createDocumentOperation(documentParser, documentParseInfo.get());
+    }
+
+    /**
+     * Creates the operation of a document parsed by the given parser, reading its fields if they are not
+     * buffered, and then parsing the rest of the document.
+     */
+    private DocumentOperation createDocumentOperation(DocumentParser documentParser, DocumentParseInfo documentParseInfo) {
         VespaJsonDocumentReader vespaJsonDocumentReader = new VespaJsonDocumentReader();
-        DocumentOperation operation = vespaJsonDocumentReader.createDocumentOperation(
-                getDocumentTypeFromString(documentParseInfo.get().documentId.getDocType(), typeManager),
-                documentParseInfo.get());
-        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.get().condition));
+        DocumentOperation operation;
+        try {
+            operation = vespaJsonDocumentReader.createDocumentOperation(
+                    getDocumentTypeFromString(documentParseInfo.documentId.getDocType(), typeManager), documentParseInfo);
+        } catch (UncheckedIOException e) {
+            throw endFeed(documentParseInfo, e.getCause());
+        } catch (RuntimeException e) {
+            // Skip the rest of this document, so the next one can be read
+            try {
+                documentParser.parseRemaining(documentParseInfo);
+            } catch (IOException | UncheckedIOException skipException) {
+                state = END_OF_FEED;
+                e.addSuppressed(skipException);
+            } catch (RuntimeException skipException) {
+                e.addSuppressed(skipException);
+            }
+            throw e;
+        }
+        try {
+            documentParser.parseRemaining(documentParseInfo);
+        } catch (IOException e) {
+            throw endFeed(documentParseInfo, e);
+        } catch (UncheckedIOException e) {
+            throw endFeed(documentParseInfo, e.getCause());
+        }
+        vespaJsonDocumentReader.setCreateIfNonExistent(operation, documentParseInfo);
+        operation.setCondition(TestAndSetCondition.fromConditionString(documentParseInfo.condition));
         return operation;
     }
 
+    /** Ends the feed, as Jackson is not able to recover from structural parse errors, and returns the error to throw */
+    private IllegalArgumentException endFeed(DocumentParseInfo documentParseInfo, IOException e) {
+        state = END_OF_FEED;
+        return new IllegalArgumentException("Invalid JSON in document '" + documentParseInfo.documentId + "': " +
+                                            e.getMessage(), e);
+    }
+
 
     public DocumentType readDocumentType(DocumentId docId) {
         return getDocumentTypeFromString(docId.getDocType(), typeManager);
@@ -2,6 +2,7 @@
 package com.yahoo.document.json;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Iterator;
@@ -13,6 +14,10 @@ import com.google.common.base.Preconditions;
 /**
  * Helper class to enable lookahead in the token stream.
  *
+ * A token buffer either holds all the tokens of a JSON object or array, or reads them directly from a
+ * parser as they are consumed, such that tokens are only buffered if lookahead is needed.
+ * Errors reading from the parser are thrown as {@link UncheckedIOException}.
+ *
  * @author Steinar Knutsen
  */
 public class TokenBuffer {
@@ -32,10 +37,27 @@ public class TokenBuffer {
     private Deque<Token> buffer;
     private int nesting = 0;
 
+    /** The parser the current and remaining tokens are read from, or null if all tokens are in the buffer */
+    private JsonParser parser = null;
+
     public TokenBuffer() {
         this(new ArrayDeque<>());
     }
 
+    /**
+     * Creates a token buffer which reads the object or array the given parser is positioned at
+     * directly from the parser. The parser is positioned at the end of the object or array when
+     * all the tokens of this are consumed.
+     */
+    public TokenBuffer(JsonParser parser) {
+        this(new ArrayDeque<>());
+        JsonToken first = parser.currentToken();
+        Preconditions.checkArgument(first == JsonToken.START_OBJECT || first == JsonToken.START_ARRAY,
+                "Expected start of object or array, got %s.", first);
+        this.parser = parser;
+        updateNesting(first);
+    }
+
     private TokenBuffer(Deque<Token> buffer) {
         this.buffer = buffer;
         if (buffer.size() > 0) {
@@ -47,6 +69,9 @@ public class TokenBuffer {
     public boolean isEmpty() { return size() == 0; }
 
     public JsonToken next() {
+        if (parser != null) {
+            return nextFromParser();
+        }
         buffer.removeFirst();
         Token t = buffer.peekFirst();
         if (t == null) {
@@ -56,8 +81,19 @@ public class TokenBuffer {
         return t.token;
     }
 
+    private JsonToken nextFromParser() {
+        if (nesting == 0) { // the current token ended the object or array
+            parser = null;
+            return null;
+        }
+        JsonToken t = nextValue(parser);
+        updateNesting(t);
+        return t;
+    }
+
     /** Returns the current token without changing position, or null if none */
     public JsonToken currentToken() {
+        if (parser != null) return parser.currentToken();
         Token token = buffer.peekFirst();
         if (token == null) return null;
         return token.token;
@@ -65,6 +101,7 @@ public class TokenBuffer {
 
     /** Returns the current token name without changing position, or null if none */
     public String currentName() {
+        if (parser != null) return currentName(parser);
         Token token = buffer.peekFirst();
         if (token == null) return null;
         return token.name;
@@ -72,12 +109,15 @@ public class TokenBuffer {
 
     /** Returns the current token text without changing position, or null if none */
     public String currentText() {
+        if (parser != null) return currentText(parser);
         Token token = buffer.peekFirst();
         if (token == null) return null;
         return token.text;
     }
 
+    /** Returns the number of tokens buffered in this, where a current token read directly from a parser counts as one */
     public int size() {
+        if (parser != null) return 1;
         return buffer.size();
     }
 
@@ -125,11 +165,45 @@ public class TokenBuffer {
     }
 
     private void addFromParser(JsonToken t, JsonParser tokens) {
+        add(t, currentName(tokens), currentText(tokens));
+    }
+
+    private String currentName(JsonParser tokens) {
         try {
-            add(t, tokens.getCurrentName(), tokens.getText());
+            return tokens.getCurrentName();
         } catch (IOException e) {
-            // TODO something sane
-            throw new RuntimeException(e);
+            throw new UncheckedIOException("Could not read the name of the current JSON token", e);
+        }
+    }
+
+    private String currentText(JsonParser tokens) {
+        try {
+            return tokens.getText();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the text of the current JSON token", e);
+        }
+    }
+
+    /** Reads the current and remaining tokens from the parser into the buffer, if they are read from a parser */
+    private void bufferRemaining() {
+        if (parser == null) return;
+        int localNesting = nesting;
+        addFromParser(parser.currentToken(), parser);
+        while (localNesting > 0) {
+            JsonToken t = nextValue(parser);
+            addFromParser(t, parser);
+            localNesting += nestingOffset(t);
+        }
+        parser = null;
+    }
+
+    /**
+     * Skips the tokens of this which are not yet read from the parser, if any, such that the parser
+     * is positioned at the end of the object or array.
+     */
+    public void skipUnread() {
+        while (parser != null) {
+            next();
         }
     }
 
@@ -137,8 +211,7 @@ public class TokenBuffer {
         try {
             return tokens.nextValue();
         } catch (IOException e) {
-            // TODO something sane
-            throw new RuntimeException(e);
+            throw new UncheckedIOException("Could not read the next JSON token", e);
         }
     }
 
@@ -153,6 +226,8 @@ public class TokenBuffer {
     public String dumpContents() {
         StringBuilder b = new StringBuilder();
         b.append("[nesting: ").append(nesting()).append("\n");
+        if (parser != null)
+            b.append("(reading from parser at ").append(parser.currentToken()).append(")\n");
         for (Token t : buffer) {
             b.append("(").append(t.token).append(", \"").append(t.name).append("\", \"").append(t.text).append("\")\n");
         }
@@ -168,6 +243,7 @@ public class TokenBuffer {
     }
 
     public TokenBuffer prefetchCurrentElement() {
+        bufferRemaining();
         Deque<Token> copy = new ArrayDeque<>();
 
         if (currentToken().isScalarValue()) {
@@ -192,6 +268,7 @@ public class TokenBuffer {
         Token toReturn = null;
         Iterator<Token> i;
 
+        bufferRemaining();
         if (name.equals(currentName()) && currentToken().isScalarValue()) {
             toReturn = buffer.peekFirst();
         } else {
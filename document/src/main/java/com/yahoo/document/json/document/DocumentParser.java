@@ -4,6 +4,7 @@ package com.yahoo.document.json.document;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.yahoo.document.DocumentId;
+import com.yahoo.document.json.TokenBuffer;
 import com.yahoo.document.json.readers.DocumentParseInfo;
 
 import java.io.IOException;
@@ -28,6 +29,10 @@ public class DocumentParser {
     public static final String REMOVE = "remove";
     private final JsonParser parser;
     private  long indentLevel;
+    private boolean docIdAndOperationIsSetExternally;
+
+    /** Whether the fields of the document being parsed are read directly from the parser, and not yet parsed past */
+    private boolean readingFields = false;
 
     public DocumentParser(JsonParser parser) {
         this.parser = parser;
@@ -38,13 +43,30 @@ public class DocumentParser {
      * Returns empty is we have reached the end of the stream.
      */
     public Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg) throws IOException {
+        return parse(documentIdArg, false);
+    }
+
+    /**
+     * Parses a single document like {@link #parse}, except that if the document id is known when the fields
+     * are reached, parsing stops there, and the fields buffer of the returned document parse info reads the
+     * fields directly from the parser, without buffering them. {@link #parseRemaining} must then be called
+     * when the fields are read, to parse the rest of the document.
+     * Returns empty if we have reached the end of the stream.
+     */
+    public Optional<DocumentParseInfo> parseUntilFields(Optional<DocumentId> documentIdArg) throws IOException {
+        return parse(documentIdArg, true);
+    }
+
+    private Optional<DocumentParseInfo> parse(Optional<DocumentId> documentIdArg, boolean readFieldsFromParser) throws IOException {
         indentLevel = 0;
+        docIdAndOperationIsSetExternally = documentIdArg.isPresent();
+        readingFields = false;
         DocumentParseInfo documentParseInfo = new DocumentParseInfo();
         documentIdArg.ifPresent(documentId -> documentParseInfo.documentId = documentId);
         boolean foundItems = false;
         do {
-            foundItems |= parseOneItem(documentParseInfo, documentIdArg.isPresent() /* doc id set externally */);
-        } while (indentLevel > 0L);
+            foundItems |= parseOneItem(documentParseInfo, readFieldsFromParser);
+        } while (indentLevel > 0L && ! readingFields);
 
         if (documentParseInfo.documentId == null) {
             if (foundItems)
@@ -55,19 +77,33 @@ public class DocumentParser {
         return Optional.of(documentParseInfo);
     }
 
+    /**
+     * Parses the rest of a document returned by {@link #parseUntilFields} after its fields,
+     * skipping any of the fields which are not read. This does nothing if the document is already fully parsed.
+     */
+    public void parseRemaining(DocumentParseInfo documentParseInfo) throws IOException {
+        if ( ! readingFields) return;
+        readingFields = false;
+        documentParseInfo.fieldsBuffer.skipUnread();
+        processIndent();
+        while (indentLevel > 0L) {
+            parseOneItem(documentParseInfo, false);
+        }
+    }
+
     /**
      * Parses one item from the stream.
      *
      * @return whether an item was found
      */
-    private boolean parseOneItem(DocumentParseInfo documentParseInfo, boolean docIdAndOperationIsSetExternally) throws IOException {
+    private boolean parseOneItem(DocumentParseInfo documentParseInfo, boolean readFieldsFromParser) throws IOException {
         parser.nextValue();
         processIndent();
         if (parser.getCurrentName() == null) return false;
         if (indentLevel == 1L) {
             handleIdentLevelOne(documentParseInfo, docIdAndOperationIsSetExternally);
         } else if (indentLevel == 2L) {
-            handleIdentLevelTwo(documentParseInfo);
+            handleIdentLevelTwo(documentParseInfo, readFieldsFromParser);
         }
         return true;
     }
@@ -121,11 +157,17 @@ public class DocumentParser {
         }
     }
 
-    private  void handleIdentLevelTwo(DocumentParseInfo documentParseInfo) {
+    private  void handleIdentLevelTwo(DocumentParseInfo documentParseInfo, boolean readFieldsFromParser) {
         try {
             JsonToken currentToken = parser.getCurrentToken();
             // "fields" opens a dictionary and is therefore on level two which might be surprising.
             if (currentToken == JsonToken.START_OBJECT && FIELDS.equals(parser.getCurrentName())) {
+                if (readFieldsFromParser && documentParseInfo.documentId != null) {
+                    // The document type is known, so the fields can be read without buffering them
+                    documentParseInfo.fieldsBuffer = new TokenBuffer(parser);
+                    readingFields = true;
+                    return;
+                }
                 documentParseInfo.fieldsBuffer.bufferObject(currentToken, parser);
                 processIndent();
             }
@@ -4,6 +4,7 @@ package com.yahoo.document.json.readers;
 import com.fasterxml.jackson.core.JsonToken;
 import com.yahoo.document.datatypes.TensorFieldValue;
 import com.yahoo.document.json.TokenBuffer;
+import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.MixedTensor;
 import com.yahoo.tensor.Tensor;
@@ -31,6 +32,11 @@ public class TensorReader {
     // MUST be kept in sync with com.yahoo.tensor.serialization.JsonFormat.decode in vespajlib
     static void fillTensor(TokenBuffer buffer, TensorFieldValue tensorFieldValue) {
         Tensor.Builder builder = Tensor.Builder.of(tensorFieldValue.getDataType().getTensorType());
+        if (buffer.currentToken() == JsonToken.START_ARRAY) { // dense short form
+            readTensorValues(buffer, builder);
+            tensorFieldValue.assign(builder.build());
+            return;
+        }
         expectObjectStart(buffer.currentToken());
         int initNesting = buffer.nesting();
         for (buffer.next(); buffer.nesting() >= initNesting; buffer.next()) {
@@ -90,12 +96,35 @@ public class TensorReader {
         if ( ! (builder instanceof IndexedTensor.BoundBuilder))
             throw new IllegalArgumentException("The 'values' field can only be used with dense tensors. " +
                                                "Use 'cells' or 'blocks' instead");
-        IndexedTensor.BoundBuilder indexedBuilder = (IndexedTensor.BoundBuilder)builder;
-        int index = 0;
+        long size = DimensionSizes.of(builder.type()).totalSize();
+        long valueCount = readTensorValues(buffer, (IndexedTensor.BoundBuilder)builder, 0, size);
+        if (valueCount != size)
+            throw new IllegalArgumentException("Expected " + size + " values, but got " + valueCount);
+    }
+
+    /**
+     * Reads an array of values, where each value may be a nested array, directly into the given builder
+     * in standard value order
+     *
+     * @param buffer the buffer positioned at the start of the array
+     * @param builder the builder to write values to
+     * @param index the index of the first value in the array
+     * @param size the number of values of the tensor being built
+     * @return the index after the last value in the array
+     */
+    private static long readTensorValues(TokenBuffer buffer, IndexedTensor.BoundBuilder builder, long index, long size) {
+        expectArrayStart(buffer.currentToken());
         int initNesting = buffer.nesting();
-        for (buffer.next(); buffer.nesting() >= initNesting; buffer.next())
-            indexedBuilder.cellByDirectIndex(index++, readDouble(buffer));
+        for (buffer.next(); buffer.nesting() >= initNesting; buffer.next()) {
+            if (buffer.currentToken() == JsonToken.START_ARRAY)
+                index = readTensorValues(buffer, builder, index, size);
+            else if (index < size)
+                builder.cellByDirectIndex(index++, readDouble(buffer));
+            else
+                index++; // count the values which do not fit, to report them
+        }
         expectCompositeEnd(buffer.currentToken());
+        return index;
     }
 
     static void readTensorBlocks(TokenBuffer buffer, Tensor.Builder builder) {
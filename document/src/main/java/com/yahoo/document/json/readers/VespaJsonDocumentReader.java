@@ -67,6 +67,12 @@ public class VespaJsonDocumentReader {
         } catch (JsonReaderException e) {
             throw JsonReaderException.addDocId(e, documentParseInfo.documentId);
         }
+        setCreateIfNonExistent(documentOperation, documentParseInfo);
+        return documentOperation;
+    }
+
+    /** Sets the create flag of the given operation if it is present in the given parse info */
+    public void setCreateIfNonExistent(DocumentOperation documentOperation, DocumentParseInfo documentParseInfo) {
         if (documentParseInfo.create.isPresent()) {
             if (! ( documentOperation instanceof DocumentUpdate)) {
                 throw new IllegalArgumentException("Could not set create flag on non update operation.");
@@ -74,7 +80,6 @@ public class VespaJsonDocumentReader {
             DocumentUpdate update = (DocumentUpdate) documentOperation;
             update.setCreateIfNonExistent(documentParseInfo.create.get());
         }
-        return documentOperation;
     }
 
     // Exposed for unit testing...
@@ -19,6 +19,17 @@ public class DocumentDeserializerFactory {
         return new VespaDocumentDeserializerHead(manager, buf);
     }
 
+    /**
+     * Creates a de-serializer for the current head document format, which reads the fields of documents lazily:
+     * Each field value is deserialized when it is first accessed, and fields which are never accessed
+     * are serialized by copying their serialized value.
+     */
+    public static DocumentDeserializer createHeadWithLazyFields(DocumentTypeManager manager, GrowableByteBuffer buf) {
+        VespaDocumentDeserializerHead deserializer = new VespaDocumentDeserializerHead(manager, buf);
+        deserializer.setLazyFields(true);
+        return deserializer;
+    }
+
     /**
      * Creates a de-serializer for the 6.x document format.
      * This format is an extension of the 4.2 format.
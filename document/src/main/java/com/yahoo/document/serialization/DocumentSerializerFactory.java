@@ -3,6 +3,8 @@ package com.yahoo.document.serialization;
 
 import com.yahoo.io.GrowableByteBuffer;
 
+import java.util.function.Function;
+
 /**
  * Factory for creating document serializers tied to a document format.
  *
@@ -10,6 +12,11 @@ import com.yahoo.io.GrowableByteBuffer;
  */
 public class DocumentSerializerFactory {
 
+    /** Buffers larger than this are not kept for reuse, to bound the memory held by each thread */
+    private static final int maxReusedBufferSize = 1 << 20;
+
+    private static final ThreadLocal<ReusableSerializer> reusableHead = ThreadLocal.withInitial(ReusableSerializer::new);
+
     /**
      * Creates a serializer for the current head document format.
      * This format is an extension of the 6.x format.
@@ -34,4 +41,34 @@ public class DocumentSerializerFactory {
         return new VespaDocumentSerializer6(new GrowableByteBuffer());
     }
 
+    /**
+     * Applies the given serialization to a serializer for the current head document format, which is reused by
+     * the calling thread, such that steady-state serialization does not allocate new buffers.
+     * The serializer and its buffer must not be used after the given function returns, so anything needed from
+     * them must be copied out by it.
+     */
+    public static <T> T withReusedHead(Function<DocumentSerializer, T> serialization) {
+        ReusableSerializer reusable = reusableHead.get();
+        if (reusable.inUse) // Serializing from within a serialization
+            return serialization.apply(createHead(new GrowableByteBuffer()));
+
+        reusable.inUse = true;
+        try {
+            reusable.serializer.getBuf().clear();
+            return serialization.apply(reusable.serializer);
+        }
+        finally {
+            reusable.inUse = false;
+            if (reusable.serializer.getBuf().capacity() > maxReusedBufferSize)
+                reusable.serializer = createHead(new GrowableByteBuffer(8192));
+        }
+    }
+
+    private static class ReusableSerializer {
+
+        DocumentSerializer serializer = createHead(new GrowableByteBuffer(8192));
+        boolean inUse = false;
+
+    }
+
 }
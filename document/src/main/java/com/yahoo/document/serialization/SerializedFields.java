@@ -0,0 +1,62 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.collections.Hashlet;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.io.GrowableByteBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The serialized values of the fields of a struct, from which each value is deserialized when it is accessed.
+ * This is immutable, such that it can be shared by copies of the struct.
+ */
+public final class SerializedFields {
+
+    private final DocumentTypeManager manager;
+    private final byte[] data;
+    private final int[] fieldIds;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    /** The index of each field in the arrays above, by field id */
+    private final Hashlet<Integer, Integer> indexes = new Hashlet<>();
+
+    SerializedFields(DocumentTypeManager manager, byte[] data, int[] fieldIds, int[] offsets, int[] lengths) {
+        this.manager = manager;
+        this.data = data;
+        this.fieldIds = fieldIds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        indexes.reserve(fieldIds.length);
+        for (int i = 0; i < fieldIds.length; i++)
+            indexes.put(fieldIds[i], i);
+    }
+
+    /** Returns the number of fields in this */
+    public int size() { return fieldIds.length; }
+
+    /** Returns the id of the field at the given index */
+    public int fieldId(int index) { return fieldIds[index]; }
+
+    /** Returns a read-only buffer with the serialized value of the given field, or null if it is not in this */
+    public ByteBuffer get(Field field) {
+        Integer index = indexes.get(field.getId());
+        if (index == null) return null;
+        return ByteBuffer.wrap(data, offsets[index], lengths[index]).slice().asReadOnlyBuffer();
+    }
+
+    /** Deserializes and returns the value of the given field, or null if it is not in this */
+    public FieldValue deserialize(Field field) {
+        Integer index = indexes.get(field.getId());
+        if (index == null) return null;
+        DocumentDeserializer deserializer =
+                DocumentDeserializerFactory.createHead(manager, GrowableByteBuffer.wrap(data, offsets[index], lengths[index]));
+        FieldValue value = field.getDataType().createFieldValue();
+        value.deserialize(field, deserializer);
+        return value;
+    }
+
+}
@@ -67,6 +67,7 @@ import com.yahoo.vespa.objects.FieldBase;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -88,12 +89,19 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
     private List<Annotation> annotations;
     private int[] stringPositions;
 
+    /** Whether the fields of documents are read lazily, such that they are only deserialized when accessed */
+    private boolean lazyFields = false;
+
     VespaDocumentDeserializer6(DocumentTypeManager manager, GrowableByteBuffer buf) {
         super(buf);
         this.manager = manager;
         this.version = Document.SERIALIZED_VERSION;
     }
 
+    void setLazyFields(boolean lazyFields) {
+        this.lazyFields = lazyFields;
+    }
+
     final public DocumentTypeManager getDocumentTypeManager() { return manager; }
 
     public void read(Document document) {
@@ -367,6 +375,9 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         // set position in original buffer to after data
         position(position() + dataSize);
 
+        if (lazyFields && primary.getFieldCount() == 0 && readLazily(primary, alternate, destination, fieldIdsAndLengths))
+            return;
+
         // for a while: deserialize from this buffer instead:
         buf = GrowableByteBuffer.wrap(destination);
 
@@ -398,6 +409,39 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         buf = bigBuf;
     }
 
+    /**
+     * Sets the fields of the primary struct to be deserialized from the given data when they are accessed.
+     * This is not done, and false is returned, if some of the fields belong to the alternate struct.
+     */
+    private boolean readLazily(Struct primary, Struct alternate, byte[] data, List<Tuple2<Integer, Long>> fieldIdsAndLengths) {
+        StructDataType priType = primary.getDataType();
+        StructDataType altType = alternate.getDataType();
+        int[] fieldIds = new int[fieldIdsAndLengths.size()];
+        int[] offsets = new int[fieldIdsAndLengths.size()];
+        int[] lengths = new int[fieldIdsAndLengths.size()];
+        int fieldCount = 0;
+        int offset = 0;
+        for (Tuple2<Integer, Long> fieldIdAndLength : fieldIdsAndLengths) {
+            int length = fieldIdAndLength.second.intValue();
+            if (priType.getField(fieldIdAndLength.first) != null) {
+                fieldIds[fieldCount] = fieldIdAndLength.first;
+                offsets[fieldCount] = offset;
+                lengths[fieldCount] = length;
+                fieldCount++;
+            }
+            else if (altType.getField(fieldIdAndLength.first) != null) {
+                return false;
+            } // else ignore unknown field
+            offset += length;
+        }
+        primary.setSerializedFields(new SerializedFields(manager,
+                                                         data,
+                                                         Arrays.copyOf(fieldIds, fieldCount),
+                                                         Arrays.copyOf(offsets, fieldCount),
+                                                         Arrays.copyOf(lengths, fieldCount)));
+        return true;
+    }
+
     public void read(FieldBase field, StructuredFieldValue value) {
         throw new IllegalArgumentException("read not implemented yet.");
     }
@@ -61,7 +61,6 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -74,9 +73,16 @@ import static com.yahoo.text.Utf8.calculateBytePositions;
  **/
 public class VespaDocumentSerializer6 extends BufferSerializer implements DocumentSerializer {
 
+    /** Struct buffers larger than this are not kept for reuse, to bound the memory held by reused serializers */
+    private static final int maxReusedStructBufferSize = 1 << 20;
+
     private int spanNodeCounter = -1;
     private int[] bytePositions;
 
+    /** The buffers the fields of structs are serialized into, by struct nesting depth, reused between structs */
+    private final List<GrowableByteBuffer> structBuffers = new ArrayList<>();
+    private int structDepth = 0;
+
     VespaDocumentSerializer6(GrowableByteBuffer buf) {
         super(buf);
     }
@@ -331,25 +337,36 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         //keep the buffer we're serializing everything into:
         GrowableByteBuffer bigBuffer = buf;
 
-        //create a new buffer and serialize into that for a while:
-        GrowableByteBuffer buffer = new GrowableByteBuffer(4096, 2.0f);
+        //serialize into the buffer of this struct depth for a while:
+        GrowableByteBuffer buffer = structBuffer(structDepth);
         buf = buffer;
+        structDepth++;
 
-        List<Integer> fieldIds = new LinkedList<>();
-        List<java.lang.Integer> fieldLengths = new LinkedList<>();
-
-        for (Map.Entry<Field, FieldValue> value : s.getFields()) {
+        int fieldCount = s.getFieldCount();
+        int[] fieldIds = new int[fieldCount];
+        int[] fieldLengths = new int[fieldCount];
 
-            int startPos = buffer.position();
-            value.getValue().serialize(value.getKey(), this);
-
-            fieldLengths.add(buffer.position() - startPos);
-            fieldIds.add(value.getKey().getId());
+        try {
+            int i = 0;
+            for (Map.Entry<Field, FieldValue> value : s.getFields()) {
+                int startPos = buffer.position();
+                ByteBuffer serializedValue = s.getSerializedFieldValue(value.getKey());
+                if (serializedValue != null) // Not deserialized, so it is unchanged
+                    buffer.put(serializedValue);
+                else
+                    value.getValue().serialize(value.getKey(), this);
+
+                fieldLengths[i] = buffer.position() - startPos;
+                fieldIds[i] = value.getKey().getId();
+                i++;
+            }
+        }
+        finally {
+            // Switch buffers again:
+            structDepth--;
+            buf = bigBuffer;
         }
-
-        // Switch buffers again:
         buffer.flip();
-        buf = bigBuffer;
 
         int uncompressedSize = buffer.remaining();
         Compressor.Compression compression =
@@ -364,11 +381,11 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
             buf.putInt2_4_8Bytes(uncompressedSize);
         }
 
-        buf.putInt1_4Bytes(s.getFieldCount());
+        buf.putInt1_4Bytes(fieldCount);
 
-        for (int i = 0; i < s.getFieldCount(); ++i) {
-            putInt1_4Bytes(null, fieldIds.get(i));
-            putInt2_4_8Bytes(null, fieldLengths.get(i));
+        for (int i = 0; i < fieldCount; ++i) {
+            putInt1_4Bytes(null, fieldIds[i]);
+            putInt2_4_8Bytes(null, fieldLengths[i]);
         }
 
         int pos = buf.position();
@@ -383,6 +400,22 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         buf.position(lenPos);
         putInt(null, dataLength);
         buf.position(posNow);
+
+        if (buffer.capacity() > maxReusedStructBufferSize)
+            structBuffers.set(structDepth, null);
+    }
+
+    /** Returns the cleared buffer to serialize the fields of structs at the given depth into */
+    private GrowableByteBuffer structBuffer(int depth) {
+        if (depth == structBuffers.size())
+            structBuffers.add(null);
+        GrowableByteBuffer buffer = structBuffers.get(depth);
+        if (buffer == null) {
+            buffer = new GrowableByteBuffer(4096, 2.0f);
+            structBuffers.set(depth, buffer);
+        }
+        buffer.clear();
+        return buffer;
     }
 
     /**
@@ -0,0 +1,101 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.text.Utf8;
+import com.yahoo.vespaxmlparser.FeedOperation;
+import com.yahoo.vespaxmlparser.FeedReader;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+/**
+ * Benchmarks the throughput of reading a JSON feed of documents with {@link JsonFeedReader}, both when the
+ * document id is given before the fields, such that they are read directly from the parser, and after them,
+ * such that they must be buffered
+ */
+public class JsonFeedReaderBenchmark {
+
+    private static final int textFields = 10;
+    private static final int arraySize = 100;
+
+    private final DocumentTypeManager types = new DocumentTypeManager();
+    private final Random random = new Random(42);
+
+    public JsonFeedReaderBenchmark() {
+        DocumentType type = new DocumentType("article");
+        for (int i = 0; i < textFields; i++)
+            type.addField(new Field("text" + i, DataType.STRING));
+        type.addField(new Field("tags", new ArrayDataType(DataType.STRING)));
+        type.addField(new Field("popularity", DataType.INT));
+        types.registerDocumentType(type);
+    }
+
+    public void benchmark(String name, int documents, boolean idFirst) throws Exception {
+        byte[] feed = createFeed(documents, idFirst);
+        read(feed); // warmup
+
+        long startTime = System.nanoTime();
+        int read = read(feed);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.printf("%-12s %8.1f documents/s, %8.3f us per document, %6.1f MB/s\n",
+                          name,
+                          read * 1e9 / totalTime,
+                          totalTime / 1000.0 / read,
+                          feed.length * 1e3 / totalTime);
+    }
+
+    private int read(byte[] feed) throws Exception {
+        FeedReader reader = new JsonFeedReader(new ByteArrayInputStream(feed), types);
+        int count = 0;
+        while (reader.read().getType() != FeedOperation.Type.INVALID)
+            count++;
+        return count;
+    }
+
+    private byte[] createFeed(int documents, boolean idFirst) {
+        StringBuilder b = new StringBuilder("[\n");
+        for (int i = 0; i < documents; i++) {
+            if (i > 0) b.append(",\n");
+            b.append("{");
+            if (idFirst)
+                b.append("\"put\": \"id:test:article::").append(i).append("\", ");
+            b.append("\"fields\": {");
+            for (int field = 0; field < textFields; field++)
+                b.append("\"text").append(field).append("\": \"").append(text(50)).append("\", ");
+            b.append("\"tags\": [");
+            for (int tag = 0; tag < arraySize; tag++) {
+                if (tag > 0) b.append(", ");
+                b.append("\"").append(text(1)).append("\"");
+            }
+            b.append("], \"popularity\": ").append(random.nextInt(1000)).append("}");
+            if ( ! idFirst)
+                b.append(", \"put\": \"id:test:article::").append(i).append("\"");
+            b.append("}");
+        }
+        return Utf8.toBytes(b.append("\n]").toString());
+    }
+
+    private String text(int words) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) b.append(" ");
+            for (int length = 3 + random.nextInt(7); length > 0; length--)
+                b.append((char)('a' + random.nextInt(26)));
+        }
+        return b.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        JsonFeedReaderBenchmark benchmark = new JsonFeedReaderBenchmark();
+        for (int i = 0; i < 3; i++) {
+            benchmark.benchmark("Id first", 20000, true);
+            benchmark.benchmark("Id last", 20000, false);
+        }
+    }
+
+}
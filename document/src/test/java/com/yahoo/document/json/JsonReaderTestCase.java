@@ -2,6 +2,7 @@
 package com.yahoo.document.json;
 
 import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import com.google.common.base.Joiner;
 import com.yahoo.collections.Tuple2;
@@ -431,6 +432,73 @@ public class JsonReaderTestCase {
         assertEquals(Double.valueOf(13), matches.get(o).first);
     }
 
+    @Test
+    public void testUpdateMatchWhenFieldsAreNotBuffered() {
+        JsonReader r = createReader(inputJson("[{ 'update': 'id:unittest:testset::whee',",
+                "  'fields': {",
+                "    'actualset': {",
+                "      'match': {",
+                "        'element': 'person',",
+                "        'increment': 13 }}},",
+                "  'create': true },",
+                "{ 'remove': 'id:unittest:smoke::whee' }]"));
+
+        DocumentUpdate update = (DocumentUpdate) r.next();
+        MapValueUpdate match = (MapValueUpdate) update.getFieldUpdate("actualset").getValueUpdate(0);
+        assertEquals("person", ((StringFieldValue) match.getValue()).getString());
+        assertEquals(13, ((ArithmeticValueUpdate) match.getUpdate()).getOperand().intValue());
+        assertTrue(update.getCreateIfNonExistent());
+        assertEquals("id:unittest:smoke::whee", r.next().getId().toString());
+        assertNull(r.next());
+    }
+
+    @Test
+    public void testDocumentAfterInvalidFieldsIsRead() {
+        JsonReader r = createReader(inputJson("[",
+                "{ 'put': 'id:unittest:smoke::0',",
+                "  'fields': {",
+                "    'smething': 'smoketest',",
+                "    'nalle': { 'is': [ 'not', 'a' ], 'string': {} }},",
+                "  'condition': 'smoke.nalle' },",
+                "{ 'put': 'id:unittest:smoke::1',",
+                "  'fields': {",
+                "    'something': 'smoketest',",
+                "    'flag': true,",
+                "    'nalle': 'bamse' }}]"));
+        try {
+            r.next();
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("No field 'smething' in the structure of type 'smoke'", Exceptions.toMessageString(e));
+        }
+        DocumentPut put = (DocumentPut) r.next();
+        assertEquals("id:unittest:smoke::1", put.getId().toString());
+        smokeTestDoc(put.getDocument());
+        assertNull(r.next());
+    }
+
+    @Test
+    public void testStructuralErrorInFieldsEndsFeed() {
+        JsonReader r = createReader(inputJson("[",
+                "{ 'put': 'id:unittest:smoke::0',",
+                "  'fields': {",
+                "    'something': 'smoketest',",
+                "    'nalle': 'bamse' ]},",
+                "{ 'put': 'id:unittest:smoke::1',",
+                "  'fields': {",
+                "    'something': 'smoketest' }}]"));
+        try {
+            r.next();
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid JSON in document 'id:unittest:smoke::0': Unexpected close marker ']'"));
+            assertTrue(e.getCause() instanceof JsonParseException);
+        }
+        assertNull(r.next());
+    }
+
     @SuppressWarnings({ "cast", "unchecked", "rawtypes" })
     @Test
     public void testArithmeticOperators() throws IOException {
@@ -1325,6 +1393,38 @@ public class JsonReaderTestCase {
         assertTrue(tensor instanceof IndexedTensor); // this matters for performance
     }
 
+    @Test
+    public void testParsingOfDenseTensorOnNestedDenseForm() {
+        Tensor expected = Tensor.from("tensor(x[2],y[3]):[[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]");
+        Tensor tensor = assertTensorField(expected,
+                                          createPutWithTensor(inputJson("{",
+                                                                        "  'values': [[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]",
+                                                                        "}"), "dense_tensor"), "dense_tensor");
+        assertTrue(tensor instanceof IndexedTensor); // this matters for performance
+    }
+
+    @Test
+    public void testParsingOfDenseTensorOnShortForm() {
+        Tensor expected = Tensor.from("tensor(x[2],y[3]):[[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]");
+        assertTensorField(expected,
+                          createPutWithTensor(inputJson("[2.0, 3.0, 4.0, 5.0, 6.0, 7.0]"), "dense_tensor"),
+                          "dense_tensor");
+        assertTensorField(expected,
+                          createPutWithTensor(inputJson("[[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]"), "dense_tensor"),
+                          "dense_tensor");
+    }
+
+    @Test
+    public void testParsingOfDenseTensorWithWrongNumberOfValues() {
+        try {
+            createPutWithTensor(inputJson("{ 'values': [2.0, 3.0, 4.0, 5.0, 6.0] }"), "dense_tensor");
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), containsString("Expected 6 values, but got 5"));
+        }
+    }
+
     @Test
     public void testParsingOfMixedTensorOnMixedForm() {
         Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(x{},y[3])"));
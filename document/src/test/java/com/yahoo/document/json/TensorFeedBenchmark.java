@@ -0,0 +1,97 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.TensorDataType;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.text.Utf8;
+
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Benchmarks the throughput of reading a JSON feed of documents containing a dense embedding tensor,
+ * for each of the forms the tensor can be written on
+ */
+public class TensorFeedBenchmark {
+
+    private static final int vectorSize = 768;
+
+    private final DocumentTypeManager types = new DocumentTypeManager();
+    private final JsonFactory parserFactory = new JsonFactory();
+    private final Random random = new Random(42);
+
+    public TensorFeedBenchmark() {
+        DocumentType type = new DocumentType("embedding");
+        type.addField(new Field("vector", new TensorDataType(TensorType.fromSpec("tensor<float>(x[" + vectorSize + "])"))));
+        types.registerDocumentType(type);
+    }
+
+    public void benchmark(String name, int documents, IntFunction<String> tensorWriter) {
+        byte[] feed = createFeed(documents, tensorWriter);
+        read(feed); // warmup
+
+        long startTime = System.nanoTime();
+        int read = read(feed);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.printf("%-8s %8.1f documents/s, %8.3f us per document, %6.1f MB/s\n",
+                          name,
+                          read * 1e9 / totalTime,
+                          totalTime / 1000.0 / read,
+                          feed.length * 1e3 / totalTime);
+    }
+
+    private int read(byte[] feed) {
+        JsonReader reader = new JsonReader(types, new ByteArrayInputStream(feed), parserFactory);
+        int count = 0;
+        while (reader.next() != null)
+            count++;
+        return count;
+    }
+
+    private byte[] createFeed(int documents, IntFunction<String> tensorWriter) {
+        StringBuilder b = new StringBuilder("[\n");
+        for (int i = 0; i < documents; i++) {
+            if (i > 0) b.append(",\n");
+            b.append("{\"put\": \"id:test:embedding::").append(i).append("\", ");
+            b.append("\"fields\": {\"vector\": ").append(tensorWriter.apply(i)).append("}}");
+        }
+        return Utf8.toBytes(b.append("\n]").toString());
+    }
+
+    private String cells(int document) {
+        StringBuilder b = new StringBuilder("{\"cells\": [");
+        for (int i = 0; i < vectorSize; i++) {
+            if (i > 0) b.append(", ");
+            b.append("{\"address\": {\"x\": \"").append(i).append("\"}, \"value\": ").append(random.nextFloat()).append("}");
+        }
+        return b.append("]}").toString();
+    }
+
+    private String values(int document) {
+        return "{\"values\": " + shortForm(document) + "}";
+    }
+
+    private String shortForm(int document) {
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < vectorSize; i++) {
+            if (i > 0) b.append(", ");
+            b.append(random.nextFloat());
+        }
+        return b.append("]").toString();
+    }
+
+    public static void main(String[] args) {
+        TensorFeedBenchmark benchmark = new TensorFeedBenchmark();
+        for (int i = 0; i < 3; i++) {
+            benchmark.benchmark("Cells", 10000, benchmark::cells);
+            benchmark.benchmark("Values", 10000, benchmark::values);
+            benchmark.benchmark("Short", 10000, benchmark::shortForm);
+        }
+    }
+
+}
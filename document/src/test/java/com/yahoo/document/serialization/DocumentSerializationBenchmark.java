@@ -0,0 +1,126 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.StructDataType;
+import com.yahoo.document.datatypes.Array;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.Struct;
+import com.yahoo.io.GrowableByteBuffer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Benchmarks serializing large documents with many struct and array fields, both with a new serializer for
+ * each document and with the serializer reused by the thread, and reports the time and the bytes allocated
+ * per document.
+ */
+public class DocumentSerializationBenchmark {
+
+    private static final int structFields = 10;
+    private static final int stringFieldsPerStruct = 5;
+    private static final int arraySize = 100;
+
+    private final Random random = new Random(42);
+    private final DocumentType type = new DocumentType("article");
+    private final StructDataType structType = new StructDataType("section");
+    private final ArrayDataType arrayType = new ArrayDataType(structType);
+
+    public DocumentSerializationBenchmark() {
+        for (int i = 0; i < stringFieldsPerStruct; i++)
+            structType.addField(new Field("text" + i, DataType.STRING));
+        structType.addField(new Field("count", DataType.INT));
+        for (int i = 0; i < structFields; i++)
+            type.addField(new Field("section" + i, structType));
+        type.addField(new Field("sections", arrayType));
+        type.addField(new Field("tags", new ArrayDataType(DataType.STRING)));
+    }
+
+    public void benchmark(String name, Document[] documents, boolean reuse) {
+        serialize(documents, reuse); // warmup
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long startAllocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long startTime = System.nanoTime();
+        long bytes = serialize(documents, reuse);
+        long totalTime = System.nanoTime() - startTime;
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - startAllocated;
+        System.out.printf("%-12s %8.3f us per document, %6.1f MB/s, %9d bytes allocated per %d byte document\n",
+                          name,
+                          totalTime / 1000.0 / documents.length,
+                          bytes * 1e3 / totalTime,
+                          allocated / documents.length,
+                          bytes / documents.length);
+    }
+
+    private long serialize(Document[] documents, boolean reuse) {
+        long bytes = 0;
+        for (Document document : documents) {
+            if (reuse) {
+                bytes += DocumentSerializerFactory.withReusedHead(serializer -> {
+                    serializer.write(document);
+                    return serializer.getBuf().position();
+                });
+            }
+            else {
+                DocumentSerializer serializer = DocumentSerializerFactory.createHead(new GrowableByteBuffer(8192));
+                serializer.write(document);
+                bytes += serializer.getBuf().position();
+            }
+        }
+        return bytes;
+    }
+
+    private Document[] createDocuments(int count) {
+        Document[] documents = new Document[count];
+        for (int i = 0; i < count; i++) {
+            Document document = new Document(type, "id:test:article::" + i);
+            for (int field = 0; field < structFields; field++)
+                document.setFieldValue("section" + field, createStruct());
+            Array<Struct> sections = new Array<>(arrayType);
+            Array<StringFieldValue> tags = new Array<>(new ArrayDataType(DataType.STRING));
+            for (int element = 0; element < arraySize; element++) {
+                sections.add(createStruct());
+                tags.add(new StringFieldValue(text(1)));
+            }
+            document.setFieldValue("sections", sections);
+            document.setFieldValue("tags", tags);
+            documents[i] = document;
+        }
+        return documents;
+    }
+
+    private Struct createStruct() {
+        Struct struct = new Struct(structType);
+        for (int i = 0; i < stringFieldsPerStruct; i++)
+            struct.setFieldValue("text" + i, new StringFieldValue(text(10)));
+        struct.setFieldValue("count", new IntegerFieldValue(random.nextInt(1000)));
+        return struct;
+    }
+
+    private String text(int words) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) b.append(" ");
+            for (int length = 3 + random.nextInt(7); length > 0; length--)
+                b.append((char)('a' + random.nextInt(26)));
+        }
+        return b.toString();
+    }
+
+    public static void main(String[] args) {
+        DocumentSerializationBenchmark benchmark = new DocumentSerializationBenchmark();
+        Document[] documents = benchmark.createDocuments(1000);
+        for (int i = 0; i < 3; i++) {
+            benchmark.benchmark("New", documents, false);
+            benchmark.benchmark("Reused", documents, true);
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.MapDataType;
+import com.yahoo.document.StructDataType;
+import com.yahoo.document.datatypes.Array;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.MapFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.Struct;
+import com.yahoo.io.GrowableByteBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests reading documents with fields which are deserialized when they are accessed.
+ */
+public class LazyFieldDeserializationTestCase {
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentType type = new DocumentType("article");
+    private final StructDataType sectionType = new StructDataType("section");
+    private final ArrayDataType sectionsType = new ArrayDataType(sectionType);
+    private final MapDataType attributesType = new MapDataType(DataType.STRING, DataType.INT);
+
+    public LazyFieldDeserializationTestCase() {
+        sectionType.addField(new Field("title", DataType.STRING));
+        sectionType.addField(new Field("length", DataType.INT));
+        type.addField(new Field("title", DataType.STRING));
+        type.addField(new Field("popularity", DataType.INT));
+        type.addField(new Field("sections", sectionsType));
+        type.addField(new Field("attributes", attributesType));
+        manager.registerDocumentType(type);
+    }
+
+    @Test
+    public void lazily_read_document_equals_eagerly_read_document() {
+        byte[] serialized = serialize(createDocument());
+        Document eager = readEagerly(serialized);
+        Document lazy = readLazily(serialized);
+        assertEquals(eager, lazy);
+        assertEquals(eager.hashCode(), readLazily(serialized).hashCode());
+        assertEquals(eager.toString(), readLazily(serialized).toString());
+        assertEquals(4, lazy.getFieldCount());
+    }
+
+    @Test
+    public void fields_are_deserialized_when_accessed() {
+        Document document = readLazily(serialize(createDocument()));
+        Field title = type.getField("title");
+        Field sections = type.getField("sections");
+        assertNotNull(document.getHeader().getSerializedFieldValue(title));
+        assertNotNull(document.getHeader().getSerializedFieldValue(sections));
+
+        assertEquals(new StringFieldValue("A title"), document.getFieldValue(title));
+        assertNull(document.getHeader().getSerializedFieldValue(title));
+        assertNotNull(document.getHeader().getSerializedFieldValue(sections));
+        assertEquals(createDocument().getFieldValue(sections), document.getFieldValue(sections));
+        assertNull(document.getHeader().getSerializedFieldValue(sections));
+    }
+
+    @Test
+    public void unaccessed_fields_are_serialized_by_copying() {
+        byte[] serialized = serialize(createDocument());
+        Document document = readLazily(serialized);
+        assertArrayEquals(serialized, serialize(document));
+
+        document.getFieldValue("popularity");
+        assertArrayEquals(serialized, serialize(document));
+
+        document.setFieldValue("title", new StringFieldValue("Another title"));
+        Document expected = createDocument();
+        expected.setFieldValue("title", new StringFieldValue("Another title"));
+        assertEquals(expected, readEagerly(serialize(document)));
+    }
+
+    @Test
+    public void fields_are_deserialized_when_iterated_over() {
+        Document document = readLazily(serialize(createDocument()));
+        Document expected = createDocument();
+        int count = 0;
+        for (Iterator<Map.Entry<Field, FieldValue>> fields = document.iterator(); fields.hasNext(); count++) {
+            Map.Entry<Field, FieldValue> field = fields.next();
+            assertEquals(expected.getFieldValue(field.getKey()), field.getValue());
+        }
+        assertEquals(4, count);
+    }
+
+    @Test
+    public void copies_of_lazily_read_documents_are_independent() {
+        Document document = readLazily(serialize(createDocument()));
+        Document copy = document.clone();
+        ((StringFieldValue) copy.getFieldValue("title")).setUnChecked("Another title");
+        copy.removeFieldValue("popularity");
+
+        assertNotNull(document.getHeader().getSerializedFieldValue(type.getField("title")));
+        assertEquals(createDocument(), document);
+        assertEquals(new StringFieldValue("Another title"), readEagerly(serialize(copy)).getFieldValue("title"));
+        assertNull(readEagerly(serialize(copy)).getFieldValue("popularity"));
+    }
+
+    @Test
+    public void lazily_read_fields_are_cleared() {
+        Document document = readLazily(serialize(createDocument()));
+        document.clear();
+        assertEquals(0, document.getFieldCount());
+        assertNull(document.getHeader().getSerializedFieldValue(type.getField("title")));
+        assertNull(document.getFieldValue("title"));
+    }
+
+    @Test
+    public void lazily_read_documents_can_be_read_by_multiple_threads() throws Exception {
+        byte[] serialized = serialize(createDocument());
+        Document expected = createDocument();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 100; i++) {
+                Document document = readLazily(serialized);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int thread = 0; thread < 4; thread++) {
+                    results.add(executor.submit(() -> {
+                        for (Field field : type.getFields())
+                            if ( ! expected.getFieldValue(field).equals(document.getFieldValue(field))) return false;
+                        return Arrays.equals(serialized, serialize(document)) && expected.equals(document);
+                    }));
+                }
+                for (Future<Boolean> result : results)
+                    assertTrue(result.get());
+                for (Field field : type.getFields())
+                    assertNull(document.getHeader().getSerializedFieldValue(field));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private Document createDocument() {
+        Document document = new Document(type, "id:test:article::0");
+        document.setFieldValue("title", new StringFieldValue("A title"));
+        document.setFieldValue("popularity", new IntegerFieldValue(42));
+        Array<Struct> sections = new Array<>(sectionsType);
+        for (int i = 0; i < 3; i++) {
+            Struct section = new Struct(sectionType);
+            section.setFieldValue("title", new StringFieldValue("Section " + i));
+            section.setFieldValue("length", new IntegerFieldValue(i * 100));
+            sections.add(section);
+        }
+        document.setFieldValue("sections", sections);
+        MapFieldValue<StringFieldValue, IntegerFieldValue> attributes = new MapFieldValue<>(attributesType);
+        attributes.put(new StringFieldValue("foo"), new IntegerFieldValue(1));
+        attributes.put(new StringFieldValue("bar"), new IntegerFieldValue(2));
+        document.setFieldValue("attributes", attributes);
+        return document;
+    }
+
+    private Document readEagerly(byte[] serialized) {
+        return new Document(DocumentDeserializerFactory.createHead(manager, GrowableByteBuffer.wrap(serialized)));
+    }
+
+    private Document readLazily(byte[] serialized) {
+        return new Document(DocumentDeserializerFactory.createHeadWithLazyFields(manager, GrowableByteBuffer.wrap(serialized)));
+    }
+
+    private static byte[] serialize(Document document) {
+        DocumentSerializer serializer = DocumentSerializerFactory.createHead(new GrowableByteBuffer());
+        serializer.write(document);
+        byte[] serialized = new byte[serializer.getBuf().position()];
+        serializer.getBuf().flip();
+        serializer.getBuf().get(serialized);
+        return serialized;
+    }
+
+}
@@ -3,6 +3,7 @@ package com.yahoo.document.serialization;
 
 import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
+import com.yahoo.document.ArrayDataType;
 import com.yahoo.document.CompressionConfig;
 import com.yahoo.document.DataType;
 import com.yahoo.document.Document;
@@ -11,6 +12,7 @@ import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.Field;
 import com.yahoo.document.MapDataType;
 import com.yahoo.document.StructDataType;
+import com.yahoo.document.datatypes.Array;
 import com.yahoo.document.datatypes.IntegerFieldValue;
 import com.yahoo.document.datatypes.MapFieldValue;
 import com.yahoo.document.datatypes.PredicateFieldValue;
@@ -20,6 +22,7 @@ import com.yahoo.io.GrowableByteBuffer;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -65,6 +68,7 @@ public class VespaDocumentSerializerTestCase {
         final DocumentType docType;
         final StructDataType nestedType;
         final MapDataType mapType;
+        final ArrayDataType arrayType;
 
         CompressionFixture() {
             docType = new DocumentType("map_of_structs");
@@ -76,6 +80,9 @@ public class VespaDocumentSerializerTestCase {
             mapType = new MapDataType(DataType.STRING, nestedType);
             docType.addField(new Field("map", mapType));
 
+            arrayType = new ArrayDataType(nestedType);
+            docType.addField(new Field("array", arrayType));
+
             manager = new DocumentTypeManager();
             manager.registerDocumentType(docType);
         }
@@ -129,4 +136,59 @@ public class VespaDocumentSerializerTestCase {
         // rounded up to 4096 bytes.
         assertTrue(buf.remaining() < 4096);
     }
+
+    @Test
+    public void reused_serializer_produces_same_serialization_as_new_serializer() {
+        CompressionFixture fixture = new CompressionFixture();
+
+        Document doc = new Document(fixture.docType, "id:foo:map_of_structs::flarn");
+        MapFieldValue<StringFieldValue, Struct> map = new MapFieldValue<StringFieldValue, Struct>(fixture.mapType);
+        Array<Struct> array = new Array<>(fixture.arrayType);
+        for (int i = 0; i < 100; i++) {
+            Struct nested = new Struct(fixture.nestedType);
+            nested.setFieldValue("str", new StringFieldValue(CompressionFixture.COMPRESSABLE_STRING + i));
+            map.put(new StringFieldValue("key" + i), nested);
+            array.add(nested);
+        }
+        doc.setFieldValue("map", map);
+        doc.setFieldValue("array", array);
+
+        byte[] expected = serialize(doc, DocumentSerializerFactory.createHead(new GrowableByteBuffer()));
+        DocumentSerializer reused = DocumentSerializerFactory.createHead(new GrowableByteBuffer());
+        assertArrayEquals(expected, serialize(doc, reused));
+        reused.getBuf().clear();
+        assertArrayEquals(expected, serialize(doc, reused));
+        assertArrayEquals(expected, DocumentSerializerFactory.withReusedHead(serializer -> serialize(doc, serializer)));
+        assertArrayEquals(expected, DocumentSerializerFactory.withReusedHead(serializer -> serialize(doc, serializer)));
+        assertEquals(doc, fixture.manager.createDocument(GrowableByteBuffer.wrap(expected)));
+    }
+
+    @Test
+    public void reused_serializer_is_not_shared_with_nested_serialization() {
+        DocumentType docType = new DocumentType("my_type");
+        docType.addField("my_str", DataType.STRING);
+        Document doc = new Document(docType, "id:ns:my_type::");
+        doc.setFieldValue("my_str", new StringFieldValue("foo"));
+
+        byte[] expected = serialize(doc, DocumentSerializerFactory.createHead(new GrowableByteBuffer()));
+        byte[] serialized = DocumentSerializerFactory.withReusedHead(serializer -> {
+            serializer.write(doc);
+            assertEquals(expected.length, doc.getSerializedSize());
+            return toArray(serializer.getBuf());
+        });
+        assertArrayEquals(expected, serialized);
+    }
+
+    private static byte[] serialize(Document doc, DocumentSerializer serializer) {
+        serializer.write(doc);
+        return toArray(serializer.getBuf());
+    }
+
+    private static byte[] toArray(GrowableByteBuffer buf) {
+        byte[] bytes = new byte[buf.position()];
+        buf.flip();
+        buf.get(bytes);
+        return bytes;
+    }
+
 }
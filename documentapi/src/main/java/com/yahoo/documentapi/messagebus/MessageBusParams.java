@@ -20,6 +20,7 @@ public class MessageBusParams extends DocumentAccessParams {
     private com.yahoo.messagebus.MessageBusParams mbusParams = new com.yahoo.messagebus.MessageBusParams();
     private SourceSessionParams sourceSessionParams = new SourceSessionParams();
     private LoadTypeSet loadTypes;
+    private boolean lazyFieldDeserialization = false;
 
     public MessageBusParams() {
         this(new LoadTypeSet());
@@ -203,4 +204,26 @@ public class MessageBusParams extends DocumentAccessParams {
         sourceSessionParams = new SourceSessionParams(params);
         return this;
     }
+
+    /**
+     * Returns whether the fields of received documents are deserialized when they are first accessed.
+     *
+     * @return Whether document fields are deserialized lazily.
+     */
+    public boolean getLazyFieldDeserialization() {
+        return lazyFieldDeserialization;
+    }
+
+    /**
+     * Sets whether the fields of received documents, e.g. those returned to a visitor session, are deserialized
+     * when they are first accessed rather than when the message is received. This saves work for clients which
+     * only access some of the fields of each document. This is off by default.
+     *
+     * @param lazyFieldDeserialization Whether to deserialize document fields when they are accessed.
+     * @return This object for chaining.
+     */
+    public MessageBusParams setLazyFieldDeserialization(boolean lazyFieldDeserialization) {
+        this.lazyFieldDeserialization = lazyFieldDeserialization;
+        return this;
+    }
 }
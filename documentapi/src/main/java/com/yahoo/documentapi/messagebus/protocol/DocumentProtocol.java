@@ -371,6 +371,19 @@ public class DocumentProtocol implements Protocol {
         return this;
     }
 
+    /**
+     * Sets whether the fields of documents in decoded routables are deserialized when they are first accessed,
+     * rather than when the routable is decoded. Fields which are never accessed are then encoded again by copying
+     * their serialized value. This is off by default.
+     *
+     * @param lazyFieldDeserialization Whether to deserialize document fields when they are accessed.
+     * @return This, to allow chaining.
+     */
+    public DocumentProtocol setLazyFieldDeserialization(boolean lazyFieldDeserialization) {
+        routableRepository.setLazyFieldDeserialization(lazyFieldDeserialization);
+        return this;
+    }
+
     /**
      * Convenience method to call {@link #putRoutableFactory(int, RoutableFactory, com.yahoo.component.VersionSpecification)}
      * for multiple version specifications.
@@ -7,7 +7,6 @@ import com.yahoo.concurrent.CopyOnWriteHashMap;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.serialization.DocumentDeserializer;
 import com.yahoo.document.serialization.DocumentDeserializerFactory;
-import com.yahoo.document.serialization.DocumentSerializer;
 import com.yahoo.document.serialization.DocumentSerializerFactory;
 import com.yahoo.documentapi.messagebus.loadtypes.LoadTypeSet;
 import com.yahoo.io.GrowableByteBuffer;
@@ -34,11 +33,17 @@ final class RoutableRepository {
     private final CopyOnWriteHashMap<Integer, VersionMap> factoryTypes = new CopyOnWriteHashMap<>();
     private final CopyOnWriteHashMap<CacheKey, RoutableFactory> cache = new CopyOnWriteHashMap<>();
     private LoadTypeSet loadTypes;
+    private volatile boolean lazyFieldDeserialization = false;
 
     public RoutableRepository(LoadTypeSet set) {
         loadTypes = set;
     }
 
+    /** Sets whether the fields of decoded documents are deserialized when they are first accessed */
+    void setLazyFieldDeserialization(boolean lazyFieldDeserialization) {
+        this.lazyFieldDeserialization = lazyFieldDeserialization;
+    }
+
     /**
      * Decodes a {@link Routable} from the given byte array. This uses the content of the byte array to dispatch the
      * decode request to the appropriate {@link RoutableFactory} that was previously registered.
@@ -58,7 +63,9 @@ final class RoutableRepository {
             log.log(LogLevel.ERROR,"Can not decode anything from (version " + version + "). Only major version 5 and up supported.");
             return null;
         }
-        DocumentDeserializer in = DocumentDeserializerFactory.createHead(docMan, GrowableByteBuffer.wrap(data));
+        DocumentDeserializer in = lazyFieldDeserialization
+                                  ? DocumentDeserializerFactory.createHeadWithLazyFields(docMan, GrowableByteBuffer.wrap(data))
+                                  : DocumentDeserializerFactory.createHead(docMan, GrowableByteBuffer.wrap(data));
 
 
         int type = in.getInt(null);
@@ -97,18 +104,18 @@ final class RoutableRepository {
             log.log(LogLevel.ERROR,"Can not encode routable type " + type + " (version " + version + "). Only major version 5 and up supported.");
             return new byte[0];
         }
-        DocumentSerializer out= DocumentSerializerFactory.createHead(new GrowableByteBuffer(8192));
-
-        out.putInt(null, type);
-        if (!factory.encode(obj, out)) {
-            log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
-                                    "routable of type " + type + " (version " + version + ").");
-            return new byte[0];
-        }
-        byte[] ret = new byte[out.getBuf().position()];
-        out.getBuf().rewind();
-        out.getBuf().get(ret);
-        return ret;
+        return DocumentSerializerFactory.withReusedHead(out -> {
+            out.putInt(null, type);
+            if (!factory.encode(obj, out)) {
+                log.log(LogLevel.ERROR, "Routable factory " + factory.getClass().getName() + " failed to serialize " +
+                                        "routable of type " + type + " (version " + version + ").");
+                return new byte[0];
+            }
+            byte[] ret = new byte[out.getBuf().position()];
+            out.getBuf().rewind();
+            out.getBuf().get(ret);
+            return ret;
+        });
     }
 
     /**
@@ -0,0 +1,58 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi.messagebus.protocol.test;
+
+import com.yahoo.component.Version;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that document fields are deserialized lazily only when this is turned on in the protocol.
+ */
+public class LazyFieldDeserializationTestCase {
+
+    private static final Version version = new Version(6, 221, 0);
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentType type = new DocumentType("testdoc");
+    private final Field title = new Field("title", DataType.STRING);
+
+    public LazyFieldDeserializationTestCase() {
+        type.addField(title);
+        manager.registerDocumentType(type);
+    }
+
+    @Test
+    public void document_fields_are_deserialized_eagerly_by_default() {
+        Document document = decode(new DocumentProtocol(manager));
+        assertNull(document.getHeader().getSerializedFieldValue(title));
+        assertEquals(new StringFieldValue("A title"), document.getFieldValue(title));
+    }
+
+    @Test
+    public void document_fields_are_deserialized_lazily_when_requested() {
+        Document document = decode(new DocumentProtocol(manager).setLazyFieldDeserialization(true));
+        assertNotNull(document.getHeader().getSerializedFieldValue(title));
+        assertEquals(new StringFieldValue("A title"), document.getFieldValue(title));
+        assertNull(document.getHeader().getSerializedFieldValue(title));
+    }
+
+    private Document decode(DocumentProtocol protocol) {
+        Document document = new Document(type, "id:ns:testdoc::0");
+        document.setFieldValue(title, new StringFieldValue("A title"));
+        byte[] encoded = protocol.encode(version, new PutDocumentMessage(new DocumentPut(document)));
+        return ((PutDocumentMessage) protocol.decode(version, encoded)).getDocumentPut().getDocument();
+    }
+
+}
@@ -0,0 +1,217 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.CompiledExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
+import com.yahoo.tensor.TensorType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An evaluator which can be used to evaluate a single function for a batch of bindings in a single thread.
+ *
+ * All evaluations of a batch reuse the same context. Functions taking and returning scalars are evaluated by
+ * compiled code rather than by interpretation when possible.
+ */
+// This wraps all access to the context and the ranking expression to avoid incorrect usage
+public class BatchEvaluator {
+
+    private final ExpressionFunction function;
+    private final LazyArrayContext context;
+
+    /** The compiled function, or empty if it must be interpreted */
+    private final Optional<CompiledExpression> compiled;
+
+    BatchEvaluator(ExpressionFunction function, LazyArrayContext context, Optional<CompiledExpression> compiled) {
+        this.function = function;
+        this.context = context;
+        this.compiled = compiled;
+    }
+
+    /**
+     * Sets the default value to use for variables which are not bound
+     *
+     * @param value the default value
+     * @return this for chaining
+     */
+    public BatchEvaluator setMissingValue(Tensor value) {
+        context.setMissingValue(value);
+        return this;
+    }
+
+    /**
+     * Sets the default value to use for variables which are not bound
+     *
+     * @param value the default value
+     * @return this for chaining
+     */
+    public BatchEvaluator setMissingValue(double value) {
+        return setMissingValue(Tensor.Builder.of(TensorType.empty).cell(value).build());
+    }
+
+    /**
+     * Evaluates the function once for each of the given bindings.
+     *
+     * @param bindings a list of argument bindings, each from argument name to the value it becomes bound to
+     * @return the result of each evaluation, in the order of the given bindings
+     * @throws IllegalArgumentException if a binding is not an argument of the function or has the wrong type
+     * @throws IllegalStateException if an argument of the function is not bound
+     */
+    public List<Tensor> evaluate(List<Map<String, Tensor>> bindings) {
+        List<Tensor> results = new ArrayList<>(bindings.size());
+        for (Map<String, Tensor> binding : bindings) {
+            context.clear();
+            for (Map.Entry<String, Tensor> argument : binding.entrySet()) {
+                FunctionEvaluator.validateBinding(function, argument.getKey(), argument.getValue().type());
+                context.put(argument.getKey(), new TensorValue(argument.getValue()));
+            }
+            results.add(evaluateBound().asTensor());
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates the function once for each label in a batch dimension.
+     * Arguments which have the batch dimension are bound to their subspace at each label in turn, while
+     * arguments which do not are bound to the same value in every evaluation. Arguments which have no cells
+     * at some label are not bound in the evaluation of that label.
+     *
+     * @param batchDimension the name of the dimension whose labels identify the members of the batch
+     * @param bindings the argument bindings, from argument name to the value it becomes bound to.
+     *                 At least one of these must have the batch dimension, and have cells in it
+     * @return a tensor containing the result of each evaluation, having the batch dimension in addition to
+     *         the dimensions of the results
+     * @throws IllegalArgumentException if a binding is not an argument of the function or has the wrong type
+     * @throws IllegalStateException if an argument of the function is not bound
+     */
+    public Tensor evaluate(String batchDimension, Map<String, Tensor> bindings) {
+        TensorType.Dimension batchDimensionType = null;
+        Map<String, Value> unbatchedArguments = new HashMap<>();
+        Map<String, Map<String, Value>> batchedArguments = new HashMap<>();
+        Set<String> batchLabels = new LinkedHashSet<>();
+        for (Map.Entry<String, Tensor> argument : bindings.entrySet()) {
+            Optional<TensorType.Dimension> dimension = argument.getValue().type().dimension(batchDimension);
+            if (dimension.isPresent()) {
+                if (batchDimensionType == null)
+                    batchDimensionType = dimension.get();
+                Map<String, Value> values = split(argument.getKey(), argument.getValue(), batchDimension);
+                batchLabels.addAll(values.keySet());
+                batchedArguments.put(argument.getKey(), values);
+            }
+            else {
+                FunctionEvaluator.validateBinding(function, argument.getKey(), argument.getValue().type());
+                unbatchedArguments.put(argument.getKey(), new TensorValue(argument.getValue()));
+            }
+        }
+        if (batchDimensionType == null)
+            throw new IllegalArgumentException("None of the arguments bound when evaluating " + function +
+                                               " has the batch dimension '" + batchDimension + "'");
+        if (batchLabels.isEmpty())
+            throw new IllegalArgumentException("The arguments bound when evaluating " + function +
+                                               " have no cells in the batch dimension '" + batchDimension + "'");
+
+        Map<String, Value> results = new LinkedHashMap<>();
+        for (String label : batchLabels) {
+            context.clear();
+            for (Map.Entry<String, Value> argument : unbatchedArguments.entrySet())
+                context.put(argument.getKey(), argument.getValue());
+            for (Map.Entry<String, Map<String, Value>> argument : batchedArguments.entrySet()) {
+                Value value = argument.getValue().get(label);
+                if (value != null)
+                    context.put(argument.getKey(), value);
+            }
+            results.put(label, evaluateBound());
+        }
+        return join(results, batchDimensionType);
+    }
+
+    /** Returns the function evaluated by this */
+    public ExpressionFunction function() { return function; }
+
+    /** Evaluates the function with the arguments currently bound in the context */
+    private Value evaluateBound() {
+        FunctionEvaluator.validateArguments(function, context);
+        if (compiled.isPresent())
+            return new DoubleValue(compiled.get().evaluate(context));
+        return function.getBody().evaluate(context);
+    }
+
+    /** Splits the given argument value into the value of each label in the batch dimension */
+    private Map<String, Value> split(String name, Tensor value, String batchDimension) {
+        TensorType type = value.type();
+        TensorType subspaceType = new TensorType(type.valueType(),
+                                                 type.dimensions().stream()
+                                                     .filter(d -> ! d.name().equals(batchDimension))
+                                                     .collect(Collectors.toList()));
+        FunctionEvaluator.validateBinding(function, name, subspaceType);
+
+        int batchDimensionIndex = type.indexOfDimension(batchDimension).get();
+        Map<String, Value> values = new LinkedHashMap<>();
+        if (subspaceType.rank() == 0) { // bind doubles directly
+            for (Iterator<Tensor.Cell> i = value.cellIterator(); i.hasNext(); ) {
+                Tensor.Cell cell = i.next();
+                values.put(cell.getKey().label(batchDimensionIndex), new DoubleValue(cell.getValue()));
+            }
+            return values;
+        }
+
+        Map<String, Tensor.Builder> subspaces = new LinkedHashMap<>();
+        for (Iterator<Tensor.Cell> i = value.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            TensorAddress.Builder address = new TensorAddress.Builder(subspaceType);
+            for (int dimension = 0; dimension < type.rank(); dimension++) {
+                if (dimension == batchDimensionIndex) continue;
+                address.add(type.dimensions().get(dimension).name(), cell.getKey().label(dimension));
+            }
+            subspaces.computeIfAbsent(cell.getKey().label(batchDimensionIndex), label -> Tensor.Builder.of(subspaceType))
+                     .cell(address.build(), cell.getValue());
+        }
+        for (Map.Entry<String, Tensor.Builder> subspace : subspaces.entrySet())
+            values.put(subspace.getKey(), new TensorValue(subspace.getValue().build()));
+        return values;
+    }
+
+    /** Joins the given results, by batch label, into a single tensor having the batch dimension */
+    private Tensor join(Map<String, Value> results, TensorType.Dimension batchDimension) {
+        Tensor firstResult = results.values().iterator().next().asTensor();
+        TensorType resultType = new TensorType.Builder(firstResult.type().valueType(), firstResult.type().dimensions())
+                                        .dimension(batchDimension)
+                                        .build();
+        Tensor.Builder builder = Tensor.Builder.of(resultType);
+        for (Map.Entry<String, Value> result : results.entrySet()) {
+            if (resultType.rank() == 1 && result.getValue() instanceof DoubleValue) { // avoid creating a tensor
+                builder.cell().label(batchDimension.name(), result.getKey()).value(result.getValue().asDouble());
+                continue;
+            }
+            Tensor tensor = result.getValue().asTensor();
+            if ( ! tensor.type().dimensions().equals(firstResult.type().dimensions()))
+                throw new IllegalStateException("Evaluating " + function + " in a batch requires all results to have " +
+                                                "the same type, but got both " + firstResult.type() +
+                                                " and " + tensor.type());
+            for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
+                Tensor.Cell cell = i.next();
+                TensorAddress.Builder address = new TensorAddress.Builder(resultType);
+                address.add(batchDimension.name(), result.getKey());
+                for (int dimension = 0; dimension < tensor.type().rank(); dimension++)
+                    address.add(tensor.type().dimensions().get(dimension).name(), cell.getKey().label(dimension));
+                builder.cell(address.build(), cell.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+}
@@ -0,0 +1,38 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pool of reusable contexts for evaluating a function, holding at most one free context per processor.
+ * Contexts are acquired for a single evaluation and released back to the pool when done.
+ * Contexts which are never released, or released when the pool is full, are simply garbage collected,
+ * and replaced by new copies of the prototype on later acquires. The free contexts are released with this pool.
+ *
+ * This is thread safe.
+ */
+class ContextPool {
+
+    private final LazyArrayContext prototype;
+
+    private final BlockingQueue<LazyArrayContext> freeContexts =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    ContextPool(LazyArrayContext prototype) {
+        this.prototype = prototype;
+    }
+
+    /** Returns a context which is not used by anyone else and has no bound arguments */
+    LazyArrayContext acquire() {
+        LazyArrayContext context = freeContexts.poll();
+        return context != null ? context : prototype.copy();
+    }
+
+    /** Releases a context acquired from this, which must not be used by the caller after this call */
+    void release(LazyArrayContext context) {
+        context.reset();
+        freeContexts.offer(context); // dropped if enough are free already
+    }
+
+}
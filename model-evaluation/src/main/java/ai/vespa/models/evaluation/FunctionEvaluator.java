@@ -2,12 +2,14 @@
 package ai.vespa.models.evaluation;
 
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
 import com.yahoo.searchlib.rankingexpression.evaluation.StringValue;
 import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -20,11 +22,23 @@ public class FunctionEvaluator {
 
     private final ExpressionFunction function;
     private final LazyArrayContext context;
+
+    /** The pool to release the context to after evaluation, or null if the context is not pooled */
+    private final ContextPool contextPool;
+
+    /** The model containing the function */
+    private final Model model;
+
+    /** The pool to use for parallel evaluation, or null to evaluate sequentially */
+    private ForkJoinPool parallelExecutor = null;
+
     private boolean evaluated = false;
 
-    FunctionEvaluator(ExpressionFunction function, LazyArrayContext context) {
+    FunctionEvaluator(ExpressionFunction function, LazyArrayContext context, ContextPool contextPool, Model model) {
         this.function = function;
         this.context = context;
+        this.contextPool = contextPool;
+        this.model = model;
     }
 
     /**
@@ -37,14 +51,7 @@ public class FunctionEvaluator {
     public FunctionEvaluator bind(String name, Tensor value) {
         if (evaluated)
             throw new IllegalStateException("Cannot bind a new value in a used evaluator");
-        TensorType requiredType = function.argumentTypes().get(name);
-        if (requiredType == null)
-            throw new IllegalArgumentException("'" + name + "' is not a valid argument in " + function +
-                                               ". Expected arguments: " + function.argumentTypes().entrySet().stream()
-                                                                                  .map(e -> e.getKey() + ": " + e.getValue())
-                                                                                  .collect(Collectors.joining(", ")));
-        if ( ! value.type().isAssignableTo(requiredType))
-            throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not " + value.type());
+        validateBinding(function, name, value.type());
         context.put(name, new TensorValue(value));
         return this;
     }
@@ -58,7 +65,11 @@ public class FunctionEvaluator {
      * @return this for chaining
      */
     public FunctionEvaluator bind(String name, double value) {
-        return bind(name, Tensor.Builder.of(TensorType.empty).cell(value).build());
+        if (evaluated)
+            throw new IllegalStateException("Cannot bind a new value in a used evaluator");
+        validateBinding(function, name, TensorType.empty);
+        context.put(name, new DoubleValue(value)); // avoids creating a tensor
+        return this;
     }
 
     /**
@@ -99,7 +110,72 @@ public class FunctionEvaluator {
         return setMissingValue(Tensor.Builder.of(TensorType.empty).cell(value).build());
     }
 
+    /**
+     * Sets this to compute the independent functions referenced by the function of this in parallel,
+     * using the given pool, before evaluating the function itself.
+     * Only functions which are estimated to be expensive are computed as separate tasks, and functions
+     * where there is nothing to gain by this are still evaluated sequentially.
+     * Note that this causes all functions referenced by the function to be computed, also those which are only
+     * referenced in condition branches which are not taken.
+     *
+     * @param pool the pool to use for parallel evaluation
+     * @return this for chaining
+     */
+    public FunctionEvaluator setParallelExecutor(ForkJoinPool pool) {
+        if (evaluated)
+            throw new IllegalStateException("Cannot change the executor of a used evaluator");
+        this.parallelExecutor = pool;
+        return this;
+    }
+
     public Tensor evaluate() {
+        if (evaluated)
+            throw new IllegalStateException("Cannot evaluate a used evaluator");
+        validateArguments(function, context);
+        evaluated = true;
+        try {
+            if (parallelExecutor != null)
+                model.parallelEvaluationPlan(function).execute(context, parallelExecutor);
+            return function.getBody().evaluate(context).asTensor();
+        }
+        finally {
+            if (contextPool != null)
+                contextPool.release(context);
+        }
+    }
+
+    /** Returns the function evaluated by this */
+    public ExpressionFunction function() { return function; }
+
+    /**
+     * Returns the context of this.
+     * If this is a pooled evaluator, the context is reused by other evaluators after evaluation,
+     * so it must not be accessed after calling {@link #evaluate}.
+     */
+    public LazyArrayContext context() { return context; }
+
+    /**
+     * Verifies that a value of the given type can be bound to the given name in the given function
+     *
+     * @throws IllegalArgumentException if it cannot
+     */
+    static void validateBinding(ExpressionFunction function, String name, TensorType type) {
+        TensorType requiredType = function.argumentTypes().get(name);
+        if (requiredType == null)
+            throw new IllegalArgumentException("'" + name + "' is not a valid argument in " + function +
+                                               ". Expected arguments: " + function.argumentTypes().entrySet().stream()
+                                                                                  .map(e -> e.getKey() + ": " + e.getValue())
+                                                                                  .collect(Collectors.joining(", ")));
+        if ( ! type.isAssignableTo(requiredType))
+            throw new IllegalArgumentException("'" + name + "' must be of type " + requiredType + ", not " + type);
+    }
+
+    /**
+     * Verifies that all the arguments of the given function are bound to values of the right type in the given context
+     *
+     * @throws IllegalStateException if they are not
+     */
+    static void validateArguments(ExpressionFunction function, LazyArrayContext context) {
         for (Map.Entry<String, TensorType> argument : function.argumentTypes().entrySet()) {
             if (context.isMissing(argument.getKey()))
                 throw new IllegalStateException("Missing argument '" + argument.getKey() +
@@ -109,13 +185,6 @@ public class FunctionEvaluator {
                                                 "' must be bound to a value of type " + argument.getValue());
 
         }
-        evaluated = true;
-        return function.getBody().evaluate(context).asTensor();
     }
 
-    /** Returns the function evaluated by this */
-    public ExpressionFunction function() { return function; }
-
-    public LazyArrayContext context() { return context; }
-
 }
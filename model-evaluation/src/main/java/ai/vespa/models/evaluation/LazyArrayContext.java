@@ -141,6 +141,36 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         return new LazyArrayContext(function, indexedBindings);
     }
 
+    /**
+     * Unbinds all arguments and discards all computed function values in this,
+     * such that it can be reused to evaluate with new bindings.
+     */
+    void clear() {
+        indexedBindings.clear();
+    }
+
+    /** Clears this and restores the default missing value, such that this is equivalent to a new copy */
+    void reset() {
+        clear();
+        indexedBindings.resetMissingValue();
+    }
+
+    /** Returns whether the given node is a reference to a function */
+    static boolean isFunctionReference(ExpressionNode node) {
+        if ( ! (node instanceof ReferenceNode)) return false;
+
+        ReferenceNode reference = (ReferenceNode)node;
+        return reference.getName().equals("rankingExpression") && reference.getArguments().size() == 1;
+    }
+
+    /** Returns whether the given node is a reference to a constant */
+    static boolean isConstant(ExpressionNode node) {
+        if ( ! (node instanceof ReferenceNode)) return false;
+
+        ReferenceNode reference = (ReferenceNode)node;
+        return reference.getName().equals("constant") && reference.getArguments().size() == 1;
+    }
+
     private static class IndexedBindings {
 
         /** The mapping from variable name to index */
@@ -149,14 +179,20 @@ public final class LazyArrayContext extends Context implements ContextIndex {
         /** The names which needs to be bound externally when invoking this (i.e not constant or invocation */
         private final ImmutableSet<String> arguments;
 
+        /** The indexes of the arguments */
+        private final int[] argumentIndexes;
+
         /** The current values set */
         private final Value[] values;
 
         /** The object instance which encodes "no value is set". The actual value of this is never used. */
         private static final Value missing = new DoubleValue(Double.NaN).freeze();
 
+        /** The default value to return for lookups where no value is set */
+        private static final Value defaultMissingValue = new DoubleValue(Double.NaN).freeze();
+
         /** The value to return for lookups where no value is set (default: NaN) */
-        private Value missingValue = new DoubleValue(Double.NaN).freeze();
+        private Value missingValue = defaultMissingValue;
 
         private IndexedBindings(ImmutableMap<String, Integer> nameToIndex,
                                 Value[] values,
@@ -164,6 +200,7 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             this.nameToIndex = nameToIndex;
             this.values = values;
             this.arguments = arguments;
+            this.argumentIndexes = indexesOf(arguments, nameToIndex);
         }
 
         /**
@@ -189,6 +226,7 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             for (String variable : bindTargets)
                 nameToIndexBuilder.put(variable, i++);
             nameToIndex = nameToIndexBuilder.build();
+            argumentIndexes = indexesOf(this.arguments, nameToIndex);
 
             // 2. Bind the bind targets
             for (Constant constant : constants) {
@@ -207,10 +245,18 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             }
         }
 
+        private static int[] indexesOf(Set<String> names, Map<String, Integer> nameToIndex) {
+            return names.stream().mapToInt(nameToIndex::get).toArray();
+        }
+
         private void setMissingValue(Tensor value) {
             missingValue = new TensorValue(value).freeze();
         }
 
+        private void resetMissingValue() {
+            missingValue = defaultMissingValue;
+        }
+
         private void extractBindTargets(ExpressionNode node,
                                         Map<FunctionReference, ExpressionFunction> functions,
                                         Set<String> bindTargets,
@@ -235,20 +281,6 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             }
         }
 
-        private boolean isFunctionReference(ExpressionNode node) {
-            if ( ! (node instanceof ReferenceNode)) return false;
-
-            ReferenceNode reference = (ReferenceNode)node;
-            return reference.getName().equals("rankingExpression") && reference.getArguments().size() == 1;
-        }
-
-        private boolean isConstant(ExpressionNode node) {
-            if ( ! (node instanceof ReferenceNode)) return false;
-
-            ReferenceNode reference = (ReferenceNode)node;
-            return reference.getName().equals("constant") && reference.getArguments().size() == 1;
-        }
-
         Value get(int index) {
             Value value = values[index];
             return value == missing ? missingValue : value;
@@ -258,6 +290,14 @@ public final class LazyArrayContext extends Context implements ContextIndex {
             values[index] = value;
         }
 
+        void clear() {
+            for (int index : argumentIndexes)
+                values[index] = missing;
+            for (Value value : values)
+                if (value instanceof LazyValue)
+                    ((LazyValue)value).clear();
+        }
+
         Set<String> names() { return nameToIndex.keySet(); }
         Set<String> arguments() { return arguments; }
         Integer indexOf(String name) { return nameToIndex.get(name); }
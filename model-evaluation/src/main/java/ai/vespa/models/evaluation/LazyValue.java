@@ -147,6 +147,16 @@ class LazyValue extends Value {
         return computedValue().hashCode();
     }
 
+    /** Computes the value of this now, unless it is already computed */
+    void compute() {
+        computedValue();
+    }
+
+    /** Discards the computed value of this, such that it is recomputed from the current bindings when requested */
+    void clear() {
+        computedValue = null;
+    }
+
     LazyValue copyFor(Context context) {
         return new LazyValue(this.function, context, model);
     }
@@ -4,18 +4,25 @@ package ai.vespa.models.evaluation;
 import com.google.common.annotations.Beta;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.CompiledExpression;
 import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
 import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionCompiler;
 import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -40,11 +47,23 @@ public class Model {
     /** Instances of each usage of the above function, where variables (if any) are replaced by their bindings */
     private final ImmutableMap<FunctionReference, ExpressionFunction> referencedFunctions;
 
+    /** The constants of this, indexed by name */
+    private final ImmutableMap<String, Tensor> constants;
+
     /** Context prototypes, indexed by function name (as all invocations of the same function share the same context prototype) */
     private final ImmutableMap<String, LazyArrayContext> contextPrototypes;
 
+    /** Pools of reusable contexts, indexed by function name */
+    private final ImmutableMap<String, ContextPool> contextPools;
+
     private final ExpressionOptimizer expressionOptimizer = new ExpressionOptimizer();
 
+    /** Functions compiled for batch evaluation, indexed by function name, or empty if they cannot be compiled */
+    private final Map<String, Optional<CompiledExpression>> compiledFunctions = new ConcurrentHashMap<>();
+
+    /** Plans for parallel evaluation, indexed by function name, created on first use */
+    private final Map<String, ParallelEvaluationPlan> parallelEvaluationPlans = new ConcurrentHashMap<>();
+
     /** Programmatically create a model containing functions without constant of function references only */
     public Model(String name, Collection<ExpressionFunction> functions) {
         this(name,
@@ -58,6 +77,10 @@ public class Model {
           Map<FunctionReference, ExpressionFunction> referencedFunctions,
           List<Constant> constants) {
         this.name = name;
+        Map<String, Tensor> constantsByName = new LinkedHashMap<>();
+        for (Constant constant : constants)
+            constantsByName.put(constant.name(), constant.value());
+        this.constants = ImmutableMap.copyOf(constantsByName);
 
         // Build context and add missing function arguments (missing because it is legal to omit scalar type arguments)
         ImmutableMap.Builder<String, LazyArrayContext> contextBuilder = new ImmutableMap.Builder<>();
@@ -87,6 +110,7 @@ public class Model {
             }
         }
         this.contextPrototypes = contextBuilder.build();
+        this.contextPools = ImmutableMap.copyOf(Maps.transformValues(contextPrototypes, ContextPool::new));
         this.functions = ImmutableList.copyOf(functions.values());
         this.publicFunctions = ImmutableList.copyOf(functions.values().stream()
                                                                       .filter(f ->  ! f.getName().startsWith(INTERMEDIATE_OPERATION_FUNCTION_PREFIX))
@@ -111,6 +135,9 @@ public class Model {
 
     public String name() { return name; }
 
+    /** Returns an immutable map of the constants of this, indexed by name */
+    public Map<String, Tensor> constants() { return constants; }
+
     /**
      * Returns an immutable list of the free, public functions of this.
      * The functions returned always specifies types of all arguments and the return value
@@ -173,22 +200,58 @@ public class Model {
      * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
      */
     public FunctionEvaluator evaluatorOf(String ... names) {  // TODO: Parameter overloading?
+        return evaluatorOf(functionOf(names));
+    }
+
+    /**
+     * Returns an evaluator which can be used to evaluate the given function in a single thread once,
+     * using an evaluation context from a pool, which is reused by later evaluators after evaluation.
+     * This avoids allocating a new context for each evaluation, but the context of the returned evaluator
+     * must not be accessed after it is evaluated.
+     *
+     * @param names the names identifying the function, as in {@link #evaluatorOf}
+     * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
+     */
+    public FunctionEvaluator pooledEvaluatorOf(String ... names) {
+        ExpressionFunction function = functionOf(names);
+        ContextPool contextPool = contextPools.get(function.getName());
+        return new FunctionEvaluator(function, contextPool.acquire(), contextPool, this);
+    }
+
+    /**
+     * Returns an evaluator which can be used to evaluate the given function for a batch of bindings in a single thread.
+     *
+     * Usage:
+     * <code>List&lt;Tensor&gt; results = model.batchEvaluatorOf("myFunction").evaluate(bindingsList)</code>
+     *
+     * @param names the names identifying the function, as in {@link #evaluatorOf}
+     * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
+     */
+    public BatchEvaluator batchEvaluatorOf(String ... names) {
+        ExpressionFunction function = functionOf(names);
+        return new BatchEvaluator(function,
+                                  requireContextProprotype(function.getName()).copy(),
+                                  compiledFunctions.computeIfAbsent(function.getName(), functionName -> compile(function)));
+    }
+
+    /** Returns the function identified by the given names, as described in {@link #evaluatorOf} */
+    private ExpressionFunction functionOf(String ... names) {
         if (names.length == 0) {
             if (functions.size() > 1)
                 throwUndeterminedFunction("More than one function is available in " + this + ", but no name is given");
-            return evaluatorOf(functions.get(0));
+            return functions.get(0);
         }
         else if (names.length == 1) {
             String name = names[0];
             ExpressionFunction function = function(name);
-            if (function != null) return evaluatorOf(function);
+            if (function != null) return function;
 
             List<ExpressionFunction> functionsStartingByName =
                     functions.stream().filter(f -> f.getName().startsWith(name + ".")).collect(Collectors.toList());
             if (functionsStartingByName.size() == 0)
                 throwUndeterminedFunction("No function '" + name + "' in " + this);
             else if (functionsStartingByName.size() == 1)
-                return evaluatorOf(functionsStartingByName.get(0));
+                return functionsStartingByName.get(0);
             else
                 throwUndeterminedFunction("Multiple functions start by '" + name + "' in " + this);
 
@@ -197,15 +260,41 @@ public class Model {
             String name = names[0] + "." + names[1];
             ExpressionFunction function = function(name);
             if (function == null) throwUndeterminedFunction("No function '" + name + "' in " + this);
-            return evaluatorOf(function);
+            return function;
         }
         throw new IllegalArgumentException("No more than 2 names can be given when choosing a function, got " +
                                            Arrays.toString(names));
     }
 
+    /**
+     * Returns the given function compiled to a class, or empty if it cannot be evaluated by compiled code
+     * because it takes or returns tensors, or contains subexpressions which must be interpreted
+     */
+    private Optional<CompiledExpression> compile(ExpressionFunction function) {
+        if (function.returnType().isPresent() && function.returnType().get().rank() > 0) return Optional.empty();
+        if (function.argumentTypes().values().stream().anyMatch(type -> type.rank() > 0)) return Optional.empty();
+        try {
+            CompiledExpression compiled = new ExpressionCompiler().compile(function.getBody(),
+                                                                           requireContextProprotype(function.getName()));
+            return compiled.interpretedCount() == 0 ? Optional.of(compiled) : Optional.empty();
+        }
+        catch (IllegalArgumentException e) { // too large to compile: Interpret
+            return Optional.empty();
+        }
+    }
+
     /** Returns a single-use evaluator of a function */
     private FunctionEvaluator evaluatorOf(ExpressionFunction function) {
-        return new FunctionEvaluator(function, requireContextProprotype(function.getName()).copy());
+        return new FunctionEvaluator(function, requireContextProprotype(function.getName()).copy(), null, this);
+    }
+
+    /** Returns the plan for evaluating the given function of this in parallel */
+    ParallelEvaluationPlan parallelEvaluationPlan(ExpressionFunction function) {
+        return parallelEvaluationPlans.computeIfAbsent(function.getName(),
+                                                       name -> ParallelEvaluationPlan.of(function,
+                                                                                         requireContextProprotype(name),
+                                                                                         this,
+                                                                                         ParallelEvaluationPlan.defaultMinTaskCost));
     }
 
     private void throwUndeterminedFunction(String message) {
@@ -49,6 +49,18 @@ public class ModelsEvaluator extends AbstractComponent {
         return requireModel(modelName).evaluatorOf(names);
     }
 
+    /**
+     * Returns a function which can be used to evaluate the given function in the given model,
+     * using a pooled evaluation context. See {@link Model#pooledEvaluatorOf}.
+     *
+     * @param modelName the name of the model
+     * @param names the 0-2 name components identifying the output to compute
+     * @throws IllegalArgumentException if the function or model is not present
+     */
+    public FunctionEvaluator pooledEvaluatorOf(String modelName, String ... names) {
+        return requireModel(modelName).pooledEvaluatorOf(names);
+    }
+
     /** Returns the given model, or throws a IllegalArgumentException if it does not exist */
     public Model requireModel(String name) {
         Model model = models.get(name);
@@ -0,0 +1,204 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.tensor.TensorType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+
+/**
+ * A plan for computing the functions referenced by a function in parallel, before the function itself is evaluated.
+ *
+ * The referenced functions form a DAG, which is divided into levels such that functions at one level only depend on
+ * functions at lower levels. The levels are computed in order, and the functions at each level whose estimated cost
+ * is above a threshold are computed in parallel, while the cheap ones are computed sequentially.
+ *
+ * Note that this computes all the functions reachable from the function, also those which would not be needed
+ * by sequential evaluation, e.g because they are referenced in a branch of a condition which is not taken.
+ *
+ * Plans are immutable and can be executed by multiple threads at the same time, each with its own context.
+ */
+final class ParallelEvaluationPlan {
+
+    /** The default min estimated cost of a function for it to be computed as a separate task */
+    static final long defaultMinTaskCost = 10000;
+
+    /** The levels to compute in order, or empty if this function should be evaluated sequentially */
+    private final List<Level> levels;
+
+    private ParallelEvaluationPlan(List<Level> levels) {
+        this.levels = levels.stream().anyMatch(level -> level.parallel.length > 1) ? levels : List.of();
+    }
+
+    /** Returns whether this contains any parallel computation */
+    boolean isParallel() { return ! levels.isEmpty(); }
+
+    /** Returns the number of functions which are computed in parallel with some other function by this */
+    int parallelFunctionCount() {
+        return levels.stream().mapToInt(level -> level.parallel.length > 1 ? level.parallel.length : 0).sum();
+    }
+
+    /**
+     * Computes the referenced functions of the given context according to this plan, using the given pool.
+     * This does nothing if this plan is not parallel.
+     */
+    void execute(LazyArrayContext context, ForkJoinPool pool) {
+        if ( ! isParallel()) return;
+        pool.invoke(ForkJoinTask.adapt(() -> {
+            for (Level level : levels) {
+                for (int index : level.sequential)
+                    compute(index, context);
+                ForkJoinTask.invokeAll(Arrays.stream(level.parallel)
+                                             .mapToObj(index -> ForkJoinTask.adapt(() -> compute(index, context)))
+                                             .collect(Collectors.toList()));
+            }
+        }));
+    }
+
+    private void compute(int index, LazyArrayContext context) {
+        Value value = context.get(index);
+        if (value instanceof LazyValue)
+            ((LazyValue)value).compute();
+    }
+
+    /**
+     * Creates a plan for evaluating a function.
+     *
+     * @param function the function to create a plan for
+     * @param context a context of the function, used to look up the indexes and values of references
+     * @param model the model containing the function
+     * @param minTaskCost the min estimated cost of a function for it to be computed as a separate task
+     */
+    static ParallelEvaluationPlan of(ExpressionFunction function, LazyArrayContext context, Model model, long minTaskCost) {
+        return new Planner(function, context, model, minTaskCost).plan();
+    }
+
+    /** A set of functions which only depend on functions in lower levels, given by their context indexes */
+    private static class Level {
+
+        final int[] sequential;
+        final int[] parallel;
+
+        Level(List<Integer> sequential, List<Integer> parallel) {
+            this.sequential = sequential.stream().mapToInt(Integer::intValue).toArray();
+            this.parallel = parallel.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+    }
+
+    private static class Planner {
+
+        private final ExpressionFunction function;
+        private final LazyArrayContext context;
+        private final Model model;
+        private final long minTaskCost;
+
+        /** The level of each function reference visited */
+        private final Map<FunctionReference, Integer> levels = new HashMap<>();
+
+        /** The estimated cost of computing each function reference visited, not including its dependencies */
+        private final Map<FunctionReference, Long> costs = new HashMap<>();
+
+        Planner(ExpressionFunction function, LazyArrayContext context, Model model, long minTaskCost) {
+            this.function = function;
+            this.context = context;
+            this.model = model;
+            this.minTaskCost = minTaskCost;
+        }
+
+        ParallelEvaluationPlan plan() {
+            Set<FunctionReference> references = new LinkedHashSet<>();
+            estimateCost(function.getBody().getRoot(), references);
+            int maxLevel = -1;
+            for (FunctionReference reference : references)
+                maxLevel = Math.max(maxLevel, levelOf(reference));
+
+            List<List<Integer>> sequential = new ArrayList<>();
+            List<List<Integer>> parallel = new ArrayList<>();
+            for (int level = 0; level <= maxLevel; level++) {
+                sequential.add(new ArrayList<>());
+                parallel.add(new ArrayList<>());
+            }
+            for (Map.Entry<FunctionReference, Integer> level : levels.entrySet()) {
+                int index = context.getIndex(level.getKey().serialForm());
+                if (costs.get(level.getKey()) >= minTaskCost)
+                    parallel.get(level.getValue()).add(index);
+                else
+                    sequential.get(level.getValue()).add(index);
+            }
+
+            List<Level> planLevels = new ArrayList<>();
+            for (int level = 0; level <= maxLevel; level++)
+                planLevels.add(new Level(sequential.get(level), parallel.get(level)));
+            return new ParallelEvaluationPlan(planLevels);
+        }
+
+        /** Returns the level of the given function reference: 0 if it has no dependencies, or 1 + their max level */
+        private int levelOf(FunctionReference reference) {
+            Integer level = levels.get(reference);
+            if (level != null) return level;
+
+            Set<FunctionReference> dependencies = new LinkedHashSet<>();
+            costs.put(reference, estimateCost(model.requireReferencedFunction(reference).getBody().getRoot(),
+                                              dependencies));
+            level = 0;
+            for (FunctionReference dependency : dependencies)
+                level = Math.max(level, levelOf(dependency) + 1);
+            levels.put(reference, level);
+            return level;
+        }
+
+        /**
+         * Returns the estimated cost of evaluating the given node, not including the functions it references,
+         * which are added to the given set instead. Each node costs 1, and references to values cost the
+         * number of cells of the value in addition.
+         */
+        private long estimateCost(ExpressionNode node, Set<FunctionReference> references) {
+            if (LazyArrayContext.isFunctionReference(node)) {
+                references.add(FunctionReference.fromSerial(node.toString()).get());
+                return 1;
+            }
+            if (node instanceof ReferenceNode)
+                return 1 + cellsOf(node.toString());
+            if (node instanceof CompositeNode) {
+                long cost = 1;
+                for (ExpressionNode child : ((CompositeNode)node).children())
+                    cost += estimateCost(child, references);
+                return cost;
+            }
+            return 1;
+        }
+
+        /** Returns the number of cells of a referenced value, or its max number of cells if it is not bound yet */
+        private long cellsOf(String name) {
+            TensorType argumentType = function.argumentTypes().get(name);
+            if (argumentType != null) {
+                long cells = 1;
+                for (TensorType.Dimension dimension : argumentType.dimensions())
+                    cells *= dimension.size().orElse(1L);
+                return cells;
+            }
+            if ( ! context.names().contains(name)) return 0;
+            Value value = context.get(name);
+            if (value instanceof TensorValue)
+                return value.asTensor().size();
+            return 1;
+        }
+
+    }
+
+}
@@ -4,8 +4,6 @@ package ai.vespa.models.evaluation;
 import com.yahoo.collections.Pair;
 import com.yahoo.config.FileReference;
 import com.yahoo.filedistribution.fileacquirer.FileAcquirer;
-import com.yahoo.io.GrowableByteBuffer;
-import com.yahoo.io.IOUtils;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.searchlib.rankingexpression.parser.ParseException;
@@ -18,6 +16,9 @@ import com.yahoo.vespa.config.search.core.RankingConstantsConfig;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -152,8 +153,7 @@ public class RankProfilesConfigImporter {
         try {
             File file = fileAcquirer.waitFor(fileReference, 7, TimeUnit.DAYS);
             if (file.getName().endsWith(".tbf"))
-                return TypedBinaryFormat.decode(Optional.of(type),
-                                                GrowableByteBuffer.wrap(IOUtils.readFileBytes(file)));
+                return TypedBinaryFormat.decodeView(Optional.of(type), map(file));
             else
                 throw new IllegalArgumentException("Constant files on other formats than .tbf are not supported, got " +
                                                    file + " for constant " + name);
@@ -167,6 +167,16 @@ public class RankProfilesConfigImporter {
         }
     }
 
+    /**
+     * Maps the given file into memory read-only. Dense tensors are read directly from the mapping, such that
+     * their pages are loaded on demand and shared with other processes mapping the same file.
+     */
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
     /** Collected information about small constants */
     private static class SmallConstantsInfo {
 
@@ -1,6 +1,7 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package ai.vespa.models.handler;
 
+import ai.vespa.models.evaluation.BatchEvaluator;
 import ai.vespa.models.evaluation.FunctionEvaluator;
 import ai.vespa.models.evaluation.Model;
 import ai.vespa.models.evaluation.ModelsEvaluator;
@@ -20,6 +21,7 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Executor;
@@ -29,6 +31,9 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
     /** A dash in this key ensures it does not collide with feature names */
     private static final String missingValueKey = "missing-value";
 
+    /** The dimension indexing the members of the batch when evaluating a batch of bindings in one request */
+    private static final String batchDimensionKey = "batch-dimension";
+
     public static final String API_ROOT = "model-evaluation";
     public static final String VERSION_V1 = "v1";
     public static final String EVALUATE = "eval";
@@ -72,7 +77,11 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
     }
 
     private HttpResponse evaluateModel(HttpRequest request, Model model, String[] function)  {
-        FunctionEvaluator evaluator = model.evaluatorOf(function);
+        Optional<String> batchDimension = property(request, batchDimensionKey);
+        if (batchDimension.isPresent())
+            return evaluateModelBatch(request, model, function, batchDimension.get());
+
+        FunctionEvaluator evaluator = model.pooledEvaluatorOf(function);
 
         property(request, missingValueKey).ifPresent(missingValue -> evaluator.setMissingValue(Tensor.from(missingValue)));
 
@@ -90,6 +99,22 @@ public class ModelsEvaluationHandler extends ThreadedHttpRequestHandler {
         return new Response(200, JsonFormat.encode(result));
     }
 
+    /**
+     * Evaluates a batch of bindings, where arguments are tensors which have the batch dimension in addition to
+     * their own type, such as "tensor(batch[3]):[1.0, 2.0, 3.0]" for a scalar argument
+     */
+    private HttpResponse evaluateModelBatch(HttpRequest request, Model model, String[] function, String batchDimension) {
+        BatchEvaluator evaluator = model.batchEvaluatorOf(function);
+
+        property(request, missingValueKey).ifPresent(missingValue -> evaluator.setMissingValue(Tensor.from(missingValue)));
+
+        Map<String, Tensor> bindings = new HashMap<>();
+        for (String argument : evaluator.function().argumentTypes().keySet())
+            property(request, argument).ifPresent(value -> bindings.put(argument, Tensor.from(value)));
+        Tensor result = evaluator.evaluate(batchDimension, bindings);
+        return new Response(200, JsonFormat.encode(result));
+    }
+
     private HttpResponse listAllModels(HttpRequest request) {
         Slime slime = new Slime();
         Cursor root = slime.setObject();
@@ -0,0 +1,64 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.nearestneighbor;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * The distance metrics which can be used to find nearest neighbors.
+ */
+@Beta
+public enum DistanceMetric {
+
+    /** The euclidean distance between the vectors */
+    EUCLIDEAN,
+
+    /** 1 minus the cosine of the angle between the vectors */
+    ANGULAR,
+
+    /**
+     * The negative inner product of the vectors, such that the vectors having the largest inner product
+     * with the query are the nearest. Note that this is not a true metric, so approximate search with
+     * this distance may have lower recall than with the others.
+     */
+    INNERPRODUCT;
+
+    /** Returns the distance between the two given vectors, which must have the same length */
+    double distance(float[] a, float[] b) {
+        switch (this) {
+            case EUCLIDEAN: return euclidean(a, b);
+            case ANGULAR: return angular(a, b);
+            case INNERPRODUCT: return - innerProduct(a, b);
+            default: throw new IllegalStateException("Unknown distance metric " + this);
+        }
+    }
+
+    private static double euclidean(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double difference = a[i] - b[i];
+            sum += difference * difference;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static double angular(float[] a, float[] b) {
+        double product = 0;
+        double aNorm = 0;
+        double bNorm = 0;
+        for (int i = 0; i < a.length; i++) {
+            product += a[i] * b[i];
+            aNorm += a[i] * a[i];
+            bNorm += b[i] * b[i];
+        }
+        double norms = Math.sqrt(aNorm * bNorm);
+        return norms == 0 ? 1 : 1 - product / norms;
+    }
+
+    private static double innerProduct(float[] a, float[] b) {
+        double product = 0;
+        for (int i = 0; i < a.length; i++)
+            product += a[i] * b[i];
+        return product;
+    }
+
+}
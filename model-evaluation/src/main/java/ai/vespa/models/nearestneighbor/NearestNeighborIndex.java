@@ -0,0 +1,457 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.nearestneighbor;
+
+import com.google.common.annotations.Beta;
+import com.yahoo.tensor.DimensionSizes;
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An index for finding the approximate nearest neighbors of a query vector among a set of vectors,
+ * using a hierarchical navigable small world (HNSW) graph.
+ *
+ * The vectors are given as a tensor of rank 2, having an indexed vector dimension of known size, and a mapped or
+ * indexed dimension identifying each vector. The graph is built in memory when this is created, and holds a
+ * copy of each vector as floats.
+ *
+ * This is immutable after construction, and can be used to find neighbors by multiple threads at the same time.
+ */
+@Beta
+public class NearestNeighborIndex {
+
+    /** The default max number of links of each node at each level above 0. Nodes have twice as many at level 0. */
+    public static final int defaultMaxLinksPerNode = 16;
+
+    /** The default number of candidate neighbors which are explored when inserting a vector */
+    public static final int defaultNeighborsToExploreAtInsert = 200;
+
+    /** The default min number of candidate neighbors which are explored when finding neighbors */
+    public static final int defaultNeighborsToExplore = 100;
+
+    private final DistanceMetric metric;
+    private final int maxLinksPerNode;
+    private final int neighborsToExploreAtInsert;
+
+    /** The type of the query vectors accepted by this */
+    private final TensorType queryType;
+
+    /** The label of the identifying dimension of each vector */
+    private final String[] labels;
+
+    private final float[][] vectors;
+
+    /** The nodes linked to each node at each level of the node: links[node][level] */
+    private final int[][][] links;
+
+    /** The node having the highest level, where all searches start, or -1 if this is empty */
+    private final int entryPoint;
+
+    /** The level of the entry point, or -1 if this is empty */
+    private final int maxLevel;
+
+    /**
+     * Visited node sets which are not currently used by a search. This holds at most one set per processor,
+     * and the sets are released with this index.
+     */
+    private final BlockingQueue<VisitedNodes> unusedVisitedNodes =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Creates an index of the given vectors, using the default parameters
+     *
+     * @param vectors the vectors to index, as a tensor of rank 2
+     * @param vectorDimension the name of the indexed dimension of the vectors
+     * @param metric the distance metric to use
+     * @throws IllegalArgumentException if the vectors tensor does not have the required type
+     */
+    public NearestNeighborIndex(Tensor vectors, String vectorDimension, DistanceMetric metric) {
+        this(vectors, vectorDimension, metric, defaultMaxLinksPerNode, defaultNeighborsToExploreAtInsert);
+    }
+
+    /**
+     * Creates an index of the given vectors
+     *
+     * @param vectors the vectors to index, as a tensor of rank 2
+     * @param vectorDimension the name of the indexed dimension of the vectors
+     * @param metric the distance metric to use
+     * @param maxLinksPerNode the max number of links of each node at each level above 0
+     * @param neighborsToExploreAtInsert the number of candidate neighbors to explore when inserting a vector
+     * @throws IllegalArgumentException if the vectors tensor does not have the required type
+     */
+    public NearestNeighborIndex(Tensor vectors, String vectorDimension, DistanceMetric metric,
+                                int maxLinksPerNode, int neighborsToExploreAtInsert) {
+        if (maxLinksPerNode < 2)
+            throw new IllegalArgumentException("maxLinksPerNode must be at least 2, not " + maxLinksPerNode);
+        this.metric = metric;
+        this.maxLinksPerNode = maxLinksPerNode;
+        this.neighborsToExploreAtInsert = Math.max(neighborsToExploreAtInsert, maxLinks(0));
+
+        int vectorSize = vectorSizeIn(vectors.type(), vectorDimension);
+        this.queryType = new TensorType.Builder(vectors.type().valueType()).indexed(vectorDimension, vectorSize).build();
+        if (vectors instanceof IndexedTensor) {
+            this.vectors = readIndexed((IndexedTensor)vectors, vectorDimension, vectorSize);
+            this.labels = new String[this.vectors.length];
+            for (int i = 0; i < labels.length; i++)
+                labels[i] = String.valueOf(i);
+        }
+        else {
+            Map<String, float[]> labeledVectors = read(vectors, vectorDimension, vectorSize);
+            this.labels = labeledVectors.keySet().toArray(new String[0]);
+            this.vectors = labeledVectors.values().toArray(new float[0][]);
+        }
+
+        int nodes = this.vectors.length;
+        this.links = new int[nodes][][];
+        Random random = new Random(nodes);
+        double levelMultiplier = 1 / Math.log(maxLinksPerNode);
+        int entryPoint = -1;
+        int maxLevel = -1;
+        for (int node = 0; node < nodes; node++) {
+            int level = (int)(- Math.log(1 - random.nextDouble()) * levelMultiplier);
+            insert(node, level, entryPoint, maxLevel);
+            if (level > maxLevel) {
+                entryPoint = node;
+                maxLevel = level;
+            }
+        }
+        this.entryPoint = entryPoint;
+        this.maxLevel = maxLevel;
+    }
+
+    /** Returns the number of vectors in this */
+    public int size() { return vectors.length; }
+
+    /** Returns the type of the query vectors accepted by this */
+    public TensorType queryType() { return queryType; }
+
+    /**
+     * Returns the approximate k nearest neighbors of the given query vector, exploring
+     * max(k, {@link #defaultNeighborsToExplore}) candidates.
+     *
+     * @throws IllegalArgumentException if the query does not have the type returned by {@link #queryType}
+     */
+    public List<Neighbor> find(Tensor query, int k) {
+        return find(query, k, defaultNeighborsToExplore);
+    }
+
+    /**
+     * Returns the approximate k nearest neighbors of the given query vector, nearest first.
+     *
+     * @param query the query vector
+     * @param k the number of neighbors to return
+     * @param neighborsToExplore the number of candidate neighbors to explore, which trades off
+     *                           recall against latency. At least k candidates are always explored.
+     * @throws IllegalArgumentException if the query does not have the type returned by {@link #queryType}
+     */
+    public List<Neighbor> find(Tensor query, int k, int neighborsToExplore) {
+        float[] vector = vectorOf(query);
+        if (entryPoint < 0 || k < 1) return List.of();
+
+        Candidate nearest = new Candidate(entryPoint, distance(vector, entryPoint));
+        for (int level = maxLevel; level > 0; level--)
+            nearest = findNearest(vector, nearest, level);
+        return toNeighbors(findNearest(vector, List.of(nearest), Math.max(k, neighborsToExplore), 0), k);
+    }
+
+    /**
+     * Returns the exact k nearest neighbors of the given query vector, nearest first,
+     * by computing the distance to all the vectors of this.
+     *
+     * @throws IllegalArgumentException if the query does not have the type returned by {@link #queryType}
+     */
+    public List<Neighbor> findExact(Tensor query, int k) {
+        float[] vector = vectorOf(query);
+        if (k < 1) return List.of();
+
+        PriorityQueue<Candidate> nearest = new PriorityQueue<>(Comparator.reverseOrder());
+        for (int node = 0; node < vectors.length; node++) {
+            double distance = distance(vector, node);
+            if (nearest.size() < k) {
+                nearest.add(new Candidate(node, distance));
+            }
+            else if (distance < nearest.peek().distance) {
+                nearest.poll();
+                nearest.add(new Candidate(node, distance));
+            }
+        }
+        List<Candidate> candidates = new ArrayList<>(nearest);
+        Collections.sort(candidates);
+        return toNeighbors(candidates, k);
+    }
+
+    /** Links the given node into the graph built so far, which is entered at the given entry point and level */
+    private void insert(int node, int level, int entryPoint, int maxLevel) {
+        links[node] = new int[level + 1][];
+        Arrays.fill(links[node], new int[0]);
+        if (entryPoint < 0) return;
+
+        float[] vector = vectors[node];
+        Candidate nearest = new Candidate(entryPoint, distance(vector, entryPoint));
+        for (int l = maxLevel; l > level; l--)
+            nearest = findNearest(vector, nearest, l);
+
+        List<Candidate> entryPoints = List.of(nearest);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = findNearest(vector, entryPoints, neighborsToExploreAtInsert, l);
+            links[node][l] = selectNeighbors(candidates, maxLinks(l));
+            for (int neighbor : links[node][l])
+                addLink(neighbor, node, l);
+            entryPoints = candidates;
+        }
+    }
+
+    /** Returns the max number of links of a node at the given level */
+    private int maxLinks(int level) {
+        return level == 0 ? 2 * maxLinksPerNode : maxLinksPerNode;
+    }
+
+    /** Adds a link from a node to another at the given level, pruning the links of the node if it has too many */
+    private void addLink(int from, int to, int level) {
+        int[] fromLinks = links[from][level];
+        int maxLinks = maxLinks(level);
+        if (fromLinks.length < maxLinks) {
+            int[] extendedLinks = Arrays.copyOf(fromLinks, fromLinks.length + 1);
+            extendedLinks[fromLinks.length] = to;
+            links[from][level] = extendedLinks;
+        }
+        else {
+            List<Candidate> candidates = new ArrayList<>(fromLinks.length + 1);
+            for (int node : fromLinks)
+                candidates.add(new Candidate(node, distance(vectors[from], node)));
+            candidates.add(new Candidate(to, distance(vectors[from], to)));
+            Collections.sort(candidates);
+            links[from][level] = selectNeighbors(candidates, maxLinks);
+        }
+    }
+
+    /**
+     * Selects at most the given number of neighbors among the given candidates, sorted by increasing distance.
+     * A candidate is skipped if it is closer to an already selected neighbor than to the vector,
+     * such that the links spread out in different directions.
+     */
+    private int[] selectNeighbors(List<Candidate> candidates, int maxNeighbors) {
+        List<Candidate> selected = new ArrayList<>(maxNeighbors);
+        for (Candidate candidate : candidates) {
+            if (selected.size() == maxNeighbors) break;
+            if (selected.stream().noneMatch(neighbor -> distance(vectors[candidate.node], neighbor.node) < candidate.distance))
+                selected.add(candidate);
+        }
+        return selected.stream().mapToInt(candidate -> candidate.node).toArray();
+    }
+
+    /** Returns the nearest node to the vector found by greedily following links at the given level */
+    private Candidate findNearest(float[] vector, Candidate start, int level) {
+        Candidate nearest = start;
+        for (boolean improved = true; improved; ) {
+            improved = false;
+            for (int neighbor : links[nearest.node][level]) {
+                double distance = distance(vector, neighbor);
+                if (distance < nearest.distance) {
+                    nearest = new Candidate(neighbor, distance);
+                    improved = true;
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns the given number of nodes nearest to the vector found by searching from the given entry points
+     * at the given level, sorted by increasing distance
+     */
+    private List<Candidate> findNearest(float[] vector, List<Candidate> entryPoints, int count, int level) {
+        VisitedNodes visited = unusedVisitedNodes.poll();
+        if (visited == null)
+            visited = new VisitedNodes(vectors.length);
+        try {
+            return findNearest(vector, entryPoints, count, level, visited);
+        }
+        finally {
+            unusedVisitedNodes.offer(visited); // dropped if enough are unused already
+        }
+    }
+
+    private List<Candidate> findNearest(float[] vector, List<Candidate> entryPoints, int count, int level,
+                                        VisitedNodes visited) {
+        visited.clear();
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        PriorityQueue<Candidate> nearest = new PriorityQueue<>(Comparator.reverseOrder()); // farthest first
+        for (Candidate entryPoint : entryPoints) {
+            visited.add(entryPoint.node);
+            candidates.add(entryPoint);
+            nearest.add(entryPoint);
+            if (nearest.size() > count)
+                nearest.poll();
+        }
+
+        while ( ! candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            if (nearest.size() == count && candidate.distance > nearest.peek().distance) break;
+
+            for (int neighbor : links[candidate.node][level]) {
+                if ( ! visited.add(neighbor)) continue;
+                double distance = distance(vector, neighbor);
+                if (nearest.size() < count || distance < nearest.peek().distance) {
+                    Candidate neighborCandidate = new Candidate(neighbor, distance);
+                    candidates.add(neighborCandidate);
+                    nearest.add(neighborCandidate);
+                    if (nearest.size() > count)
+                        nearest.poll();
+                }
+            }
+        }
+        List<Candidate> result = new ArrayList<>(nearest);
+        Collections.sort(result);
+        return result;
+    }
+
+    private double distance(float[] vector, int node) {
+        return metric.distance(vector, vectors[node]);
+    }
+
+    private List<Neighbor> toNeighbors(List<Candidate> candidates, int k) {
+        List<Neighbor> neighbors = new ArrayList<>(Math.min(k, candidates.size()));
+        for (Candidate candidate : candidates.subList(0, Math.min(k, candidates.size())))
+            neighbors.add(new Neighbor(labels[candidate.node], candidate.distance));
+        return neighbors;
+    }
+
+    private float[] vectorOf(Tensor query) {
+        TensorType type = query.type();
+        if (type.rank() != 1 || ! type.dimensions().get(0).isIndexed() ||
+            ! type.dimensions().get(0).name().equals(queryType.dimensions().get(0).name()) ||
+            query.size() != queryType.dimensions().get(0).size().get())
+            throw new IllegalArgumentException("A query must be a tensor of type " + queryType + ", not " +
+                                               type + " of size " + query.size());
+
+        float[] vector = new float[(int)query.size()];
+        if (query instanceof IndexedTensor) {
+            for (int i = 0; i < vector.length; i++)
+                vector[i] = ((IndexedTensor)query).getFloat(i);
+        }
+        else {
+            for (Iterator<Tensor.Cell> i = query.cellIterator(); i.hasNext(); ) {
+                Tensor.Cell cell = i.next();
+                vector[(int)cell.getKey().numericLabel(0)] = cell.getValue().floatValue();
+            }
+        }
+        return vector;
+    }
+
+    private static int vectorSizeIn(TensorType type, String vectorDimension) {
+        TensorType.Dimension dimension = type.dimension(vectorDimension).orElse(null);
+        if (type.rank() != 2 || dimension == null || dimension.type() != TensorType.Dimension.Type.indexedBound)
+            throw new IllegalArgumentException("Vectors must be a tensor of rank 2 with an indexed dimension '" +
+                                               vectorDimension + "' of known size, not " + type);
+        return dimension.size().get().intValue();
+    }
+
+    private static float[][] readIndexed(IndexedTensor tensor, String vectorDimension, int vectorSize) {
+        boolean vectorDimensionIsInnermost = tensor.type().indexOfDimension(vectorDimension).get() == 1;
+        DimensionSizes sizes = tensor.dimensionSizes();
+        int count = (int)(vectorDimensionIsInnermost ? sizes.size(0) : sizes.size(1));
+        float[][] vectors = new float[count][vectorSize];
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < vectorSize; j++)
+                vectors[i][j] = tensor.getFloat(vectorDimensionIsInnermost ? (long)i * vectorSize + j
+                                                                           : (long)j * count + i);
+        }
+        return vectors;
+    }
+
+    private static Map<String, float[]> read(Tensor tensor, String vectorDimension, int vectorSize) {
+        int vectorIndex = tensor.type().indexOfDimension(vectorDimension).get();
+        int labelIndex = 1 - vectorIndex;
+        Map<String, float[]> vectors = new LinkedHashMap<>();
+        for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            float[] vector = vectors.computeIfAbsent(cell.getKey().label(labelIndex), label -> new float[vectorSize]);
+            vector[(int)cell.getKey().numericLabel(vectorIndex)] = cell.getValue().floatValue();
+        }
+        return vectors;
+    }
+
+    /** A neighbor of a query vector */
+    public static class Neighbor {
+
+        private final String label;
+        private final double distance;
+
+        Neighbor(String label, double distance) {
+            this.label = label;
+            this.distance = distance;
+        }
+
+        /** Returns the label of this vector in the identifying dimension of the indexed tensor */
+        public String label() { return label; }
+
+        /** Returns the distance from the query vector to this */
+        public double distance() { return distance; }
+
+        @Override
+        public String toString() { return label + ": " + distance; }
+
+    }
+
+    /** A node and its distance to a vector */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        final int node;
+        final double distance;
+
+        Candidate(int node, double distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int distanceComparison = Double.compare(distance, other.distance);
+            if (distanceComparison != 0) return distanceComparison;
+            return Integer.compare(node, other.node);
+        }
+
+    }
+
+    /** A set of the nodes visited by a search, which is cleared in constant time */
+    private static final class VisitedNodes {
+
+        private final int[] visitMarks;
+        private int currentMark = 0;
+
+        VisitedNodes(int size) {
+            this.visitMarks = new int[size];
+        }
+
+        void clear() {
+            if (currentMark == Integer.MAX_VALUE) {
+                Arrays.fill(visitMarks, 0);
+                currentMark = 0;
+            }
+            currentMark++;
+        }
+
+        /** Marks the given node as visited, and returns whether it was not visited already */
+        boolean add(int node) {
+            if (visitMarks[node] == currentMark) return false;
+            visitMarks[node] = currentMark;
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.nearestneighbor;
+
+import ai.vespa.models.evaluation.Model;
+import ai.vespa.models.evaluation.ModelsEvaluator;
+import ai.vespa.models.nearestneighbor.config.NearestNeighborIndexesConfig;
+import com.google.common.annotations.Beta;
+import com.google.inject.Inject;
+import com.yahoo.component.AbstractComponent;
+import com.yahoo.tensor.Tensor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Provides nearest neighbor indexes of the constant tensors of the models available to a container.
+ * The configured indexes are built when this is constructed, such that queries never wait for an index
+ * to be built, and are kept for the lifetime of this component.
+ * Usage:
+ * <code>List&lt;Neighbor&gt; neighbors = indexes.indexOf("myModel", "myVectors", "x", DistanceMetric.ANGULAR).find(query, 10)</code>
+ */
+@Beta
+public class NearestNeighborIndexes extends AbstractComponent {
+
+    private final Map<IndexKey, NearestNeighborIndex> indexes;
+
+    /**
+     * Builds the configured indexes
+     *
+     * @throws IllegalArgumentException if a configured model or constant is not present, or a constant is not a valid
+     *                                  tensor of vectors
+     */
+    @Inject
+    public NearestNeighborIndexes(ModelsEvaluator modelsEvaluator, NearestNeighborIndexesConfig config) {
+        Map<IndexKey, NearestNeighborIndex> indexes = new HashMap<>();
+        for (NearestNeighborIndexesConfig.Index index : config.index()) {
+            DistanceMetric metric = DistanceMetric.valueOf(index.metric().name());
+            indexes.put(new IndexKey(index.model(), index.constant(), index.vectorDimension(), metric),
+                        new NearestNeighborIndex(requireConstant(modelsEvaluator, index.model(), index.constant()),
+                                                 index.vectorDimension(),
+                                                 metric));
+        }
+        this.indexes = Map.copyOf(indexes);
+    }
+
+    /**
+     * Returns the index of the vectors in the given constant of the given model.
+     *
+     * @param modelName the name of the model containing the constant
+     * @param constantName the name of the constant, a tensor of rank 2
+     * @param vectorDimension the name of the indexed dimension of the vectors in the constant
+     * @param metric the distance metric to use
+     * @throws IllegalArgumentException if no such index is configured
+     */
+    public NearestNeighborIndex indexOf(String modelName, String constantName, String vectorDimension, DistanceMetric metric) {
+        NearestNeighborIndex index = indexes.get(new IndexKey(modelName, constantName, vectorDimension, metric));
+        if (index == null)
+            throw new IllegalArgumentException("No " + metric + " index of dimension '" + vectorDimension +
+                                               "' of constant '" + constantName + "' in model '" + modelName +
+                                               "' is configured");
+        return index;
+    }
+
+    private static Tensor requireConstant(ModelsEvaluator modelsEvaluator, String modelName, String constantName) {
+        Model model = modelsEvaluator.requireModel(modelName);
+        Tensor constant = model.constants().get(constantName);
+        if (constant == null)
+            throw new IllegalArgumentException("No constant named '" + constantName + "' in " + model +
+                                               ". Available constants: " + String.join(", ", model.constants().keySet()));
+        return constant;
+    }
+
+    private static final class IndexKey {
+
+        private final String modelName;
+        private final String constantName;
+        private final String vectorDimension;
+        private final DistanceMetric metric;
+
+        IndexKey(String modelName, String constantName, String vectorDimension, DistanceMetric metric) {
+            this.modelName = modelName;
+            this.constantName = constantName;
+            this.vectorDimension = vectorDimension;
+            this.metric = metric;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof IndexKey)) return false;
+            IndexKey other = (IndexKey)o;
+            return modelName.equals(other.modelName) &&
+                   constantName.equals(other.constantName) &&
+                   vectorDimension.equals(other.vectorDimension) &&
+                   metric == other.metric;
+        }
+
+        @Override
+        public int hashCode() { return Objects.hash(modelName, constantName, vectorDimension, metric); }
+
+    }
+
+}
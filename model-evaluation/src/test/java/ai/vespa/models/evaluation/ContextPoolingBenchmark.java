@@ -0,0 +1,47 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks the time and bytes allocated per evaluation by single-use and pooled function evaluators
+ */
+public class ContextPoolingBenchmark {
+
+    public void benchmark(String name, int iterations, Supplier<FunctionEvaluator> evaluators) {
+        double total = 0;
+        for (int i = 0; i < iterations / 5; i++) // warmup
+            total += evaluate(evaluators.get(), i);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startAllocated = threads.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            total += evaluate(evaluators.get(), i);
+        long totalTime = System.nanoTime() - startTime;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - startAllocated;
+        if (Double.isInfinite(total)) // use the result
+            System.out.println("Infinite result");
+
+        System.out.printf("%-10s %8.3f us, %8d bytes allocated per evaluation\n",
+                          name, totalTime / 1000.0 / iterations, allocated / iterations);
+    }
+
+    private double evaluate(FunctionEvaluator evaluator, int iteration) {
+        evaluator.bind("match", iteration % 17);
+        evaluator.bind("rankBoost", iteration % 5);
+        return evaluator.evaluate().asDouble();
+    }
+
+    public static void main(String[] args) {
+        Model model = new ModelTester("src/test/resources/config/rankexpression/").models().get("macros");
+        ContextPoolingBenchmark benchmark = new ContextPoolingBenchmark();
+        for (int i = 0; i < 3; i++) {
+            benchmark.benchmark("Single-use", 1000 * 1000, () -> model.evaluatorOf("secondphase"));
+            benchmark.benchmark("Pooled", 1000 * 1000, () -> model.pooledEvaluatorOf("secondphase"));
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.filedistribution.fileacquirer.MockFileAcquirer;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class LargeConstantImportingTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadingDenseConstantsFromMappedFiles() throws IOException {
+        assertReadFromFile(Tensor.from("tensor(x[2],y[3]):[[1, 2, 3], [4, 5, 6]]"));
+        assertReadFromFile(Tensor.from("tensor<float>(x[2],y[3]):[[1, 2, 3], [4, 5, 6]]"));
+        assertReadFromFile(Tensor.from("tensor<bfloat16>(x[2],y[3]):[[1, 2, 3], [4, 5, 6]]"));
+        assertReadFromFile(Tensor.from("tensor<int8>(x[2],y[3]):[[1, 2, 3], [4, 5, 6]]"));
+        assertReadAsView(Tensor.from("tensor<float>(x[2]):[1, 2]"));
+        assertReadAsView(Tensor.from("tensor(x[2],y[3]):[[1, 2, 3], [4, 5, 6]]"));
+    }
+
+    @Test
+    public void testReadingSparseConstantsFromMappedFiles() throws IOException {
+        assertReadFromFile(Tensor.from("tensor(x{}):{{x:a}:1.0, {x:b}:2.0}"));
+        assertReadFromFile(Tensor.from("tensor<float>(x{},y[2]):{a:[1, 2], b:[3, 4]}"));
+    }
+
+    private void assertReadFromFile(Tensor tensor) throws IOException {
+        Tensor read = readFromFile(tensor);
+        assertEquals(tensor, read);
+        assertEquals(tensor.type(), read.type());
+    }
+
+    /** Asserts that the tensor read is a view of the values in the mapped file rather than a copy of them */
+    private void assertReadAsView(Tensor tensor) throws IOException {
+        Tensor read = readFromFile(tensor);
+        assertEquals(tensor, read);
+        // IndexedBufferTensor is not visible outside its package
+        assertEquals("IndexedBufferTensor", read.getClass().getSimpleName());
+    }
+
+    private Tensor readFromFile(Tensor tensor) throws IOException {
+        File file = tempFolder.newFile("constant" + tempFolder.getRoot().list().length + ".tbf");
+        Files.write(file.toPath(), TypedBinaryFormat.encode(tensor));
+        RankProfilesConfigImporter importer = new RankProfilesConfigImporter(MockFileAcquirer.returnFile(file));
+        return importer.readTensorFromFile("constant", tensor.type(), new FileReference("constant"));
+    }
+
+}
@@ -16,6 +16,7 @@ import com.yahoo.tensor.serialization.TypedBinaryFormat;
 import com.yahoo.vespa.config.search.RankProfilesConfig;
 import com.yahoo.vespa.config.search.core.RankingConstantsConfig;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Optional;
@@ -43,8 +44,10 @@ public class ModelTester {
         Path configDir = Path.fromString(path);
         RankProfilesConfig config = new ConfigGetter<>(new FileSource(configDir.append("rank-profiles.cfg").toFile()),
                                                        RankProfilesConfig.class).getConfig("");
-        RankingConstantsConfig constantsConfig = new ConfigGetter<>(new FileSource(configDir.append("ranking-constants.cfg").toFile()),
-                                                                    RankingConstantsConfig.class).getConfig("");
+        File constantsFile = configDir.append("ranking-constants.cfg").toFile(); // may be left out if there are no file constants
+        RankingConstantsConfig constantsConfig = constantsFile.exists()
+                ? new ConfigGetter<>(new FileSource(constantsFile), RankingConstantsConfig.class).getConfig("")
+                : new RankingConstantsConfig.Builder().build();
         return new RankProfilesConfigImporterWithMockedConstants(Path.fromString(path).append("constants"), MockFileAcquirer.returnFile(null))
                        .importFrom(config, constantsConfig);
     }
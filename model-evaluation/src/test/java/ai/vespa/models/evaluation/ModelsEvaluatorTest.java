@@ -8,6 +8,7 @@ import com.yahoo.path.Path;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.vespa.config.search.RankProfilesConfig;
 import com.yahoo.vespa.config.search.core.RankingConstantsConfig;
@@ -15,10 +16,19 @@ import com.yahoo.yolean.Exceptions;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author bratseth
@@ -122,6 +132,193 @@ public class ModelsEvaluatorTest {
 
     }
 
+    @Test
+    public void testPooledEvaluation() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+
+        FunctionEvaluator function = models.pooledEvaluatorOf("macros", "secondphase");
+        function.setMissingValue(5);
+        function.bind("match", 3);
+        assertEquals(32.0, function.evaluate().asDouble(), delta);
+
+        // Neither bindings nor the missing value are retained by the reused context
+        function = models.pooledEvaluatorOf("macros", "secondphase");
+        assertTrue(Double.isNaN(function.evaluate().asDouble()));
+
+        function = models.pooledEvaluatorOf("macros", "secondphase");
+        function.bind("match", 1);
+        function.bind("rankBoost", 2);
+        assertEquals(12.0, function.evaluate().asDouble(), delta);
+
+        // Evaluators in use at the same time in one thread get different contexts
+        FunctionEvaluator first = models.pooledEvaluatorOf("macros", "secondphase").bind("match", 1);
+        FunctionEvaluator second = models.pooledEvaluatorOf("macros", "secondphase").bind("match", 2);
+        assertNotSame(first.context(), second.context());
+        first.bind("rankBoost", 0);
+        second.bind("rankBoost", 0);
+        assertEquals(8.0, second.evaluate().asDouble(), delta);
+        assertEquals(4.0, first.evaluate().asDouble(), delta);
+
+        // A used evaluator cannot be evaluated again, as its context may be reused already
+        try {
+            first.evaluate();
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Cannot evaluate a used evaluator", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testPooledEvaluationInMultipleThreads() throws Exception {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int rankBoost = thread;
+                results.add(executor.submit(() -> {
+                    for (int match = 0; match < 1000; match++) {
+                        FunctionEvaluator function = models.pooledEvaluatorOf("macros", "secondphase");
+                        function.bind("match", match);
+                        function.bind("rankBoost", rankBoost);
+                        if (function.evaluate().asDouble() != 4 * (match + rankBoost)) return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results)
+                assertTrue(result.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelEvaluation() {
+        TensorType type = TensorType.fromSpec("tensor(d0[100],d1[100])");
+        Map<FunctionReference, ExpressionFunction> functions = new HashMap<>();
+        Map<FunctionReference, ExpressionFunction> referencedFunctions = new HashMap<>();
+        ExpressionFunction root = new ExpressionFunction("root",
+                                                         RankingExpression.from("rankingExpression(a) + rankingExpression(b) + " +
+                                                                                "rankingExpression(c) + rankingExpression(d)"));
+        functions.put(FunctionReference.fromName("root"), root.withArgument("x", type).withArgument("y", type));
+        addReferencedFunction("a", "reduce(x * y, sum)", functions, referencedFunctions); // expensive
+        addReferencedFunction("b", "reduce(x + y, sum)", functions, referencedFunctions); // expensive
+        addReferencedFunction("c", "1 + 2", functions, referencedFunctions);
+        addReferencedFunction("d", "rankingExpression(a) * 2", functions, referencedFunctions);
+        Model model = new Model("test-model", functions, referencedFunctions, List.of());
+
+        ParallelEvaluationPlan plan = model.parallelEvaluationPlan(model.function("root"));
+        assertTrue(plan.isParallel());
+        assertEquals(2, plan.parallelFunctionCount());
+        assertFalse(model.parallelEvaluationPlan(model.function("d")).isParallel());
+
+        Tensor.Builder xBuilder = Tensor.Builder.of(type);
+        Tensor.Builder yBuilder = Tensor.Builder.of(type);
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 100; j++) {
+                xBuilder.cell(i * 0.01, i, j);
+                yBuilder.cell(j * 0.5, i, j);
+            }
+        }
+        Tensor x = xBuilder.build();
+        Tensor y = yBuilder.build();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            double expected = model.evaluatorOf("root").bind("x", x).bind("y", y).evaluate().asDouble();
+            for (int i = 0; i < 10; i++) {
+                FunctionEvaluator evaluator = model.pooledEvaluatorOf("root").setParallelExecutor(pool);
+                assertEquals(expected, evaluator.bind("x", x).bind("y", y).evaluate().asDouble(), delta);
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private void addReferencedFunction(String name, String expression,
+                                       Map<FunctionReference, ExpressionFunction> functions,
+                                       Map<FunctionReference, ExpressionFunction> referencedFunctions) {
+        ExpressionFunction function = new ExpressionFunction(name, RankingExpression.from(expression));
+        functions.put(FunctionReference.fromName(name), function);
+        referencedFunctions.put(FunctionReference.fromSerial("rankingExpression(" + name + ")").get(), function);
+    }
+
+    @Test
+    public void testBatchEvaluation() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+        Model model = models.requireModel("macros");
+
+        // A list of bindings: Function values must be recomputed for each
+        BatchEvaluator evaluator = model.batchEvaluatorOf("secondphase").setMissingValue(5);
+        List<Tensor> results = evaluator.evaluate(List.of(Map.of("match", scalar(3), "rankBoost", scalar(5)),
+                                                          Map.of("match", scalar(1))));
+        assertEquals(2, results.size());
+        assertEquals(32.0, results.get(0).asDouble(), delta);
+        assertEquals(24.0, results.get(1).asDouble(), delta);
+
+        // A batch dimension, with an argument bound to the same value in all evaluations
+        Tensor result = model.batchEvaluatorOf("secondphase")
+                             .evaluate("batch", Map.of("match", Tensor.from("tensor(batch[3]):[3, 1, 0]"),
+                                                       "rankBoost", scalar(5)));
+        assertEquals(Tensor.from("tensor(batch[3]):[32, 24, 20]"), result);
+    }
+
+    @Test
+    public void testBatchEvaluationOfScalarFunction() {
+        ExpressionFunction function = new ExpressionFunction("test", RankingExpression.from("if (x > y, x * 2, y) + 1"));
+        Model model = new Model("test-model", List.of(function));
+
+        Tensor result = model.batchEvaluatorOf("test")
+                             .evaluate("batch", Map.of("x", Tensor.from("{{batch:a}:1.0,{batch:b}:3.0,{batch:c}:0.5}"),
+                                                       "y", Tensor.from("{{batch:a}:2.0,{batch:b}:1.0}")));
+        assertEquals(Tensor.from("{{batch:a}:3.0,{batch:b}:7.0,{batch:c}:2.0}"),
+                     model.batchEvaluatorOf("test").setMissingValue(0)
+                          .evaluate("batch", Map.of("x", Tensor.from("{{batch:a}:1.0,{batch:b}:3.0,{batch:c}:0.5}"),
+                                                    "y", Tensor.from("{{batch:a}:2.0,{batch:b}:1.0}"))));
+        assertTrue(Double.isNaN(result.get(TensorAddress.ofLabels("c"))));
+    }
+
+    @Test
+    public void testBatchEvaluationOfTensorFunction() {
+        ExpressionFunction function = new ExpressionFunction("test", RankingExpression.from("sum(arg1 * arg2)"));
+        function = function.withArgument("arg1", TensorType.fromSpec("tensor(d0[2])"));
+        function = function.withArgument("arg2", TensorType.fromSpec("tensor(d0[2])"));
+        Model model = new Model("test-model", List.of(function));
+
+        Tensor result = model.batchEvaluatorOf("test")
+                             .evaluate("batch", Map.of("arg1", Tensor.from("tensor(batch{},d0[2]):{a:[1, 2], b:[3, 4]}"),
+                                                       "arg2", Tensor.from("tensor(d0[2]):[1, 10]")));
+        assertEquals(Tensor.from("{{batch:a}:21.0,{batch:b}:43.0}"), result);
+
+        try {
+            model.batchEvaluatorOf("test")
+                 .evaluate("batch", Map.of("arg1", Tensor.from("tensor(batch{},d1[2]):{a:[1, 2]}"),
+                                           "arg2", Tensor.from("tensor(d0[2]):[1, 10]")));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("'arg1' must be of type tensor(d0[2]), not tensor(d1[2])", Exceptions.toMessageString(e));
+        }
+
+        BatchEvaluator evaluator = model.batchEvaluatorOf("test");
+        try {
+            evaluator.evaluate("batch", Map.of("arg1", Tensor.Builder.of(TensorType.fromSpec("tensor(batch{},d0[2])")).build(),
+                                               "arg2", Tensor.from("tensor(d0[2]):[1, 10]")));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("The arguments bound when evaluating " + evaluator.function() +
+                         " have no cells in the batch dimension 'batch'", Exceptions.toMessageString(e));
+        }
+    }
+
+    private Tensor scalar(double value) {
+        return Tensor.Builder.of(TensorType.empty).cell(value).build();
+    }
+
     // TODO: Test argument-less function
     // TODO: Test with nested functions
 
@@ -93,6 +93,19 @@ public class ModelsEvaluationHandlerTest {
         assertResponse(url, properties, 200, expected);
     }
 
+    @Test
+    public void testXgBoostBatchEvaluation() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("batch-dimension", "batch");
+        properties.put("f29", "tensor(batch[2]):[-1.0, -1.0]");
+        properties.put("f56", "tensor(batch[2]):[0.2, 0.2]");
+        properties.put("f60", "tensor(batch[2]):[0.3, 0.3]");
+        properties.put("f109", "0.4");
+        String url = "http://localhost/model-evaluation/v1/xgboost_2_2/eval";
+        String expected = "{\"cells\":[{\"address\":{\"batch\":\"0\"},\"value\":-7.936679999999999},{\"address\":{\"batch\":\"1\"},\"value\":-7.936679999999999}]}";
+        assertResponse(url, properties, 200, expected);
+    }
+
     @Test
     public void testLightGBMEvaluationWithoutBindings() {
         String url = "http://localhost/model-evaluation/v1/lightgbm_regression/eval";
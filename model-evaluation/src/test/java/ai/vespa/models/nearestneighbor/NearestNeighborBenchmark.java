@@ -0,0 +1,75 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.nearestneighbor;
+
+import com.yahoo.tensor.Tensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks the build time, query latency and recall of nearest neighbor indexes of random vectors
+ */
+public class NearestNeighborBenchmark {
+
+    private static final int k = 10;
+
+    public void benchmark(int vectorCount, int vectorSize, DistanceMetric metric, int queryCount) {
+        Random random = new Random(vectorCount);
+        Tensor vectors = NearestNeighborIndexTest.randomVectors(vectorCount, vectorSize, random);
+        long startTime = System.nanoTime();
+        NearestNeighborIndex index = new NearestNeighborIndex(vectors, "x", metric);
+        System.out.printf("%s index of %d vectors of size %d built in %d ms\n",
+                          metric, vectorCount, vectorSize, (System.nanoTime() - startTime) / 1000 / 1000);
+
+        List<Tensor> queries = new ArrayList<>(queryCount);
+        List<Set<String>> exactNeighbors = new ArrayList<>(queryCount);
+        for (int i = 0; i < queryCount; i++) {
+            queries.add(NearestNeighborIndexTest.randomVector(vectorSize, random));
+            exactNeighbors.add(labels(index.findExact(queries.get(i), k)));
+        }
+
+        benchmarkExact(index, queries);
+        for (int neighborsToExplore : new int[] { 10, 50, 100, 200, 400 })
+            benchmark(index, queries, exactNeighbors, neighborsToExplore);
+    }
+
+    private void benchmarkExact(NearestNeighborIndex index, List<Tensor> queries) {
+        long startTime = System.nanoTime();
+        for (Tensor query : queries)
+            index.findExact(query, k);
+        System.out.printf("Exact:              %8.3f us per query\n",
+                          (System.nanoTime() - startTime) / 1000.0 / queries.size());
+    }
+
+    private void benchmark(NearestNeighborIndex index, List<Tensor> queries, List<Set<String>> exactNeighbors,
+                           int neighborsToExplore) {
+        for (Tensor query : queries) // warmup
+            index.find(query, k, neighborsToExplore);
+
+        int hits = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < queries.size(); i++) {
+            for (NearestNeighborIndex.Neighbor neighbor : index.find(queries.get(i), k, neighborsToExplore))
+                if (exactNeighbors.get(i).contains(neighbor.label()))
+                    hits++;
+        }
+        long totalTime = System.nanoTime() - startTime;
+        System.out.printf("Explore %4d:       %8.3f us per query, recall@%d %.3f\n",
+                          neighborsToExplore, totalTime / 1000.0 / queries.size(), k,
+                          hits / (double)(queries.size() * k));
+    }
+
+    private Set<String> labels(List<NearestNeighborIndex.Neighbor> neighbors) {
+        return neighbors.stream().map(NearestNeighborIndex.Neighbor::label).collect(Collectors.toSet());
+    }
+
+    public static void main(String[] args) {
+        NearestNeighborBenchmark benchmark = new NearestNeighborBenchmark();
+        for (DistanceMetric metric : DistanceMetric.values())
+            benchmark.benchmark(20000, 64, metric, 1000);
+    }
+
+}
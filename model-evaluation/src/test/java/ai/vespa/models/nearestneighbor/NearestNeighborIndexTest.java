@@ -0,0 +1,136 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.nearestneighbor;
+
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NearestNeighborIndexTest {
+
+    private static final Tensor vectors = Tensor.from("tensor(id{},x[2]):{a:[1, 0], b:[0, 1], c:[1, 1], d:[-1, -1]}");
+
+    @Test
+    public void testFindingNeighbors() {
+        NearestNeighborIndex euclidean = new NearestNeighborIndex(vectors, "x", DistanceMetric.EUCLIDEAN);
+        assertEquals(4, euclidean.size());
+        assertNeighbors("[a: 0.1414, c: 0.9055]", euclidean.find(Tensor.from("tensor(x[2]):[0.9, 0.1]"), 2));
+        assertNeighbors("[a: 0.1414, c: 0.9055]", euclidean.findExact(Tensor.from("tensor(x[2]):[0.9, 0.1]"), 2));
+
+        NearestNeighborIndex angular = new NearestNeighborIndex(vectors, "x", DistanceMetric.ANGULAR);
+        assertNeighbors("[c: 0.0, a: 0.2929, b: 0.2929, d: 2.0]", angular.find(Tensor.from("tensor(x[2]):[2, 2]"), 10));
+
+        NearestNeighborIndex innerProduct = new NearestNeighborIndex(vectors, "x", DistanceMetric.INNERPRODUCT);
+        assertNeighbors("[c: -2.0, a: -1.0, b: -1.0, d: 2.0]", innerProduct.find(Tensor.from("tensor(x[2]):[1, 1]"), 4));
+    }
+
+    @Test
+    public void testFindingNeighborsInIndexedTensor() {
+        NearestNeighborIndex index = new NearestNeighborIndex(Tensor.from("tensor<float>(x[2],id[3]):[[1, 2, 3], [4, 5, 6]]"),
+                                                              "x", DistanceMetric.EUCLIDEAN);
+        assertNeighbors("[1: 0.0, 0: 1.4142]", index.find(Tensor.from("tensor(x[2]):[2, 5]"), 2));
+    }
+
+    @Test
+    public void testRecall() {
+        int vectorCount = 2000;
+        int vectorSize = 16;
+        Random random = new Random(42);
+        NearestNeighborIndex index = new NearestNeighborIndex(randomVectors(vectorCount, vectorSize, random),
+                                                              "x", DistanceMetric.EUCLIDEAN);
+        int hits = 0;
+        int queries = 50;
+        for (int i = 0; i < queries; i++) {
+            Tensor query = randomVector(vectorSize, random);
+            Set<String> exact = index.findExact(query, 10).stream().map(NearestNeighborIndex.Neighbor::label).collect(Collectors.toSet());
+            hits += index.find(query, 10).stream().filter(neighbor -> exact.contains(neighbor.label())).count();
+        }
+        assertTrue("Recall is at least 0.9", hits >= 0.9 * queries * 10);
+    }
+
+    @Test
+    public void testConcurrentSearches() throws Exception {
+        Random random = new Random(42);
+        NearestNeighborIndex index = new NearestNeighborIndex(randomVectors(1000, 8, random), "x", DistanceMetric.EUCLIDEAN);
+        List<Tensor> queries = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            queries.add(randomVector(8, random));
+        List<String> expected = queries.stream().map(query -> index.find(query, 10).toString()).collect(Collectors.toList());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++)
+                results.add(executor.submit(() -> queries.stream().map(query -> index.find(query, 10).toString())
+                                                         .collect(Collectors.toList())));
+            for (Future<List<String>> result : results)
+                assertEquals(expected, result.get());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        NearestNeighborIndex index = new NearestNeighborIndex(vectors, "x", DistanceMetric.EUCLIDEAN);
+        assertIllegalQuery("A query must be a tensor of type tensor(x[2]), not tensor(y[2]) of size 2",
+                           index, Tensor.from("tensor(y[2]):[1, 2]"));
+        assertIllegalQuery("A query must be a tensor of type tensor(x[2]), not tensor(x[3]) of size 3",
+                           index, Tensor.from("tensor(x[3]):[1, 2, 3]"));
+
+        try {
+            new NearestNeighborIndex(Tensor.from("tensor(x[2]):[1, 2]"), "x", DistanceMetric.EUCLIDEAN);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Vectors must be a tensor of rank 2 with an indexed dimension 'x' of known size, not tensor(x[2])",
+                         e.getMessage());
+        }
+    }
+
+    private void assertIllegalQuery(String expectedMessage, NearestNeighborIndex index, Tensor query) {
+        try {
+            index.find(query, 1);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals(expectedMessage, e.getMessage());
+        }
+    }
+
+    private void assertNeighbors(String expected, List<NearestNeighborIndex.Neighbor> neighbors) {
+        assertEquals(expected, neighbors.stream()
+                                        .map(neighbor -> neighbor.label() + ": " + Math.round(neighbor.distance() * 10000) / 10000.0)
+                                        .collect(Collectors.joining(", ", "[", "]")));
+    }
+
+    static Tensor randomVectors(int count, int size, Random random) {
+        IndexedTensor.Builder builder = IndexedTensor.Builder.of(TensorType.fromSpec("tensor<float>(id[" + count + "],x[" + size + "])"));
+        for (int i = 0; i < count; i++)
+            for (int j = 0; j < size; j++)
+                builder.cell((float)random.nextGaussian(), i, j);
+        return builder.build();
+    }
+
+    static Tensor randomVector(int size, Random random) {
+        IndexedTensor.Builder builder = IndexedTensor.Builder.of(TensorType.fromSpec("tensor<float>(x[" + size + "])"));
+        for (int j = 0; j < size; j++)
+            builder.cell((float)random.nextGaussian(), j);
+        return builder.build();
+    }
+
+}
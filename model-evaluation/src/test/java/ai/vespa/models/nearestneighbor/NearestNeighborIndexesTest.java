@@ -0,0 +1,69 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.nearestneighbor;
+
+import ai.vespa.models.evaluation.ModelTester;
+import ai.vespa.models.evaluation.ModelsEvaluator;
+import ai.vespa.models.nearestneighbor.config.NearestNeighborIndexesConfig;
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class NearestNeighborIndexesTest {
+
+    @Test
+    public void testIndexOfModelConstant() {
+        NearestNeighborIndexes indexes = new NearestNeighborIndexes(modelsEvaluator(),
+                                                                    config("my_profile", "my_vectors", "x",
+                                                                           NearestNeighborIndexesConfig.Index.Metric.Enum.EUCLIDEAN));
+
+        NearestNeighborIndex index = indexes.indexOf("my_profile", "my_vectors", "x", DistanceMetric.EUCLIDEAN);
+        assertEquals(3, index.size());
+        List<NearestNeighborIndex.Neighbor> neighbors = index.find(Tensor.from("tensor(x[2]):[0.9, 0.8]"), 2);
+        assertEquals("c", neighbors.get(0).label());
+        assertEquals("a", neighbors.get(1).label());
+        assertSame(index, indexes.indexOf("my_profile", "my_vectors", "x", DistanceMetric.EUCLIDEAN));
+
+        try {
+            indexes.indexOf("my_profile", "my_vectors", "x", DistanceMetric.ANGULAR);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("No ANGULAR index of dimension 'x' of constant 'my_vectors' in model 'my_profile' is configured",
+                         e.getMessage());
+        }
+    }
+
+    @Test
+    public void testIndexOfMissingConstant() {
+        try {
+            new NearestNeighborIndexes(modelsEvaluator(),
+                                       config("my_profile", "other_vectors", "x",
+                                              NearestNeighborIndexesConfig.Index.Metric.Enum.EUCLIDEAN));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("No constant named 'other_vectors' in model 'my_profile'. Available constants: my_vectors",
+                         e.getMessage());
+        }
+    }
+
+    private static ModelsEvaluator modelsEvaluator() {
+        return new ModelsEvaluator(new ModelTester("src/test/resources/config/nearestneighbor/").models());
+    }
+
+    private static NearestNeighborIndexesConfig config(String model, String constant, String vectorDimension,
+                                                       NearestNeighborIndexesConfig.Index.Metric.Enum metric) {
+        return new NearestNeighborIndexesConfig.Builder()
+                       .index(new NearestNeighborIndexesConfig.Index.Builder().model(model)
+                                                                               .constant(constant)
+                                                                               .vectorDimension(vectorDimension)
+                                                                               .metric(metric))
+                       .build();
+    }
+
+}
@@ -0,0 +1,333 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer of JVM class files, supporting just what is needed by the expression compiler:
+ * A public final class with a constant pool and methods containing straight-line code and forward branches.
+ *
+ * Classes are written in class file version 49 such that no stack map frames are needed.
+ */
+final class ClassFileWriter {
+
+    // The opcodes used
+    static final int ICONST_0 = 0x03, DCONST_0 = 0x0e, DCONST_1 = 0x0f, BIPUSH = 0x10, SIPUSH = 0x11,
+                     LDC_W = 0x13, LDC2_W = 0x14, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, POP2 = 0x58, DUP2 = 0x5c,
+                     DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DREM = 0x73, DNEG = 0x77,
+                     DCMPL = 0x97, DCMPG = 0x98, IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d,
+                     IFLE = 0x9e, GOTO = 0xa7, DRETURN = 0xaf, RETURN = 0xb1,
+                     GETSTATIC = 0xb2, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+    private static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    private final String name;
+    private final String superName;
+
+    private final Map<String, Integer> constantIndexes = new HashMap<>();
+    private final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+    private final DataOutputStream constants = new DataOutputStream(constantPool);
+    private int constantCount = 1;
+
+    private final List<byte[]> methods = new ArrayList<>();
+
+    /**
+     * Creates a class writer
+     *
+     * @param name the internal (slash separated) name of the class to write
+     * @param superName the internal name of the super class of the class to write
+     */
+    ClassFileWriter(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    /** Returns the internal name of the class written by this */
+    String name() { return name; }
+
+    /** Returns the number of constant pool entries used so far, which must stay below 65536 */
+    int constantCount() { return constantCount; }
+
+    int classConstant(String className) {
+        return constant("Class:" + className, 7, 1, out -> out.writeShort(utf8Constant(className)));
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return constant("Double:" + bits, 6, 2, out -> out.writeLong(bits));
+    }
+
+    int integerConstant(int value) {
+        return constant("Integer:" + value, 3, 1, out -> out.writeInt(value));
+    }
+
+    int fieldConstant(String owner, String name, String descriptor) {
+        return memberConstant(9, owner, name, descriptor);
+    }
+
+    int methodConstant(String owner, String name, String descriptor) {
+        return memberConstant(10, owner, name, descriptor);
+    }
+
+    private int memberConstant(int tag, String owner, String name, String descriptor) {
+        int nameAndType = constant("NameAndType:" + name + ":" + descriptor, 12, 1, out -> {
+            out.writeShort(utf8Constant(name));
+            out.writeShort(utf8Constant(descriptor));
+        });
+        int ownerClass = classConstant(owner);
+        return constant(tag + ":" + owner + "." + name + ":" + descriptor, tag, 1, out -> {
+            out.writeShort(ownerClass);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int utf8Constant(String value) {
+        return constant("Utf8:" + value, 1, 1, out -> out.writeUTF(value));
+    }
+
+    /** Returns the index of a constant, adding it if not already present. Doubles take two slots, others one. */
+    private int constant(String key, int tag, int slots, ConstantWriter writer) {
+        Integer index = constantIndexes.get(key);
+        if (index != null) return index;
+        try {
+            // Buffer the entry, as the writer may add the constants it refers to first
+            ByteArrayOutputStream entry = new ByteArrayOutputStream();
+            DataOutputStream entryOut = new DataOutputStream(entry);
+            entryOut.writeByte(tag);
+            writer.write(entryOut);
+            constants.write(entry.toByteArray());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        index = constantCount;
+        constantCount += slots;
+        constantIndexes.put(key, index);
+        return index;
+    }
+
+    /** Adds a public constructor taking the given arguments and passing them to the super constructor */
+    void addConstructor(String descriptor, int argumentSlots) {
+        Code code = new Code();
+        for (int slot = 0; slot <= argumentSlots; slot++)
+            code.op(ALOAD_0 + slot, 1);
+        code.op(INVOKESPECIAL, methodConstant(superName, "<init>", descriptor), -1 - argumentSlots);
+        code.op(RETURN);
+        addMethod(ACC_PUBLIC, "<init>", descriptor, code, 1 + argumentSlots);
+    }
+
+    /** Adds a public final method with the given code */
+    void addPublicMethod(String name, String descriptor, Code code, int maxLocals) {
+        addMethod(ACC_PUBLIC | ACC_FINAL, name, descriptor, code, maxLocals);
+    }
+
+    /** Adds a private method with the given code */
+    void addPrivateMethod(String name, String descriptor, Code code, int maxLocals) {
+        addMethod(ACC_PRIVATE, name, descriptor, code, maxLocals);
+    }
+
+    private void addMethod(int access, String name, String descriptor, Code code, int maxLocals) {
+        try {
+            ByteArrayOutputStream method = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(method);
+            out.writeShort(access);
+            out.writeShort(utf8Constant(name));
+            out.writeShort(utf8Constant(descriptor));
+            out.writeShort(1); // attributes
+            out.writeShort(utf8Constant("Code"));
+            out.writeInt(12 + code.size());
+            out.writeShort(code.maxStack());
+            out.writeShort(maxLocals);
+            out.writeInt(code.size());
+            out.write(code.bytes(), 0, code.size());
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+            methods.add(method.toByteArray());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Returns the class file written by this */
+    byte[] toByteArray() {
+        try {
+            int thisClass = classConstant(name);
+            int superClass = classConstant(superName);
+            if (constantCount > 0xffff)
+                throw new IllegalStateException("Too many constants: " + constantCount);
+            ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(classFile);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0); // minor version
+            out.writeShort(49); // major version
+            out.writeShort(constantCount);
+            constantPool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods)
+                out.write(method);
+            out.writeShort(0); // attributes
+            return classFile.toByteArray();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface ConstantWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * A relocatable fragment of bytecode which leaves a known number of stack slots on the stack.
+     * As all branches are relative, fragments can be appended to each other freely.
+     */
+    static final class Code {
+
+        private byte[] bytes = new byte[16];
+        private int size = 0;
+
+        /** The current stack depth, in slots, at the end of this */
+        private int stack = 0;
+
+        /** The max stack depth, in slots, reached by this */
+        private int maxStack = 0;
+
+        int size() { return size; }
+        int maxStack() { return maxStack; }
+        byte[] bytes() { return bytes; }
+
+        /** Adds an opcode changing the stack depth by the given number of slots */
+        Code op(int opcode, int stackChange) {
+            write(opcode);
+            return stack(stackChange);
+        }
+
+        /** Adds an opcode with a two byte operand changing the stack depth by the given number of slots */
+        Code op(int opcode, int operand, int stackChange) {
+            write(opcode);
+            writeShort(operand);
+            return stack(stackChange);
+        }
+
+        /** Adds an opcode which does not take operands, adjusting the stack depth accordingly */
+        Code op(int opcode) {
+            return op(opcode, stackChangeOf(opcode));
+        }
+
+        /** Pushes an int to the stack */
+        Code pushInt(int value, ClassFileWriter classWriter) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value, 1);
+            }
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                write(BIPUSH);
+                write(value);
+                stack(1);
+            }
+            else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(SIPUSH, value, 1);
+            }
+            else {
+                op(LDC_W, classWriter.integerConstant(value), 1);
+            }
+            return this;
+        }
+
+        /** Pushes a double to the stack */
+        Code pushDouble(double value, ClassFileWriter classWriter) {
+            if (Double.doubleToRawLongBits(value) == Double.doubleToRawLongBits(0.0))
+                return op(DCONST_0, 2);
+            if (value == 1.0)
+                return op(DCONST_1, 2);
+            return op(LDC2_W, classWriter.doubleConstant(value), 2);
+        }
+
+        /** Appends the given code to this, as if it was executed with the stack depth at the end of this */
+        Code append(Code code) {
+            ensureCapacity(size + code.size);
+            System.arraycopy(code.bytes, 0, bytes, size, code.size);
+            size += code.size;
+            maxStack = Math.max(maxStack, stack + code.maxStack);
+            stack += code.stack;
+            return this;
+        }
+
+        /**
+         * Adds a branch instruction with a placeholder offset, to be set by {@link #setBranchTarget}
+         *
+         * @return the position of the branch instruction
+         */
+        int branch(int opcode, int stackChange) {
+            int position = size;
+            op(opcode, 0, stackChange);
+            return position;
+        }
+
+        /** Sets the branch instruction at the given position to jump to the current end of this */
+        void setBranchTarget(int branchPosition) {
+            int offset = size - branchPosition;
+            if (offset > Short.MAX_VALUE)
+                throw new IllegalStateException("Branch offset " + offset + " is too large");
+            bytes[branchPosition + 1] = (byte)(offset >> 8);
+            bytes[branchPosition + 2] = (byte)offset;
+        }
+
+        /**
+         * Sets the stack depth at the current position.
+         * This is used after unconditional branches, where the depth is given by the branches jumping here.
+         */
+        void setStack(int stack) {
+            this.stack = stack;
+        }
+
+        private Code stack(int change) {
+            stack += change;
+            maxStack = Math.max(maxStack, stack);
+            return this;
+        }
+
+        private void write(int b) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte)b;
+        }
+
+        private void writeShort(int s) {
+            write(s >> 8);
+            write(s);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+
+        private static int stackChangeOf(int opcode) {
+            switch (opcode) {
+                case DCONST_0: case DCONST_1: case DUP2: return 2;
+                case ALOAD_0: case ALOAD_1: return 1;
+                case POP2: return -2;
+                case DADD: case DSUB: case DMUL: case DDIV: case DREM: return -2;
+                case DNEG: case RETURN: return 0;
+                case DCMPL: case DCMPG: return -3;
+                case DRETURN: return -2;
+                default: throw new IllegalArgumentException("Stack change of opcode " + opcode + " is not known");
+            }
+        }
+
+    }
+
+}
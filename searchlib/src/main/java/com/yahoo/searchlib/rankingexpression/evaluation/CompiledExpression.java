@@ -0,0 +1,64 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+
+/**
+ * A ranking expression compiled to a JVM class by {@link ExpressionCompiler}.
+ * Subclasses are generated at runtime and should not be written by hand.
+ *
+ * Instances are immutable and may be evaluated by multiple threads at the same time, each using its own context.
+ *
+ * @see ExpressionCompiler
+ */
+public abstract class CompiledExpression {
+
+    /** The subexpressions which are evaluated by interpretation */
+    private final ExpressionNode[] interpreted;
+
+    /** The constants which did not fit in the constant pool of the compiled class */
+    private final double[] constants;
+
+    protected CompiledExpression(ExpressionNode[] interpreted, double[] constants) {
+        this.interpreted = interpreted;
+        this.constants = constants;
+    }
+
+    /**
+     * Evaluates this expression.
+     *
+     * @param context the context to look up values in. This must be (a clone of) the context index
+     *                this was compiled with, or another context assigning the same indexes to the same names
+     * @return the value of this expression as a double
+     * @throws UnsupportedOperationException if some value in this expression cannot be represented as a double
+     */
+    public abstract double evaluate(Context context);
+
+    /** Returns the number of subexpressions of this which could not be compiled and are interpreted */
+    public int interpretedCount() { return interpreted.length; }
+
+    /** Evaluates the subexpression at the given index by interpretation */
+    protected final double interpret(int index, Context context) {
+        return interpreted[index].evaluate(context).asDouble();
+    }
+
+    /** Returns the constant at the given index */
+    protected final double constant(int index) {
+        return constants[index];
+    }
+
+    protected static double and(double x, double y) {
+        return isTrue(x) && isTrue(y) ? 1 : 0;
+    }
+
+    protected static double or(double x, double y) {
+        return isTrue(x) || isTrue(y) ? 1 : 0;
+    }
+
+    protected static double not(double x) {
+        return isTrue(x) ? 0 : 1;
+    }
+
+    private static boolean isTrue(double x) { return x != 0.0; }
+
+}
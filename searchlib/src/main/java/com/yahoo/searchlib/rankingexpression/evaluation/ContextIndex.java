@@ -1,6 +1,8 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.searchlib.rankingexpression.evaluation;
 
+import java.util.Set;
+
 /**
  * Indexed context lookup methods.
  * Any context which implements these methods supports optimizations where map lookups
@@ -13,6 +15,9 @@ public interface ContextIndex {
     /** Returns the number of bound variables in this */
     int size();
 
+    /** Returns the names of the variables bound in this */
+    Set<String> names();
+
     /**
      * Returns the index from a name.
      *
@@ -0,0 +1,397 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.ClassFileWriter.Code;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+import com.yahoo.text.Text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.yahoo.searchlib.rankingexpression.evaluation.ClassFileWriter.*;
+
+/**
+ * Compiles ranking expressions producing doubles to JVM classes, as an alternative to evaluating
+ * them by interpreting the expression tree. Clients using compiled expressions will do
+ *
+ * <code>
+ * // Set up once
+ * RankingExpression expression = new RankingExpression(myExpressionString);
+ * DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression);
+ * CompiledExpression compiled = new ExpressionCompiler().compile(expression, context);
+ *
+ * // Execute repeatedly
+ * context.put("featureName1", value1);
+ * ...
+ * compiled.evaluate(context);
+ * </code>
+ *
+ * Arithmetic, comparisons, conditions, set membership tests, functions, constants and references
+ * to values bound in the context index are compiled. Other subexpressions, such as tensor functions,
+ * are evaluated by interpretation from the compiled code, which requires them to produce a double.
+ * Compile the expression before applying the {@link ExpressionOptimizer}, as the nodes produced by
+ * the optimizer are interpreted.
+ *
+ * Each compiled expression is defined in its own class loader, such that it can be garbage collected
+ * when no longer used.
+ */
+public class ExpressionCompiler {
+
+    private static final String compiledExpressionClass = internalName(CompiledExpression.class);
+    private static final String contextClass = internalName(Context.class);
+    private static final String expressionNodeClass = internalName(ExpressionNode.class);
+    private static final String evaluateDescriptor = "(L" + contextClass + ";)D";
+
+    /**
+     * The size in bytes above which code is moved into separate methods, to stay well below
+     * the max size of methods which are compiled by the JIT (8000 bytes by default)
+     */
+    private static final int preferredMethodSize = 4000;
+
+    /** The max size in bytes of the code compiled for one node, as branch offsets are limited to 32k */
+    private static final int maxCodeSize = 30000;
+
+    /** The size in bytes of the code calling a method */
+    private static final int callSize = 5;
+
+    /** The number of constant pool entries above which constants are stored in an array instead */
+    private static final int maxPoolConstants = 40000;
+
+    private static final AtomicLong classCount = new AtomicLong();
+
+    /**
+     * Compiles an expression
+     *
+     * @param expression the expression to compile
+     * @param contextIndex the context index giving the indexes of the values referenced by the expression.
+     *                     Contexts used to evaluate the returned expression must use the same indexes
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the expression is too large to compile
+     */
+    public CompiledExpression compile(RankingExpression expression, ContextIndex contextIndex) {
+        return new Compilation(contextIndex).compileClass(expression.getRoot());
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    /** The state of the compilation of a single expression */
+    private static class Compilation {
+
+        private final ContextIndex contextIndex;
+        private final ClassFileWriter classWriter;
+        private final List<ExpressionNode> interpreted = new ArrayList<>();
+        private final List<Double> constants = new ArrayList<>();
+        private int methodCount = 0;
+
+        Compilation(ContextIndex contextIndex) {
+            this.contextIndex = contextIndex;
+            this.classWriter = new ClassFileWriter("com/yahoo/searchlib/rankingexpression/evaluation/generated/Expression" +
+                                                   classCount.incrementAndGet(),
+                                                   compiledExpressionClass);
+        }
+
+        CompiledExpression compileClass(ExpressionNode root) {
+            try {
+                Code body = new Code().append(compile(root)).op(DRETURN);
+                classWriter.addPublicMethod("evaluate", evaluateDescriptor, body, 2);
+                classWriter.addConstructor("([L" + expressionNodeClass + ";[D)V", 2);
+                byte[] classFile = classWriter.toByteArray();
+                Class<?> compiledClass = new GeneratedClassLoader(ExpressionCompiler.class.getClassLoader())
+                                                 .define(classWriter.name().replace('/', '.'), classFile);
+                return (CompiledExpression)compiledClass.getConstructor(ExpressionNode[].class, double[].class)
+                                                        .newInstance(interpreted.toArray(new ExpressionNode[0]),
+                                                                     constants.stream().mapToDouble(c -> c).toArray());
+            }
+            catch (IllegalStateException e) {
+                throw new IllegalArgumentException("Could not compile '" + Text.truncate(root.toString(), 50) + "'", e);
+            }
+            catch (ReflectiveOperationException | LinkageError e) {
+                throw new IllegalStateException("Could not instantiate the compiled class of '" +
+                                                Text.truncate(root.toString(), 50) + "'", e);
+            }
+        }
+
+        /** Returns code which pushes the value of the given node to the stack as a double */
+        private Code compile(ExpressionNode node) {
+            try {
+                Code code = compileNode(node);
+                if (code != null && code.size() <= maxCodeSize)
+                    return code;
+            }
+            catch (IllegalStateException e) { // a branch is too long
+            }
+            return interpret(node);
+        }
+
+        /** Returns the code of this node, or null if it cannot be compiled */
+        private Code compileNode(ExpressionNode node) {
+            if (node instanceof ConstantNode)
+                return compileConstant((ConstantNode)node);
+            if (node instanceof ReferenceNode)
+                return compileReference((ReferenceNode)node);
+            if (node instanceof EmbracedNode)
+                return compile(((EmbracedNode)node).getValue());
+            if (node instanceof NegativeNode)
+                return new Code().append(compile(((NegativeNode)node).getValue())).op(DNEG);
+            if (node instanceof NotNode)
+                return new Code().append(compile(((NotNode)node).getValue()))
+                                 .op(INVOKESTATIC, classWriter.methodConstant(compiledExpressionClass, "not", "(D)D"), 0);
+            if (node instanceof ArithmeticNode)
+                return compileArithmetic((ArithmeticNode)node);
+            if (node instanceof FunctionNode)
+                return compileFunction((FunctionNode)node);
+            if (node instanceof ComparisonNode)
+                return compileConditional(node, new Code().op(DCONST_1), new Code().op(DCONST_0));
+            if (node instanceof IfNode)
+                return compileConditional(((IfNode)node).getCondition(),
+                                          compile(((IfNode)node).getTrueExpression()),
+                                          compile(((IfNode)node).getFalseExpression()));
+            if (node instanceof SetMembershipNode)
+                return compileSetMembership((SetMembershipNode)node);
+            return null;
+        }
+
+        private Code compileConstant(ConstantNode node) {
+            double value;
+            try {
+                value = node.getValue().asDouble();
+            }
+            catch (UnsupportedOperationException e) { // not a double
+                return null;
+            }
+            if (classWriter.constantCount() < maxPoolConstants)
+                return new Code().pushDouble(value, classWriter);
+            constants.add(value);
+            return new Code().op(ALOAD_0)
+                             .pushInt(constants.size() - 1, classWriter)
+                             .op(INVOKEVIRTUAL, classWriter.methodConstant(compiledExpressionClass, "constant", "(I)D"), 0);
+        }
+
+        private Code compileReference(ReferenceNode node) {
+            if ( ! node.getArguments().isEmpty()) return null;
+            String name = node.toString();
+            if ( ! contextIndex.names().contains(name)) return null;
+            return new Code().op(ALOAD_1)
+                             .pushInt(contextIndex.getIndex(name), classWriter)
+                             .op(INVOKEVIRTUAL, classWriter.methodConstant(contextClass, "getDouble", "(I)D"), 0);
+        }
+
+        /** Compiles arithmetic with the same operator precedence and evaluation order as ArithmeticNode.evaluate */
+        private Code compileArithmetic(ArithmeticNode node) {
+            Iterator<ExpressionNode> child = node.children().iterator();
+            Deque<CodeItem> stack = new ArrayDeque<>();
+            stack.push(new CodeItem(ArithmeticOperator.OR, compile(child.next())));
+            for (Iterator<ArithmeticOperator> it = node.operators().iterator(); it.hasNext() && child.hasNext();) {
+                ArithmeticOperator op = it.next();
+                while (stack.peek().op.hasPrecedenceOver(op))
+                    popStack(stack);
+                stack.push(new CodeItem(op, compile(child.next())));
+            }
+            while (stack.size() > 1)
+                popStack(stack);
+            return stack.getFirst().code;
+        }
+
+        private void popStack(Deque<CodeItem> stack) {
+            CodeItem rhs = stack.pop();
+            CodeItem lhs = stack.peek();
+            List<Code> operands = fit(lhs.code, rhs.code);
+            lhs.code = new Code().append(operands.get(0)).append(operands.get(1));
+            switch (rhs.op) {
+                case PLUS: lhs.code.op(DADD); break;
+                case MINUS: lhs.code.op(DSUB); break;
+                case MULTIPLY: lhs.code.op(DMUL); break;
+                case DIVIDE: lhs.code.op(DDIV); break;
+                case MODULO: lhs.code.op(DREM); break;
+                case POWER: lhs.code.op(INVOKESTATIC, classWriter.methodConstant("java/lang/Math", "pow", "(DD)D"), -2); break;
+                case AND: lhs.code.op(INVOKESTATIC, classWriter.methodConstant(compiledExpressionClass, "and", "(DD)D"), -2); break;
+                case OR: lhs.code.op(INVOKESTATIC, classWriter.methodConstant(compiledExpressionClass, "or", "(DD)D"), -2); break;
+                default: throw new IllegalArgumentException("Unknown operator " + rhs.op);
+            }
+        }
+
+        /** Compiles a function as a call to the function enum, which passes 0 for missing arguments */
+        private Code compileFunction(FunctionNode node) {
+            List<ExpressionNode> arguments = node.children();
+            Code[] argumentCode = new Code[2];
+            for (int i = 0; i < 2; i++)
+                argumentCode[i] = i < arguments.size() ? compile(arguments.get(i)) : new Code().op(DCONST_0);
+            List<Code> operands = fit(argumentCode);
+
+            String functionClass = internalName(node.getFunction().getDeclaringClass());
+            return new Code().op(GETSTATIC,
+                                 classWriter.fieldConstant(functionClass, node.getFunction().name(), "L" + functionClass + ";"),
+                                 1)
+                             .append(operands.get(0))
+                             .append(operands.get(1))
+                             .op(INVOKEVIRTUAL, classWriter.methodConstant(functionClass, "evaluate", "(DD)D"), -3);
+        }
+
+        /** Returns code evaluating the given condition, followed by the given code producing the true or false value */
+        private Code compileConditional(ExpressionNode condition, Code trueCode, Code falseCode) {
+            Code code = new Code();
+            int falseBranch;
+            List<Code> branches;
+            if (condition instanceof ComparisonNode) {
+                ComparisonNode comparison = (ComparisonNode)condition;
+                List<Code> parts = fit(compile(comparison.getLeftCondition()), compile(comparison.getRightCondition()),
+                                       trueCode, falseCode);
+                branches = parts.subList(2, 4);
+                TruthOperator operator = comparison.getOperator();
+                if (operator == TruthOperator.APPROX_EQUAL) { // call the operator
+                    String operatorClass = internalName(TruthOperator.class);
+                    code.op(GETSTATIC, classWriter.fieldConstant(operatorClass, operator.name(), "L" + operatorClass + ";"), 1)
+                        .append(parts.get(0))
+                        .append(parts.get(1))
+                        .op(INVOKEVIRTUAL, classWriter.methodConstant(operatorClass, "evaluate", "(DD)Z"), -4);
+                    falseBranch = IFEQ;
+                }
+                else {
+                    // Comparisons involving NaN are false, so use the variant of dcmp which produces a false result
+                    boolean isLess = operator == TruthOperator.SMALLER || operator == TruthOperator.SMALLEREQUAL;
+                    code.append(parts.get(0)).append(parts.get(1)).op(isLess ? DCMPG : DCMPL);
+                    falseBranch = falseBranchOf(operator);
+                }
+            }
+            else { // true if not 0, including NaN
+                List<Code> parts = fit(compile(condition), trueCode, falseCode);
+                branches = parts.subList(1, 3);
+                code.append(parts.get(0)).op(DCONST_0).op(DCMPL);
+                falseBranch = IFEQ;
+            }
+
+            int toFalse = code.branch(falseBranch, -1);
+            code.append(branches.get(0));
+            int toEnd = code.branch(GOTO, 0);
+            code.setStack(0);
+            code.setBranchTarget(toFalse);
+            code.append(branches.get(1));
+            code.setBranchTarget(toEnd);
+            return code;
+        }
+
+        /** Returns the branch opcode to apply to the result of dcmp to jump when the given comparison is false */
+        private static int falseBranchOf(TruthOperator operator) {
+            switch (operator) {
+                case SMALLER: return IFGE;
+                case SMALLEREQUAL: return IFGT;
+                case LARGER: return IFLE;
+                case LARGEREQUAL: return IFLT;
+                case EQUAL: return IFNE;
+                case NOTEQUAL: return IFEQ;
+                default: throw new IllegalArgumentException("Unknown operator " + operator);
+            }
+        }
+
+        private Code compileSetMembership(SetMembershipNode node) {
+            List<ExpressionNode> setValues = node.getSetValues();
+            Code[] parts = new Code[1 + setValues.size()];
+            parts[0] = compile(node.getTestValue());
+            for (int i = 0; i < setValues.size(); i++)
+                parts[i + 1] = compile(setValues.get(i));
+            List<Code> fitted = fit(parts);
+
+            Code code = new Code().append(fitted.get(0));
+            int[] toFound = new int[setValues.size()];
+            for (int i = 0; i < setValues.size(); i++) {
+                code.op(DUP2).append(fitted.get(i + 1)).op(DCMPL);
+                toFound[i] = code.branch(IFEQ, -1);
+            }
+            code.op(POP2).op(DCONST_0);
+            int toEnd = code.branch(GOTO, 0);
+            code.setStack(2);
+            for (int branch : toFound)
+                code.setBranchTarget(branch);
+            code.op(POP2).op(DCONST_1);
+            code.setBranchTarget(toEnd);
+            return code;
+        }
+
+        /** Returns code evaluating the given node by interpretation */
+        private Code interpret(ExpressionNode node) {
+            interpreted.add(node);
+            return new Code().op(ALOAD_0)
+                             .pushInt(interpreted.size() - 1, classWriter)
+                             .op(ALOAD_1)
+                             .op(INVOKEVIRTUAL,
+                                 classWriter.methodConstant(compiledExpressionClass, "interpret", "(IL" + contextClass + ";)D"),
+                                 -1);
+        }
+
+        /**
+         * Returns the given code parts, where the largest are moved into separate methods
+         * until the total size is below the preferred method size
+         */
+        private List<Code> fit(Code ... parts) {
+            List<Code> fitted = new ArrayList<>(Arrays.asList(parts));
+            int size = fitted.stream().mapToInt(Code::size).sum();
+            while (size > preferredMethodSize) {
+                int largest = 0;
+                for (int i = 1; i < fitted.size(); i++)
+                    if (fitted.get(i).size() > fitted.get(largest).size())
+                        largest = i;
+                if (fitted.get(largest).size() <= callSize) break; // nothing more to gain
+                Code call = toMethod(fitted.get(largest));
+                size += call.size() - fitted.get(largest).size();
+                fitted.set(largest, call);
+            }
+            return fitted;
+        }
+
+        /** Moves the given code, producing a double, into a separate method and returns code calling it */
+        private Code toMethod(Code code) {
+            String name = "evaluate" + (methodCount++);
+            classWriter.addPrivateMethod(name, evaluateDescriptor, new Code().append(code).op(DRETURN), 2);
+            return new Code().op(ALOAD_0)
+                             .op(ALOAD_1)
+                             .op(INVOKESPECIAL, classWriter.methodConstant(classWriter.name(), name, evaluateDescriptor), 0);
+        }
+
+    }
+
+    private static class CodeItem {
+
+        final ArithmeticOperator op;
+        Code code;
+
+        CodeItem(ArithmeticOperator op, Code code) {
+            this.op = op;
+            this.code = code;
+        }
+
+    }
+
+    /** A class loader defining a single generated class */
+    private static class GeneratedClassLoader extends ClassLoader {
+
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+
+    }
+
+}
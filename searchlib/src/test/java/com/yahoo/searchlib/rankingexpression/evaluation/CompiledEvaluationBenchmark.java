@@ -0,0 +1,69 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.io.IOUtils;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Benchmarks evaluation of compiled expressions against interpretation using a DoubleOnlyArrayContext,
+ * with and without the GBDT optimizations
+ */
+public class CompiledEvaluationBenchmark {
+
+    public double benchmark(int iterations, DoubleOnlyArrayContext context, DoubleSupplier evaluation) {
+        double total = 0;
+        for (int i = 0; i < iterations / 5; i++) { // warmup
+            bind(context, i);
+            total += evaluation.getAsDouble();
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            bind(context, i);
+            total += evaluation.getAsDouble();
+        }
+        long totalTime = System.nanoTime() - startTime;
+        if (Double.isInfinite(total)) // use the result
+            System.out.println("Infinite result");
+        return totalTime / 1000.0 / iterations;
+    }
+
+    /** Binds all the values of the context to some values varying with the iteration */
+    private void bind(DoubleOnlyArrayContext context, int iteration) {
+        for (int i = 0; i < context.size(); i++)
+            context.put(i, ((iteration + i) % 17) / 4.0);
+    }
+
+    public void run(String name, int iterations, String expressionString) throws ParseException {
+        RankingExpression expression = new RankingExpression(expressionString);
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression);
+        CompiledExpression compiled = new ExpressionCompiler().compile(expression, context);
+        double interpretedTime = benchmark(iterations, context, () -> expression.evaluate(context).asDouble());
+        double compiledTime = benchmark(iterations, context, () -> compiled.evaluate(context));
+
+        RankingExpression optimizedExpression = new RankingExpression(expressionString);
+        DoubleOnlyArrayContext optimizedContext = new DoubleOnlyArrayContext(optimizedExpression);
+        new ExpressionOptimizer().optimize(optimizedExpression, optimizedContext);
+        double optimizedTime = benchmark(iterations, optimizedContext,
+                                         () -> optimizedExpression.evaluate(optimizedContext).asDouble());
+
+        System.out.printf("%-10s interpreted: %8.3f us, optimized: %8.3f us, compiled: %8.3f us\n",
+                          name, interpretedTime, optimizedTime, compiledTime);
+    }
+
+    public static void main(String[] args) throws ParseException, IOException {
+        CompiledEvaluationBenchmark benchmark = new CompiledEvaluationBenchmark();
+        String gbdt = IOUtils.readFile(new File("src/test/files/gbdt.expression"));
+        benchmark.run("Scalar", 10 * 1000 * 1000,
+                      "10 * if (i > 35, if (i > one, if (i >= 670, 4, 8), if (i > 8000, 5, 3)), if (i == 478, 90, 91)) + " +
+                      "sigmoid(i * 0.5 - one)");
+        benchmark.run("GBDT", 1000 * 1000, gbdt);
+        benchmark.run("Large GBDT", 100 * 1000, String.join(" + ", Collections.nCopies(50, "(" + gbdt + ")")));
+    }
+
+}
@@ -0,0 +1,111 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation;
+
+import com.yahoo.io.IOUtils;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that compiled expressions produce the same values as interpreted expressions
+ */
+public class ExpressionCompilerTestCase {
+
+    private static final double delta = 0.00000001;
+
+    @Test
+    public void testArithmetic() throws ParseException {
+        assertCompiled("1 + 2 * 3 - 4 / 5 % 3 ^ 2");
+        assertCompiled("a - b - c");
+        assertCompiled("a / b / c + a ^ b ^ c");
+        assertCompiled("a - b + c * d");
+        assertCompiled("(a + b) * (c - d)");
+        assertCompiled("-a + -0.0");
+        assertCompiled("a && b || !c");
+    }
+
+    @Test
+    public void testConditions() throws ParseException {
+        assertCompiled("if (a < b, c, d)");
+        assertCompiled("if (a <= b, c, d) + if (a > b, c, d) + if (a >= b, c, d)");
+        assertCompiled("if (a == b, c, d) + if (a != b, c, d) + if (a ~= b, c, d)");
+        assertCompiled("if (a, 1, 2)");
+        assertCompiled("if (a > b && c <= d || !d, a, b + 1)");
+        assertCompiled("(a < b) + (c == d)");
+        assertCompiled("if (a in [0.5, 1, 2], a * 10, if (b < 0.5, -b, b))");
+        assertCompiled("a in [\"foo\", 2]");
+    }
+
+    @Test
+    public void testFunctions() throws ParseException {
+        assertCompiled("sigmoid(a) * max(b, c) + atan2(a, b) + relu(-c)");
+        assertCompiled("isNan(a) + exp(b) + pow(a, 2) + fmod(a, b)");
+    }
+
+    @Test
+    public void testGBDT() throws ParseException, IOException {
+        assertCompiled(IOUtils.readFile(new File("src/test/files/gbdt.expression")));
+    }
+
+    @Test
+    public void testLargeGBDT() throws ParseException, IOException {
+        String gbdt = "(" + IOUtils.readFile(new File("src/test/files/gbdt.expression")) + ")";
+        assertCompiled(String.join(" + ", Collections.nCopies(50, gbdt))); // requires splitting into methods
+    }
+
+    @Test
+    public void testManyConstants() throws ParseException {
+        // Enough distinct constants to fill the constant pool, such that the rest are stored in an array
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 25000; i++)
+            terms.add(String.valueOf(i + 0.5));
+        assertCompiled("a + " + String.join(" + ", terms) + " + if (a < 24999.5, 24999.5, a)");
+    }
+
+    @Test
+    public void testTensorFunctionsAreInterpreted() throws ParseException {
+        RankingExpression expression = new RankingExpression("reduce(tensor0, sum) * 2 + a");
+        ArrayContext context = new ArrayContext(expression);
+        context.put("tensor0", new TensorValue(Tensor.from("tensor(x[2]):[1, 2]")));
+        context.put("a", 0.5);
+        CompiledExpression compiled = new ExpressionCompiler().compile(expression, context);
+        assertEquals(1, compiled.interpretedCount());
+        assertEquals(6.5, compiled.evaluate(context), delta);
+    }
+
+    /** Asserts that the compiled expression produces the same values as the interpreted for random inputs */
+    private void assertCompiled(String expressionString) throws ParseException {
+        RankingExpression expression = new RankingExpression(expressionString);
+        DoubleOnlyArrayContext context = new DoubleOnlyArrayContext(expression);
+        CompiledExpression compiled = new ExpressionCompiler().compile(expression, context);
+        assertEquals(0, compiled.interpretedCount());
+
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            for (String name : context.names())
+                context.put(name, randomValue(random));
+            assertEquals(expressionString,
+                         expression.evaluate(context).asDouble(), compiled.evaluate(context), delta);
+        }
+    }
+
+    /** Returns a random value which is sometimes 0, 1, 2 or NaN */
+    private double randomValue(Random random) {
+        switch (random.nextInt(10)) {
+            case 0: return random.nextInt(3);
+            case 1: return Double.NaN;
+            default: return random.nextDouble() * 200 - 100;
+        }
+    }
+
+}
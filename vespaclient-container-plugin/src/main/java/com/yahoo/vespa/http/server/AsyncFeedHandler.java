@@ -0,0 +1,147 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.yahoo.collections.Tuple2;
+import com.yahoo.concurrent.ThreadFactoryFactory;
+import com.yahoo.container.handler.ThreadpoolConfig;
+import com.yahoo.container.jdisc.ContentChannelOutputStream;
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.container.jdisc.HttpResponse;
+import com.yahoo.container.jdisc.LoggingRequestHandler;
+import com.yahoo.container.jdisc.messagebus.SessionCache;
+import com.yahoo.document.config.DocumentmanagerConfig;
+import com.yahoo.documentapi.metrics.DocumentApiMetrics;
+import com.yahoo.jdisc.Request;
+import com.yahoo.jdisc.handler.AbstractRequestHandler;
+import com.yahoo.jdisc.handler.CompletionHandler;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.jdisc.handler.ResponseHandler;
+import com.yahoo.log.LogLevel;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.yolean.Exceptions;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Accept feeds from outside of the Vespa cluster, like {@link FeedHandler}, but without using a thread per
+ * feed request: The content of each request is parsed and fed as it arrives, by tasks on a small executor
+ * dedicated to this, and waiting for message bus capacity is done by rescheduling rather than blocking.
+ * This allows many concurrent, long lived feed streams without exhausting the container thread pool.
+ */
+public class AsyncFeedHandler extends AbstractRequestHandler {
+
+    private static final Logger log = Logger.getLogger(AsyncFeedHandler.class.getName());
+    private static final long defaultTimeoutSeconds = 300;
+
+    private final FeedHandlerV3 feedHandlerV3;
+    private final DocumentApiMetrics metricsHelper;
+    private final ScheduledThreadPoolExecutor executor;
+
+    @Inject
+    public AsyncFeedHandler(LoggingRequestHandler.Context parentCtx,
+                            DocumentmanagerConfig documentManagerConfig,
+                            SessionCache sessionCache,
+                            ThreadpoolConfig threadpoolConfig,
+                            MetricReceiver metricReceiver) {
+        this(new DocumentApiMetrics(metricReceiver, "vespa.http.server"), parentCtx, documentManagerConfig,
+             sessionCache, threadpoolConfig);
+    }
+
+    private AsyncFeedHandler(DocumentApiMetrics metricsHelper,
+                             LoggingRequestHandler.Context parentCtx,
+                             DocumentmanagerConfig documentManagerConfig,
+                             SessionCache sessionCache,
+                             ThreadpoolConfig threadpoolConfig) {
+        this(metricsHelper,
+             new FeedHandlerV3(parentCtx, documentManagerConfig, sessionCache, threadpoolConfig, metricsHelper),
+             Runtime.getRuntime().availableProcessors());
+    }
+
+    AsyncFeedHandler(DocumentApiMetrics metricsHelper, FeedHandlerV3 feedHandlerV3, int threads) {
+        this.metricsHelper = metricsHelper;
+        this.feedHandlerV3 = feedHandlerV3;
+        this.executor = new ScheduledThreadPoolExecutor(threads, ThreadFactoryFactory.getDaemonThreadFactory("feedhandlerv3.async"));
+    }
+
+    @Override
+    public ContentChannel handleRequest(Request request, ResponseHandler responseHandler) {
+        if (request.getTimeout(TimeUnit.SECONDS) == null)
+            request.setTimeout(defaultTimeoutSeconds, TimeUnit.SECONDS);
+
+        // The content is read by the returned channel, not from the request
+        HttpRequest httpRequest = new HttpRequest((com.yahoo.jdisc.http.HttpRequest) request, null);
+        metricsHelper.reportHttpRequest(FeedHandler.findClientVersion(httpRequest).orElse(null));
+        Tuple2<HttpResponse, Integer> protocolVersion =
+                FeedHandler.doCheckProtocolVersion(request.headers().get(Headers.VERSION));
+        if (protocolVersion.first != null) {
+            respond(protocolVersion.first, responseHandler);
+            return new DiscardingContent();
+        }
+
+        try {
+            return feedHandlerV3.handleAsync(httpRequest, responseHandler, executor);
+        } catch (IllegalArgumentException e) {
+            respond(new ErrorHttpResponse(com.yahoo.jdisc.http.HttpResponse.Status.BAD_REQUEST,
+                                          Exceptions.toMessageString(e)),
+                    responseHandler);
+            return new DiscardingContent();
+        }
+    }
+
+    /** Renders the given response to the given handler */
+    static void respond(HttpResponse response, ResponseHandler handler) {
+        if ( ! response.headers().containsKey("Content-Type") && response.getContentType() != null) {
+            StringBuilder contentType = new StringBuilder(response.getContentType());
+            if (response.getCharacterEncoding() != null)
+                contentType.append("; charset=").append(response.getCharacterEncoding());
+            response.headers().put("Content-Type", contentType.toString());
+        }
+
+        ContentChannel channel;
+        try {
+            channel = handler.handleResponse(response.getJdiscResponse());
+        } catch (IllegalStateException e) { // Typically because a timeout response is already sent
+            log.log(LogLevel.DEBUG, "Could not respond to feed request: " + Exceptions.toMessageString(e));
+            return;
+        }
+        try {
+            ContentChannelOutputStream output = new ContentChannelOutputStream(channel);
+            response.render(output);
+            output.close();
+        } catch (IOException | RuntimeException e) {
+            log.log(LogLevel.WARNING, "Could not render feed response: " + Exceptions.toMessageString(e));
+        } finally {
+            channel.close(null);
+        }
+    }
+
+    @Override
+    protected void destroy() {
+        executor.shutdown();
+        feedHandlerV3.destroy();
+    }
+
+    /** Completes and ignores the content of requests which are rejected before reading their content */
+    private static class DiscardingContent implements ContentChannel {
+
+        @Override
+        public void write(ByteBuffer buf, CompletionHandler handler) {
+            if (handler != null)
+                handler.completed();
+        }
+
+        @Override
+        public void close(CompletionHandler handler) {
+            if (handler != null)
+                handler.completed();
+        }
+
+    }
+
+}
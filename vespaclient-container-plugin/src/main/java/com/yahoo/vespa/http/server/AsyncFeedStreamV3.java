@@ -0,0 +1,385 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.jdisc.ResourceReference;
+import com.yahoo.jdisc.handler.CompletionHandler;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.jdisc.handler.ResponseHandler;
+import com.yahoo.log.LogLevel;
+import com.yahoo.messagebus.Result;
+import com.yahoo.vespa.http.client.core.Encoder;
+import com.yahoo.vespa.http.client.core.ErrorCode;
+import com.yahoo.vespa.http.client.core.OperationStatus;
+import com.yahoo.vespa.http.server.util.GzipDecoder;
+import com.yahoo.yolean.Exceptions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
+
+/**
+ * Receives the content of one feed request as it arrives and feeds the operations it contains, without
+ * occupying a thread while waiting for content or for capacity to send messages.
+ *
+ * The content is framed into operations and sent by tasks on the given executor, driven by writes to this
+ * channel, while the operations are parsed in parallel by the client feeder. At most one task runs at any
+ * time for a stream, and operations are sent in the order they are received. When message bus has no
+ * capacity, the current operation is retried later by a scheduled task, and no more content is consumed
+ * (and completed) until it is sent.
+ */
+class AsyncFeedStreamV3 implements ContentChannel {
+
+    private static final Logger log = Logger.getLogger(AsyncFeedStreamV3.class.getName());
+    private static final long retryDelayMillis = 100;
+
+    private enum Progress { DONE, PARSING, NO_CAPACITY }
+
+    private final ClientFeederV3 feeder;
+    private final HttpRequest request;
+    private final FeederSettings settings;
+    private final ResponseHandler responseHandler;
+    private final ScheduledExecutorService executor;
+    private final ResourceReference requestReference;
+    private final BlockingQueue<OperationStatus> replies = new LinkedBlockingQueue<>();
+
+    /** Content which is received but not yet consumed, guarded by this */
+    private final Deque<Chunk> chunks = new ArrayDeque<>();
+    private CompletionHandler closeHandler = null;
+    private boolean closed = false;
+    private boolean processing = false;
+
+    // The following is only accessed by the task processing this stream
+
+    /** The gzip decoder of the content, or null if it is not compressed */
+    private final GzipDecoder decoder;
+    private final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+
+    /** Content which is consumed but not yet parsed into operations */
+    private byte[] buffer = new byte[0];
+    private int bufferStart = 0;
+    private int bufferEnd = 0;
+
+    /** The operations which are being parsed, in the order they are received */
+    private final Deque<ParsingOperation> parsing = new ArrayDeque<>();
+
+    /** The operation which is waiting for capacity to be sent, or null if none */
+    private DocumentOperationMessageV3 waitingOperation = null;
+    private long waitingSince;
+
+    /** Set when the content cannot be parsed further, such that the rest of it is ignored */
+    private boolean invalid = false;
+
+    private boolean ended = false;
+
+    AsyncFeedStreamV3(ClientFeederV3 feeder,
+                      HttpRequest request,
+                      FeederSettings settings,
+                      ResponseHandler responseHandler,
+                      ScheduledExecutorService executor) {
+        this.feeder = feeder;
+        this.request = request;
+        this.settings = settings;
+        this.responseHandler = responseHandler;
+        this.executor = executor;
+        this.decoder = "gzip".equals(request.getHeader("content-encoding")) ? new GzipDecoder() : null;
+        this.requestReference = request.getJDiscRequest().refer();
+    }
+
+    @Override
+    public void write(ByteBuffer content, CompletionHandler handler) {
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Content is written to a closed feed stream");
+            chunks.add(new Chunk(content, handler));
+        }
+        processLater();
+    }
+
+    @Override
+    public void close(CompletionHandler handler) {
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Feed stream is already closed");
+            closed = true;
+            closeHandler = handler;
+        }
+        processLater();
+    }
+
+    /** Schedules processing of this stream if it is not already scheduled or running */
+    private void processLater() {
+        synchronized (this) {
+            if (processing) return;
+            processing = true;
+        }
+        executor.execute(this::process);
+    }
+
+    private void process() {
+        try {
+            while (true) {
+                Progress progress = sendReceivedOperations();
+                if (progress == Progress.NO_CAPACITY) { // Retry later without consuming more content
+                    executor.schedule(this::process, retryDelayMillis, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                if (progress == Progress.PARSING && parsing.size() >= ClientFeederV3.maxOperationsInParsing) {
+                    continueWhenParsed();
+                    return;
+                }
+
+                Chunk chunk;
+                synchronized (this) {
+                    chunk = chunks.poll();
+                    if (chunk == null && progress == Progress.DONE && ! closed) {
+                        processing = false;
+                        return;
+                    }
+                }
+                if (chunk != null) {
+                    consume(chunk);
+                }
+                else if (progress == Progress.PARSING) {
+                    continueWhenParsed();
+                    return;
+                }
+                else {
+                    end();
+                    return;
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            log.log(LogLevel.WARNING, "Unhandled exception while feeding: " + Exceptions.toMessageString(e), e);
+            if (ended) return;
+            invalid = true;
+            String error = "Feeding was aborted: " + Exceptions.toMessageString(e);
+            if (waitingOperation != null)
+                replies.add(new OperationStatus(error, waitingOperation.getOperationId(), ErrorCode.ERROR, false, ""));
+            waitingOperation = null;
+            for (ParsingOperation operation : parsing) {
+                if (operation.isDone() && ! operation.message.isCompletedExceptionally()
+                    && ! operation.message.join().isPresent()) continue; // the parse error is reported already
+                replies.add(new OperationStatus(error, operation.id(), ErrorCode.ERROR, false, ""));
+            }
+            parsing.clear();
+            synchronized (this) {
+                processing = false;
+            }
+            processLater(); // Completes the received content and ends when closed
+        }
+    }
+
+    /** Continues processing when the next operation is parsed */
+    private void continueWhenParsed() {
+        parsing.peek().message.whenComplete((message, exception) -> executor.execute(this::process));
+    }
+
+    /**
+     * Starts parsing the operations which are fully received, in parallel, and sends those which are parsed,
+     * in the order they are received.
+     */
+    private Progress sendReceivedOperations() {
+        while (true) {
+            while (parsing.size() < ClientFeederV3.maxOperationsInParsing) {
+                int operationLength = nextOperationLength();
+                if (operationLength < 0) break;
+                byte[] operation = Arrays.copyOfRange(buffer, bufferStart, bufferStart + operationLength);
+                bufferStart += operationLength;
+                parsing.add(new ParsingOperation(operation, feeder.parse(settings, operation, replies)));
+            }
+
+            if (waitingOperation != null) {
+                if ( ! send(waitingOperation)) return Progress.NO_CAPACITY;
+                waitingOperation = null;
+            }
+
+            ParsingOperation next = parsing.peek();
+            if (next == null) return Progress.DONE;
+            if ( ! next.isDone()) return Progress.PARSING;
+            Optional<DocumentOperationMessageV3> message = next.message.join();
+            if (message.isPresent())
+                feeder.setMessageParameters(message.get(), settings);
+            parsing.poll(); // after anything which may fail, such that the operation is reported on failure
+            if (message.isPresent()) {
+                waitingOperation = message.get();
+                waitingSince = System.nanoTime();
+            }
+        }
+    }
+
+    /** Sends the given operation and returns whether it was handled, or false if it should be retried later */
+    private boolean send(DocumentOperationMessageV3 operation) {
+        Result result;
+        try {
+            result = feeder.sendMessageNonBlocking(operation);
+        } catch (RuntimeException e) {
+            feeder.handleSendFailure(operation, e, replies);
+            return true;
+        }
+        // With deny-if-busy the client prefers getting transient errors over waiting for capacity
+        if ( ! result.isAccepted() && result.getError().getCode() == SEND_QUEUE_FULL && ! settings.denyIfBusy)
+            return false;
+        feeder.setStageTime(MetricNames.SEND_TIME, waitingSince);
+        feeder.handleSendResult(operation, result, replies);
+        return true;
+    }
+
+    /**
+     * Returns the length of the next operation in the buffer, including its id and length line,
+     * or -1 if it is not fully received.
+     */
+    private int nextOperationLength() {
+        if (invalid) return -1;
+        int idEnd = indexOf((byte)' ', bufferStart);
+        if (idEnd < 0) return -1;
+        int lengthEnd = indexOf((byte)'\n', idEnd + 1);
+        if (lengthEnd < 0) return -1;
+
+        String length = new String(buffer, idEnd + 1, lengthEnd - idEnd - 1, StandardCharsets.US_ASCII);
+        try {
+            long operationLength = lengthEnd + 1 - bufferStart + Integer.parseInt(length, 16);
+            if (operationLength > bufferEnd - bufferStart) return -1;
+            return (int)operationLength;
+        }
+        catch (NumberFormatException e) {
+            invalid = true;
+            String operationId = new String(buffer, bufferStart, idEnd - bufferStart, StandardCharsets.US_ASCII);
+            replies.add(new OperationStatus("Invalid operation length '" + length + "'", operationId,
+                                            ErrorCode.ERROR, false, ""));
+            return -1;
+        }
+    }
+
+    private int indexOf(byte b, int from) {
+        for (int i = from; i < bufferEnd; i++)
+            if (buffer[i] == b) return i;
+        return -1;
+    }
+
+    /** Adds the content of the given chunk to the buffer and completes it */
+    private void consume(Chunk chunk) {
+        try {
+            if ( ! invalid) {
+                ByteBuffer content = chunk.content;
+                if (decoder == null) {
+                    append(content);
+                }
+                else {
+                    decoded.reset();
+                    if (content.hasArray()) {
+                        decoder.decode(content.array(), content.arrayOffset() + content.position(), content.remaining(), decoded);
+                    }
+                    else {
+                        byte[] bytes = new byte[content.remaining()];
+                        content.duplicate().get(bytes);
+                        decoder.decode(bytes, 0, bytes.length, decoded);
+                    }
+                    append(ByteBuffer.wrap(decoded.toByteArray()));
+                }
+            }
+            if (chunk.handler != null)
+                chunk.handler.completed();
+        }
+        catch (IOException e) {
+            invalid = true;
+            replies.add(new OperationStatus("Could not read feed content: " + Exceptions.toMessageString(e), "-",
+                                            ErrorCode.ERROR, false, ""));
+            if (chunk.handler != null)
+                chunk.handler.failed(e);
+        }
+    }
+
+    private void append(ByteBuffer content) {
+        int length = content.remaining();
+        if (buffer.length - bufferEnd < length) {
+            int remaining = bufferEnd - bufferStart;
+            byte[] target = buffer.length < remaining + length ? new byte[Math.max(remaining + length, 2 * buffer.length)]
+                                                               : buffer;
+            System.arraycopy(buffer, bufferStart, target, 0, remaining);
+            buffer = target;
+            bufferStart = 0;
+            bufferEnd = remaining;
+        }
+        content.duplicate().get(buffer, bufferEnd, length);
+        bufferEnd += length;
+    }
+
+    /** Responds with the status of all the operations of this when all content is received and processed */
+    private void end() {
+        ended = true;
+        try {
+            if ( ! invalid && (bufferStart < bufferEnd || (decoder != null && ! decoder.isComplete()))) {
+                Optional<String> operationId = operationIdOf(buffer, bufferStart, bufferEnd);
+                if (operationId.isPresent())
+                    replies.add(new OperationStatus("Feed ended with an incomplete operation", operationId.get(),
+                                                    ErrorCode.ERROR, false, ""));
+                else
+                    log.log(LogLevel.DEBUG, "Feed from " + request.getHeader("User-Agent") + " ended with an incomplete operation");
+            }
+            if (decoder != null)
+                decoder.end();
+            if (closeHandler != null)
+                closeHandler.completed();
+            AsyncFeedHandler.respond(feeder.endAsyncRequest(request, replies), responseHandler);
+        }
+        finally {
+            requestReference.close();
+        }
+    }
+
+    /** Returns the id of the operation starting at the given position, or empty if it is not fully received */
+    private static Optional<String> operationIdOf(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == ' ') {
+                String encodedId = new String(bytes, start, i - start, StandardCharsets.US_ASCII);
+                return Optional.of(Encoder.decode(encodedId, new StringBuilder(encodedId.length())).toString());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** An operation which is being parsed */
+    private static class ParsingOperation {
+
+        final byte[] operation;
+        final CompletableFuture<Optional<DocumentOperationMessageV3>> message;
+
+        ParsingOperation(byte[] operation, CompletableFuture<Optional<DocumentOperationMessageV3>> message) {
+            this.operation = operation;
+            this.message = message;
+        }
+
+        boolean isDone() { return message.isDone(); }
+
+        String id() { return operationIdOf(operation, 0, operation.length).orElse("-"); }
+
+    }
+
+    private static class Chunk {
+
+        final ByteBuffer content;
+        final CompletionHandler handler;
+
+        Chunk(ByteBuffer content, CompletionHandler handler) {
+            this.content = content;
+            this.handler = handler;
+        }
+
+    }
+
+}
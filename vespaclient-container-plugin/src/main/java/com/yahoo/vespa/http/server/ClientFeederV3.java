@@ -8,6 +8,8 @@ import com.yahoo.documentapi.messagebus.protocol.DocumentMessage;
 import com.yahoo.documentapi.messagebus.protocol.DocumentProtocol;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.jdisc.handler.ResponseHandler;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.Message;
 import com.yahoo.messagebus.ReplyHandler;
@@ -20,14 +22,21 @@ import com.yahoo.vespa.http.client.core.OperationStatus;
 import com.yahoo.vespaxmlparser.FeedOperation;
 import com.yahoo.yolean.Exceptions;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
@@ -46,6 +55,8 @@ class ClientFeederV3 {
     protected static final Logger log = Logger.getLogger(ClientFeederV3.class.getName());
     // This is for all clients on this gateway, for load balancing from client.
     private final static AtomicInteger outstandingOperations = new AtomicInteger(0);
+    // The max number of operations of a request which are read ahead and parsed in parallel.
+    static final int maxOperationsInParsing = 32;
     private final BlockingQueue<OperationStatus> feedReplies = new LinkedBlockingQueue<>();
     private final ReferencedResource<SharedSourceSession> sourceSession;
     private final String clientId;
@@ -59,6 +70,7 @@ class ClientFeederV3 {
     private final AtomicInteger ongoingRequests = new AtomicInteger(0);
     private final String hostName;
     private final AtomicInteger threadsAvailableForFeeding;
+    private final Executor parseExecutor;
 
     ClientFeederV3(
             ReferencedResource<SharedSourceSession> sourceSession,
@@ -68,11 +80,29 @@ class ClientFeederV3 {
             Metric metric,
             ReplyHandler feedReplyHandler,
             AtomicInteger threadsAvailableForFeeding) {
+        this(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler,
+             threadsAvailableForFeeding, null);
+    }
+
+    /**
+     * Creates a client feeder which parses operations on the given executor, such that the operations of a
+     * request are parsed in parallel, or in the thread reading the request if the executor is null.
+     */
+    ClientFeederV3(
+            ReferencedResource<SharedSourceSession> sourceSession,
+            FeedReaderFactory feedReaderFactory,
+            DocumentTypeManager docTypeManager,
+            String clientId,
+            Metric metric,
+            ReplyHandler feedReplyHandler,
+            AtomicInteger threadsAvailableForFeeding,
+            Executor parseExecutor) {
         this.sourceSession = sourceSession;
         this.clientId = clientId;
         this.feedReplyHandler = feedReplyHandler;
         this.metric = metric;
         this.threadsAvailableForFeeding = threadsAvailableForFeeding;
+        this.parseExecutor = parseExecutor;
         this.streamReaderV3 = new StreamReaderV3(feedReaderFactory, docTypeManager);
         this.hostName = HostName.getLocalhost();
     }
@@ -134,7 +164,7 @@ class ClientFeederV3 {
             InputStream inputStream = StreamReaderV3.unzipStreamIfNeeded(request);
             BlockingQueue<OperationStatus> replies = new LinkedBlockingQueue<>();
             try {
-                feed(feederSettings, inputStream, replies, threadsAvailableForFeeding);
+                feed(feederSettings, inputStream, request.getData(), replies, threadsAvailableForFeeding);
                 synchronized (monitor) {
                     // Handshake requests do not have DATA_FORMAT, we do not want to give responses to
                     // handshakes as it won't be processed by the client.
@@ -156,6 +186,39 @@ class ClientFeederV3 {
         }
     }
 
+    /**
+     * Starts handling the given request without blocking. The returned channel must receive the content of the
+     * request, and the response is passed to the given handler when all the content is received and sent.
+     */
+    ContentChannel handleRequestAsync(HttpRequest request,
+                                      ResponseHandler responseHandler,
+                                      ScheduledExecutorService executor) {
+        ongoingRequests.incrementAndGet();
+        try {
+            return new AsyncFeedStreamV3(this, request, new FeederSettings(request), responseHandler, executor);
+        } catch (RuntimeException e) {
+            ongoingRequests.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /** Returns the response to an asynchronously handled request, which must not receive more operations */
+    HttpResponse endAsyncRequest(HttpRequest request, BlockingQueue<OperationStatus> replies) {
+        try {
+            synchronized (monitor) {
+                if (request.getJDiscRequest().headers().get(Headers.DATA_FORMAT) != null) {
+                    transferPreviousRepliesToResponse(replies);
+                }
+            }
+        } catch (InterruptedException e) {
+            // NOP, just terminate
+        } finally {
+            replies.add(createOperationStatus("-", "-", ErrorCode.END_OF_FEED, false, null));
+            ongoingRequests.decrementAndGet();
+        }
+        return new FeedResponse(200, replies, 3, clientId, outstandingOperations.get(), hostName);
+    }
+
     private int getOverloadReturnCode(HttpRequest request) {
         if (request.getHeader(Headers.SILENTUPGRADE) != null ) {
             return 299;
@@ -219,53 +282,161 @@ class ClientFeederV3 {
         return result;
     }
 
+    /**
+     * Reads, parses and sends the operations of the given request input stream.
+     *
+     * @param requestInputStream the stream to read operations from
+     * @param rawInputStream the stream the request input is read from, before any decompression, which is used to
+     *                       tell whether there are more bytes to read without waiting for the client
+     */
     private void feed(FeederSettings settings,
                       InputStream requestInputStream,
+                      InputStream rawInputStream,
                       BlockingQueue<OperationStatus> repliesFromOldMessages,
                       AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        // Operations are parsed in parallel but sent in the order they are read, which preserves the
+        // order of operations to the same document
+        Deque<CompletableFuture<Optional<DocumentOperationMessageV3>>> parsing = new ArrayDeque<>();
+        boolean endOfStream = false;
         while (true) {
-            Optional<DocumentOperationMessageV3> msg = pullMessageFromRequest(settings, requestInputStream, repliesFromOldMessages);
-
-            if (! msg.isPresent()) {
+            // Send the operations which are parsed already first, such that reading, which may block
+            // on the client, does not hold them back
+            while ( ! parsing.isEmpty() && parsing.peek().isDone())
+                send(settings, parsing.poll().join(), repliesFromOldMessages, threadsAvailableForFeeding);
+
+            // Read ahead while there is input from the client, to have more operations to parse while sending
+            if ( ! endOfStream && (parsing.isEmpty() ||
+                                   (parsing.size() < maxOperationsInParsing && isAvailable(rawInputStream)))) {
+                Optional<byte[]> operation = readOperation(requestInputStream);
+                if (operation.isPresent())
+                    parsing.add(parse(settings, operation.get(), repliesFromOldMessages));
+                else
+                    endOfStream = true;
+                continue;
+            }
+            if (parsing.isEmpty()) {
                 break;
             }
-            setMessageParameters(msg.get(), settings);
+            send(settings, parsing.poll().join(), repliesFromOldMessages, threadsAvailableForFeeding);
+        }
+    }
 
-            Result result;
-            try {
-                result = sendMessage(settings, msg.get(), threadsAvailableForFeeding);
-
-            } catch  (RuntimeException e) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(),
-                                                                 Exceptions.toMessageString(e),
-                                                                 ErrorCode.ERROR,
-                                                                 false,
-                                                                 msg.get().getMessage()));
-                continue;
-            }
+    private void send(FeederSettings settings,
+                      Optional<DocumentOperationMessageV3> msg,
+                      BlockingQueue<OperationStatus> repliesFromOldMessages,
+                      AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        if (! msg.isPresent()) {
+            return;
+        }
+        setMessageParameters(msg.get(), settings);
 
-            if (result.isAccepted()) {
-                outstandingOperations.incrementAndGet();
-                updateOpsPerSec();
-                log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.get().getOperationId());
-            } else if (!result.getError().isFatal()) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(),
-                                                                 result.getError().getMessage(),
-                                                                 ErrorCode.TRANSIENT_ERROR,
-                                                                 false,
-                                                                 msg.get().getMessage()));
-                continue;
-            } else {
-                // should probably not happen, but everybody knows stuff that
-                // shouldn't happen, happens all the time
-                boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(),
-                                                                 result.getError().getMessage(),
-                                                                 ErrorCode.ERROR,
-                                                                 isConditionNotMet,
-                                                                 msg.get().getMessage()));
-                continue;
+        Result result;
+        long sendStartTime = System.nanoTime();
+        try {
+            result = sendMessage(settings, msg.get(), threadsAvailableForFeeding);
+
+        } catch  (RuntimeException e) {
+            handleSendFailure(msg.get(), e, repliesFromOldMessages);
+            return;
+        }
+        setStageTime(MetricNames.SEND_TIME, sendStartTime);
+        handleSendResult(msg.get(), result, repliesFromOldMessages);
+    }
+
+    private Optional<byte[]> readOperation(InputStream requestInputStream) {
+        long startTime = System.nanoTime();
+        try {
+            Optional<byte[]> operation = streamReaderV3.readNextOperation(requestInputStream);
+            if (operation.isPresent()) {
+                setStageTime(MetricNames.READ_TIME, startTime);
             }
+            return operation;
+        } catch (IOException ioe) {
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, Exceptions.toMessageString(ioe), ioe);
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns whether the client has sent more bytes than read so far. This must be the raw request stream, as
+     * decompressing streams report data available until the end. Note that a single available byte does not mean
+     * the next operation can be read without blocking, which is why parsed operations are sent before reading.
+     */
+    private static boolean isAvailable(InputStream rawInputStream) {
+        try {
+            return rawInputStream.available() > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses an operation read by {@link StreamReaderV3#readNextOperation}, on the parse executor if any.
+     * Parse errors are added to the given replies and result in an empty message.
+     */
+    CompletableFuture<Optional<DocumentOperationMessageV3>> parse(FeederSettings settings,
+                                                                  byte[] operation,
+                                                                  BlockingQueue<OperationStatus> replies) {
+        Supplier<Optional<DocumentOperationMessageV3>> parser = () -> {
+            long startTime = System.nanoTime();
+            Optional<DocumentOperationMessageV3> message =
+                    pullMessageFromRequest(settings, new ByteArrayInputStream(operation), replies);
+            setStageTime(MetricNames.PARSE_TIME, startTime);
+            return message;
+        };
+        if (parseExecutor == null) {
+            return CompletableFuture.completedFuture(parser.get());
+        }
+        return CompletableFuture.supplyAsync(parser, parseExecutor);
+    }
+
+    /** Sets the time in seconds spent on one operation in a stage of feeding, from the given start time */
+    void setStageTime(String metricName, long startTimeNanos) {
+        metric.set(metricName, (System.nanoTime() - startTimeNanos) / 1_000_000_000.0, null /*metricContext*/);
+    }
+
+    /**
+     * Sends the given message without blocking, such that the result is SEND_QUEUE_FULL if there is no capacity.
+     * The message may be sent again if it is not accepted.
+     */
+    Result sendMessageNonBlocking(DocumentOperationMessageV3 msg) {
+        msg.getMessage().pushHandler(feedReplyHandler);
+        Result result = sourceSession.getResource().sendMessage(msg.getMessage());
+        if ( ! result.isAccepted())
+            msg.getMessage().popHandler(); // No reply will be handled
+        return result;
+    }
+
+    void handleSendFailure(DocumentOperationMessageV3 msg, RuntimeException e, BlockingQueue<OperationStatus> replies) {
+        replies.add(createOperationStatus(msg.getOperationId(),
+                                          Exceptions.toMessageString(e),
+                                          ErrorCode.ERROR,
+                                          false,
+                                          msg.getMessage()));
+    }
+
+    void handleSendResult(DocumentOperationMessageV3 msg, Result result, BlockingQueue<OperationStatus> replies) {
+        if (result.isAccepted()) {
+            outstandingOperations.incrementAndGet();
+            updateOpsPerSec();
+            log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.getOperationId());
+        } else if (!result.getError().isFatal()) {
+            replies.add(createOperationStatus(msg.getOperationId(),
+                                              result.getError().getMessage(),
+                                              ErrorCode.TRANSIENT_ERROR,
+                                              false,
+                                              msg.getMessage()));
+        } else {
+            // should probably not happen, but everybody knows stuff that
+            // shouldn't happen, happens all the time
+            boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
+            replies.add(createOperationStatus(msg.getOperationId(),
+                                              result.getError().getMessage(),
+                                              ErrorCode.ERROR,
+                                              isConditionNotMet,
+                                              msg.getMessage()));
         }
     }
 
@@ -302,7 +473,7 @@ class ClientFeederV3 {
         return message;
     }
 
-    private void setMessageParameters(DocumentOperationMessageV3 msg, FeederSettings settings) {
+    void setMessageParameters(DocumentOperationMessageV3 msg, FeederSettings settings) {
         msg.getMessage().setContext(new ReplyContext(msg.getOperationId(), feedReplies));
         if (settings.traceLevel != null) {
             msg.getMessage().getTrace().setLevel(settings.traceLevel);
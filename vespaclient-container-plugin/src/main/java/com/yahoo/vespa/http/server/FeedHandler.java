@@ -112,7 +112,7 @@ public class FeedHandler extends LoggingRequestHandler {
         return feedHandlerV3.handle(request);
     }
 
-    private static Optional<String> findClientVersion(HttpRequest request) {
+    static Optional<String> findClientVersion(HttpRequest request) {
         String versionHeader = request.getHeader(Headers.CLIENT_VERSION);
         if (versionHeader != null) {
             return Optional.of(versionHeader);
@@ -12,6 +12,8 @@ import com.yahoo.document.config.DocumentmanagerConfig;
 import com.yahoo.documentapi.metrics.DocumentApiMetrics;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.jdisc.handler.ResponseHandler;
 import com.yahoo.log.LogLevel;
 import com.yahoo.messagebus.ReplyHandler;
 import com.yahoo.messagebus.SourceSessionParams;
@@ -24,6 +26,9 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -41,6 +46,7 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
     private DocumentTypeManager docTypeManager;
     private final Map<String, ClientFeederV3> clientFeederByClientId = new HashMap<>();
     private final ScheduledThreadPoolExecutor cron;
+    private final ExecutorService parser;
     private final SessionCache sessionCache;
     protected final ReplyHandler feedReplyHandler;
     private final Metric metric;
@@ -62,6 +68,9 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
         feedReplyHandler = new FeedReplyReader(parentCtx.getMetric(), metricsHelper);
         cron = new ScheduledThreadPoolExecutor(1, ThreadFactoryFactory.getThreadFactory("feedhandlerv3.cron"));
         cron.scheduleWithFixedDelay(this::removeOldClients, 16, 11, TimeUnit.MINUTES);
+        // Parsing is CPU bound, so there is no point in having more threads than cores
+        parser = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                              ThreadFactoryFactory.getDaemonThreadFactory("feedhandlerv3.parser"));
         this.metric = parentCtx.getMetric();
         // 40% of the threads can be blocking on feeding before we deny requests.
         if (threadpoolConfig != null) {
@@ -90,8 +99,31 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
     // verify the version header first. This is done in the old code.
     @Override
     public HttpResponse handle(HttpRequest request) {
+        ClientFeederV3 clientFeederV3 = clientFeeder(request);
+        try {
+            return clientFeederV3.handleRequest(request);
+        } catch (UnknownClientException uce) {
+            String msg = Exceptions.toMessageString(uce);
+            log.log(LogLevel.WARNING, msg);
+            return new ErrorHttpResponse(com.yahoo.jdisc.http.HttpResponse.Status.BAD_REQUEST, msg);
+        } catch (Exception e) {
+            String msg = "Could not initialize document parsing: " + Exceptions.toMessageString(e);
+            log.log(LogLevel.WARNING, msg);
+            return new ErrorHttpResponse(com.yahoo.jdisc.http.HttpResponse.Status.INTERNAL_SERVER_ERROR, msg);
+        }
+    }
+
+    /**
+     * Handles the given request without blocking, by parsing and feeding its content on the given executor
+     * as it arrives, and returns the channel which must receive the content of the request.
+     * The response is passed to the given response handler when all the content is processed.
+     */
+    public ContentChannel handleAsync(HttpRequest request, ResponseHandler responseHandler, ScheduledExecutorService executor) {
+        return clientFeeder(request).handleRequestAsync(request, responseHandler, executor);
+    }
+
+    private ClientFeederV3 clientFeeder(HttpRequest request) {
         String clientId = clientId(request);
-        ClientFeederV3 clientFeederV3;
         synchronized (monitor) {
             Instant now = Instant.now();
             if ((remainingThreadsForFeedingAllowance > 0) && (now.isAfter(nextTimeToAllocateAnotherThread))) {
@@ -108,20 +140,10 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
                                                               clientId,
                                                               metric,
                                                               feedReplyHandler,
-                                                              threadsAvailableForFeeding));
+                                                              threadsAvailableForFeeding,
+                                                              parser));
             }
-            clientFeederV3 = clientFeederByClientId.get(clientId);
-        }
-        try {
-            return clientFeederV3.handleRequest(request);
-        } catch (UnknownClientException uce) {
-            String msg = Exceptions.toMessageString(uce);
-            log.log(LogLevel.WARNING, msg);
-            return new ErrorHttpResponse(com.yahoo.jdisc.http.HttpResponse.Status.BAD_REQUEST, msg);
-        } catch (Exception e) {
-            String msg = "Could not initialize document parsing: " + Exceptions.toMessageString(e);
-            log.log(LogLevel.WARNING, msg);
-            return new ErrorHttpResponse(com.yahoo.jdisc.http.HttpResponse.Status.INTERNAL_SERVER_ERROR, msg);
+            return clientFeederByClientId.get(clientId);
         }
     }
 
@@ -144,6 +166,7 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
                 }
                 clientFeederByClientId.clear();
             }
+            parser.shutdown();
         });
         destroyer.setDaemon(true);
         destroyer.start();
@@ -21,6 +21,10 @@ public final class MetricNames {
     public static final String PARSE_ERROR = PREFIX + "parse_error";
     public static final String SUCCEEDED = PREFIX + "succeeded";
     public static final String PENDING = PREFIX + "pending";
+    // Seconds spent on an operation in each stage of feeding
+    public static final String READ_TIME = PREFIX + "read_time";
+    public static final String PARSE_TIME = PREFIX + "parse_time";
+    public static final String SEND_TIME = PREFIX + "send_time";
 
     private MetricNames() {
     }
@@ -8,6 +8,7 @@ import com.yahoo.vespa.http.server.util.ByteLimitedInputStream;
 import com.yahoo.vespaxmlparser.FeedOperation;
 import com.yahoo.vespaxmlparser.FeedReader;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
@@ -57,6 +58,48 @@ public class StreamReaderV3 {
         return Optional.of(Encoder.decode(idBuf.toString(), new StringBuilder(idBuf.length())).toString());
     }
 
+    /**
+     * Reads the next operation in the stream, including its id and length, such that it can be parsed
+     * independently of the stream by {@link #getNextOperationId} and {@link #getNextOperation}.
+     * Returns empty at the end of the stream.
+     */
+    public Optional<byte[]> readNextOperation(InputStream requestInputStream) throws IOException {
+        ByteArrayOutputStream operation = new ByteArrayOutputStream(256);
+        int c;
+        while ((c = requestInputStream.read()) != -1 && c != ' ') {
+            operation.write(c);
+        }
+        if (operation.size() == 0) {
+            return Optional.empty();
+        }
+        operation.write(' ');
+
+        StringBuilder lenBuf = new StringBuilder(8);
+        while ((c = requestInputStream.read()) != -1 && c != '\n') {
+            operation.write(c);
+            lenBuf.append((char) c);  //it's ASCII
+        }
+        operation.write('\n');
+
+        // An invalid length is reported when the operation is parsed
+        int remaining = 0;
+        try {
+            remaining = Integer.parseInt(lenBuf.toString(), 16);
+        } catch (NumberFormatException e) {
+            // NOP
+        }
+        byte[] buffer = new byte[Math.min(Math.max(remaining, 0), 8192)];
+        while (remaining > 0) {
+            int read = requestInputStream.read(buffer, 0, Math.min(remaining, buffer.length));
+            if (read < 0) {
+                break; // A truncated operation is reported when it is parsed
+            }
+            operation.write(buffer, 0, read);
+            remaining -= read;
+        }
+        return Optional.of(operation.toByteArray());
+    }
+
     private int readByteLength(InputStream requestInputStream) throws IOException {
         StringBuilder lenBuf = new StringBuilder(8);
         int c;
@@ -0,0 +1,174 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses gzip data incrementally as it arrives in chunks, without ever blocking for more input,
+ * unlike {@link java.util.zip.GZIPInputStream}. Concatenated gzip members are decompressed as one stream.
+ *
+ * This is not thread safe.
+ */
+public class GzipDecoder {
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private enum State { HEADER, BODY, TRAILER }
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] output = new byte[8192];
+
+    /** Input which is received but not yet consumed */
+    private byte[] input = new byte[0];
+    private int inputStart = 0;
+    private int inputEnd = 0;
+
+    private State state = State.HEADER;
+
+    /**
+     * Decompresses as much as possible of the input received so far, including the given bytes,
+     * and writes the result to the given output.
+     *
+     * @throws ZipException if the input is not valid gzip data
+     */
+    public void decode(byte[] data, int offset, int length, ByteArrayOutputStream decoded) throws ZipException {
+        append(data, offset, length);
+        while (true) {
+            switch (state) {
+                case HEADER:
+                    if ( ! readHeader()) return;
+                    inflater.reset();
+                    crc.reset();
+                    state = State.BODY;
+                    break;
+                case BODY:
+                    if ( ! inflate(decoded)) return;
+                    state = State.TRAILER;
+                    break;
+                case TRAILER:
+                    if ( ! readTrailer()) return;
+                    state = State.HEADER;
+                    break;
+            }
+        }
+    }
+
+    /** Returns whether all the input received so far has been decompressed, such that it is a complete gzip stream */
+    public boolean isComplete() {
+        return state == State.HEADER && inputStart == inputEnd;
+    }
+
+    /** Releases the resources of this. It cannot be used after this is called */
+    public void end() {
+        inflater.end();
+    }
+
+    private void append(byte[] data, int offset, int length) {
+        if (input.length - inputEnd < length) {
+            int remaining = inputEnd - inputStart;
+            byte[] target = input.length < remaining + length ? new byte[Math.max(remaining + length, 2 * input.length)]
+                                                              : input;
+            System.arraycopy(input, inputStart, target, 0, remaining);
+            input = target;
+            inputStart = 0;
+            inputEnd = remaining;
+        }
+        System.arraycopy(data, offset, input, inputEnd, length);
+        inputEnd += length;
+    }
+
+    /** Consumes a gzip member header and returns true if it is fully received, otherwise consumes nothing */
+    private boolean readHeader() throws ZipException {
+        int position = inputStart;
+        if ( ! available(position, 10)) return false;
+        if (unsignedShort(position) != 0x8b1f)
+            throw new ZipException("Not in gzip format");
+        if (input[position + 2] != 8)
+            throw new ZipException("Unsupported compression method " + input[position + 2]);
+        int flags = input[position + 3] & 0xff;
+        position += 10;
+        if ((flags & FEXTRA) != 0) {
+            if ( ! available(position, 2)) return false;
+            position += 2 + unsignedShort(position);
+        }
+        if ((flags & FNAME) != 0) {
+            position = skipZeroTerminated(position);
+            if (position < 0) return false;
+        }
+        if ((flags & FCOMMENT) != 0) {
+            position = skipZeroTerminated(position);
+            if (position < 0) return false;
+        }
+        if ((flags & FHCRC) != 0)
+            position += 2;
+        if (position > inputEnd) return false;
+        inputStart = position;
+        return true;
+    }
+
+    /** Inflates the available input and returns whether the end of the current member was reached */
+    private boolean inflate(ByteArrayOutputStream decoded) throws ZipException {
+        inflater.setInput(input, inputStart, inputEnd - inputStart);
+        try {
+            while (true) {
+                int inflated = inflater.inflate(output);
+                if (inflated > 0) {
+                    crc.update(output, 0, inflated);
+                    decoded.write(output, 0, inflated);
+                }
+                if (inflater.finished()) {
+                    inputStart = inputEnd - inflater.getRemaining();
+                    return true;
+                }
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    inputStart = inputEnd;
+                    return false;
+                }
+            }
+        }
+        catch (DataFormatException e) {
+            throw new ZipException("Invalid gzip data: " + e.getMessage());
+        }
+    }
+
+    /** Consumes and verifies a gzip member trailer and returns true if it is fully received */
+    private boolean readTrailer() throws ZipException {
+        if ( ! available(inputStart, 8)) return false;
+        long expectedCrc = unsignedInt(inputStart);
+        long expectedSize = unsignedInt(inputStart + 4);
+        if (expectedCrc != crc.getValue())
+            throw new ZipException("Corrupt gzip data: Checksum mismatch");
+        if (expectedSize != (inflater.getBytesWritten() & 0xffffffffL))
+            throw new ZipException("Corrupt gzip data: Size mismatch");
+        inputStart += 8;
+        return true;
+    }
+
+    private boolean available(int position, int length) {
+        return inputEnd - position >= length;
+    }
+
+    /** Returns the position after the zero byte terminating the string at position, or -1 if it is not received */
+    private int skipZeroTerminated(int position) {
+        for (int i = position; i < inputEnd; i++)
+            if (input[i] == 0) return i + 1;
+        return -1;
+    }
+
+    private int unsignedShort(int position) {
+        return (input[position] & 0xff) | (input[position + 1] & 0xff) << 8;
+    }
+
+    private long unsignedInt(int position) {
+        return (unsignedShort(position) | (long)unsignedShort(position + 2) << 16);
+    }
+
+}
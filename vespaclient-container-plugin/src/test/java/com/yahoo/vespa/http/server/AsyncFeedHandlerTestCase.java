@@ -0,0 +1,213 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.container.jdisc.messagebus.SessionCache;
+import com.yahoo.container.logging.AccessLog;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.config.DocumentmanagerConfig;
+import com.yahoo.documentapi.metrics.DocumentApiMetrics;
+import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.jdisc.References;
+import com.yahoo.jdisc.Response;
+import com.yahoo.jdisc.handler.CompletionHandler;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.jdisc.handler.ResponseHandler;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBus;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Result;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.shared.SharedMessageBus;
+import com.yahoo.messagebus.shared.SharedSourceSession;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.vespa.http.client.config.FeedParams;
+import com.yahoo.vespa.http.client.core.Headers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests feeding through {@link AsyncFeedHandler} as a jdisc request handler, with a mock message bus session.
+ */
+public class AsyncFeedHandlerTestCase {
+
+    private final AtomicInteger sent = new AtomicInteger(0);
+    private AsyncFeedHandler handler;
+
+    /** A message bus session which accepts and replies to all messages immediately */
+    private class MockSharedSession extends SharedSourceSession {
+
+        MockSharedSession(SourceSessionParams params) {
+            super(new SharedMessageBus(new MessageBus(new MockNetwork(), new MessageBusParams())), params);
+        }
+
+        @Override
+        public Result sendMessageBlocking(Message msg) {
+            throw new AssertionError("Asynchronous feeding should never block");
+        }
+
+        @Override
+        public Result sendMessage(Message msg) {
+            ReplyHandler handler = msg.popHandler();
+            sent.incrementAndGet();
+            handler.handleReply(new MockReply(msg.getContext()));
+            return Result.ACCEPTED;
+        }
+
+    }
+
+    /** Collects the response and its content */
+    private static class MockResponseHandler implements ResponseHandler {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Response response;
+
+        @Override
+        public ContentChannel handleResponse(Response response) {
+            this.response = response;
+            return new ContentChannel() {
+
+                @Override
+                public void write(ByteBuffer buf, CompletionHandler handler) {
+                    byte[] bytes = new byte[buf.remaining()];
+                    buf.get(bytes);
+                    content.write(bytes, 0, bytes.length);
+                    if (handler != null) handler.completed();
+                }
+
+                @Override
+                public void close(CompletionHandler handler) {
+                    if (handler != null) handler.completed();
+                    done.countDown();
+                }
+
+            };
+        }
+
+        String await(int expectedStatus) throws InterruptedException {
+            assertTrue("Response within timeout", done.await(60, TimeUnit.SECONDS));
+            assertEquals(expectedStatus, response.getStatus());
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+    }
+
+    /** Counts the chunks which are completed */
+    private static class CountingCompletionHandler implements CompletionHandler {
+
+        final AtomicInteger completed = new AtomicInteger(0);
+
+        @Override
+        public void completed() { completed.incrementAndGet(); }
+
+        @Override
+        public void failed(Throwable t) { throw new AssertionError(t); }
+
+    }
+
+    @Before
+    public void setup() {
+        DocumentApiMetrics metrics = new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester");
+        FeedHandlerV3 feedHandlerV3 = new FeedHandlerV3(new FeedHandlerV3.Context(Executors.newCachedThreadPool(),
+                                                                                  AccessLog.voidAccessLog(),
+                                                                                  new DummyMetric()),
+                                                        new DocumentmanagerConfig(new DocumentmanagerConfig.Builder()),
+                                                        null /* session cache */,
+                                                        null /* thread pool config */,
+                                                        metrics) {
+            @Override
+            protected ReferencedResource<SharedSourceSession> retainSource(SessionCache sessionCache,
+                                                                           SourceSessionParams params) {
+                MockSharedSession session = new MockSharedSession(params);
+                return new ReferencedResource<>(session, References.fromResource(session));
+            }
+        };
+        feedHandlerV3.injectDocumentManangerForTests(createDocumentTypeManager());
+        handler = new AsyncFeedHandler(metrics, feedHandlerV3, 2);
+    }
+
+    @After
+    public void shutdown() {
+        handler.destroy();
+    }
+
+    @Test
+    public void requireThatDocumentsAreFedAsContentArrives() throws Exception {
+        byte[] feed = feed("id:test:testdocument::0", "id:test:testdocument::1", "id:test:testdocument::2");
+        MockResponseHandler responseHandler = new MockResponseHandler();
+        ContentChannel content = handler.handleRequest(createRequest(true), responseHandler);
+        CountingCompletionHandler completion = new CountingCompletionHandler();
+        int chunks = 0;
+        for (int offset = 0; offset < feed.length; offset += 13, chunks++)
+            content.write(ByteBuffer.wrap(feed, offset, Math.min(13, feed.length - offset)).slice(), completion);
+        content.close(completion);
+
+        String response = responseHandler.await(200);
+        assertEquals(chunks + 1, completion.completed.get());
+        assertEquals(3, sent.get());
+        for (int i = 0; i < 3; i++)
+            assertTrue(response, response.contains("id:test:testdocument::" + i + " OK"));
+    }
+
+    @Test
+    public void requireThatRequestsWithoutProtocolVersionAreRejectedAndTheirContentDiscarded() throws Exception {
+        MockResponseHandler responseHandler = new MockResponseHandler();
+        ContentChannel content = handler.handleRequest(createRequest(false), responseHandler);
+        assertEquals(Headers.HTTP_NOT_ACCEPTABLE, responseHandler.response.getStatus());
+
+        CountingCompletionHandler completion = new CountingCompletionHandler();
+        content.write(ByteBuffer.wrap(feed("id:test:testdocument::0")), completion);
+        content.close(completion);
+        responseHandler.await(Headers.HTTP_NOT_ACCEPTABLE);
+        assertEquals(2, completion.completed.get());
+        assertEquals(0, sent.get());
+    }
+
+    private static com.yahoo.jdisc.http.HttpRequest createRequest(boolean withVersion) {
+        HttpRequest request = HttpRequest.createTestRequest("http://foo.bar:19020/reserved-for-internal-use/feedapi",
+                                                            com.yahoo.jdisc.http.HttpRequest.Method.POST,
+                                                            new ByteArrayInputStream(new byte[0]));
+        if (withVersion)
+            request.getJDiscRequest().headers().add(Headers.VERSION, "3");
+        request.getJDiscRequest().headers().add(Headers.CLIENT_ID, "clientId");
+        request.getJDiscRequest().headers().add(Headers.DATA_FORMAT, FeedParams.DataFormat.JSON_UTF8.name());
+        return request.getJDiscRequest();
+    }
+
+    private static DocumentTypeManager createDocumentTypeManager() {
+        DocumentTypeManager manager = new DocumentTypeManager();
+        DocumentType type = new DocumentType("testdocument");
+        type.addField("title", DataType.STRING);
+        manager.registerDocumentType(type);
+        return manager;
+    }
+
+    private static byte[] feed(String ... documentIds) {
+        ByteArrayOutputStream feed = new ByteArrayOutputStream();
+        for (String documentId : documentIds) {
+            byte[] payload = ("[{\"put\": \"" + documentId + "\", \"fields\": {\"title\": \"A title\"}}]").getBytes(StandardCharsets.UTF_8);
+            byte[] header = (documentId + " " + Integer.toHexString(payload.length) + "\n").getBytes(StandardCharsets.UTF_8);
+            feed.write(header, 0, header.length);
+            feed.write(payload, 0, payload.length);
+        }
+        return feed.toByteArray();
+    }
+
+}
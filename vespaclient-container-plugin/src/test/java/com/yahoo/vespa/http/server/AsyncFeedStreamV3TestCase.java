@@ -0,0 +1,317 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.documentapi.metrics.DocumentApiMetrics;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.jdisc.References;
+import com.yahoo.jdisc.Response;
+import com.yahoo.jdisc.handler.CompletionHandler;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.jdisc.handler.ResponseHandler;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBus;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Result;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.shared.SharedMessageBus;
+import com.yahoo.messagebus.shared.SharedSourceSession;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespaxmlparser.FeedOperation;
+import com.yahoo.vespaxmlparser.MockFeedReaderFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests feeding through {@link AsyncFeedStreamV3}, with mocks for parsing and message bus.
+ */
+public class AsyncFeedStreamV3TestCase {
+
+    private final AtomicInteger sendAttempts = new AtomicInteger(0);
+    private final AtomicInteger sent = new AtomicInteger(0);
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2);
+    private MockSharedSession session;
+    private ClientFeederV3 clientFeeder;
+    private HttpRequest request;
+
+    /** Creates messages from the payload of operations instead of parsing them as documents */
+    private static class ClientFeederWithMocks extends ClientFeederV3 {
+
+        ClientFeederWithMocks(ReferencedResource<SharedSourceSession> sourceSession, FeedReaderFactory feedReaderFactory,
+                              DocumentTypeManager docTypeManager, String clientId, Metric metric,
+                              ReplyHandler feedReplyHandler, AtomicInteger threadsAvailableForFeeding) {
+            super(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler, threadsAvailableForFeeding);
+        }
+
+        @Override
+        protected DocumentOperationMessageV3 getNextMessage(String operationId,
+                                                            InputStream requestInputStream,
+                                                            FeederSettings settings) throws Exception {
+            StringBuilder length = new StringBuilder();
+            int c;
+            while ((c = requestInputStream.read()) != '\n')
+                length.append((char)c);
+            byte[] payload = new byte[Integer.parseInt(length.toString(), 16)];
+            assertEquals(payload.length, requestInputStream.read(payload));
+            if (new String(payload, StandardCharsets.UTF_8).equals("invalid"))
+                throw new IllegalArgumentException("Invalid operation '" + operationId + "'");
+            return DocumentOperationMessageV3.newRemoveMessage(FeedOperation.INVALID, operationId);
+        }
+
+        @Override
+        void setMessageParameters(DocumentOperationMessageV3 msg, FeederSettings settings) {
+            if (msg.getOperationId().endsWith("failing"))
+                throw new IllegalStateException("Failing on '" + msg.getOperationId() + "'");
+            super.setMessageParameters(msg, settings);
+        }
+
+    }
+
+    /** A message bus session which rejects a given number of messages with SEND_QUEUE_FULL before accepting */
+    private class MockSharedSession extends SharedSourceSession {
+
+        final AtomicInteger queueFullResponses = new AtomicInteger(0);
+        final AtomicInteger maxReplyHandlers = new AtomicInteger(0);
+
+        MockSharedSession(SourceSessionParams params) {
+            super(new SharedMessageBus(new MessageBus(new MockNetwork(), new MessageBusParams())), params);
+        }
+
+        @Override
+        public Result sendMessageBlocking(Message msg) {
+            throw new AssertionError("Asynchronous feeding should never block");
+        }
+
+        @Override
+        public Result sendMessage(Message msg) {
+            sendAttempts.incrementAndGet();
+            if (queueFullResponses.getAndDecrement() > 0) // like message bus, this leaves the reply handlers as they are
+                return new Result(ErrorCode.SEND_QUEUE_FULL, "queue full");
+
+            maxReplyHandlers.accumulateAndGet(msg.getCallStack().size(), Math::max);
+            ReplyHandler handler = msg.popHandler();
+            sent.incrementAndGet();
+            handler.handleReply(new MockReply(msg.getContext()));
+            return Result.ACCEPTED;
+        }
+
+    }
+
+    /** Collects the response and its content */
+    private static class MockResponseHandler implements ResponseHandler {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Response response;
+
+        @Override
+        public ContentChannel handleResponse(Response response) {
+            this.response = response;
+            return new ContentChannel() {
+
+                @Override
+                public void write(ByteBuffer buf, CompletionHandler handler) {
+                    byte[] bytes = new byte[buf.remaining()];
+                    buf.get(bytes);
+                    content.write(bytes, 0, bytes.length);
+                    if (handler != null) handler.completed();
+                }
+
+                @Override
+                public void close(CompletionHandler handler) {
+                    if (handler != null) handler.completed();
+                    done.countDown();
+                }
+
+            };
+        }
+
+        String await() throws InterruptedException {
+            assertTrue("Response within timeout", done.await(60, TimeUnit.SECONDS));
+            assertEquals(200, response.getStatus());
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+    }
+
+    /** Counts the chunks which are completed */
+    private static class CountingCompletionHandler implements CompletionHandler {
+
+        final AtomicInteger completed = new AtomicInteger(0);
+
+        @Override
+        public void completed() { completed.incrementAndGet(); }
+
+        @Override
+        public void failed(Throwable t) { throw new AssertionError(t); }
+
+    }
+
+    @Before
+    public void setup() {
+        request = HttpRequest.createTestRequest("http://foo.bar:19020/reserved-for-internal-use/feedapi",
+                                                com.yahoo.jdisc.http.HttpRequest.Method.POST,
+                                                new ByteArrayInputStream(new byte[0]));
+        request.getJDiscRequest().headers().add(Headers.VERSION, "3");
+        request.getJDiscRequest().headers().add(Headers.CLIENT_ID, "clientId");
+        request.getJDiscRequest().headers().add(Headers.DATA_FORMAT, "JSON_UTF8");
+
+        session = new MockSharedSession(new SourceSessionParams());
+        clientFeeder = new ClientFeederWithMocks(new ReferencedResource<>(session, References.fromResource(session)),
+                                                 new MockFeedReaderFactory(),
+                                                 null /*DocTypeManager*/,
+                                                 "clientID",
+                                                 new DummyMetric(),
+                                                 new FeedReplyReader(new DummyMetric(),
+                                                                     new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
+                                                 new AtomicInteger(10));
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void requireThatOperationsAreFedAsContentArrivesInChunks() throws Exception {
+        byte[] feed = feed("id:ns:type::0", "id:ns:type::1", "id:ns:type::2");
+        for (int chunkSize : new int[] { 1, 3, 17, feed.length }) {
+            sent.set(0);
+            String response = feed(feed, chunkSize);
+            assertEquals(3, sent.get());
+            for (int i = 0; i < 3; i++)
+                assertTrue(response, response.contains("id:ns:type::" + i));
+        }
+    }
+
+    @Test
+    public void requireThatGzippedContentIsFed() throws Exception {
+        request.getJDiscRequest().headers().add("content-encoding", "gzip");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(feed("id:ns:type::0", "id:ns:type::1"));
+        }
+        feed(compressed.toByteArray(), 5);
+        assertEquals(2, sent.get());
+    }
+
+    @Test
+    public void requireThatOperationsAreRetriedWhenQueueIsFull() throws Exception {
+        session.queueFullResponses.set(5);
+        feed(feed("id:ns:type::0", "id:ns:type::1"), 4);
+        assertEquals(2, sent.get());
+        assertEquals(7, sendAttempts.get());
+        assertEquals("Each message has one reply handler when sent", 1, session.maxReplyHandlers.get());
+    }
+
+    @Test
+    public void requireThatContentIsNotCompletedWhileWaitingForCapacity() throws Exception {
+        session.queueFullResponses.set(Integer.MAX_VALUE);
+        MockResponseHandler responseHandler = new MockResponseHandler();
+        ContentChannel stream = clientFeeder.handleRequestAsync(request, responseHandler, executor);
+        CountingCompletionHandler completion = new CountingCompletionHandler();
+        stream.write(ByteBuffer.wrap(feed("id:ns:type::0")), completion);
+        stream.write(ByteBuffer.wrap(feed("id:ns:type::1")), completion);
+        while (sendAttempts.get() < 3)
+            Thread.sleep(10);
+        assertEquals(1, completion.completed.get());
+
+        session.queueFullResponses.set(0);
+        stream.close(completion);
+        responseHandler.await();
+        assertEquals(3, completion.completed.get());
+        assertEquals(2, sent.get());
+    }
+
+    @Test
+    public void requireThatOperationsAreNotRetriedWithDenyIfBusy() throws Exception {
+        request.getJDiscRequest().headers().add(Headers.DENY_IF_BUSY, "true");
+        session.queueFullResponses.set(1);
+        String response = feed(feed("id:ns:type::0", "id:ns:type::1"), 100);
+        assertEquals(2, sendAttempts.get());
+        assertEquals(1, sent.get());
+        assertTrue(response, response.contains("id:ns:type::0 TRANSIENT_ERROR"));
+    }
+
+    @Test
+    public void requireThatInvalidOperationsAreReportedWhileOthersAreFed() throws Exception {
+        ByteArrayOutputStream feed = new ByteArrayOutputStream();
+        feed.write(feed("id:ns:type::0"));
+        feed.write(operation("id:ns:type::1", "invalid"));
+        feed.write(feed("id:ns:type::2"));
+        String response = feed(feed.toByteArray(), 7);
+        assertEquals(2, sent.get());
+        assertTrue(response, response.contains("id:ns:type::1 ERROR"));
+    }
+
+    @Test
+    public void requireThatStreamWithInvalidLengthEndsWithError() throws Exception {
+        String response = feed("id:ns:type::0 xyz\n{}".getBytes(StandardCharsets.UTF_8), 100);
+        assertEquals(0, sent.get());
+        assertTrue(response, response.contains("id:ns:type::0 ERROR"));
+    }
+
+    @Test
+    public void requireThatIncompleteTrailingOperationIsReported() throws Exception {
+        ByteArrayOutputStream feed = new ByteArrayOutputStream();
+        feed.write(feed("id:ns:type::0"));
+        feed.write("id:ns:type::1 ff\n{}".getBytes(StandardCharsets.UTF_8));
+        String response = feed(feed.toByteArray(), 7);
+        assertEquals(1, sent.get());
+        assertTrue(response, response.contains("id:ns:type::1 ERROR"));
+    }
+
+    @Test
+    public void requireThatOperationsDiscardedOnFailureAreReported() throws Exception {
+        String response = feed(feed("id:ns:type::0", "id:ns:type::failing"), 100);
+        assertEquals(1, sent.get());
+        assertTrue(response, response.contains("id:ns:type::failing ERROR"));
+    }
+
+    private String feed(byte[] feed, int chunkSize) throws Exception {
+        MockResponseHandler responseHandler = new MockResponseHandler();
+        ContentChannel stream = clientFeeder.handleRequestAsync(request, responseHandler, executor);
+        CountingCompletionHandler completion = new CountingCompletionHandler();
+        int chunks = 0;
+        for (int offset = 0; offset < feed.length; offset += chunkSize, chunks++)
+            stream.write(ByteBuffer.wrap(feed, offset, Math.min(chunkSize, feed.length - offset)).slice(), completion);
+        stream.close(completion);
+        String response = responseHandler.await();
+        assertEquals(chunks + 1, completion.completed.get());
+        return response;
+    }
+
+    private static byte[] feed(String ... documentIds) throws IOException {
+        ByteArrayOutputStream feed = new ByteArrayOutputStream();
+        for (String documentId : documentIds)
+            feed.write(operation(documentId, "{\"remove\": \"" + documentId + "\"}"));
+        return feed.toByteArray();
+    }
+
+    private static byte[] operation(String operationId, String payload) {
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return (operationId + " " + Integer.toHexString(payloadBytes.length) + "\n" + payload).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -86,7 +86,7 @@ public class V3CongestionTestCase {
                 new MockFeedReaderFactory(),
                 null /*DocTypeManager*/,
                 "clientID",
-                null/*metric*/,
+                new DummyMetric(),
                 new FeedReplyReader(null/*metric*/, new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
                 threadsAvail);
     }
@@ -0,0 +1,275 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.documentapi.metrics.DocumentApiMetrics;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.jdisc.References;
+import com.yahoo.jdisc.Response;
+import com.yahoo.jdisc.handler.CompletionHandler;
+import com.yahoo.jdisc.handler.ContentChannel;
+import com.yahoo.jdisc.handler.ResponseHandler;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBus;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Result;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.shared.SharedMessageBus;
+import com.yahoo.messagebus.shared.SharedSourceSession;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespaxmlparser.FeedOperation;
+import com.yahoo.vespaxmlparser.MockFeedReaderFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that operations are parsed in parallel, and sent in the order they are received.
+ */
+public class V3ParallelParsingTestCase {
+
+    private static final int operationCount = 200;
+
+    private final ExecutorService parser = Executors.newFixedThreadPool(4);
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2);
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> parserThreads = ConcurrentHashMap.newKeySet();
+    private final RecordingMetric metric = new RecordingMetric();
+    private ClientFeederV3 clientFeeder;
+
+    /** Creates messages from the payload of operations, spending some time on some of them to reorder parsing */
+    private class ClientFeederWithMocks extends ClientFeederV3 {
+
+        ClientFeederWithMocks(ReferencedResource<SharedSourceSession> sourceSession, FeedReaderFactory feedReaderFactory,
+                              DocumentTypeManager docTypeManager, String clientId, Metric metric,
+                              ReplyHandler feedReplyHandler, AtomicInteger threadsAvailableForFeeding) {
+            super(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler,
+                  threadsAvailableForFeeding, parser);
+        }
+
+        @Override
+        protected DocumentOperationMessageV3 getNextMessage(String operationId,
+                                                            InputStream requestInputStream,
+                                                            FeederSettings settings) throws Exception {
+            StringBuilder length = new StringBuilder();
+            int c;
+            while ((c = requestInputStream.read()) != '\n')
+                length.append((char)c);
+            byte[] payload = new byte[Integer.parseInt(length.toString(), 16)];
+            assertEquals(payload.length, requestInputStream.read(payload));
+            parserThreads.add(Thread.currentThread().getName());
+            if (operationId.hashCode() % 3 == 0)
+                Thread.sleep(1);
+            return DocumentOperationMessageV3.newRemoveMessage(FeedOperation.INVALID, operationId);
+        }
+
+    }
+
+    /** A message bus session which accepts all messages and records the operations sent, in order */
+    private class MockSharedSession extends SharedSourceSession {
+
+        MockSharedSession(SourceSessionParams params) {
+            super(new SharedMessageBus(new MessageBus(new MockNetwork(), new MessageBusParams())), params);
+        }
+
+        @Override
+        public Result sendMessageBlocking(Message msg) {
+            return sendMessage(msg);
+        }
+
+        @Override
+        public Result sendMessage(Message msg) {
+            ReplyHandler handler = msg.popHandler();
+            sent.add(((ReplyContext) msg.getContext()).docId);
+            handler.handleReply(new MockReply(msg.getContext()));
+            return Result.ACCEPTED;
+        }
+
+    }
+
+    /** Records the names of the metrics which are set */
+    private static class RecordingMetric extends DummyMetric {
+
+        final Map<String, AtomicInteger> setCounts = new ConcurrentHashMap<>();
+
+        @Override
+        public void set(String key, Number val, Context ctx) {
+            setCounts.computeIfAbsent(key, __ -> new AtomicInteger()).incrementAndGet();
+        }
+
+        int setCount(String key) {
+            return setCounts.getOrDefault(key, new AtomicInteger()).get();
+        }
+
+    }
+
+    @Before
+    public void setup() {
+        MockSharedSession session = new MockSharedSession(new SourceSessionParams());
+        clientFeeder = new ClientFeederWithMocks(new ReferencedResource<>(session, References.fromResource(session)),
+                                                 new MockFeedReaderFactory(),
+                                                 null /*DocTypeManager*/,
+                                                 "clientID",
+                                                 metric,
+                                                 new FeedReplyReader(new DummyMetric(),
+                                                                     new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
+                                                 new AtomicInteger(10));
+    }
+
+    @After
+    public void shutdown() {
+        parser.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void requireThatOperationsAreSentInOrderWhenParsedInParallel() throws Exception {
+        clientFeeder.handleRequest(request(feed()));
+        assertEquals(operationIds(), sent);
+        assertTrue("Parsed in multiple threads: " + parserThreads, parserThreads.size() > 1);
+    }
+
+    @Test
+    public void requireThatOperationsAreSentInOrderWhenParsedInParallelWithAsyncFeeding() throws Exception {
+        byte[] feed = feed();
+        CountDownLatch done = new CountDownLatch(1);
+        ResponseHandler responseHandler = new ResponseHandler() {
+            @Override
+            public ContentChannel handleResponse(Response response) {
+                return new ContentChannel() {
+                    @Override
+                    public void write(ByteBuffer buf, CompletionHandler handler) {
+                        if (handler != null) handler.completed();
+                    }
+                    @Override
+                    public void close(CompletionHandler handler) {
+                        if (handler != null) handler.completed();
+                        done.countDown();
+                    }
+                };
+            }
+        };
+        ContentChannel stream = clientFeeder.handleRequestAsync(request(new byte[0]), responseHandler, executor);
+        for (int offset = 0; offset < feed.length; offset += 1000)
+            stream.write(ByteBuffer.wrap(feed, offset, Math.min(1000, feed.length - offset)).slice(), null);
+        stream.close(null);
+        assertTrue("Response within timeout", done.await(60, TimeUnit.SECONDS));
+        assertEquals(operationIds(), sent);
+        assertTrue("Parsed in multiple threads: " + parserThreads, parserThreads.size() > 1);
+    }
+
+    @Test
+    public void requireThatParsedOperationsAreSentWhileWaitingForMoreCompressedInput() throws Exception {
+        PipedInputStream content = new PipedInputStream(1 << 16);
+        GZIPOutputStream compressed = new GZIPOutputStream(new PipedOutputStream(content), true);
+        HttpRequest request = request(content);
+        request.getJDiscRequest().headers().add("content-encoding", "gzip");
+        Future<?> response = executor.submit(() -> clientFeeder.handleRequest(request));
+
+        List<String> operationIds = operationIds();
+        compressed.write(operation(operationIds.get(0), "{}"));
+        compressed.flush();
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (sent.isEmpty() && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertEquals("The first operation is sent before more input arrives", List.of(operationIds.get(0)), sent);
+
+        for (String operationId : operationIds.subList(1, operationIds.size()))
+            compressed.write(operation(operationId, "{}"));
+        compressed.close();
+        response.get(60, TimeUnit.SECONDS);
+        assertEquals(operationIds, sent);
+    }
+
+    @Test
+    public void requireThatTimeIsReportedForEachStage() throws Exception {
+        clientFeeder.handleRequest(request(feed()));
+        assertEquals(operationCount, metric.setCount(MetricNames.READ_TIME));
+        assertEquals(operationCount, metric.setCount(MetricNames.PARSE_TIME));
+        assertEquals(operationCount, metric.setCount(MetricNames.SEND_TIME));
+    }
+
+    @Test
+    public void requireThatOperationsAreReadWithoutParsing() throws Exception {
+        byte[] first = operation("id:ns:type::0", "{\"remove\": \"id:ns:type::0\"}");
+        byte[] second = operation("id:ns:type::1", "{}");
+        ByteArrayOutputStream feed = new ByteArrayOutputStream();
+        feed.write(first);
+        feed.write(second);
+        feed.write("id:ns:type::2 ff\n{}".getBytes(StandardCharsets.UTF_8));
+
+        StreamReaderV3 reader = new StreamReaderV3(new MockFeedReaderFactory(), null);
+        InputStream in = new ByteArrayInputStream(feed.toByteArray());
+        assertArrayEquals(first, reader.readNextOperation(in).get());
+        assertArrayEquals(second, reader.readNextOperation(in).get());
+        assertArrayEquals("Truncated operations are returned as read",
+                          "id:ns:type::2 ff\n{}".getBytes(StandardCharsets.UTF_8), reader.readNextOperation(in).get());
+        assertFalse(reader.readNextOperation(in).isPresent());
+    }
+
+    private static HttpRequest request(byte[] content) {
+        return request(new ByteArrayInputStream(content));
+    }
+
+    private static HttpRequest request(InputStream content) {
+        HttpRequest request = HttpRequest.createTestRequest("http://foo.bar:19020/reserved-for-internal-use/feedapi",
+                                                            com.yahoo.jdisc.http.HttpRequest.Method.POST,
+                                                            content);
+        request.getJDiscRequest().headers().add(Headers.VERSION, "3");
+        request.getJDiscRequest().headers().add(Headers.CLIENT_ID, "clientId");
+        request.getJDiscRequest().headers().add(Headers.DATA_FORMAT, "JSON_UTF8");
+        return request;
+    }
+
+    private static List<String> operationIds() {
+        List<String> operationIds = new ArrayList<>();
+        for (int i = 0; i < operationCount; i++)
+            operationIds.add("id:ns:type::" + i);
+        return operationIds;
+    }
+
+    private static byte[] feed() throws Exception {
+        ByteArrayOutputStream feed = new ByteArrayOutputStream();
+        for (String operationId : operationIds())
+            feed.write(operation(operationId, "{\"remove\": \"" + operationId + "\"}"));
+        return feed.toByteArray();
+    }
+
+    private static byte[] operation(String operationId, String payload) {
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return (operationId + " " + Integer.toHexString(payloadBytes.length) + "\n" + payload).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,117 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GzipDecoderTestCase {
+
+    @Test
+    public void requireThatDataIsDecodedInOneChunk() throws IOException {
+        byte[] data = testData(10000);
+        assertArrayEquals(data, decode(gzip(data), Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void requireThatDataIsDecodedInChunksOfAnySize() throws IOException {
+        byte[] data = testData(10000);
+        for (int chunkSize : new int[] { 1, 2, 7, 10, 11, 100, 4096 })
+            assertArrayEquals("Chunk size " + chunkSize, data, decode(gzip(data), chunkSize));
+    }
+
+    @Test
+    public void requireThatConcatenatedMembersAreDecoded() throws IOException {
+        byte[] first = testData(3000);
+        byte[] second = "second member".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip(first));
+        compressed.write(gzip(second));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+        assertArrayEquals(expected.toByteArray(), decode(compressed.toByteArray(), 3));
+    }
+
+    @Test
+    public void requireThatOptionalHeaderFieldsAreSkipped() throws IOException {
+        byte[] data = testData(100);
+        byte[] compressed = gzip(data);
+        ByteArrayOutputStream withHeaderFields = new ByteArrayOutputStream();
+        withHeaderFields.write(compressed, 0, 3);
+        withHeaderFields.write(4 | 8 | 16); // FEXTRA, FNAME and FCOMMENT
+        withHeaderFields.write(compressed, 4, 6);
+        withHeaderFields.write(new byte[] { 3, 0, 'x', 'y', 'z' });
+        withHeaderFields.write("name".getBytes(StandardCharsets.US_ASCII));
+        withHeaderFields.write(0);
+        withHeaderFields.write("comment".getBytes(StandardCharsets.US_ASCII));
+        withHeaderFields.write(0);
+        withHeaderFields.write(compressed, 10, compressed.length - 10);
+        assertArrayEquals(data, decode(withHeaderFields.toByteArray(), 1));
+    }
+
+    @Test
+    public void requireThatIncompleteInputIsNotComplete() throws IOException {
+        byte[] compressed = gzip(testData(1000));
+        GzipDecoder decoder = new GzipDecoder();
+        decoder.decode(compressed, 0, compressed.length - 1, new ByteArrayOutputStream());
+        assertFalse(decoder.isComplete());
+        decoder.decode(compressed, compressed.length - 1, 1, new ByteArrayOutputStream());
+        assertTrue(decoder.isComplete());
+    }
+
+    @Test
+    public void requireThatInvalidInputIsRejected() throws IOException {
+        assertDecodeFails("Not in gzip format", "this is not gzip data".getBytes(StandardCharsets.US_ASCII));
+
+        byte[] corrupt = gzip(testData(1000));
+        corrupt[corrupt.length - 6]++;
+        assertDecodeFails("Corrupt gzip data: Checksum mismatch", corrupt);
+    }
+
+    private static void assertDecodeFails(String expectedMessage, byte[] data) {
+        try {
+            decode(data, 10);
+            fail("Expected exception");
+        }
+        catch (ZipException e) {
+            assertEquals(expectedMessage, e.getMessage());
+        }
+    }
+
+    private static byte[] decode(byte[] compressed, int chunkSize) throws ZipException {
+        GzipDecoder decoder = new GzipDecoder();
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        for (int offset = 0; offset < compressed.length; offset += chunkSize)
+            decoder.decode(compressed, offset, Math.min(chunkSize, compressed.length - offset), decoded);
+        assertTrue(decoder.isComplete());
+        decoder.end();
+        return decoded.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(data);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] testData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++)
+            data[i] = (byte)(i * 31 % 17 + (i / 100));
+        return data;
+    }
+
+}
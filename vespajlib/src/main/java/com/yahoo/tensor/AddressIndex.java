@@ -0,0 +1,195 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact, immutable index of a set of tensor addresses of the same size, giving each address
+ * a position from 0 to size-1 in the order they were added.
+ *
+ * Each distinct label is stored once in a sorted dictionary, the addresses are stored as dictionary ids
+ * packed into longs, and addresses are looked up by open addressing into an int array.
+ * This avoids the per address objects and boxing of a Map from TensorAddress.
+ */
+final class AddressIndex {
+
+    private final int rank;
+    private final int size;
+
+    /** The distinct labels of the addresses in this, sorted, such that the id of a label is its position here */
+    private final String[] labels;
+
+    private final int bitsPerLabel;
+    private final int labelsPerLong;
+    private final int longsPerAddress;
+
+    /** The packed label ids of each address, longsPerAddress entries per address */
+    private final long[] addresses;
+
+    /** Open addressing table containing the position + 1 of the address in each slot, or 0 if empty */
+    private final int[] table;
+
+    /** Creates an index of the given addresses, given as rank ids into the given sorted labels per address */
+    private AddressIndex(int rank, int size, String[] labels, int[] addressIds) {
+        this.rank = rank;
+        this.size = size;
+        this.labels = labels;
+        this.bitsPerLabel = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(1, labels.length) - 1));
+        this.labelsPerLong = 64 / bitsPerLabel;
+        this.longsPerAddress = (rank + labelsPerLong - 1) / labelsPerLong;
+        this.addresses = new long[size * longsPerAddress];
+        this.table = new int[tableSize(size)];
+        for (int position = 0; position < size; position++) {
+            for (int i = 0; i < rank; i++)
+                addresses[position * longsPerAddress + i / labelsPerLong] |=
+                        (long)addressIds[position * rank + i] << ((i % labelsPerLong) * bitsPerLabel);
+            insert(position);
+        }
+    }
+
+    /** Returns the number of addresses in this */
+    int size() { return size; }
+
+    /** Returns the position of the given address, or -1 if it is not in this */
+    int indexOf(TensorAddress address) {
+        if (address.size() != rank) return -1;
+        long[] packed = new long[longsPerAddress];
+        for (int i = 0; i < rank; i++) {
+            int id = Arrays.binarySearch(labels, address.label(i));
+            if (id < 0) return -1;
+            packed[i / labelsPerLong] |= (long)id << ((i % labelsPerLong) * bitsPerLabel);
+        }
+        int mask = table.length - 1;
+        for (int slot = hash(packed, 0, longsPerAddress) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int position = table[slot] - 1;
+            if (Arrays.equals(addresses, position * longsPerAddress, (position + 1) * longsPerAddress,
+                              packed, 0, longsPerAddress))
+                return position;
+        }
+        return -1;
+    }
+
+    /** Returns the label in the given dimension of the address at the given position */
+    String label(int position, int dimension) {
+        long word = addresses[position * longsPerAddress + dimension / labelsPerLong];
+        int id = (int)((word >>> ((dimension % labelsPerLong) * bitsPerLabel)) & ((1L << bitsPerLabel) - 1));
+        return labels[id];
+    }
+
+    /** Returns the address at the given position */
+    TensorAddress addressOf(int position) {
+        String[] addressLabels = new String[rank];
+        for (int i = 0; i < rank; i++)
+            addressLabels[i] = label(position, i);
+        return TensorAddress.of(addressLabels);
+    }
+
+    private void insert(int position) {
+        int mask = table.length - 1;
+        int slot = hash(addresses, position * longsPerAddress, longsPerAddress) & mask;
+        while (table[slot] != 0)
+            slot = (slot + 1) & mask;
+        table[slot] = position + 1;
+    }
+
+    /** Returns a table size which is a power of two and at least twice the given size */
+    private static int tableSize(int size) {
+        return Math.max(2, Integer.highestOneBit(Math.max(1, size)) << 2);
+    }
+
+    private static int hash(long[] values, int start, int length) {
+        long hash = 1;
+        for (int i = start; i < start + length; i++)
+            hash = 31 * hash + values[i];
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    private static int hash(int[] values, int start, int length) {
+        long hash = 1;
+        for (int i = start; i < start + length; i++)
+            hash = 31 * hash + values[i];
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    /** Builds an address index. Adding an address which is already added does not change the index. */
+    static class Builder {
+
+        private final int rank;
+
+        /** The id of each label, in the order labels are first added */
+        private final Map<String, Integer> labelIds = new HashMap<>();
+
+        /** The label ids of each address, rank entries per address */
+        private int[] addressIds;
+
+        /** Open addressing table containing the position + 1 of the address in each slot, or 0 if empty */
+        private int[] table = new int[tableSize(0)];
+
+        private int size = 0;
+
+        Builder(int rank) {
+            this.rank = rank;
+            this.addressIds = new int[16 * rank];
+        }
+
+        /** Returns the number of distinct addresses added to this */
+        int size() { return size; }
+
+        /**
+         * Adds an address to this, if not already present
+         *
+         * @return the position of the address, which is equal to the size of this before adding if it is new
+         */
+        int add(TensorAddress address) {
+            if (address.size() != rank)
+                throw new IllegalArgumentException(address + " does not have " + rank + " labels");
+            if ((size + 1) * rank > addressIds.length)
+                addressIds = Arrays.copyOf(addressIds, addressIds.length * 2);
+            int start = size * rank;
+            for (int i = 0; i < rank; i++)
+                addressIds[start + i] = labelIds.computeIfAbsent(address.label(i), label -> labelIds.size());
+
+            int mask = table.length - 1;
+            int slot = hash(addressIds, start, rank) & mask;
+            for (; table[slot] != 0; slot = (slot + 1) & mask) {
+                int position = table[slot] - 1;
+                if (Arrays.equals(addressIds, position * rank, (position + 1) * rank, addressIds, start, start + rank))
+                    return position;
+            }
+            table[slot] = size + 1;
+            if (++size * 2 > table.length)
+                rehash();
+            return size - 1;
+        }
+
+        private void rehash() {
+            table = new int[tableSize(size)];
+            int mask = table.length - 1;
+            for (int position = 0; position < size; position++) {
+                int slot = hash(addressIds, position * rank, rank) & mask;
+                while (table[slot] != 0)
+                    slot = (slot + 1) & mask;
+                table[slot] = position + 1;
+            }
+        }
+
+        AddressIndex build() {
+            String[] labels = labelIds.keySet().toArray(new String[0]);
+            Arrays.sort(labels);
+            int[] sortedIds = new int[labels.length];
+            for (int id = 0; id < labels.length; id++)
+                sortedIds[labelIds.get(labels[id])] = id;
+
+            int[] sortedAddressIds = new int[size * rank];
+            for (int i = 0; i < sortedAddressIds.length; i++)
+                sortedAddressIds[i] = sortedIds[addressIds[i]];
+            return new AddressIndex(rank, size, labels, sortedAddressIds);
+        }
+
+    }
+
+}
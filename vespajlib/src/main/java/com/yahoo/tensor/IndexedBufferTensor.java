@@ -0,0 +1,76 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An indexed tensor implementation which reads its values from a byte buffer when they are accessed,
+ * such that the values are not copied onto the heap when the buffer is e.g a memory mapped file.
+ * The values are encoded in the buffer as the value type of the tensor, in the byte order of the buffer.
+ *
+ * This is immutable as long as the content of the buffer is not changed.
+ */
+class IndexedBufferTensor extends IndexedTensor {
+
+    private final ByteBuffer values;
+    private final long size;
+
+    IndexedBufferTensor(TensorType type, DimensionSizes dimensionSizes, ByteBuffer values) {
+        super(type, dimensionSizes);
+        this.size = dimensionSizes.totalSize();
+        if (values.remaining() < size * bytesPerValue(type.valueType()))
+            throw new IllegalArgumentException("A buffer of " + values.remaining() + " bytes is too small to hold " +
+                                               size + " values of type " + type.valueType());
+        this.values = values.slice().asReadOnlyBuffer().order(values.order());
+    }
+
+    @Override
+    public long size() { return size; }
+
+    @Override
+    public double get(long valueIndex) {
+        if (type().valueType() == TensorType.Value.DOUBLE)
+            return values.getDouble((int)valueIndex * Double.BYTES);
+        return getFloat(valueIndex);
+    }
+
+    @Override
+    public float getFloat(long valueIndex) {
+        switch (type().valueType()) {
+            case DOUBLE: return (float)values.getDouble((int)valueIndex * Double.BYTES);
+            case FLOAT: return values.getFloat((int)valueIndex * Float.BYTES);
+            case BFLOAT16: return Float.intBitsToFloat(values.getShort((int)valueIndex * Short.BYTES) << 16);
+            case INT8: return values.get((int)valueIndex);
+            default: throw new IllegalStateException("Unexpected value type " + type().valueType());
+        }
+    }
+
+    @Override
+    public IndexedTensor withType(TensorType type) {
+        throwOnIncompatibleType(type);
+        if (type.valueType() != type().valueType())
+            throw new IllegalArgumentException("Can not change the value type of a tensor view from " +
+                                               type().valueType() + " to " + type.valueType());
+        return new IndexedBufferTensor(type, dimensionSizes(), values);
+    }
+
+    @Override
+    public int hashCode() { // Same as the tensors holding values in arrays of the value type
+        int result = 1;
+        boolean isDouble = type().valueType() == TensorType.Value.DOUBLE;
+        for (long i = 0; i < size; i++)
+            result = 31 * result + (isDouble ? Double.hashCode(get(i)) : Float.hashCode(getFloat(i)));
+        return result;
+    }
+
+    static int bytesPerValue(TensorType.Value valueType) {
+        switch (valueType) {
+            case DOUBLE: return Double.BYTES;
+            case FLOAT: return Float.BYTES;
+            case BFLOAT16: return Short.BYTES;
+            case INT8: return Byte.BYTES;
+            default: throw new IllegalArgumentException("Unexpected value type " + valueType);
+        }
+    }
+
+}
@@ -42,6 +42,9 @@ class IndexedFloatTensor extends IndexedTensor {
 
         private float[] values;
 
+        /** Whether values must be quantized to the precision of the value type when they are set */
+        private final boolean quantize;
+
         BoundFloatBuilder(TensorType type, DimensionSizes sizes) {
             this(type, sizes, new float[(int)sizes.totalSize()]);
         }
@@ -53,6 +56,15 @@ class IndexedFloatTensor extends IndexedTensor {
                                                    " Type specifies that size should be " + sizes.totalSize());
             }
             this.values = values;
+            this.quantize = type.valueType().isQuantized();
+            if (quantize) {
+                for (int i = 0; i < values.length; i++)
+                    values[i] = quantized(values[i]);
+            }
+        }
+
+        private float quantized(float value) {
+            return quantize ? (float)type.valueType().quantize(value) : value;
         }
 
         @Override
@@ -62,7 +74,7 @@ class IndexedFloatTensor extends IndexedTensor {
 
         @Override
         public IndexedTensor.BoundBuilder cell(float value, long ... indexes) {
-            values[(int)toValueIndex(indexes, sizes())] = value;
+            values[(int)toValueIndex(indexes, sizes())] = quantized(value);
             return this;
         }
 
@@ -78,7 +90,7 @@ class IndexedFloatTensor extends IndexedTensor {
 
         @Override
         public Builder cell(TensorAddress address, float value) {
-            values[(int)toValueIndex(address, sizes(), type)] = value;
+            values[(int)toValueIndex(address, sizes(), type)] = quantized(value);
             return this;
         }
 
@@ -99,7 +111,7 @@ class IndexedFloatTensor extends IndexedTensor {
         public Builder cell(Cell cell, float value) {
             long directIndex = cell.getDirectIndex();
             if (directIndex >= 0) // optimization
-                values[(int)directIndex] = value;
+                values[(int)directIndex] = quantized(value);
             else
                 super.cell(cell, value);
             return this;
@@ -112,7 +124,7 @@ class IndexedFloatTensor extends IndexedTensor {
 
         @Override
         public void cellByDirectIndex(long index, float value) {
-            values[(int)index] = value;
+            values[(int)index] = quantized(value);
         }
 
     }
@@ -4,6 +4,7 @@ package com.yahoo.tensor;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -178,6 +179,22 @@ public abstract class IndexedTensor implements Tensor {
     @Override
     public abstract IndexedTensor withType(TensorType type);
 
+    /**
+     * Returns a read-only tensor which reads its values from the given buffer when they are accessed,
+     * instead of copying them. Use this to access large tensors in memory mapped files.
+     *
+     * @param type the type of the tensor
+     * @param sizes the sizes of the dimensions of the tensor
+     * @param values a buffer containing the values of the tensor in the <i>standard value order</i>, starting at
+     *               the position of the buffer, encoded as the value type of the tensor type in the byte order
+     *               of the buffer. The content of the buffer must not be changed while the tensor is in use.
+     * @throws IllegalArgumentException if the buffer is too small to contain the values of the tensor
+     */
+    public static IndexedTensor viewOf(TensorType type, DimensionSizes sizes, ByteBuffer values) {
+        Builder.validate(type, sizes);
+        return new IndexedBufferTensor(type, sizes, values);
+    }
+
     public DimensionSizes dimensionSizes() {
         return dimensionSizes;
     }
@@ -225,10 +242,8 @@ public abstract class IndexedTensor implements Tensor {
             // value
             if (tensor.type().valueType() == TensorType.Value.DOUBLE)
                 b.append(tensor.get(index));
-            else if (tensor.type().valueType() == TensorType.Value.FLOAT)
-                b.append(tensor.getFloat(index));
             else
-                throw new IllegalStateException("Unexpected value type " + tensor.type().valueType());
+                b.append(tensor.getFloat(index));
 
             // end bracket and comma
             for (int i = 0; i < indexes.nextDimensionsAtEnd(); i++)
@@ -295,12 +310,10 @@ public abstract class IndexedTensor implements Tensor {
         public static Builder of(TensorType type, DimensionSizes sizes) {
             validate(type, sizes);
 
-            if (type.valueType() == TensorType.Value.FLOAT)
-                return new IndexedFloatTensor.BoundFloatBuilder(type, sizes);
-            else if (type.valueType() == TensorType.Value.DOUBLE)
+            if (type.valueType() == TensorType.Value.DOUBLE)
                 return new IndexedDoubleTensor.BoundDoubleBuilder(type, sizes);
-            else
-                return new IndexedDoubleTensor.BoundDoubleBuilder(type, sizes); // Default
+            else // float, bfloat16 and int8 cells are held as floats
+                return new IndexedFloatTensor.BoundFloatBuilder(type, sizes);
         }
 
         /**
@@ -315,12 +328,10 @@ public abstract class IndexedTensor implements Tensor {
             validate(type, sizes);
             validateSizes(sizes, values.length);
 
-            if (type.valueType() == TensorType.Value.FLOAT)
-                return new IndexedFloatTensor.BoundFloatBuilder(type, sizes, values);
-            else if (type.valueType() == TensorType.Value.DOUBLE)
+            if (type.valueType() == TensorType.Value.DOUBLE)
                 return new IndexedDoubleTensor.BoundDoubleBuilder(type, sizes).fill(values);
-            else
-                return new IndexedDoubleTensor.BoundDoubleBuilder(type, sizes).fill(values); // Default
+            else // float, bfloat16 and int8 cells are held as floats
+                return new IndexedFloatTensor.BoundFloatBuilder(type, sizes, values);
         }
 
         /**
@@ -335,12 +346,10 @@ public abstract class IndexedTensor implements Tensor {
             validate(type, sizes);
             validateSizes(sizes, values.length);
 
-            if (type.valueType() == TensorType.Value.FLOAT)
-                return new IndexedFloatTensor.BoundFloatBuilder(type, sizes).fill(values);
-            else if (type.valueType() == TensorType.Value.DOUBLE)
+            if (type.valueType() == TensorType.Value.DOUBLE)
                 return new IndexedDoubleTensor.BoundDoubleBuilder(type, sizes, values);
-            else
-                return new IndexedDoubleTensor.BoundDoubleBuilder(type, sizes, values); // Default
+            else // float, bfloat16 and int8 cells are held as floats
+                return new IndexedFloatTensor.BoundFloatBuilder(type, sizes).fill(values);
         }
 
         private static void validateSizes(DimensionSizes sizes, int length) {
@@ -536,6 +545,7 @@ public abstract class IndexedTensor implements Tensor {
             if (indexes.length != type.dimensions().size())
                 throw new IllegalArgumentException("Wrong number of indexes (" + indexes.length + ") for " + type);
 
+            value = type.valueType().quantize(value);
             if (indexes.length == 0) {
                 firstDimension = Collections.singletonList(value);
                 return this;
@@ -3,13 +3,15 @@ package com.yahoo.tensor;
 
 import com.google.common.collect.ImmutableMap;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.function.DoubleBinaryOperator;
 
 /**
- * A sparse implementation of a tensor backed by a Map of cells to values.
+ * A sparse implementation of a tensor backed by a compact index of cell addresses to positions
+ * in an array of values.
  *
  * @author bratseth
  */
@@ -17,31 +19,44 @@ public class MappedTensor implements Tensor {
 
     private final TensorType type;
 
-    private final ImmutableMap<TensorAddress, Double> cells;
+    /** The addresses of the cells of this */
+    private final AddressIndex index;
+
+    /** The cell values of this, in the order of the positions of their addresses in the index */
+    private final double[] values;
 
     /** Creates a sparse tensor. The cell addresses must match the type. */
-    private MappedTensor(TensorType type, Map<TensorAddress, Double> cells) {
+    private MappedTensor(TensorType type, AddressIndex index, double[] values) {
         this.type = type;
-        this.cells = ImmutableMap.copyOf(cells);
+        this.index = index;
+        this.values = values;
     }
 
     @Override
     public TensorType type() { return type; }
 
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
     @Override
-    public double get(TensorAddress address) { return cells.getOrDefault(address, Double.NaN); }
+    public double get(TensorAddress address) {
+        int position = index.indexOf(address);
+        return position < 0 ? Double.NaN : values[position];
+    }
 
     @Override
-    public Iterator<Cell> cellIterator() { return new CellIteratorAdaptor(cells.entrySet().iterator()); }
+    public Iterator<Cell> cellIterator() { return new CellIterator(); }
 
     @Override
-    public Iterator<Double> valueIterator() { return cells.values().iterator(); }
+    public Iterator<Double> valueIterator() { return Arrays.stream(values).iterator(); }
 
     @Override
-    public Map<TensorAddress, Double> cells() { return cells; }
+    public Map<TensorAddress, Double> cells() {
+        ImmutableMap.Builder<TensorAddress, Double> cells = new ImmutableMap.Builder<>();
+        for (int position = 0; position < values.length; position++)
+            cells.put(index.addressOf(position), values[position]);
+        return cells.build();
+    }
 
     @Override
     public Tensor withType(TensorType other) {
@@ -49,7 +64,7 @@ public class MappedTensor implements Tensor {
             throw new IllegalArgumentException("MappedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MappedTensor(other, cells);
+        return new MappedTensor(other, index, values);
     }
 
     @Override
@@ -66,7 +81,12 @@ public class MappedTensor implements Tensor {
     }
 
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        int hashCode = 0;
+        for (Iterator<Cell> i = cellIterator(); i.hasNext(); )
+            hashCode += i.next().hashCode();
+        return hashCode;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -80,12 +100,14 @@ public class MappedTensor implements Tensor {
     public static class Builder implements Tensor.Builder {
 
         private final TensorType type;
-        private final ImmutableMap.Builder<TensorAddress, Double> cells = new ImmutableMap.Builder<>();
+        private final AddressIndex.Builder index;
+        private double[] values = new double[16];
 
         public static Builder of(TensorType type) { return new Builder(type); }
 
         private Builder(TensorType type) {
             this.type = type;
+            this.index = new AddressIndex.Builder(type.rank());
         }
 
         public CellBuilder cell() {
@@ -102,7 +124,10 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            cells.put(address, value);
+            int position = index.add(address);
+            if (position == values.length)
+                values = Arrays.copyOf(values, values.length * 2);
+            values[position] = type.valueType().quantize(value);
             return this;
         }
 
@@ -113,32 +138,29 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(double value, long... labels) {
-            cells.put(TensorAddress.of(labels), value);
-            return this;
+            return cell(TensorAddress.of(labels), value);
         }
 
         @Override
         public MappedTensor build() {
-            return new MappedTensor(type, cells.build());
+            return new MappedTensor(type, index.build(), Arrays.copyOf(values, index.size()));
         }
 
     }
 
-    private static class CellIteratorAdaptor implements Iterator<Cell> {
-
-        private final Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator;
+    private class CellIterator implements Iterator<Cell> {
 
-        private CellIteratorAdaptor(Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator) {
-            this.adaptedIterator = adaptedIterator;
-        }
+        private int position = 0;
 
         @Override
-        public boolean hasNext() { return adaptedIterator.hasNext(); }
+        public boolean hasNext() { return position < values.length; }
 
         @Override
         public Cell next() {
-            Map.Entry<TensorAddress, Double> entry = adaptedIterator.next();
-            return new Cell(entry.getKey(), entry.getValue());
+            if ( ! hasNext()) throw new NoSuchElementException();
+            Cell cell = new Cell(index.addressOf(position), values[position]);
+            position++;
+            return cell;
         }
 
     }
@@ -2,16 +2,19 @@
 
 package com.yahoo.tensor;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * A mixed tensor type. This is class is currently suitable for serialization
@@ -29,15 +32,15 @@ public class MixedTensor implements Tensor {
     /** The dimension specification for this tensor */
     private final TensorType type;
 
-    /** The list of cells in the tensor */
-    private final ImmutableList<Cell> cells;
+    /** The cell values of the tensor, one dense subspace after another */
+    private final double[] values;
 
-    /** An index structure over the cell list */
+    /** An index structure over the cell values */
     private final Index index;
 
-    private MixedTensor(TensorType type, ImmutableList<Cell> cells, Index index) {
+    private MixedTensor(TensorType type, double[] values, Index index) {
         this.type = type;
-        this.cells = ImmutableList.copyOf(cells);
+        this.values = values;
         this.index = index;
     }
 
@@ -47,7 +50,7 @@ public class MixedTensor implements Tensor {
 
     /** Returns the size of the tensor measured in number of cells */
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
     /** Returns the value at the given address */
     @Override
@@ -55,10 +58,7 @@ public class MixedTensor implements Tensor {
         long cellIndex = index.indexOf(address);
         if (cellIndex < 0)
             return Double.NaN;
-        Cell cell = cells.get((int)cellIndex);
-        if ( ! address.equals(cell.getKey()))
-            return Double.NaN;
-        return cell.getValue();
+        return values[(int)cellIndex];
     }
 
     /**
@@ -70,7 +70,7 @@ public class MixedTensor implements Tensor {
      */
     @Override
     public Iterator<Cell> cellIterator() {
-        return cells.iterator();
+        return new CellIterator();
     }
 
     /**
@@ -79,23 +79,14 @@ public class MixedTensor implements Tensor {
      */
     @Override
     public Iterator<Double> valueIterator() {
-        return new Iterator<>() {
-            Iterator<Cell> cellIterator = cellIterator();
-            @Override
-            public boolean hasNext() {
-                return cellIterator.hasNext();
-            }
-            @Override
-            public Double next() {
-                return cellIterator.next().getValue();
-            }
-        };
+        return Arrays.stream(values).iterator();
     }
 
     @Override
     public Map<TensorAddress, Double> cells() {
         ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
-        for (Cell cell : cells) {
+        for (Iterator<Cell> i = cellIterator(); i.hasNext(); ) {
+            Cell cell = i.next();
             builder.put(cell.getKey(), cell.getValue());
         }
         return builder.build();
@@ -107,7 +98,7 @@ public class MixedTensor implements Tensor {
             throw new IllegalArgumentException("MixedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MixedTensor(other, cells, index);
+        return new MixedTensor(other, values, index);
     }
 
     @Override
@@ -115,21 +106,24 @@ public class MixedTensor implements Tensor {
         Tensor.Builder builder = Tensor.Builder.of(type());
 
         // iterate through all sparse addresses referencing a dense subspace
-        for (Map.Entry<TensorAddress, Long> entry : index.sparseMap.entrySet()) {
-            TensorAddress sparsePartialAddress = entry.getKey();
+        for (int subspace = 0; subspace < index.sparseIndex.size(); subspace++) {
+            TensorAddress sparsePartialAddress = index.sparseIndex.addressOf(subspace);
             if ( ! addresses.contains(sparsePartialAddress)) {  // assumption: addresses only contain the sparse part
-                long offset = entry.getValue();
-                for (int i = 0; i < index.denseSubspaceSize; ++i) {
-                    Cell cell = cells.get((int)offset + i);
-                    builder.cell(cell.getKey(), cell.getValue());
-                }
+                long offset = subspace * index.denseSubspaceSize();
+                for (int i = 0; i < index.denseSubspaceSize(); ++i)
+                    builder.cell(index.addressOf(sparsePartialAddress, i), values[(int)offset + i]);
             }
         }
         return builder.build();
     }
 
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        int hashCode = 0;
+        for (Iterator<Cell> i = cellIterator(); i.hasNext(); )
+            hashCode += i.next().hashCode();
+        return hashCode;
+    }
 
     @Override
     public String toString() {
@@ -152,6 +146,29 @@ public class MixedTensor implements Tensor {
         return index.denseSubspaceSize();
     }
 
+    /** Iterates over the cells of one dense subspace after another */
+    private class CellIterator implements Iterator<Cell> {
+
+        private final int denseSubspaceSize = (int)index.denseSubspaceSize();
+        private int position = 0;
+        private TensorAddress sparsePartialAddress = null;
+
+        @Override
+        public boolean hasNext() { return position < values.length; }
+
+        @Override
+        public Cell next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            int offset = position % denseSubspaceSize;
+            if (offset == 0)
+                sparsePartialAddress = index.sparseIndex.addressOf(position / denseSubspaceSize);
+            Cell cell = new Cell(index.addressOf(sparsePartialAddress, offset), values[position]);
+            position++;
+            return cell;
+        }
+
+    }
+
 
     /**
      * Base class for building mixed tensors.
@@ -208,7 +225,7 @@ public class MixedTensor implements Tensor {
     public static class BoundBuilder extends Builder {
 
         /** For each sparse partial address, hold a dense subspace */
-        private final Map<TensorAddress, double[]> denseSubspaceMap = new HashMap<>();
+        private final Map<TensorAddress, double[]> denseSubspaceMap = new LinkedHashMap<>();
         private final Index.Builder indexBuilder;
         private final Index index;
         private final TensorType denseSubtype;
@@ -248,7 +265,7 @@ public class MixedTensor implements Tensor {
             TensorAddress sparsePart = index.sparsePartialAddress(address);
             long denseOffset = index.denseOffset(address);
             double[] denseSubspace = denseSubspace(sparsePart);
-            denseSubspace[(int)denseOffset] = value;
+            denseSubspace[(int)denseOffset] = type.valueType().quantize(value);
             return this;
         }
 
@@ -258,28 +275,20 @@ public class MixedTensor implements Tensor {
                 throw new IllegalArgumentException("Block should have " + denseSubspaceSize +
                                                    " values, but has only " + values.length);
             double[] denseSubspace = denseSubspace(sparsePart);
-            System.arraycopy(values, 0, denseSubspace, 0, denseSubspaceSize);
+            for (int i = 0; i < denseSubspaceSize; i++)
+                denseSubspace[i] = type.valueType().quantize(values[i]);
             return this;
         }
 
         @Override
         public MixedTensor build() {
-            long count = 0;
-            ImmutableList.Builder<Cell> builder = new ImmutableList.Builder<>();
-
+            int denseSubspaceSize = (int)denseSubspaceSize();
+            double[] values = new double[denseSubspaceMap.size() * denseSubspaceSize];
             for (Map.Entry<TensorAddress, double[]> entry : denseSubspaceMap.entrySet()) {
-                TensorAddress sparsePart = entry.getKey();
-                indexBuilder.put(sparsePart, count);
-
-                double[] denseSubspace = entry.getValue();
-                for (long offset = 0; offset < denseSubspace.length; ++offset) {
-                    TensorAddress cellAddress = index.addressOf(sparsePart, offset);
-                    double value = denseSubspace[(int)offset];
-                    builder.add(new Cell(cellAddress, value));
-                    count++;
-                }
+                int subspace = indexBuilder.put(entry.getKey());
+                System.arraycopy(entry.getValue(), 0, values, subspace * denseSubspaceSize, denseSubspaceSize);
             }
-            return new MixedTensor(type, builder.build(), indexBuilder.build());
+            return new MixedTensor(type, values, indexBuilder.build());
         }
 
     }
@@ -351,7 +360,7 @@ public class MixedTensor implements Tensor {
     }
 
     /**
-     * An immutable index into a list of cells.
+     * An immutable index into the cell values.
      * Contains additional information required
      * for handling mixed tensor addresses.
      * Assumes indexed dimensions are bound.
@@ -364,7 +373,8 @@ public class MixedTensor implements Tensor {
         private final List<TensorType.Dimension> mappedDimensions;
         private final List<TensorType.Dimension> indexedDimensions;
 
-        private ImmutableMap<TensorAddress, Long> sparseMap;
+        /** The sparse partial addresses of the dense subspaces, in the order of the subspaces */
+        private AddressIndex sparseIndex;
         private long denseSubspaceSize = -1;
 
         private Index(TensorType type) {
@@ -377,30 +387,43 @@ public class MixedTensor implements Tensor {
 
         /** Returns the index of the given address, or -1 if it is not present */
         public long indexOf(TensorAddress address) {
-            TensorAddress sparsePart = sparsePartialAddress(address);
-            if ( ! sparseMap.containsKey(sparsePart))
+            if ( ! isWithinDenseSubspace(address))
+                return -1;
+            int subspace = sparseIndex.indexOf(sparsePartialAddress(address));
+            if (subspace < 0)
                 return -1;
-            long base = sparseMap.get(sparsePart);
-            long offset = denseOffset(address);
-            return base + offset;
+            return subspace * denseSubspaceSize() + denseOffset(address);
+        }
+
+        private boolean isWithinDenseSubspace(TensorAddress address) {
+            for (int i = 0; i < type.dimensions().size() && i < address.size(); ++i) {
+                TensorType.Dimension dimension = type.dimensions().get(i);
+                if (dimension.isIndexed()) {
+                    long label = address.numericLabel(i);
+                    if (label < 0 || label >= dimension.size().get())
+                        return false;
+                }
+            }
+            return true;
         }
 
         public static class Builder {
 
             private final Index index;
-            private final ImmutableMap.Builder<TensorAddress, Long> builder;
+            private final AddressIndex.Builder sparseIndexBuilder;
 
             public Builder(TensorType type) {
                 index = new Index(type);
-                builder = new ImmutableMap.Builder<>();
+                sparseIndexBuilder = new AddressIndex.Builder(index.mappedDimensions.size());
             }
 
-            public void put(TensorAddress address, long index) {
-                builder.put(address, index);
+            /** Adds the given sparse partial address and returns the position of its dense subspace */
+            public int put(TensorAddress address) {
+                return sparseIndexBuilder.add(address);
             }
 
             public Index build() {
-                index.sparseMap = builder.build();
+                index.sparseIndex = sparseIndexBuilder.build();
                 return index;
             }
 
@@ -503,12 +526,14 @@ public class MixedTensor implements Tensor {
 
             // Exactly 1 mapped dimension
             StringBuilder b = new StringBuilder("{");
-            sparseMap.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
-                b.append(TensorAddress.labelToString(entry.getKey().label(0 )));
-                b.append(":");
-                denseSubspaceToString(tensor, entry.getValue(), b);
-                b.append(",");
-            });
+            IntStream.range(0, sparseIndex.size()).boxed()
+                     .sorted(Comparator.comparing(subspace -> sparseIndex.label(subspace, 0)))
+                     .forEach(subspace -> {
+                         b.append(TensorAddress.labelToString(sparseIndex.label(subspace, 0)));
+                         b.append(":");
+                         denseSubspaceToString(tensor, subspace * denseSubspaceSize(), b);
+                         b.append(",");
+                     });
             if (b.length() > 1)
                 b.setLength(b.length() - 1);
             b.append("}");
@@ -530,12 +555,7 @@ public class MixedTensor implements Tensor {
                     b.append("[");
 
                 // value
-                if (type.valueType() == TensorType.Value.DOUBLE)
-                    b.append(getDouble(subspaceIndex, index, tensor));
-                else if (tensor.type().valueType() == TensorType.Value.FLOAT)
-                    b.append(getDouble(subspaceIndex, index, tensor)); // TODO: Really use floats
-                else
-                    throw new IllegalStateException("Unexpected value type " + type.valueType());
+                b.append(getDouble(subspaceIndex, index, tensor)); // TODO: Really use floats for other value types
 
                 // end bracket and comma
                 for (int i = 0; i < indexes.nextDimensionsAtEnd(); i++)
@@ -546,7 +566,7 @@ public class MixedTensor implements Tensor {
         }
 
         private double getDouble(long indexedSubspaceIndex, long indexInIndexedSubspace, MixedTensor tensor) {
-            return tensor.cells.get((int)(indexedSubspaceIndex + indexInIndexedSubspace)).getDoubleValue();
+            return tensor.values[(int)(indexedSubspaceIndex + indexInIndexedSubspace)];
         }
 
     }
@@ -566,12 +586,12 @@ public class MixedTensor implements Tensor {
 
         @Override
         public void cellByDirectIndex(long index, double value) {
-            values[(int)index] = value;
+            values[(int)index] = type.valueType().quantize(value);
         }
 
         @Override
         public void cellByDirectIndex(long index, float value) {
-            values[(int)index] = value;
+            cellByDirectIndex(index, (double)value);
         }
 
     }
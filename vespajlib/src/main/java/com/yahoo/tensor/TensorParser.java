@@ -199,10 +199,8 @@ class TensorParser {
                 try {
                     if (cellValueType == TensorType.Value.DOUBLE)
                         return Double.parseDouble(cellValueString);
-                    else if (cellValueType == TensorType.Value.FLOAT)
+                    else // float, bfloat16 and int8 cells are held as floats
                         return Float.parseFloat(cellValueString);
-                    else
-                        throw new IllegalArgumentException(cellValueType + " is not supported");
                 } catch (NumberFormatException e) {
                     throw new IllegalArgumentException("At value position " + position + ": '" +
                                                        cellValueString + "' is not a valid " + cellValueType);
@@ -289,7 +287,7 @@ class TensorParser {
             Number number = consumeNumber(builder.type().valueType());
             if (builder.type().valueType() == TensorType.Value.DOUBLE)
                 builder.cellByDirectIndex(indexes.toSourceValueIndex(), (Double)number);
-            else if (builder.type().valueType() == TensorType.Value.FLOAT)
+            else
                 builder.cellByDirectIndex(indexes.toSourceValueIndex(), (Float)number);
         }
 
@@ -353,7 +351,7 @@ class TensorParser {
             Number number = consumeNumber(builder.type().valueType());
             if (builder.type().valueType() == TensorType.Value.DOUBLE)
                 builder.cell(address, (Double)number);
-            else if (builder.type().valueType() == TensorType.Value.FLOAT)
+            else
                 builder.cell(address, (Float)number);
         }
 
@@ -390,10 +388,8 @@ class TensorParser {
                 try {
                     if (cellValueType == TensorType.Value.DOUBLE)
                         builder.cell(address, Double.parseDouble(cellValueString));
-                    else if (cellValueType == TensorType.Value.FLOAT)
+                    else // float, bfloat16 and int8 cells are held as floats
                         builder.cell(address, Float.parseFloat(cellValueString));
-                    else
-                        throw new IllegalArgumentException(cellValueType + " is not supported");
                 }
                 catch (NumberFormatException e) {
                     throw new IllegalArgumentException("At " + address.toString(builder.type()) + ": '" +
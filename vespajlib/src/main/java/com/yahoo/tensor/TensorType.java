@@ -29,11 +29,14 @@ public class TensorType {
 
     static Ascii7BitMatcher labelMatcher = new Ascii7BitMatcher("-_@" + charsAndNumbers(), "_@$" + charsAndNumbers());
 
-    /** The permissible cell value types. Default is double. */
+    /**
+     * The permissible cell value types. Default is double.
+     * The bfloat16 and int8 types are only supported in containers: Content nodes only support double and float.
+     */
     public enum Value {
 
         // Types added must also be added to TensorTypeParser.parseValueTypeSpec, serialization, and largestOf below
-        DOUBLE("double"), FLOAT("float");
+        DOUBLE("double"), FLOAT("float"), BFLOAT16("bfloat16"), INT8("int8");
 
         private final String id;
 
@@ -59,7 +62,52 @@ public class TensorType {
 
         public static Value largestOf(Value value1, Value value2) {
             if (value1 == DOUBLE || value2 == DOUBLE) return DOUBLE;
-            return FLOAT;
+            if (value1 == FLOAT || value2 == FLOAT) return FLOAT;
+            if (value1 == BFLOAT16 || value2 == BFLOAT16) return BFLOAT16;
+            return INT8;
+        }
+
+        /** Returns whether cells of this type hold less precision than a float, such that values must be quantized */
+        public boolean isQuantized() {
+            return this == BFLOAT16 || this == INT8;
+        }
+
+        /**
+         * Returns the given value as it is held in a cell of this type: bfloat16 values are rounded to the nearest
+         * bfloat16, and int8 values are rounded to the nearest integer and clamped to [-128, 127].
+         * Values of other types are returned unchanged.
+         *
+         * @throws IllegalArgumentException if this is int8 and the value is NaN
+         */
+        public double quantize(double value) {
+            switch (this) {
+                case BFLOAT16: return bfloat16(value);
+                case INT8: return int8(value);
+                default: return value;
+            }
+        }
+
+        private static float bfloat16(double value) {
+            float floatValue = (float)value;
+            if (Float.isNaN(floatValue)) return floatValue;
+            int bits = Float.floatToRawIntBits(floatValue);
+            bits += 0x7fff + ((bits >>> 16) & 1); // round to nearest, ties to even
+            return Float.intBitsToFloat(bits & 0xffff0000);
+        }
+
+        private static double int8(double value) {
+            if (Double.isNaN(value))
+                throw new IllegalArgumentException("An int8 tensor cell can not hold NaN");
+            return Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, Math.rint(value)));
+        }
+
+        /**
+         * Returns the value type of the results of computing with cells of this type:
+         * bfloat16 and int8 are storage types only, so computations on them produce floats.
+         */
+        public Value decay() {
+            if (this == BFLOAT16 || this == INT8) return FLOAT;
+            return this;
         }
 
         @Override
@@ -69,7 +117,10 @@ public class TensorType {
             switch (valueTypeString) {
                 case "double" : return Value.DOUBLE;
                 case "float" : return Value.FLOAT;
-                default : throw new IllegalArgumentException("Value type must be either 'double' or 'float'" +
+                case "bfloat16" : return Value.BFLOAT16;
+                case "int8" : return Value.INT8;
+                default : throw new IllegalArgumentException("Value type must be either 'double', 'float', " +
+                                                             "'bfloat16' or 'int8'" +
                                                              " but was '" + valueTypeString + "'");
             }
         }
@@ -502,7 +553,15 @@ public class TensorType {
         }
 
         public Builder(boolean allowDifferentSizes, TensorType ... types) {
-            this.valueType = TensorType.combinedValueType(types);
+            this(allowDifferentSizes, TensorType.combinedValueType(types), types);
+        }
+
+        /**
+         * Creates a builder containing a combination of the dimensions of the given types, as above,
+         * and the given value type
+         */
+        public Builder(boolean allowDifferentSizes, Value valueType, TensorType ... types) {
+            this.valueType = valueType;
             for (TensorType type : types)
                 addDimensionsOf(type, allowDifferentSizes);
         }
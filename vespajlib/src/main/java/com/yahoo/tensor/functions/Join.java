@@ -46,10 +46,13 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         this.combinator = combinator;
     }
 
-    /** Returns the type resulting from applying Join to the two given types */
+    /**
+     * Returns the type resulting from applying Join to the two given types.
+     * The value type is the largest of the argument value types, decayed to a type which can hold computed values.
+     */
     public static TensorType outputType(TensorType a, TensorType b) {
         try {
-            return new TensorType.Builder(false, a, b).build();
+            return new TensorType.Builder(false, TensorType.combinedValueType(a, b).decay(), a, b).build();
         }
         catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Can not join " + a + " and " + b, e);
@@ -93,7 +96,9 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
 
     static Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
         // Choose join algorithm
-        if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.type().dimensions().get(0).name().equals(b.type().dimensions().get(0).name()))
+        if (isDenseJoin(a, b, joinedType))
+            return denseJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
+        else if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.type().dimensions().get(0).name().equals(b.type().dimensions().get(0).name()))
             return indexedVectorJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
         else if (joinedType.dimensions().size() == a.type().dimensions().size() && joinedType.dimensions().size() == b.type().dimensions().size())
             return singleSpaceJoin(a, b, joinedType, combinator);
@@ -106,6 +111,82 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
 
     }
 
+    /**
+     * Returns whether these are non-empty indexed tensors having the same size in all the dimensions they share,
+     * such that every cell of the joined tensor is produced from one cell in each of them
+     */
+    private static boolean isDenseJoin(Tensor a, Tensor b, TensorType joinedType) {
+        if (joinedType.dimensions().isEmpty()) return false;
+        if ( ! (a instanceof IndexedTensor) || ! (b instanceof IndexedTensor)) return false;
+        if (a.size() == 0 || b.size() == 0) return false;
+        DimensionSizes aSizes = ((IndexedTensor)a).dimensionSizes();
+        DimensionSizes bSizes = ((IndexedTensor)b).dimensionSizes();
+        int[] aToB = mapIndexes(a.type(), b.type());
+        for (int i = 0; i < aToB.length; i++) {
+            if (aToB[i] >= 0 && aSizes.size(i) != bSizes.size(aToB[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Joins two indexed tensors by walking the cells of the joined tensor in value order,
+     * while stepping through the cells of each argument using its stride in each joined dimension.
+     */
+    private static Tensor denseJoin(IndexedTensor a, IndexedTensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+        DimensionSizes joinedSizes = joinedSize(joinedType, a, b);
+        long[] aStrides = stridesIn(joinedType, a);
+        long[] bStrides = stridesIn(joinedType, b);
+        int innermost = joinedSizes.dimensions() - 1;
+        long innerSize = joinedSizes.size(innermost);
+        long aInnerStride = aStrides[innermost];
+        long bInnerStride = bStrides[innermost];
+
+        double[] values = new double[(int)joinedSizes.totalSize()];
+        long[] indexes = new long[innermost];
+        long aStart = 0;
+        long bStart = 0;
+        for (int valueIndex = 0; valueIndex < values.length; ) {
+            long aIndex = aStart;
+            long bIndex = bStart;
+            for (long i = 0; i < innerSize; i++, aIndex += aInnerStride, bIndex += bInnerStride)
+                values[valueIndex++] = combinator.applyAsDouble(a.get(aIndex), b.get(bIndex));
+
+            for (int d = innermost - 1; d >= 0; d--) { // step to the start of the next innermost run
+                aStart += aStrides[d];
+                bStart += bStrides[d];
+                if (++indexes[d] < joinedSizes.size(d)) break;
+                aStart -= aStrides[d] * indexes[d];
+                bStart -= bStrides[d] * indexes[d];
+                indexes[d] = 0;
+            }
+        }
+        return IndexedTensor.Builder.of(joinedType, joinedSizes, values).build();
+    }
+
+    /**
+     * Returns the distance between consecutive values along each dimension of the given joined type
+     * in the given tensor, which is 0 for the dimensions the tensor does not have
+     */
+    private static long[] stridesIn(TensorType joinedType, IndexedTensor tensor) {
+        long[] tensorStrides = strides(tensor.dimensionSizes());
+        int[] joinedToTensor = mapIndexes(joinedType, tensor.type());
+        long[] strides = new long[joinedToTensor.length];
+        for (int i = 0; i < strides.length; i++)
+            strides[i] = joinedToTensor[i] < 0 ? 0 : tensorStrides[joinedToTensor[i]];
+        return strides;
+    }
+
+    /** Returns the distance between consecutive values along each dimension of a tensor of the given sizes */
+    static long[] strides(DimensionSizes sizes) {
+        long[] strides = new long[sizes.dimensions()];
+        long stride = 1;
+        for (int i = strides.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= sizes.size(i);
+        }
+        return strides;
+    }
+
     private static boolean hasSingleIndexedDimension(Tensor tensor) {
         return tensor.type().dimensions().size() == 1 && tensor.type().dimensions().get(0).isIndexed();
     }
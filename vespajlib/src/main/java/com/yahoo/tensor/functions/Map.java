@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor.functions;
 
+import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -31,7 +32,12 @@ public class Map<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYPE
         this.mapper = mapper;
     }
 
-    public static TensorType outputType(TensorType inputType) { return inputType; }
+    /** Returns the type resulting from applying Map to the given type: The same, with the value type decayed */
+    public static TensorType outputType(TensorType inputType) {
+        TensorType.Value valueType = inputType.valueType().decay();
+        if (valueType == inputType.valueType()) return inputType;
+        return new TensorType(valueType, inputType.dimensions());
+    }
 
     public TensorFunction<NAMETYPE> argument() { return argument; }
     public DoubleUnaryOperator mapper() { return mapper; }
@@ -53,13 +59,16 @@ public class Map<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYPE
 
     @Override
     public TensorType type(TypeContext<NAMETYPE> context) {
-        return argument.type(context);
+        return outputType(argument.type(context));
     }
 
     @Override
     public Tensor evaluate(EvaluationContext<NAMETYPE> context) {
         Tensor argument = argument().evaluate(context);
-        Tensor.Builder builder = Tensor.Builder.of(argument.type());
+        if (argument instanceof IndexedTensor)
+            return evaluateIndexed((IndexedTensor)argument);
+
+        Tensor.Builder builder = Tensor.Builder.of(outputType(argument.type()));
         for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
             java.util.Map.Entry<TensorAddress, Double> cell = i.next();
             builder.cell(cell.getKey(), mapper.applyAsDouble(cell.getValue()));
@@ -67,6 +76,15 @@ public class Map<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYPE
         return builder.build();
     }
 
+    /** Maps the values of an indexed tensor directly into a builder of the same sizes and output value type */
+    private Tensor evaluateIndexed(IndexedTensor argument) {
+        IndexedTensor.BoundBuilder builder =
+                (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(outputType(argument.type()), argument.dimensionSizes());
+        for (long i = 0; i < argument.size(); i++)
+            builder.cellByDirectIndex(i, mapper.applyAsDouble(argument.get(i)));
+        return builder.build();
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "map(" + argument.toString(context) + ", " + mapper + ")";
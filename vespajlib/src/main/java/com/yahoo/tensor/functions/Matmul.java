@@ -2,9 +2,12 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.EvaluationContext;
 import com.yahoo.tensor.evaluation.Name;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -44,6 +47,16 @@ public class Matmul<NAMETYPE extends Name> extends CompositeTensorFunction<NAMET
                             dimension);
     }
 
+    /** Evaluates this as a reduce-join, which multiplies dense matrices without joining them first */
+    @Override
+    public Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        Tensor a = argument1.evaluate(context);
+        Tensor b = argument2.evaluate(context);
+        ReduceJoin<NAMETYPE> reduceJoin = new ReduceJoin<>(argument1, argument2, ScalarFunctions.multiply(),
+                                                           Reduce.Aggregator.sum, Collections.singletonList(dimension));
+        return reduceJoin.evaluate(a, b, Join.outputType(a.type(), b.type()));
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "matmul(" + argument1.toString(context) + ", " + argument2.toString(context) + ", " + dimension + ")";
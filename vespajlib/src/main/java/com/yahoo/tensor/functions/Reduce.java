@@ -2,6 +2,7 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
@@ -62,7 +63,7 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
     }
 
     public static TensorType outputType(TensorType inputType, List<String> reduceDimensions) {
-        TensorType.Builder b = new TensorType.Builder(inputType.valueType());
+        TensorType.Builder b = new TensorType.Builder(inputType.valueType().decay());
         if (reduceDimensions.isEmpty()) return b.build(); // means reduce all
         for (TensorType.Dimension dimension : inputType.dimensions()) {
             if ( ! reduceDimensions.contains(dimension.name()))
@@ -110,7 +111,7 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
     }
 
     private static TensorType type(TensorType argumentType, List<String> dimensions) {
-        TensorType.Builder builder = new TensorType.Builder(argumentType.valueType());
+        TensorType.Builder builder = new TensorType.Builder(argumentType.valueType().decay());
         if (dimensions.isEmpty()) return builder.build(); // means reduce all
         for (TensorType.Dimension dimension : argumentType.dimensions())
             if ( ! dimensions.contains(dimension.name())) // keep
@@ -130,13 +131,16 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
 
         // Special case: Reduce all
         if (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
-            if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
-                return reduceIndexedVector((IndexedTensor)argument, aggregator);
+            if (argument instanceof IndexedTensor)
+                return reduceAllIndexed((IndexedTensor)argument, aggregator);
             else
                 return reduceAllGeneral(argument, aggregator);
 
         TensorType reducedType = type(argument.type(), dimensions);
 
+        if (argument instanceof IndexedTensor && argument.size() > 0)
+            return reduceIndexed((IndexedTensor)argument, reducedType, dimensions, aggregator);
+
         // Reduce cells
         Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
         for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
@@ -173,13 +177,79 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
-    private static Tensor reduceIndexedVector(IndexedTensor argument, Aggregator aggregator) {
+    private static Tensor reduceAllIndexed(IndexedTensor argument, Aggregator aggregator) {
         ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
-        for (int i = 0; i < argument.dimensionSizes().size(0); i++)
+        for (long i = 0; i < argument.size(); i++)
             valueAggregator.aggregate(argument.get(i));
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
+    /** Reduces some dimensions of an indexed tensor by addressing its values directly */
+    private static Tensor reduceIndexed(IndexedTensor argument, TensorType reducedType, List<String> dimensions,
+                                        Aggregator aggregator) {
+        DimensionSizes sizes = argument.dimensionSizes();
+        DimensionSizes.Builder reducedSizes = new DimensionSizes.Builder(reducedType.dimensions().size());
+        int keptDimensions = 0;
+        boolean reducingInnermost = true; // whether the reduced dimensions are all after the kept ones
+        for (int i = 0; i < sizes.dimensions(); i++) {
+            if (dimensions.contains(argument.type().dimensions().get(i).name())) continue;
+            reducedSizes.set(keptDimensions++, sizes.size(i));
+            if (keptDimensions != i + 1)
+                reducingInnermost = false;
+        }
+        DimensionSizes resultSizes = reducedSizes.build();
+        double[] values = new double[(int)resultSizes.totalSize()];
+
+        if (reducingInnermost)
+            reduceContiguous(argument, values, aggregator);
+        else
+            reduceStrided(argument, resultSizes, dimensions, values, aggregator);
+        return IndexedTensor.Builder.of(reducedType, resultSizes, values).build();
+    }
+
+    /** Reduces the consecutive runs of values which make up each result value */
+    private static void reduceContiguous(IndexedTensor argument, double[] values, Aggregator aggregator) {
+        long runLength = argument.size() / values.length;
+        ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
+        long valueIndex = 0;
+        for (int i = 0; i < values.length; i++) {
+            valueAggregator.reset();
+            for (long j = 0; j < runLength; j++)
+                valueAggregator.aggregate(argument.get(valueIndex++));
+            values[i] = valueAggregator.aggregatedValue();
+        }
+    }
+
+    /** Walks the argument values in order, aggregating each into the result value it is reduced to */
+    private static void reduceStrided(IndexedTensor argument, DimensionSizes resultSizes, List<String> dimensions,
+                                      double[] values, Aggregator aggregator) {
+        DimensionSizes sizes = argument.dimensionSizes();
+        long[] resultStrides = Join.strides(resultSizes);
+        long[] strides = new long[sizes.dimensions()]; // the result stride of each argument dimension, or 0
+        for (int i = 0, keptDimension = 0; i < strides.length; i++) {
+            if ( ! dimensions.contains(argument.type().dimensions().get(i).name()))
+                strides[i] = resultStrides[keptDimension++];
+        }
+
+        ValueAggregator[] valueAggregators = new ValueAggregator[values.length];
+        for (int i = 0; i < valueAggregators.length; i++)
+            valueAggregators[i] = ValueAggregator.ofType(aggregator);
+
+        long[] indexes = new long[strides.length];
+        long resultIndex = 0;
+        for (long valueIndex = 0; valueIndex < argument.size(); valueIndex++) {
+            valueAggregators[(int)resultIndex].aggregate(argument.get(valueIndex));
+            for (int d = strides.length - 1; d >= 0; d--) {
+                resultIndex += strides[d];
+                if (++indexes[d] < sizes.size(d)) break;
+                resultIndex -= strides[d] * indexes[d];
+                indexes[d] = 0;
+            }
+        }
+        for (int i = 0; i < values.length; i++)
+            values[i] = valueAggregators[i].aggregatedValue();
+    }
+
     static abstract class ValueAggregator {
 
         static ValueAggregator ofType(Aggregator aggregator) {
@@ -28,6 +28,9 @@ import java.util.stream.Collectors;
  */
 public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<NAMETYPE> {
 
+    /** The approximate number of bytes of the rows of the second matrix to reduce-join with all rows of the first */
+    private static final long blockBytes = 64 * 1024;
+
     private final TensorFunction<NAMETYPE> argumentA, argumentB;
     private final DoubleBinaryOperator combinator;
     private final Reduce.Aggregator aggregator;
@@ -72,7 +75,11 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
         Tensor a = argumentA.evaluate(context);
         Tensor b = argumentB.evaluate(context);
         TensorType joinedType = new TensorType.Builder(a.type(), b.type()).build();
+        return evaluate(a, b, joinedType);
+    }
 
+    /** Evaluates this on the given arguments, where the given joined type is the type of joining them */
+    Tensor evaluate(Tensor a, Tensor b, TensorType joinedType) {
         if (canOptimize(a, b)) {
             return evaluate((IndexedTensor)a, (IndexedTensor)b, joinedType);
         }
@@ -80,8 +87,9 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
     }
 
     /**
-     * Tests whether or not the reduce is over the join dimensions. The
-     * remaining logic in this class assumes this to be true.
+     * Tests whether or not the reduce is over the join dimensions, and all the
+     * reduce dimensions are in both tensors. The remaining logic in this class
+     * assumes this to be true.
      *
      * If no dimensions are given, the join must be on all tensor dimensions.
      *
@@ -111,6 +119,10 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
                 if (!dimensions.contains(dimension.name()))
                     return false;
             }
+            for (String dimension : dimensions) {
+                if (a.type().dimension(dimension).isEmpty() || b.type().dimension(dimension).isEmpty())
+                    return false;
+            }
         }
         return true;
     }
@@ -136,6 +148,12 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
                 return matrixMatrixProduct(a, b, reducedType);
             }
         }
+        if (isSumOfProducts() && a.type().dimensions().size() == 2 && b.type().dimensions().size() == 2) {
+            if (reduceDimensionIs(1, a, 0, b))
+                return matrixProduct(a, b, reducedType);
+            if (reduceDimensionIs(0, a, 1, b))
+                return matrixProduct(b, a, reducedType);
+        }
         return evaluateGeneral(a, b, reducedType);
     }
 
@@ -143,66 +161,114 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
         if ( a.type().dimensions().size() != 1 || b.type().dimensions().size() != 1) {
             throw new IllegalArgumentException("Wrong dimension sizes for tensors for vector-vector product");
         }
-        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
         long commonSize = Math.min(a.dimensionSizes().size(0), b.dimensionSizes().size(0));
 
-        Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
-        for (int ic = 0; ic < commonSize; ++ic) {
-            double va = a.get(ic);
-            double vb = b.get(ic);
-            agg.aggregate(combinator.applyAsDouble(va, vb));
-        }
-        builder.cellByDirectIndex(0, agg.aggregatedValue());
-        return builder.build();
+        double[] values = new double[1];
+        values[0] = reduceJoin(a, 0, b, 0, commonSize, false, Reduce.ValueAggregator.ofType(aggregator));
+        return IndexedTensor.Builder.of(reducedType, values).build();
     }
 
     private Tensor vectorMatrixProduct(IndexedTensor a, IndexedTensor b, TensorType reducedType, boolean swapped) {
         if ( a.type().dimensions().size() != 1 || b.type().dimensions().size() != 2) {
             throw new IllegalArgumentException("Wrong dimension sizes for tensors for vector-matrix product");
         }
-        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
         DimensionSizes sizesA = a.dimensionSizes();
         DimensionSizes sizesB = b.dimensionSizes();
+        long commonSize = Math.min(sizesA.size(0), sizesB.size(1));
 
+        double[] values = new double[(int)sizesB.size(0)];
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
-        for (int ib = 0; ib < sizesB.size(0); ++ib) {
-            agg.reset();
-            for (int ic = 0; ic < Math.min(sizesA.size(0), sizesB.size(1)); ++ic) {
-                double va = a.get(ic);
-                double vb = b.get(ib * sizesB.size(1) + ic);
-                double result = swapped ? combinator.applyAsDouble(vb, va) : combinator.applyAsDouble(va, vb);
-                agg.aggregate(result);
-            }
-            builder.cellByDirectIndex(ib, agg.aggregatedValue());
-        }
-        return builder.build();
+        for (int ib = 0; ib < values.length; ++ib)
+            values[ib] = reduceJoin(a, 0, b, ib * sizesB.size(1), commonSize, swapped, agg);
+        return IndexedTensor.Builder.of(reducedType, values).build();
     }
 
+    /**
+     * Multiplies two matrices which both have the reduce dimension innermost. Rows of b are
+     * processed in blocks small enough to stay in cache while all rows of a are reduce-joined with them.
+     */
     private Tensor matrixMatrixProduct(IndexedTensor a, IndexedTensor b, TensorType reducedType) {
         if ( a.type().dimensions().size() != 2 || b.type().dimensions().size() != 2) {
             throw new IllegalArgumentException("Wrong dimension sizes for tensors for matrix-matrix product");
         }
-        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
         DimensionSizes sizesA = a.dimensionSizes();
         DimensionSizes sizesB = b.dimensionSizes();
         int iaToReduced = reducedType.indexOfDimension(a.type().dimensions().get(0).name()).get();
         int ibToReduced = reducedType.indexOfDimension(b.type().dimensions().get(0).name()).get();
         long strideA = iaToReduced < ibToReduced ? sizesB.size(0) : 1;
         long strideB = ibToReduced < iaToReduced ? sizesA.size(0) : 1;
+        long commonSize = Math.min(sizesA.size(1), sizesB.size(1));
+        long blockSize = Math.max(1, blockBytes / (Double.BYTES * Math.max(1, sizesB.size(1))));
 
+        double[] values = new double[(int)(sizesA.size(0) * sizesB.size(0))];
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
-        for (int ia = 0; ia < sizesA.size(0); ++ia) {
-            for (int ib = 0; ib < sizesB.size(0); ++ib) {
-                agg.reset();
-                for (int ic = 0; ic < Math.min(sizesA.size(1), sizesB.size(1)); ++ic) {
+        for (long blockStart = 0; blockStart < sizesB.size(0); blockStart += blockSize) {
+            long blockEnd = Math.min(blockStart + blockSize, sizesB.size(0));
+            for (long ia = 0; ia < sizesA.size(0); ++ia) {
+                for (long ib = blockStart; ib < blockEnd; ++ib) {
+                    values[(int)(ia * strideA + ib * strideB)] = reduceJoin(a, ia * sizesA.size(1),
+                                                                            b, ib * sizesB.size(1),
+                                                                            commonSize, false, agg);
+                }
+            }
+        }
+        return IndexedTensor.Builder.of(reducedType, values).build();
+    }
+
+    /**
+     * Joins the given number of consecutive values starting at the given value indexes in a and b,
+     * and returns the reduction of the joined values.
+     */
+    private double reduceJoin(IndexedTensor a, long startA, IndexedTensor b, long startB, long length,
+                              boolean swapped, Reduce.ValueAggregator agg) {
+        if (isSumOfProducts()) { // the common case, done without calling the functions
+            double sum = 0.0;
+            for (long ic = 0; ic < length; ++ic)
+                sum += a.get(startA + ic) * b.get(startB + ic);
+            return sum;
+        }
+        agg.reset();
+        for (long ic = 0; ic < length; ++ic) {
+            double va = a.get(startA + ic);
+            double vb = b.get(startB + ic);
+            agg.aggregate(swapped ? combinator.applyAsDouble(vb, va) : combinator.applyAsDouble(va, vb));
+        }
+        return agg.aggregatedValue();
+    }
+
+    private boolean isSumOfProducts() {
+        return aggregator == Reduce.Aggregator.sum && combinator instanceof ScalarFunctions.Multiply;
+    }
+
+    /**
+     * Multiplies matrix a having the reduce dimension innermost with matrix b having it outermost,
+     * such that the rows of a are also the rows of the product.
+     * Each row of the product is accumulated from the rows of b, which are processed in blocks small enough
+     * to stay in cache while all rows of a are multiplied with them.
+     */
+    private Tensor matrixProduct(IndexedTensor a, IndexedTensor b, TensorType reducedType) {
+        DimensionSizes sizesA = a.dimensionSizes();
+        DimensionSizes sizesB = b.dimensionSizes();
+        long rows = sizesA.size(0);
+        long columns = sizesB.size(1);
+        long commonSize = Math.min(sizesA.size(1), sizesB.size(0));
+        long blockSize = Math.max(1, blockBytes / (Double.BYTES * Math.max(1, columns)));
+
+        double[] product = new double[(int)(rows * columns)];
+        for (long blockStart = 0; blockStart < commonSize; blockStart += blockSize) {
+            long blockEnd = Math.min(blockStart + blockSize, commonSize);
+            for (long ia = 0; ia < rows; ++ia) {
+                int productRow = (int)(ia * columns);
+                for (long ic = blockStart; ic < blockEnd; ++ic) {
                     double va = a.get(ia * sizesA.size(1) + ic);
-                    double vb = b.get(ib * sizesB.size(1) + ic);
-                    agg.aggregate(combinator.applyAsDouble(va, vb));
+                    long rowB = ic * columns;
+                    for (int ib = 0; ib < columns; ++ib)
+                        product[productRow + ib] += va * b.get(rowB + ib);
                 }
-                builder.cellByDirectIndex(ia * strideA + ib * strideB, agg.aggregatedValue());
             }
         }
-        return builder.build();
+
+        return IndexedTensor.Builder.of(reducedType, product).build();
     }
 
     private Tensor evaluateGeneral(IndexedTensor a, IndexedTensor b, TensorType reducedType) {
@@ -290,12 +356,7 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
      * dimension in both tensors.
      */
     private boolean reduceDimensionIsInnermost(Tensor a, Tensor b) {
-        List<String> reducingDimensions = dimensions;
-        if (reducingDimensions.isEmpty()) {
-            reducingDimensions = dimensionsInCommon((IndexedTensor)a, (IndexedTensor)b).dimensions().stream()
-                    .map(TensorType.Dimension::name)
-                    .collect(Collectors.toList());
-        }
+        List<String> reducingDimensions = reducingDimensions(a, b);
         if (reducingDimensions.size() != 1) {
             return false;
         }
@@ -313,6 +374,29 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
         return true;
     }
 
+    /**
+     * Tests if there is exactly one reduce dimension and it is at the given index
+     * in the dimensions of both tensors.
+     */
+    private boolean reduceDimensionIs(int indexInA, Tensor a, int indexInB, Tensor b) {
+        List<String> reducingDimensions = reducingDimensions(a, b);
+        if (reducingDimensions.size() != 1) {
+            return false;
+        }
+        String dimension = reducingDimensions.get(0);
+        return a.type().dimensions().get(indexInA).name().equals(dimension) &&
+               b.type().dimensions().get(indexInB).name().equals(dimension);
+    }
+
+    private List<String> reducingDimensions(Tensor a, Tensor b) {
+        if ( ! dimensions.isEmpty()) {
+            return dimensions;
+        }
+        return dimensionsInCommon((IndexedTensor)a, (IndexedTensor)b).dimensions().stream()
+                .map(TensorType.Dimension::name)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "reduce_join(" + argumentA.toString(context) + ", " +
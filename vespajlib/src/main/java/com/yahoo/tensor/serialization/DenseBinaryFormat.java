@@ -16,7 +16,7 @@ import java.util.function.Supplier;
  * Implementation of a dense binary format for a tensor on the form:
  *
  * Sorted dimensions = num_dimensions [dimension_str_len dimension_str_bytes dimension_size_int]*
- * Cell_values = [double, double, double, ...]*
+ * Cell_values = [double, double, double, ...]* (or float, bfloat16 or int8, given by the value type of the format)
  * where values are encoded in order of increasing indexes in each dimension, increasing
  * indexes of later dimensions in the dimension type before earlier.
  *
@@ -53,6 +53,8 @@ public class DenseBinaryFormat implements BinaryFormat {
         switch (serializationValueType) {
             case DOUBLE: encodeDoubleCells(tensor, buffer); break;
             case FLOAT: encodeFloatCells(tensor, buffer); break;
+            case BFLOAT16: encodeBFloat16Cells(tensor, buffer); break;
+            case INT8: encodeInt8Cells(tensor, buffer); break;
         }
     }
 
@@ -66,31 +68,52 @@ public class DenseBinaryFormat implements BinaryFormat {
             buffer.putFloat(tensor.getFloat(i));
     }
 
+    private void encodeBFloat16Cells(IndexedTensor tensor, GrowableByteBuffer buffer) {
+        for (int i = 0; i < tensor.size(); i++)
+            buffer.putShort(TypedBinaryFormat.bFloat16BitsFromFloat(tensor.getFloat(i)));
+    }
+
+    private void encodeInt8Cells(IndexedTensor tensor, GrowableByteBuffer buffer) {
+        for (int i = 0; i < tensor.size(); i++)
+            buffer.put((byte)tensor.getFloat(i));
+    }
+
     @Override
     public Tensor decode(Optional<TensorType> optionalType, GrowableByteBuffer buffer) {
-        TensorType type;
-        DimensionSizes sizes;
-        if (optionalType.isPresent()) {
-            type = optionalType.get();
-            if (type.valueType() != this.serializationValueType) {
-                throw new IllegalArgumentException("Tensor value type mismatch. Value type " + type.valueType() +
-                                                   " is not " + this.serializationValueType);
-            }
-            TensorType serializedType = decodeType(buffer);
-            if ( ! serializedType.isAssignableTo(type))
-                throw new IllegalArgumentException("Type/instance mismatch: A tensor of type " + serializedType +
-                                                   " cannot be assigned to type " + type);
-            sizes = sizesFromType(serializedType);
-        }
-        else {
-            type = decodeType(buffer);
-            sizes = sizesFromType(type);
-        }
+        TensorType serializedType = decodeType(buffer);
+        TensorType type = resultType(optionalType, serializedType);
+        DimensionSizes sizes = sizesFromType(serializedType);
         Tensor.Builder builder = Tensor.Builder.of(type, sizes);
         decodeCells(sizes, buffer, (IndexedTensor.BoundBuilder)builder);
         return builder.build();
     }
 
+    /**
+     * Decodes the type of the tensor in the given buffer, and returns a tensor which reads its values
+     * from the remainder of the buffer, without copying them.
+     */
+    Tensor decodeView(Optional<TensorType> optionalType, GrowableByteBuffer buffer) {
+        TensorType serializedType = decodeType(buffer);
+        return IndexedTensor.viewOf(resultType(optionalType, serializedType),
+                                    sizesFromType(serializedType),
+                                    buffer.getByteBuffer());
+    }
+
+    /** Returns the given type if present, after validating that the serialized type can be assigned to it */
+    private TensorType resultType(Optional<TensorType> optionalType, TensorType serializedType) {
+        if ( ! optionalType.isPresent()) return serializedType;
+
+        TensorType type = optionalType.get();
+        if (type.valueType() != this.serializationValueType) {
+            throw new IllegalArgumentException("Tensor value type mismatch. Value type " + type.valueType() +
+                                               " is not " + this.serializationValueType);
+        }
+        if ( ! serializedType.isAssignableTo(type))
+            throw new IllegalArgumentException("Type/instance mismatch: A tensor of type " + serializedType +
+                                               " cannot be assigned to type " + type);
+        return type;
+    }
+
     private TensorType decodeType(GrowableByteBuffer buffer) {
         TensorType.Builder builder = new TensorType.Builder(serializationValueType);
         int dimensionCount = buffer.getInt1_4Bytes();
@@ -111,6 +134,8 @@ public class DenseBinaryFormat implements BinaryFormat {
         switch (serializationValueType) {
             case DOUBLE: decodeDoubleCells(sizes, builder, buffer); break;
             case FLOAT: decodeFloatCells(sizes, builder, buffer); break;
+            case BFLOAT16: decodeBFloat16Cells(sizes, builder, buffer); break;
+            case INT8: decodeInt8Cells(sizes, builder, buffer); break;
         }
     }
 
@@ -124,4 +149,14 @@ public class DenseBinaryFormat implements BinaryFormat {
             builder.cellByDirectIndex(i, buffer.getFloat());
     }
 
+    private void decodeBFloat16Cells(DimensionSizes sizes, IndexedTensor.BoundBuilder builder, GrowableByteBuffer buffer) {
+        for (long i = 0; i < sizes.totalSize(); i++)
+            builder.cellByDirectIndex(i, TypedBinaryFormat.floatFromBFloat16Bits(buffer.getShort()));
+    }
+
+    private void decodeInt8Cells(DimensionSizes sizes, IndexedTensor.BoundBuilder builder, GrowableByteBuffer buffer) {
+        for (long i = 0; i < sizes.totalSize(); i++)
+            builder.cellByDirectIndex(i, (float)buffer.get());
+    }
+
 }
@@ -1,7 +1,7 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor.serialization;
 
-import com.yahoo.lang.MutableInteger;
+import com.yahoo.lang.MutableLong;
 import com.yahoo.slime.ArrayTraverser;
 import com.yahoo.slime.Cursor;
 import com.yahoo.slime.Inspector;
@@ -9,6 +9,7 @@ import com.yahoo.slime.JsonDecoder;
 import com.yahoo.slime.ObjectTraverser;
 import com.yahoo.slime.Slime;
 import com.yahoo.slime.Type;
+import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.MixedTensor;
 import com.yahoo.tensor.Tensor;
@@ -19,7 +20,7 @@ import java.util.Iterator;
 
 /**
  * Writes tensors on the JSON format used in Vespa tensor document fields:
- * A JSON map containing a 'cells' or 'values' array.
+ * A JSON map containing a 'cells' or 'values' array, or for dense tensors, just the array of values.
  * See <a href="http://docs.vespa.ai/documentation/reference/document-json-put-format.html#tensor">
  * http://docs.vespa.ai/documentation/reference/document-json-put-format.html#tensor</a>
  *
@@ -65,7 +66,9 @@ public class JsonFormat {
         Tensor.Builder builder = Tensor.Builder.of(type);
         Inspector root = new JsonDecoder().decode(new Slime(), jsonTensorValue).get();
 
-        if (root.field("cells").valid())
+        if (root.type() == Type.ARRAY) // dense short form
+            decodeValues(root, builder);
+        else if (root.field("cells").valid())
             decodeCells(root.field("cells"), builder);
         else if (root.field("values").valid())
             decodeValues(root.field("values"), builder);
@@ -106,12 +109,27 @@ public class JsonFormat {
         if ( values.type() != Type.ARRAY)
             throw new IllegalArgumentException("Excepted 'values' to contain an array, not " + values.type());
 
-        IndexedTensor.BoundBuilder indexedBuilder = (IndexedTensor.BoundBuilder)builder;
-        MutableInteger index = new MutableInteger(0);
+        long size = DimensionSizes.of(builder.type()).totalSize();
+        MutableLong index = new MutableLong(0);
+        decodeValues(values, (IndexedTensor.BoundBuilder)builder, index, size);
+        if (index.get() != size)
+            throw new IllegalArgumentException("Expected " + size + " values, but got " + index.get());
+    }
+
+    /** Decodes an array of values, where each value may be a nested array, directly into the given builder */
+    private static void decodeValues(Inspector values, IndexedTensor.BoundBuilder builder, MutableLong index, long size) {
         values.traverse((ArrayTraverser) (__, value) -> {
-            if (value.type() != Type.LONG && value.type() != Type.DOUBLE)
+            if (value.type() == Type.ARRAY) {
+                decodeValues(value, builder, index, size);
+            }
+            else if (value.type() == Type.LONG || value.type() == Type.DOUBLE) {
+                if (index.get() < size) // count the values which do not fit, to report them
+                    builder.cellByDirectIndex(index.get(), value.asDouble());
+                index.add(1);
+            }
+            else {
                 throw new IllegalArgumentException("Excepted the values array to contain numbers, not " + value.type());
-            indexedBuilder.cellByDirectIndex(index.next(), value.asDouble());
+            }
         });
     }
 
@@ -64,6 +64,9 @@ class MixedBinaryFormat implements BinaryFormat {
         switch (serializationValueType) {
             case DOUBLE: encodeCells(buffer, tensor, buffer::putDouble); break;
             case FLOAT: encodeCells(buffer, tensor, (val) -> buffer.putFloat(val.floatValue())); break;
+            case BFLOAT16: encodeCells(buffer, tensor, (val) ->
+                    buffer.putShort(TypedBinaryFormat.bFloat16BitsFromFloat(val.floatValue()))); break;
+            case INT8: encodeCells(buffer, tensor, (val) -> buffer.put(val.byteValue())); break;
         }
     }
 
@@ -127,6 +130,9 @@ class MixedBinaryFormat implements BinaryFormat {
         switch (serializationValueType) {
             case DOUBLE: decodeCells(buffer, builder, type, buffer::getDouble); break;
             case FLOAT: decodeCells(buffer, builder, type, () -> (double)buffer.getFloat()); break;
+            case BFLOAT16: decodeCells(buffer, builder, type, () ->
+                    (double)TypedBinaryFormat.floatFromBFloat16Bits(buffer.getShort())); break;
+            case INT8: decodeCells(buffer, builder, type, () -> (double)buffer.get()); break;
         }
     }
 
@@ -7,6 +7,7 @@ import com.yahoo.tensor.MixedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 /**
@@ -29,6 +30,8 @@ public class TypedBinaryFormat {
 
     private static final int DOUBLE_VALUE_TYPE = 0; // Not encoded as it is default, and you know the type when deserializing
     private static final int FLOAT_VALUE_TYPE = 1;
+    private static final int BFLOAT16_VALUE_TYPE = 2;
+    private static final int INT8_VALUE_TYPE = 3;
 
     public static byte[] encode(Tensor tensor) {
         GrowableByteBuffer buffer = new GrowableByteBuffer();
@@ -50,6 +53,26 @@ public class TypedBinaryFormat {
         return decoder.decode(type, buffer);
     }
 
+    /**
+     * Decode some data to a tensor which, if the data is dense, reads its cell values from the given buffer
+     * when they are accessed instead of copying them. This allows large tensors to be read from memory mapped
+     * files without copying them onto the heap. Tensors on other formats are decoded as by
+     * {@link #decode(Optional, GrowableByteBuffer)}.
+     *
+     * @param type the type to decode and validate to, or empty to use the type given in the data
+     * @param buffer the buffer containing the data, positioned at the start of the data. The content of
+     *               the buffer must not be changed while the returned tensor is in use
+     * @return the resulting tensor
+     * @throws IllegalArgumentException if the tensor data was invalid
+     */
+    public static Tensor decodeView(Optional<TensorType> type, ByteBuffer buffer) {
+        GrowableByteBuffer growableBuffer = new GrowableByteBuffer(buffer.duplicate());
+        BinaryFormat decoder = getFormatDecoder(growableBuffer);
+        if (decoder instanceof DenseBinaryFormat)
+            return ((DenseBinaryFormat)decoder).decodeView(type, growableBuffer);
+        return decoder.decode(type, growableBuffer);
+    }
+
     private static BinaryFormat getFormatEncoder(GrowableByteBuffer buffer, Tensor tensor) {
         if (tensor instanceof MixedTensor && tensor.type().valueType() == TensorType.Value.DOUBLE) {
             encodeFormatType(buffer, MIXED_BINARY_FORMAT_TYPE);
@@ -103,6 +126,8 @@ public class TypedBinaryFormat {
         switch (valueType) {
             case DOUBLE: buffer.putInt1_4Bytes(DOUBLE_VALUE_TYPE); break;
             case FLOAT: buffer.putInt1_4Bytes(FLOAT_VALUE_TYPE); break;
+            case BFLOAT16: buffer.putInt1_4Bytes(BFLOAT16_VALUE_TYPE); break;
+            case INT8: buffer.putInt1_4Bytes(INT8_VALUE_TYPE); break;
             default:
                 throw new IllegalArgumentException("Attempt to encode unknown tensor value type: " + valueType);
         }
@@ -113,8 +138,21 @@ public class TypedBinaryFormat {
         switch (valueType) {
             case DOUBLE_VALUE_TYPE: return TensorType.Value.DOUBLE;
             case FLOAT_VALUE_TYPE: return TensorType.Value.FLOAT;
+            case BFLOAT16_VALUE_TYPE: return TensorType.Value.BFLOAT16;
+            case INT8_VALUE_TYPE: return TensorType.Value.INT8;
         }
-        throw new IllegalArgumentException("Received tensor value type '" + valueType + "'. Only 0(double), or 1(float) are legal.");
+        throw new IllegalArgumentException("Received tensor value type '" + valueType + "'. Only 0(double), " +
+                                           "1(float), 2(bfloat16) or 3(int8) are legal.");
+    }
+
+    /** Returns the bits of the given float as a bfloat16, which are its 16 most significant bits (truncating) */
+    static short bFloat16BitsFromFloat(float value) {
+        return (short)(Float.floatToRawIntBits(value) >>> 16);
+    }
+
+    /** Returns the float having the value of the given bfloat16 bits */
+    static float floatFromBFloat16Bits(short bits) {
+        return Float.intBitsToFloat(bits << 16);
     }
 
     private static byte[] asByteArray(GrowableByteBuffer buffer) {
@@ -48,4 +48,32 @@ public class MappedTensorTestCase {
         assertEquals("tensor(x{},y{}):{{x:0,y:0}:1.0,{x:1,y:0}:2.0}", tensor.toString());
     }
 
+    @Test
+    public void testManyCells() {
+        TensorType type = new TensorType.Builder().mapped("a").mapped("b").mapped("c").mapped("d").mapped("e")
+                                                  .mapped("f").mapped("g").build();
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (int i = 0; i < 20000; i++)
+            builder.cell(address(i), i);
+        builder.cell(address(7), -7); // replaces the previous value
+        Tensor tensor = builder.build();
+
+        assertEquals(20000, tensor.size());
+        assertEquals(-7, tensor.get(address(7)), 0);
+        for (int i = 0; i < 20000; i += 7) {
+            if (i == 7) continue;
+            assertEquals(i, tensor.get(address(i)), 0);
+        }
+        assertTrue(Double.isNaN(tensor.get(address(20000))));
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.ofLabels("0", "0", "0", "0", "0", "0", "unknown"))));
+        assertEquals(tensor.cells().size(), tensor.size());
+        assertEquals(tensor, Tensor.from(tensor.toString()));
+    }
+
+    /** Returns an address with many distinct labels, such that one address needs more than one long */
+    private static TensorAddress address(int i) {
+        return TensorAddress.ofLabels(String.valueOf(i), "b" + i % 3, "c" + i % 5, "d" + i % 1000,
+                                      String.valueOf(i / 10), "f", "label " + i % 17);
+    }
+
 }
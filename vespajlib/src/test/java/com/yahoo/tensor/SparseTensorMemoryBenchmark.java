@@ -0,0 +1,59 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+/**
+ * Microbenchmark of the heap used by mapped and mixed tensors, per cell.
+ */
+public class SparseTensorMemoryBenchmark {
+
+    private static final int cellCount = 500000;
+
+    /** Returns the heap bytes per cell retained by a tensor of the given type */
+    public double benchmark(TensorType type) {
+        long before = usedHeap();
+        Tensor tensor = create(type);
+        long after = usedHeap();
+        if (tensor.size() != cellCount)
+            throw new IllegalStateException("Expected " + cellCount + " cells, got " + tensor.size());
+        return (after - before) / (double)cellCount;
+    }
+
+    /**
+     * Creates a tensor of the given type with consecutive addresses, using labels from a vocabulary of 1000
+     * in the mapped dimensions after the first. The first dimension gets the remaining label space,
+     * such that every label is distinct when it is the only dimension.
+     */
+    private Tensor create(TensorType type) {
+        long[] sizes = type.dimensions().stream().mapToLong(d -> d.size().orElse(1000L)).toArray();
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (int cell = 0; cell < cellCount; cell++) {
+            TensorAddress.Builder address = new TensorAddress.Builder(type);
+            long remaining = cell;
+            for (int i = sizes.length - 1; i >= 0; i--) {
+                long label = i == 0 ? remaining : remaining % sizes[i];
+                address.add(type.dimensions().get(i).name(), String.valueOf(label));
+                remaining /= sizes[i];
+            }
+            builder.cell(address.build(), cell);
+        }
+        return builder.build();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        SparseTensorMemoryBenchmark benchmark = new SparseTensorMemoryBenchmark();
+        System.out.printf("Mapped, 1 dimension:  %1$8.1f bytes per cell\n",
+                          benchmark.benchmark(TensorType.fromSpec("tensor(x{})")));
+        System.out.printf("Mapped, 2 dimensions: %1$8.1f bytes per cell\n",
+                          benchmark.benchmark(TensorType.fromSpec("tensor(x{},y{})")));
+        System.out.printf("Mixed, 1 mapped and 1 indexed dimension: %1$8.1f bytes per cell\n",
+                          benchmark.benchmark(TensorType.fromSpec("tensor(x{},y[10])")));
+    }
+
+}
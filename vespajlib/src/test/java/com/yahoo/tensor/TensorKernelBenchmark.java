@@ -0,0 +1,67 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.yahoo.tensor.functions.Reduce;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Microbenchmark of matmul, join and reduce on dense, sparse and mixed tensors.
+ */
+public class TensorKernelBenchmark {
+
+    private final static Random random = new Random();
+
+    public double benchmark(int iterations, Supplier<Tensor> operation) {
+        for (int i = 0; i < Math.max(iterations / 10, 10); i++) // warmup
+            operation.get();
+        System.gc();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            operation.get();
+        long totalTime = System.nanoTime() - startTime;
+        return totalTime / 1000000.0 / iterations;
+    }
+
+    /** Returns a tensor of the given type, where mapped dimensions have the given size */
+    private static Tensor tensor(String typeSpec, int mappedSize) {
+        TensorType type = TensorType.fromSpec(typeSpec);
+        long[] sizes = new long[type.dimensions().size()];
+        long cellCount = 1;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = type.dimensions().get(i).size().orElse((long)mappedSize);
+            cellCount *= sizes[i];
+        }
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (long cell = 0; cell < cellCount; cell++) {
+            TensorAddress.Builder address = new TensorAddress.Builder(type);
+            long remaining = cell;
+            for (int i = sizes.length - 1; i >= 0; i--) {
+                address.add(type.dimensions().get(i).name(), String.valueOf(remaining % sizes[i]));
+                remaining /= sizes[i];
+            }
+            builder.cell(address.build(), random.nextDouble());
+        }
+        return builder.build();
+    }
+
+    private void run(String name, int iterations, String typeA, String typeB, int mappedSize) {
+        Tensor a = tensor(typeA, mappedSize);
+        Tensor b = tensor(typeB, mappedSize);
+        System.out.printf("%-7s matmul time: %8.3f ms, join time: %8.3f ms, reduce time: %8.3f ms\n",
+                          name,
+                          benchmark(iterations, () -> a.matmul(b, "k")),
+                          benchmark(iterations, () -> a.multiply(a)),
+                          benchmark(iterations, () -> a.reduce(Reduce.Aggregator.sum, "i")));
+    }
+
+    public static void main(String[] args) {
+        TensorKernelBenchmark benchmark = new TensorKernelBenchmark();
+        benchmark.run("Dense",  100, "tensor(i[256],k[256])", "tensor(k[256],n[256])", 0);
+        benchmark.run("Dense",  100, "tensor(i[256],k[256])", "tensor(j[256],k[256])", 0);
+        benchmark.run("Sparse",   5, "tensor(i{},k{})",       "tensor(k{},n{})",     64);
+        benchmark.run("Mixed",    5, "tensor(i{},k[256])",    "tensor(k[256],n{})",  64);
+    }
+
+}
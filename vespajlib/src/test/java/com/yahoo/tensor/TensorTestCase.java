@@ -2,6 +2,7 @@
 package com.yahoo.tensor;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.tensor.evaluation.MapEvaluationContext;
 import com.yahoo.tensor.evaluation.Name;
 import com.yahoo.tensor.evaluation.VariableTensor;
@@ -9,11 +10,13 @@ import com.yahoo.tensor.functions.ConstantTensor;
 import com.yahoo.tensor.functions.Join;
 import com.yahoo.tensor.functions.Reduce;
 import com.yahoo.tensor.functions.TensorFunction;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
@@ -50,6 +53,82 @@ public class TensorTestCase {
         assertEquals(Tensor.from("tensor<float>(x[1]):{{x:0}:5}").getClass(), IndexedFloatTensor.class);
         assertEquals(Tensor.Builder.of(TensorType.fromSpec("tensor<float>(x[1])")).cell(5.0, 0).build().getClass(),
                      IndexedFloatTensor.class);
+
+        assertEquals(Tensor.from("tensor<bfloat16>(x[1]):{{x:0}:5}").getClass(), IndexedFloatTensor.class);
+        assertEquals(Tensor.from("tensor<int8>(x[1]):{{x:0}:5}").getClass(), IndexedFloatTensor.class);
+    }
+
+    @Test
+    public void testValueTypePropagation() {
+        Tensor int8 = Tensor.from("tensor<int8>(x[2]):[1, 2]");
+        Tensor bfloat16 = Tensor.from("tensor<bfloat16>(x[2]):[3, 4]");
+        Tensor floats = Tensor.from("tensor<float>(x[2]):[5, 6]");
+        Tensor doubles = Tensor.from("tensor(x[2]):[7, 8]");
+        Tensor scalar = Tensor.from("2.0");
+
+        // Computed values are held in the largest argument value type, decayed to float
+        assertValueType("tensor<float>(x[2])", int8.multiply(int8), "[1, 4]");
+        assertValueType("tensor<float>(x[2])", int8.multiply(scalar), "[2, 4]");
+        assertValueType("tensor<float>(x[2])", int8.add(bfloat16), "[4, 6]");
+        assertValueType("tensor<float>(x[2])", bfloat16.add(floats), "[8, 10]");
+        assertValueType("tensor(x[2])", floats.add(doubles), "[12, 14]");
+        assertValueType("tensor<float>(x[2])", int8.map(v -> v / 2), "[0.5, 1]");
+        assertValueType("tensor<float>(x[2])", floats.map(v -> v / 2), "[2.5, 3]");
+        assertValueType("tensor<float>(y[2])", Tensor.from("tensor<bfloat16>(x[2],y[2]):[[1, 2], [3, 4]]").sum("x"), "[4, 6]");
+
+        // Values which are just copied keep their value type
+        assertValueType("tensor<int8>(x[4])", int8.concat(int8, "x"), "[1, 2, 1, 2]");
+        assertValueType("tensor<bfloat16>(x[4])", int8.concat(bfloat16, "x"), "[1, 2, 3, 4]");
+        assertValueType("tensor<int8>(y[2])", int8.rename("x", "y"), "[1, 2]");
+    }
+
+    @Test
+    public void testQuantizedValueTypes() {
+        for (String dimensions : new String[] { "(x[5])", "(x{})", "(key{},x[5])" }) {
+            Tensor int8 = quantized("tensor<int8>" + dimensions, 200, -300, 1.5, 2.5, -1.4);
+            assertQuantized(int8, 127, -128, 2, 2, -1);
+
+            // 1 + 2^-8 is halfway between two bfloat16 values and rounds to even, 1 + 2^-8 + 2^-10 rounds up
+            Tensor bfloat16 = quantized("tensor<bfloat16>" + dimensions, 1.00390625, 1.0048828125, 3.14159, -0.1, 1e38);
+            assertQuantized(bfloat16, 1.0, 1.0078125, 3.140625, -0.10009765625, 9.969209968386869e37);
+        }
+
+        try {
+            quantized("tensor<int8>(x[1])", Double.NaN);
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("An int8 tensor cell can not hold NaN", e.getMessage());
+        }
+    }
+
+    private Tensor quantized(String typeSpec, double ... values) {
+        TensorType type = TensorType.fromSpec(typeSpec);
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (int i = 0; i < values.length; i++) {
+            TensorAddress.Builder address = new TensorAddress.Builder(type);
+            if (type.dimension("key").isPresent())
+                address.add("key", "a");
+            address.add("x", String.valueOf(i));
+            builder.cell(address.build(), values[i]);
+        }
+        return builder.build();
+    }
+
+    private void assertQuantized(Tensor tensor, double ... expected) {
+        for (int i = 0; i < expected.length; i++) {
+            TensorAddress.Builder address = new TensorAddress.Builder(tensor.type());
+            if (tensor.type().dimension("key").isPresent())
+                address.add("key", "a");
+            address.add("x", String.valueOf(i));
+            assertEquals(tensor.type() + " cell " + i, expected[i], tensor.get(address.build()), 0.0);
+        }
+        assertEquals(tensor, TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(TypedBinaryFormat.encode(tensor))));
+    }
+
+    private void assertValueType(String expectedType, Tensor tensor, String expectedValues) {
+        assertEquals(TensorType.fromSpec(expectedType), tensor.type());
+        assertEquals(Tensor.from(expectedType + ":" + expectedValues), tensor);
     }
 
     @Test
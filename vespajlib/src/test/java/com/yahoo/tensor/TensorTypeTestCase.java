@@ -98,6 +98,22 @@ public class TensorTypeTestCase {
         assertValueType(TensorType.Value.FLOAT, "tensor<float>(x[])");
         assertEquals("tensor(x[])", TensorType.fromSpec("tensor<double>(x[])").toString());
         assertEquals("tensor<float>(x[])", TensorType.fromSpec("tensor<float>(x[])").toString());
+        assertValueType(TensorType.Value.BFLOAT16, "tensor<bfloat16>(x[])");
+        assertValueType(TensorType.Value.INT8, "tensor<int8>(x[])");
+        assertEquals("tensor<bfloat16>(x[])", TensorType.fromSpec("tensor<bfloat16>(x[])").toString());
+        assertEquals("tensor<int8>(x[])", TensorType.fromSpec("tensor<int8>(x[])").toString());
+    }
+
+    @Test
+    public void testCombinedValueType() {
+        assertEquals(TensorType.Value.DOUBLE, TensorType.Value.largestOf(TensorType.Value.INT8, TensorType.Value.DOUBLE));
+        assertEquals(TensorType.Value.FLOAT, TensorType.Value.largestOf(TensorType.Value.BFLOAT16, TensorType.Value.FLOAT));
+        assertEquals(TensorType.Value.BFLOAT16, TensorType.Value.largestOf(TensorType.Value.INT8, TensorType.Value.BFLOAT16));
+        assertEquals(TensorType.Value.INT8, TensorType.Value.largestOf(TensorType.Value.INT8, TensorType.Value.INT8));
+        assertEquals(TensorType.Value.FLOAT, TensorType.Value.INT8.decay());
+        assertEquals(TensorType.Value.FLOAT, TensorType.Value.BFLOAT16.decay());
+        assertEquals(TensorType.Value.FLOAT, TensorType.Value.FLOAT.decay());
+        assertEquals(TensorType.Value.DOUBLE, TensorType.Value.DOUBLE.decay());
     }
 
     private static void assertTensorType(String typeSpec) {
@@ -46,4 +46,28 @@ public class JoinTestCase {
                              .divide(Tensor.from("tensor(y[],z[]):{ {y:0,z:0}:2, {y:1,z:0}:4, {y:2,z:0}:6 }")));
     }
 
+    /** Test the dense join optimization */
+    @Test
+    public void testDenseJoin() {
+        Tensor t1, t2;
+
+        t1 = Tensor.from("tensor(x[2],y[2]):{{x:0,y:0}:1,{x:0,y:1}:2,{x:1,y:0}:3,{x:1,y:1}:4}");
+        t2 = Tensor.from("tensor(y[2],z[2]):{{y:0,z:0}:1,{y:0,z:1}:10,{y:1,z:0}:100,{y:1,z:1}:1000}");
+        assertEquals(Tensor.from("tensor(x[2],y[2],z[2]):{{x:0,y:0,z:0}:1,{x:0,y:0,z:1}:10,{x:0,y:1,z:0}:200,{x:0,y:1,z:1}:2000," +
+                                                         "{x:1,y:0,z:0}:3,{x:1,y:0,z:1}:30,{x:1,y:1,z:0}:400,{x:1,y:1,z:1}:4000}"),
+                     t1.multiply(t2));
+
+        t1 = Tensor.from("tensor(x[2]):{{x:0}:1,{x:1}:2}");
+        t2 = Tensor.from("tensor(y[2]):{{y:0}:10,{y:1}:20}");
+        assertEquals(Tensor.from("tensor(x[2],y[2]):{{x:0,y:0}:-9,{x:0,y:1}:-19,{x:1,y:0}:-8,{x:1,y:1}:-18}"),
+                     t1.subtract(t2));
+        assertEquals(Tensor.from("tensor(x[2],y[2]):{{x:0,y:0}:9,{x:0,y:1}:19,{x:1,y:0}:8,{x:1,y:1}:18}"),
+                     t2.subtract(t1));
+
+        t1 = Tensor.from("tensor<float>(x[2],y[2]):{{x:0,y:0}:1,{x:0,y:1}:2,{x:1,y:0}:3,{x:1,y:1}:4}");
+        t2 = Tensor.from("tensor(x[2],y[2]):{{x:0,y:0}:4,{x:0,y:1}:3,{x:1,y:0}:2,{x:1,y:1}:1}");
+        assertEquals(Tensor.from("tensor(x[2],y[2]):{{x:0,y:0}:5,{x:0,y:1}:5,{x:1,y:0}:5,{x:1,y:1}:5}"),
+                     t1.add(t2));
+    }
+
 }
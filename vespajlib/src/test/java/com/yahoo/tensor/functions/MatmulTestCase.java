@@ -2,10 +2,13 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 import org.junit.Test;
 
+import java.util.function.IntBinaryOperator;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -95,4 +98,61 @@ public class MatmulTestCase {
         assertEquals(r, result);
     }
 
+    /** Tests matrices which are multiplied in several blocks, in both dimension orders */
+    @Test
+    public void testMatmulLargeMatrices() {
+        Tensor a = matrix("tensor(i[40],k[300])", (i, k) -> (i + k) % 7 - 3);
+        Tensor b = matrix("tensor(k[300],n[30])", (k, n) -> (k * n) % 5 - 2);
+        Tensor expected = product("tensor(i[40],n[30])", a, b, 300);
+        assertEquals(expected, a.matmul(b, "k"));
+        assertEquals(expected, b.matmul(a, "k"));
+
+        Tensor bTransposed = matrix("tensor(j[30],k[300])", (n, k) -> (k * n) % 5 - 2);
+        assertEquals(expected.rename("n", "j"), a.matmul(bTransposed, "k"));
+        assertEquals(expected.rename("n", "j"), bTransposed.matmul(a, "k"));
+    }
+
+    /** Tests multiplying along a dimension which is only in one of the arguments, which sums over it */
+    @Test
+    public void testMatmulDimensionInOneArgumentOnly() {
+        Tensor a = Tensor.from("tensor(i[2],k[3]):[[1,2,3],[4,5,6]]");
+        Tensor b = Tensor.from("tensor(j[2]):[10,20]");
+        Tensor expected = Tensor.from("tensor(i[2],j[2]):[[60,120],[150,300]]");
+        assertEquals(expected, a.matmul(b, "k"));
+        assertEquals(expected, b.matmul(a, "k"));
+
+        Tensor c = Tensor.from("tensor(b[3],c[4]):[[1,2,3,4],[5,6,7,8],[9,10,11,12]]");
+        Tensor d = Tensor.from("tensor(a[2]):[1,2]");
+        expected = Tensor.from("tensor(a[2],c[4]):[[15,18,21,24],[30,36,42,48]]");
+        assertEquals(expected, c.matmul(d, "b"));
+        assertEquals(expected, d.matmul(c, "b"));
+    }
+
+    private static Tensor matrix(String type, IntBinaryOperator value) {
+        TensorType tensorType = TensorType.fromSpec(type);
+        long rows = tensorType.dimensions().get(0).size().get();
+        long columns = tensorType.dimensions().get(1).size().get();
+        Tensor.Builder builder = Tensor.Builder.of(tensorType);
+        for (int row = 0; row < rows; row++)
+            for (int column = 0; column < columns; column++)
+                builder.cell(value.applyAsInt(row, column), row, column);
+        return builder.build();
+    }
+
+    private static Tensor product(String type, Tensor a, Tensor b, int commonSize) {
+        TensorType tensorType = TensorType.fromSpec(type);
+        long rows = tensorType.dimensions().get(0).size().get();
+        long columns = tensorType.dimensions().get(1).size().get();
+        Tensor.Builder builder = Tensor.Builder.of(tensorType);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                double sum = 0;
+                for (int k = 0; k < commonSize; k++)
+                    sum += ((IndexedTensor)a).get(row, k) * ((IndexedTensor)b).get(k, column);
+                builder.cell(sum, row, column);
+            }
+        }
+        return builder.build();
+    }
+
 }
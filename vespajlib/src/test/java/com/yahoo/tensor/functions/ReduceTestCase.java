@@ -0,0 +1,38 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReduceTestCase {
+
+    private static final Tensor cube = Tensor.from("tensor(x[2],y[2],z[2]):{" +
+                                                   "{x:0,y:0,z:0}:1,{x:0,y:0,z:1}:2,{x:0,y:1,z:0}:3,{x:0,y:1,z:1}:4," +
+                                                   "{x:1,y:0,z:0}:5,{x:1,y:0,z:1}:6,{x:1,y:1,z:0}:7,{x:1,y:1,z:1}:8}");
+
+    /** Test reducing the innermost dimensions of an indexed tensor */
+    @Test
+    public void testReduceIndexedInnermost() {
+        assertEquals(Tensor.from("tensor(x[2],y[2]):{{x:0,y:0}:3,{x:0,y:1}:7,{x:1,y:0}:11,{x:1,y:1}:15}"),
+                     cube.reduce(Reduce.Aggregator.sum, "z"));
+        assertEquals(Tensor.from("tensor(x[2]):{{x:0}:1,{x:1}:5}"),
+                     cube.reduce(Reduce.Aggregator.min, "y", "z"));
+        assertEquals(36, cube.reduce(Reduce.Aggregator.sum).asDouble(), 0);
+    }
+
+    /** Test reducing dimensions of an indexed tensor which are not innermost */
+    @Test
+    public void testReduceIndexedStrided() {
+        assertEquals(Tensor.from("tensor(x[2],z[2]):{{x:0,z:0}:4,{x:0,z:1}:6,{x:1,z:0}:12,{x:1,z:1}:14}"),
+                     cube.reduce(Reduce.Aggregator.sum, "y"));
+        assertEquals(Tensor.from("tensor(y[2],z[2]):{{y:0,z:0}:5,{y:0,z:1}:6,{y:1,z:0}:7,{y:1,z:1}:8}"),
+                     cube.reduce(Reduce.Aggregator.max, "x"));
+        assertEquals(Tensor.from("tensor(y[2]):{{y:0}:3.5,{y:1}:5.5}"),
+                     cube.reduce(Reduce.Aggregator.avg, "x", "z"));
+        assertEquals(Tensor.from("tensor(z[2]):{{z:0}:4,{z:1}:4}"),
+                     cube.reduce(Reduce.Aggregator.count, "x", "y"));
+    }
+
+}
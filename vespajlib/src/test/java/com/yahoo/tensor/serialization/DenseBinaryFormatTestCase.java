@@ -3,9 +3,11 @@ package com.yahoo.tensor.serialization;
 
 import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Optional;
 
@@ -67,10 +69,75 @@ public class DenseBinaryFormatTestCase {
         assertEquals(Arrays.toString(encodedTensor), Arrays.toString(TypedBinaryFormat.encode(tensor)));
     }
 
+    @Test
+    public void requireThatBFloat16AndInt8SerializationFormatDoNotChange() {
+        byte[] encodedBFloat16Tensor = new byte[]{6, // binary format type
+                2, // bfloat16 type
+                1, // dimension count
+                1, (byte) 'x', 2, // dimension x with size
+                64, 0, // value 1
+                64, 64, // value 2
+        };
+        Tensor bfloat16Tensor = Tensor.from("tensor<bfloat16>(x[2]):[2.0, 3.0]");
+        assertEquals(Arrays.toString(encodedBFloat16Tensor), Arrays.toString(TypedBinaryFormat.encode(bfloat16Tensor)));
+
+        byte[] encodedInt8Tensor = new byte[]{6, // binary format type
+                3, // int8 type
+                1, // dimension count
+                1, (byte) 'x', 2, // dimension x with size
+                2, // value 1
+                -3, // value 2
+        };
+        Tensor int8Tensor = Tensor.from("tensor<int8>(x[2]):[2, -3]");
+        assertEquals(Arrays.toString(encodedInt8Tensor), Arrays.toString(TypedBinaryFormat.encode(int8Tensor)));
+    }
+
     @Test
     public void testSerializationOfDifferentValueTypes() {
         assertSerialization("tensor<double>(x[],y[]):{{x:0,y:0}:2.0, {x:0,y:1}:3.0, {x:1,y:0}:4.0, {x:1,y:1}:5.0}");
         assertSerialization("tensor<float>(x[],y[]):{{x:0,y:0}:2.0, {x:0,y:1}:3.0, {x:1,y:0}:4.0, {x:1,y:1}:5.0}");
+        assertSerialization("tensor<bfloat16>(x[],y[]):{{x:0,y:0}:2.0, {x:0,y:1}:3.0, {x:1,y:0}:4.0, {x:1,y:1}:5.0}");
+        assertSerialization("tensor<int8>(x[],y[]):{{x:0,y:0}:2.0, {x:0,y:1}:3.0, {x:1,y:0}:4.0, {x:1,y:1}:5.0}");
+    }
+
+    @Test
+    public void testReducedPrecisionSerialization() {
+        Tensor bfloat16Tensor = Tensor.from("tensor<bfloat16>(x[2]):[1.00390625, 3.14159]");
+        Tensor decoded = TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(TypedBinaryFormat.encode(bfloat16Tensor)));
+        assertEquals(TensorType.fromSpec("tensor<bfloat16>(x[2])"), decoded.type());
+        assertEquals(1.0, decoded.get(TensorAddress.of(0)), 0.0); // only 8 bits of mantissa are kept
+        assertEquals(3.140625, decoded.get(TensorAddress.of(1)), 0.0);
+
+        Tensor int8Tensor = Tensor.from("tensor<int8>(x[2]):[127, -128]");
+        decoded = TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(TypedBinaryFormat.encode(int8Tensor)));
+        assertEquals(TensorType.fromSpec("tensor<int8>(x[2])"), decoded.type());
+        assertEquals(int8Tensor, decoded);
+    }
+
+    @Test
+    public void testDecodingView() {
+        for (String valueType : new String[] { "double", "float", "bfloat16", "int8" }) {
+            Tensor tensor = Tensor.from("tensor<" + valueType + ">(x[2],y[3]):[[1, 2, 3], [4, 5, 6]]");
+            byte[] encodedTensor = TypedBinaryFormat.encode(tensor);
+            ByteBuffer buffer = ByteBuffer.allocate(encodedTensor.length + 3);
+            buffer.put(new byte[] {7, 7, 7}).put(encodedTensor).position(3);
+
+            Tensor view = TypedBinaryFormat.decodeView(Optional.of(tensor.type()), buffer);
+            assertEquals(tensor, view);
+            assertEquals(tensor.type(), view.type());
+            assertEquals(tensor.hashCode(), view.hashCode());
+            assertEquals(3, buffer.position());
+        }
+
+        try {
+            Tensor tensor = Tensor.from("tensor(x[3]):[1, 2, 3]");
+            byte[] encodedTensor = TypedBinaryFormat.encode(tensor);
+            TypedBinaryFormat.decodeView(Optional.empty(), ByteBuffer.wrap(encodedTensor, 0, encodedTensor.length - 1));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("A buffer of 23 bytes is too small to hold 3 values of type double", e.getMessage());
+        }
     }
 
     private void assertSerialization(String tensorString) {
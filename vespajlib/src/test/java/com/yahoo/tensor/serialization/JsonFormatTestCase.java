@@ -81,6 +81,31 @@ public class JsonFormatTestCase {
         assertEquals(expected, decoded);
     }
 
+    @Test
+    public void testDenseTensorInNestedDenseForm() {
+        Tensor expected = Tensor.from("tensor(x[2],y[3]):[[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]");
+        String denseJson = "{\"values\":[[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]}";
+        Tensor decoded = JsonFormat.decode(expected.type(), denseJson.getBytes(StandardCharsets.UTF_8));
+        assertEquals(expected, decoded);
+    }
+
+    @Test
+    public void testDenseTensorShortForm() {
+        Tensor expected = Tensor.from("tensor<float>(x[2],y[3]):[[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]");
+        assertEquals(expected, JsonFormat.decode(expected.type(), "[2.0, 3.0, 4.0, 5.0, 6.0, 7.0]".getBytes(StandardCharsets.UTF_8)));
+        Tensor decoded = JsonFormat.decode(expected.type(), "[[2.0, 3.0, 4.0], [5.0, 6.0, 7.0]]".getBytes(StandardCharsets.UTF_8));
+        assertEquals(expected, decoded);
+        assertEquals(TensorType.Value.FLOAT, decoded.type().valueType());
+    }
+
+    @Test
+    public void testWrongNumberOfDenseValues() {
+        TensorType x3 = TensorType.fromSpec("tensor(x[3])");
+        assertDecodeFails("Expected 3 values, but got 2", x3, "{\"values\":[2.0, 3.0]}");
+        assertDecodeFails("Expected 3 values, but got 4", x3, "{\"values\":[2.0, 3.0, 4.0, 5.0]}");
+        assertDecodeFails("Expected 3 values, but got 4", x3, "[[2.0, 3.0], [4.0, 5.0]]");
+    }
+
     @Test
     public void testMixedTensorInMixedForm() {
         Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(x{},y[3])"));
@@ -134,4 +159,14 @@ public class JsonFormatTestCase {
         }
     }
 
+    private void assertDecodeFails(String expectedMessage, TensorType type, String json) {
+        try {
+            JsonFormat.decode(type, json.getBytes(StandardCharsets.UTF_8));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals(expectedMessage, e.getMessage());
+        }
+    }
+
 }